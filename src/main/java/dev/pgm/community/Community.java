@@ -21,6 +21,9 @@ public class Community extends JavaPlugin {
   // Database
   private DatabaseConnection database;
 
+  // Async execution
+  private CommunityExecutors executors;
+
   // Feature Manager
   private FeatureManager features;
 
@@ -46,6 +49,7 @@ public class Community extends JavaPlugin {
   @Override
   public void onDisable() {
     features.disable();
+    executors.shutdown();
   }
 
   public void reload() {
@@ -62,6 +66,8 @@ public class Community extends JavaPlugin {
 
   private void setupDatabase() {
     this.database = new DatabaseConnection(this);
+    this.executors =
+        new CommunityExecutors(this, database.getConfig().getMaxDatabaseConnections());
   }
 
   private void setupCommands() {
@@ -96,6 +102,14 @@ public class Community extends JavaPlugin {
     return config.getServerId();
   }
 
+  public DatabaseConnection getDatabase() {
+    return database;
+  }
+
+  public CommunityExecutors getExecutors() {
+    return executors;
+  }
+
   public FeatureManager getFeatures() {
     return features;
   }
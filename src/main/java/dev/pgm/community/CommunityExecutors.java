@@ -0,0 +1,154 @@
+package dev.pgm.community;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executors used for asynchronous work, instead of the common pool.
+ *
+ * <ul>
+ *   <li>{@link #database()} runs blocking database queries, sized to the connection pool
+ *   <li>{@link #bulk()} runs large loads such as those on startup, on a thread (and connection) of
+ *       its own so logins are never queued behind them
+ *   <li>{@link #async()} runs continuations of those queries. Continuations which block on other
+ *       futures are compensated for with extra threads, so they can not starve the pool
+ *   <li>{@link #sync()} hands results back to the main server thread
+ *   <li>{@link #timers()} runs actions on the async executor once state expires
+ * </ul>
+ */
+public class CommunityExecutors {
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+  private static final long TIMER_TICK_MILLIS = 100;
+
+  private final Logger logger;
+  private final ThreadPoolExecutor database;
+  private final ThreadPoolExecutor bulk;
+  private final ForkJoinPool async;
+  private final Executor sync;
+  private final TimingWheel timers;
+
+  public CommunityExecutors(Community plugin, int databaseThreads) {
+    this.logger = plugin.getLogger();
+    this.database =
+        new ThreadPoolExecutor(
+            databaseThreads,
+            databaseThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community DB Reader #%d")
+                .setDaemon(true)
+                .build());
+    this.bulk =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community DB Bulk Loader")
+                .setDaemon(true)
+                .build());
+    this.async =
+        new ForkJoinPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            pool -> {
+              ForkJoinWorkerThread thread =
+                  ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+              thread.setName("Community Async #" + thread.getPoolIndex());
+              return thread;
+            },
+            (thread, error) ->
+                logger.log(Level.SEVERE, "Uncaught exception on " + thread.getName(), error),
+            false);
+    this.sync =
+        task -> {
+          if (plugin.getServer().isPrimaryThread()) {
+            task.run();
+          } else {
+            plugin.getServer().getScheduler().runTask(plugin, task);
+          }
+        };
+    this.timers = new TimingWheel(logger, async, TIMER_TICK_MILLIS);
+  }
+
+  /** @return the executor for blocking database queries */
+  public static Executor database() {
+    return Community.get().getExecutors().database;
+  }
+
+  /** @return the executor for large database loads, kept apart from per-player queries */
+  public static Executor bulk() {
+    return Community.get().getExecutors().bulk;
+  }
+
+  /** @return the executor for continuations and other off-thread work */
+  public static Executor async() {
+    return Community.get().getExecutors().async;
+  }
+
+  /** @return an executor which runs tasks on the main server thread */
+  public static Executor sync() {
+    return Community.get().getExecutors().sync;
+  }
+
+  /** @return the timing wheel for state which expires at a known time */
+  public static TimingWheel timers() {
+    return Community.get().getExecutors().timers;
+  }
+
+  public TimingWheel getTimers() {
+    return timers;
+  }
+
+  public int getDatabaseQueueDepth() {
+    return database.getQueue().size();
+  }
+
+  public int getDatabaseActiveCount() {
+    return database.getActiveCount();
+  }
+
+  public long getDatabaseCompletedCount() {
+    return database.getCompletedTaskCount();
+  }
+
+  public long getAsyncQueueDepth() {
+    return async.getQueuedSubmissionCount() + async.getQueuedTaskCount();
+  }
+
+  public int getAsyncActiveCount() {
+    return async.getActiveThreadCount();
+  }
+
+  public int getAsyncPoolSize() {
+    return async.getPoolSize();
+  }
+
+  /** Stops accepting new work and waits briefly for queued tasks to complete */
+  public void shutdown() {
+    timers.shutdown();
+    database.shutdown();
+    bulk.shutdown();
+    async.shutdown();
+    try {
+      if (!database.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+          || !bulk.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+          || !async.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        logger.warning("Timed out waiting for async tasks to complete");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package dev.pgm.community;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs actions at a deadline, for state which expires at a known time (e.g temporary punishments).
+ *
+ * <p>A hierarchical timing wheel: each level has {@link #SLOTS} slots, and every slot of a level
+ * covers as many ticks as the whole level below it. A timer is placed in the lowest level whose
+ * range reaches its deadline, and moves down a level each time the wheel below it wraps around,
+ * until it lands in the lowest level and fires. Scheduling and cancelling are constant time,
+ * however many timers are pending, and the timer thread only touches the slots it passes.
+ *
+ * <p>Timers are keyed. Scheduling a key which is already pending replaces it, so callers can
+ * reschedule without cancelling first. Actions run on the given executor, never on the timer
+ * thread, and fire at most one tick after their deadline.
+ */
+public class TimingWheel {
+
+  private static final int SLOT_BITS = 6;
+  public static final int SLOTS = 1 << SLOT_BITS;
+  private static final int LEVELS = 5; // 64^5 ticks, over three years at 100ms
+  private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+  private final Logger logger;
+  private final Executor executor;
+  private final long tickMillis;
+  private final long startMillis;
+
+  // Level -> slot -> head of a linked list of timers, guarded by this
+  private final Timer[][] wheels = new Timer[LEVELS][SLOTS];
+  private final Map<Key, Timer> timers = Maps.newHashMap();
+  private long currentTick;
+
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  private final AtomicLong scheduled = new AtomicLong();
+  private final AtomicLong fired = new AtomicLong();
+  private final AtomicLong cancelled = new AtomicLong();
+
+  /**
+   * Creates and starts a timing wheel
+   *
+   * @param logger A logger for actions which throw
+   * @param executor The executor actions are run on
+   * @param tickMillis The resolution of the wheel
+   */
+  public TimingWheel(Logger logger, Executor executor, long tickMillis) {
+    this.logger = logger;
+    this.executor = executor;
+    this.tickMillis = Math.max(1, tickMillis);
+    this.startMillis = System.currentTimeMillis();
+    this.thread = new Thread(this::run, "Community Timers");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Schedules an action, replacing any pending action with the same key
+   *
+   * @param namespace The feature scheduling the action, so keys of features never collide
+   * @param id The id of what expires, e.g a player
+   * @param deadline When to run the action, actions in the past run on the next tick
+   * @param action The action
+   */
+  public void schedule(String namespace, Object id, Instant deadline, Runnable action) {
+    Key key = new Key(namespace, id);
+    long tick = Math.max(0, (deadline.toEpochMilli() - startMillis + tickMillis - 1) / tickMillis);
+
+    synchronized (this) {
+      Timer previous = timers.remove(key);
+      if (previous != null) unlink(previous);
+
+      Timer timer = new Timer(key, tick, action);
+      timers.put(key, timer);
+      place(timer);
+    }
+    scheduled.incrementAndGet();
+  }
+
+  /**
+   * Cancels a pending action
+   *
+   * @param namespace The feature which scheduled the action
+   * @param id The id the action was scheduled for
+   * @return Whether an action was pending
+   */
+  public boolean cancel(String namespace, Object id) {
+    synchronized (this) {
+      Timer timer = timers.remove(new Key(namespace, id));
+      if (timer == null) return false;
+      unlink(timer);
+    }
+    cancelled.incrementAndGet();
+    return true;
+  }
+
+  public synchronized boolean isScheduled(String namespace, Object id) {
+    return timers.containsKey(new Key(namespace, id));
+  }
+
+  public synchronized int getPendingCount() {
+    return timers.size();
+  }
+
+  public long getScheduledCount() {
+    return scheduled.get();
+  }
+
+  public long getFiredCount() {
+    return fired.get();
+  }
+
+  public long getCancelledCount() {
+    return cancelled.get();
+  }
+
+  /** Stops the timer thread, pending actions never run */
+  public void shutdown() {
+    running = false;
+    thread.interrupt();
+  }
+
+  private void run() {
+    while (running) {
+      List<Timer> expired = Lists.newArrayList();
+      long now = (System.currentTimeMillis() - startMillis) / tickMillis;
+      synchronized (this) {
+        // Catch up on every tick missed, e.g while the thread was not scheduled
+        while (currentTick < now) {
+          advance(expired);
+        }
+      }
+      expired.forEach(this::fire);
+
+      try {
+        Thread.sleep(tickMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /** Moves the wheel forward a tick, collecting the timers which expire on it */
+  private void advance(List<Timer> expired) {
+    long tick = ++currentTick;
+
+    // Higher levels first, so their timers move down before the lower levels are read
+    for (int level = LEVELS - 1; level > 0; level--) {
+      int shift = SLOT_BITS * level;
+      if ((tick & ((1L << shift) - 1)) == 0) {
+        for (Timer timer : drain(level, (int) ((tick >>> shift) & (SLOTS - 1)))) {
+          if (!placeOrExpire(timer)) expired.add(timer);
+        }
+      }
+    }
+
+    for (Timer timer : drain(0, (int) (tick & (SLOTS - 1)))) {
+      if (!placeOrExpire(timer)) expired.add(timer);
+    }
+  }
+
+  private boolean placeOrExpire(Timer timer) {
+    if (timer.tick > currentTick) {
+      place(timer);
+      return true;
+    }
+    timers.remove(timer.key, timer);
+    return false;
+  }
+
+  private void place(Timer timer) {
+    long delta = timer.tick - currentTick;
+    if (delta <= 0) {
+      // Already due, fire on the next tick
+      delta = 1;
+    }
+    long target = currentTick + Math.min(delta, MAX_TICKS - 1);
+
+    int level = 0;
+    while (level < LEVELS - 1 && (target - currentTick) >>> (SLOT_BITS * (level + 1)) != 0) {
+      level++;
+    }
+    int slot = (int) ((target >>> (SLOT_BITS * level)) & (SLOTS - 1));
+
+    timer.level = level;
+    timer.slot = slot;
+    timer.prev = null;
+    timer.next = wheels[level][slot];
+    if (timer.next != null) timer.next.prev = timer;
+    wheels[level][slot] = timer;
+  }
+
+  private void unlink(Timer timer) {
+    if (timer.prev != null) {
+      timer.prev.next = timer.next;
+    } else if (wheels[timer.level][timer.slot] == timer) {
+      wheels[timer.level][timer.slot] = timer.next;
+    }
+    if (timer.next != null) timer.next.prev = timer.prev;
+    timer.prev = timer.next = null;
+  }
+
+  private List<Timer> drain(int level, int slot) {
+    List<Timer> drained = Lists.newArrayList();
+    Timer timer = wheels[level][slot];
+    wheels[level][slot] = null;
+    while (timer != null) {
+      Timer next = timer.next;
+      timer.prev = timer.next = null;
+      drained.add(timer);
+      timer = next;
+    }
+    return drained;
+  }
+
+  private void fire(Timer timer) {
+    fired.incrementAndGet();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              timer.action.run();
+            } catch (RuntimeException e) {
+              logger.log(Level.WARNING, "Unable to run timer " + timer.key, e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  private static class Timer {
+    private final Key key;
+    private final long tick;
+    private final Runnable action;
+    private int level;
+    private int slot;
+    private Timer prev;
+    private Timer next;
+
+    Timer(Key key, long tick, Runnable action) {
+      this.key = key;
+      this.tick = tick;
+      this.action = action;
+    }
+  }
+
+  private static class Key {
+    private final String namespace;
+    private final Object id;
+
+    Key(String namespace, Object id) {
+      this.namespace = namespace;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return namespace.equals(other.namespace) && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(namespace, id);
+    }
+
+    @Override
+    public String toString() {
+      return namespace + ":" + id;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package dev.pgm.community.assistance.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.newline;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
@@ -98,7 +99,8 @@ public class ReportCommands extends CommunityCommand {
                   return;
                 }
                 sendReportHistory(audience, reports, page);
-              });
+              },
+              async());
       return;
     }
 
@@ -172,7 +174,8 @@ public class ReportCommands extends CommunityCommand {
         .thenApplyAsync(
             name -> {
               return PlayerComponent.player(Bukkit.getPlayer(id), name, NameStyle.FANCY);
-            });
+            },
+            async());
   }
 
   private void checkEnabled() {
@@ -1,5 +1,6 @@
 package dev.pgm.community.assistance.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
@@ -20,6 +21,8 @@ import dev.pgm.community.feature.FeatureBase;
 import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.network.subs.types.AssistanceSubscriber;
 import dev.pgm.community.network.updates.types.AssistUpdate;
+import dev.pgm.community.ratelimit.RateLimit;
+import dev.pgm.community.ratelimit.RateLimiter;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.BroadcastUtils;
 import dev.pgm.community.utils.NetworkUtils;
@@ -53,7 +56,7 @@ public abstract class AssistanceFeatureBase extends FeatureBase implements Assis
   protected final UsersFeature users;
   private final InventoryManager inventory;
 
-  protected final Cache<UUID, Instant> cooldown;
+  protected final RateLimiter rateLimiter;
   protected final Cache<Report, Instant> recentReports;
   protected final Cache<PlayerHelpRequest, Instant> recentHelp;
 
@@ -65,8 +68,7 @@ public abstract class AssistanceFeatureBase extends FeatureBase implements Assis
       UsersFeature users,
       InventoryManager inventory) {
     super(config, logger, featureName);
-    cooldown =
-        CacheBuilder.newBuilder().expireAfterWrite(config.getCooldown(), TimeUnit.SECONDS).build();
+    this.rateLimiter = network.getRateLimiter();
     this.recentReports =
         CacheBuilder.newBuilder()
             .expireAfterWrite(config.getReportExpireTime().getSeconds(), TimeUnit.SECONDS)
@@ -93,24 +95,25 @@ public abstract class AssistanceFeatureBase extends FeatureBase implements Assis
     return getReportConfig().getCooldown() > 0;
   }
 
+  // Reports and help requests share a cooldown, across every server
+  private RateLimit getCooldown() {
+    return RateLimit.cooldown("assistance", Duration.ofSeconds(getReportConfig().getCooldown()));
+  }
+
   protected boolean isPersistent() {
     return getReportConfig().isPersistent();
   }
 
   @Override
   public boolean canRequest(UUID uuid) {
-    return isCooldownEnabled() ? cooldown.getIfPresent(uuid) == null : true;
+    return isCooldownEnabled() ? rateLimiter.getWaitTime(getCooldown(), uuid).isZero() : true;
   }
 
   @Override
   public int getCooldownSeconds(UUID uuid) {
-    int seconds = 0;
-    Instant lastReport = cooldown.getIfPresent(uuid);
-    if (lastReport != null) {
-      Duration timeElasped = Duration.between(lastReport, Instant.now());
-      seconds = Math.toIntExact(getReportConfig().getCooldown() - timeElasped.getSeconds());
-    }
-    return seconds;
+    if (!isCooldownEnabled()) return 0;
+    Duration timeLeft = rateLimiter.getWaitTime(getCooldown(), uuid);
+    return (int) Math.ceil(timeLeft.toMillis() / 1000D);
   }
 
   @Override
@@ -216,7 +219,7 @@ public abstract class AssistanceFeatureBase extends FeatureBase implements Assis
   }
 
   private void startCooldown(Player sender) {
-    cooldown.put(sender.getUniqueId(), Instant.now());
+    if (isCooldownEnabled()) rateLimiter.tryAcquire(getCooldown(), sender.getUniqueId());
   }
 
   private void broadcastRequest(AssistanceRequest request) {
@@ -234,7 +237,8 @@ public abstract class AssistanceFeatureBase extends FeatureBase implements Assis
               Component senderName = sender.join();
               Component targetName = target.join();
               broadcastRequest(server, senderName, targetName, reason, report);
-            });
+            },
+            async());
   }
 
   private void broadcastRequest(
@@ -1,5 +1,7 @@
 package dev.pgm.community.assistance.feature.types;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import com.google.common.collect.Lists;
 import dev.pgm.community.assistance.Report;
 import dev.pgm.community.assistance.ReportConfig;
@@ -51,11 +53,12 @@ public class SQLAssistanceFeature extends AssistanceFeatureBase {
       // CONVERT TO UUID if username
       return users
           .getStoredId(target)
-          .thenApplyAsync(
+          .thenComposeAsync(
               uuid ->
                   uuid.isPresent()
-                      ? service.queryList(uuid.get().toString()).join()
-                      : Lists.newArrayList());
+                      ? service.queryList(uuid.get().toString())
+                      : CompletableFuture.<List<Report>>completedFuture(Lists.newArrayList()),
+              async());
     }
 
     return service.queryList(target);
@@ -1,13 +1,13 @@
 package dev.pgm.community.assistance.services;
 
-import co.aikar.idb.DB;
+import static dev.pgm.community.CommunityExecutors.async;
+
 import co.aikar.idb.DbRow;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 import dev.pgm.community.Community;
 import dev.pgm.community.assistance.Report;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
 import dev.pgm.community.feature.SQLFeatureBase;
 import java.time.Instant;
 import java.util.List;
@@ -17,32 +17,24 @@ import java.util.concurrent.CompletableFuture;
 public class SQLAssistanceService extends SQLFeatureBase<Report, String>
     implements AssistanceQuery {
 
-  private LoadingCache<UUID, PlayerReports> cachedReports;
+  private final AsyncLoadingCache<UUID, List<Report>> cachedReports;
 
   public SQLAssistanceService() {
     super(TABLE_NAME, TABLE_FIELDS);
-    this.cachedReports =
-        CacheBuilder.newBuilder()
-            .maximumSize(1000)
-            .build(
-                new CacheLoader<UUID, PlayerReports>() {
-                  @Override
-                  public PlayerReports load(UUID key) throws Exception {
-                    return new PlayerReports(key);
-                  }
-                });
+    this.cachedReports = createCache("reports", this::loadReports);
   }
 
   @Override
   public void save(Report report) {
-    PlayerReports playerReports = cachedReports.getUnchecked(report.getTargetId());
-    playerReports.getReports().add(report);
+    cachedReports.update(
+        report.getTargetId(),
+        reports -> ImmutableList.<Report>builder().addAll(reports).add(report).build());
 
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_REPORT_QUERY,
-        report.getId().toString(),
-        report.getSenderId().toString(),
-        report.getTargetId().toString(),
+        bindId(report.getId()),
+        bindId(report.getSenderId()),
+        bindId(report.getTargetId()),
         report.getReason(),
         report.getTime().toEpochMilli(),
         Community.get().getServerConfig().getServerId());
@@ -50,37 +42,33 @@ public class SQLAssistanceService extends SQLFeatureBase<Report, String>
 
   @Override
   public CompletableFuture<List<Report>> queryList(String target) {
-    UUID targetId = UUID.fromString(target);
-    PlayerReports reports = cachedReports.getUnchecked(targetId);
+    return cachedReports.get(UUID.fromString(target));
+  }
 
-    if (reports.isLoaded()) {
-      return CompletableFuture.completedFuture(reports.getReports());
-    } else {
-      return DB.getResultsAsync(SELECT_REPORT_QUERY, target)
-          .thenApplyAsync(
-              results -> {
-                if (results != null) {
-                  for (DbRow row : results) {
-                    String id = row.getString("id");
-                    String sender = row.getString("sender");
-                    String reason = row.getString("reason");
-                    long time = Long.parseLong(row.getString("time"));
-                    reports
-                        .getReports()
-                        .add(
-                            new Report(
-                                UUID.fromString(id),
-                                targetId,
-                                UUID.fromString(sender),
-                                reason,
-                                Instant.ofEpochMilli(time),
-                                Community.get().getServerConfig().getServerId()));
-                  }
+  private CompletableFuture<List<Report>> loadReports(UUID targetId) {
+    return AsyncDB.getResults(SELECT_REPORT_QUERY, bindId(targetId))
+        .thenApplyAsync(
+            results -> {
+              ImmutableList.Builder<Report> reports = ImmutableList.builder();
+              if (results != null) {
+                for (DbRow row : results) {
+                  UUID id = readId(row, "id");
+                  UUID sender = readId(row, "sender");
+                  String reason = row.getString("reason");
+                  long time = Long.parseLong(row.getString("time"));
+                  reports.add(
+                      new Report(
+                          id,
+                          targetId,
+                          sender,
+                          reason,
+                          Instant.ofEpochMilli(time),
+                          Community.get().getServerConfig().getServerId()));
                 }
-                reports.setLoaded(true);
-                return reports.getReports();
-              });
-    }
+              }
+              return reports.build();
+            },
+            async());
   }
 
   @Override
@@ -88,34 +76,6 @@ public class SQLAssistanceService extends SQLFeatureBase<Report, String>
     return CompletableFuture.completedFuture(null); // Noop atm
   }
 
-  private class PlayerReports {
-    private final UUID playerId;
-    private final List<Report> reports;
-    private boolean loaded;
-
-    public PlayerReports(UUID playerId) {
-      this.playerId = playerId;
-      this.reports = Lists.newArrayList();
-      this.loaded = false;
-    }
-
-    public UUID getPlayerId() {
-      return playerId;
-    }
-
-    public List<Report> getReports() {
-      return reports;
-    }
-
-    public boolean isLoaded() {
-      return loaded;
-    }
-
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
-  }
-
   public void invalidate(UUID playerId) {
     cachedReports.invalidate(playerId);
   }
@@ -8,9 +8,11 @@ import com.google.common.cache.CacheBuilder;
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityPermissions;
 import dev.pgm.community.feature.FeatureBase;
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.ratelimit.RateLimit;
+import dev.pgm.community.ratelimit.RateLimiter;
 import dev.pgm.community.utils.BroadcastUtils;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -35,9 +37,11 @@ public class ChatManagementFeature extends FeatureBase {
   private boolean slowmode;
 
   private Cache<UUID, String> lastMessageCache;
+  private final RateLimiter rateLimiter;
 
-  public ChatManagementFeature(Configuration config, Logger logger) {
+  public ChatManagementFeature(Configuration config, Logger logger, NetworkFeature network) {
     super(new ChatManagementConfig(config), logger, "Chat Management");
+    this.rateLimiter = network.getRateLimiter();
     this.lastMessageCache =
         CacheBuilder.newBuilder()
             .expireAfterWrite(
@@ -156,28 +160,22 @@ public class ChatManagementFeature extends FeatureBase {
     }
 
     // Slowmode - Put chat on a cooldown basis, defined by seconds from config
-    if (isSlowmode()) {
-      if (getChatConfig().getLastMessageCache().getIfPresent(sender.getUniqueId()) == null) {
-        getChatConfig().getLastMessageCache().put(sender.getUniqueId(), Instant.now());
-      } else {
-        Instant lastSent = getChatConfig().getLastMessageCache().getIfPresent(sender.getUniqueId());
-        Duration timeSince = Duration.between(lastSent, Instant.now());
-
-        if (timeSince.getSeconds() < getChatConfig().getSlowmodeSpeed()) {
-          long seconds = (getChatConfig().getSlowmodeSpeed() - timeSince.getSeconds());
-
-          Component cooldownMsg =
-              text("Please wait ")
-                  .append(text(seconds, NamedTextColor.RED, TextDecoration.BOLD))
-                  .append(formatSeconds(seconds))
-                  .append(text(" before sending another message"))
-                  .color(NamedTextColor.GRAY);
-
-          viewer.sendWarning(cooldownMsg);
-          event.setCancelled(true);
-        } else {
-          getChatConfig().getLastMessageCache().put(sender.getUniqueId(), Instant.now());
-        }
+    if (isSlowmode() && getChatConfig().getSlowmodeSpeed() > 0) {
+      RateLimit slowmode =
+          RateLimit.cooldown("slowmode", Duration.ofSeconds(getChatConfig().getSlowmodeSpeed()));
+      if (!rateLimiter.tryAcquire(slowmode, sender.getUniqueId())) {
+        Duration timeLeft = rateLimiter.getWaitTime(slowmode, sender.getUniqueId());
+        long seconds = (long) Math.ceil(timeLeft.toMillis() / 1000D);
+
+        Component cooldownMsg =
+            text("Please wait ")
+                .append(text(seconds, NamedTextColor.RED, TextDecoration.BOLD))
+                .append(formatSeconds(seconds))
+                .append(text(" before sending another message"))
+                .color(NamedTextColor.GRAY);
+
+        viewer.sendWarning(cooldownMsg);
+        event.setCancelled(true);
       }
     }
   }
@@ -1,16 +1,37 @@
 package dev.pgm.community.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.text;
 
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityCommand;
+import dev.pgm.community.CommunityExecutors;
 import dev.pgm.community.CommunityPermissions;
+import dev.pgm.community.TimingWheel;
 import dev.pgm.community.assistance.feature.AssistanceFeature;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.WriteBehindQueue;
 import dev.pgm.community.feature.Feature;
+import dev.pgm.community.feature.LoginPrefetcher;
 import dev.pgm.community.moderation.feature.ModerationFeature;
+import dev.pgm.community.moderation.feature.ModerationFeatureBase;
+import dev.pgm.community.moderation.punishments.ActiveBans;
+import dev.pgm.community.network.NetworkMetrics;
+import dev.pgm.community.network.NetworkMetrics.ChannelMetrics;
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.network.types.LocalNetwork;
+import dev.pgm.community.network.types.LocalNetworkBenchmark;
+import dev.pgm.community.network.types.LocalNetworkFeature;
+import dev.pgm.community.network.types.RedisNetworkFeature;
+import dev.pgm.community.network.types.RedisPublisher;
+import dev.pgm.community.network.types.RedisSharedCache;
+import dev.pgm.community.network.types.RedisStreams;
+import dev.pgm.community.ratelimit.RateLimiter;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.CommandAudience;
+import java.util.Map;
 import net.kyori.adventure.text.format.NamedTextColor;
+import tc.oc.pgm.lib.cloud.commandframework.annotations.Argument;
 import tc.oc.pgm.lib.cloud.commandframework.annotations.CommandDescription;
 import tc.oc.pgm.lib.cloud.commandframework.annotations.CommandMethod;
 import tc.oc.pgm.lib.cloud.commandframework.annotations.CommandPermission;
@@ -18,6 +39,8 @@ import tc.oc.pgm.util.text.TextFormatter;
 
 public class CommunityPluginCommand extends CommunityCommand {
 
+  private static final long BENCHMARK_TIMEOUT_SECONDS = 30;
+
   private final ModerationFeature moderation;
   private final UsersFeature users;
   private final AssistanceFeature reports;
@@ -48,6 +71,270 @@ public class CommunityPluginCommand extends CommunityCommand {
     sendTotalCount(users, "Total Users", audience);
     sendTotalCount(moderation, "Total Punishments", audience);
     sendTotalCount(reports, "Total Reports", audience);
+    if (moderation instanceof ModerationFeatureBase) {
+      ActiveBans bans = ((ModerationFeatureBase) moderation).getActiveBans();
+      sendStat("Active Bans", bans.isLoaded() ? bans.size() : "loading", audience);
+      sendStat(
+          "Ban Evasion Watchlist",
+          ((ModerationFeatureBase) moderation).getBanEvasion().size(),
+          audience);
+    }
+
+    TimingWheel timers = Community.get().getExecutors().getTimers();
+    sendStat(
+        "Timers (pending/fired/cancelled)",
+        String.format(
+            "%d / %d / %d",
+            timers.getPendingCount(), timers.getFiredCount(), timers.getCancelledCount()),
+        audience);
+
+    WriteBehindQueue queue = Community.get().getDatabase().getWriteQueue();
+    sendStat("Queued Writes", queue.getQueueDepth(), audience);
+    sendStat("Writes Executed", queue.getStatementCount(), audience);
+    sendStat("Writes Coalesced", queue.getCoalescedCount(), audience);
+    sendStat("Write Batches", queue.getBatchCount(), audience);
+    sendStat(
+        "Flush Time (last/avg)",
+        String.format("%.1fms / %.1fms", queue.getLastFlushMillis(), queue.getAverageFlushMillis()),
+        audience);
+
+    CommunityExecutors executors = Community.get().getExecutors();
+    sendStat(
+        "DB Queries (queued/active)",
+        executors.getDatabaseQueueDepth() + " / " + executors.getDatabaseActiveCount(),
+        audience);
+    sendStat("DB Queries Completed", executors.getDatabaseCompletedCount(), audience);
+    sendStat(
+        "Async Tasks (queued/active/threads)",
+        executors.getAsyncQueueDepth()
+            + " / "
+            + executors.getAsyncActiveCount()
+            + " / "
+            + executors.getAsyncPoolSize(),
+        audience);
+
+    LoginPrefetcher prefetcher = Community.get().getFeatures().getLoginPrefetcher();
+    sendStat(
+        "Login Prefetch (count/timeouts/avg)",
+        String.format(
+            "%d / %d / %.1fms",
+            prefetcher.getPrefetchCount(),
+            prefetcher.getTimeoutCount(),
+            prefetcher.getAverageMillis()),
+        audience);
+
+    NetworkFeature network = Community.get().getFeatures().getNetwork();
+    RateLimiter limiter = network.getRateLimiter();
+    sendStat(
+        "Rate Limits (buckets/checks/denied/synced)",
+        String.format(
+            "%d / %d / %d / %d",
+            limiter.getBucketCount(),
+            limiter.getCheckCount(),
+            limiter.getDeniedCount(),
+            limiter.getSyncedCount()),
+        audience);
+    long sent = 0;
+    long received = 0;
+    long sentBytes = 0;
+    long receivedBytes = 0;
+    for (ChannelMetrics channel : network.getMetrics().getChannels().values()) {
+      sent += channel.getSentCount();
+      received += channel.getReceivedCount();
+      sentBytes += channel.getSentBytes();
+      receivedBytes += channel.getReceivedBytes();
+    }
+    sendStat(
+        "Network Traffic (sent/received)",
+        String.format(
+            "%d (%s) / %d (%s)",
+            sent,
+            formatBytes(sentBytes),
+            received,
+            formatBytes(receivedBytes)),
+        audience);
+    if (network instanceof LocalNetworkFeature) {
+      LocalNetwork local = ((LocalNetworkFeature) network).getLocalNetwork();
+      sendStat(
+          "Local Network (servers/sent/delivered)",
+          String.format(
+              "%d / %d / %d",
+              local.getServers().size(), local.getSentCount(), local.getDeliveredCount()),
+          audience);
+    }
+    if (network instanceof RedisNetworkFeature
+        && ((RedisNetworkFeature) network).getPublisher() != null) {
+      RedisPublisher publisher = ((RedisNetworkFeature) network).getPublisher();
+      sendStat(
+          "Network Publish (queued/sent/coalesced)",
+          String.format(
+              "%d / %d / %d",
+              publisher.getQueueDepth(),
+              publisher.getPublishedCount(),
+              publisher.getCoalescedCount()),
+          audience);
+      sendStat(
+          "Network Publish (dropped/failed/batches)",
+          String.format(
+              "%d / %d / %d",
+              publisher.getDroppedCount(),
+              publisher.getFailedCount(),
+              publisher.getBatchCount()),
+          audience);
+      sendStat(
+          "Publish Latency (last/avg)",
+          String.format(
+              "%.1fms / %.1fms",
+              publisher.getLastLatencyMillis(), publisher.getAverageLatencyMillis()),
+          audience);
+
+      RedisStreams streams = ((RedisNetworkFeature) network).getStreams();
+      if (streams != null) {
+        sendStat(
+            "Network Streams (added/received/replayed)",
+            String.format(
+                "%d / %d / %d",
+                streams.getAddedCount(), streams.getReceivedCount(), streams.getReplayedCount()),
+            audience);
+      }
+
+      RedisSharedCache shared = ((RedisNetworkFeature) network).getSharedCache();
+      if (shared != null) {
+        sendStat(
+            "Shared Cache (hits/misses/writes/failed)",
+            String.format(
+                "%d / %d / %d / %d",
+                shared.getHitCount(),
+                shared.getMissCount(),
+                shared.getWriteCount(),
+                shared.getFailedCount()),
+            audience);
+      }
+    }
+
+    for (AsyncLoadingCache<?, ?> cache : Community.get().getDatabase().getCaches()) {
+      sendStat(
+          "Cache " + cache.getName(),
+          String.format(
+              "%d entries (%d missing), %.0f%% hits, %d shared hits, %.1fms avg load",
+              cache.getSize(),
+              cache.getMissingSize(),
+              cache.getHitRate() * 100,
+              cache.getSharedHitCount(),
+              cache.getAverageLoadMillis()),
+          audience);
+    }
+  }
+
+  @CommandMethod("community network")
+  @CommandDescription("View network traffic and latency by channel")
+  @CommandPermission(CommunityPermissions.RELOAD)
+  public void network(CommandAudience audience) {
+    audience.sendMessage(
+        TextFormatter.horizontalLineHeading(
+            audience.getSender(),
+            text("Community Network Stats", NamedTextColor.YELLOW),
+            NamedTextColor.DARK_RED));
+
+    NetworkMetrics metrics = Community.get().getFeatures().getNetwork().getMetrics();
+    if (metrics.getChannels().isEmpty()) {
+      audience.sendWarning(text("No network updates have been sent or received"));
+      return;
+    }
+
+    for (Map.Entry<String, ChannelMetrics> entry : metrics.getChannels().entrySet()) {
+      ChannelMetrics channel = entry.getValue();
+      sendStat(
+          entry.getKey(),
+          String.format(
+              "sent %d (%s), received %d (%s)",
+              channel.getSentCount(),
+              formatBytes(channel.getSentBytes()),
+              channel.getReceivedCount(),
+              formatBytes(channel.getReceivedBytes())),
+          audience);
+      if (channel.getReceivedCount() > 0) {
+        sendStat(
+            "  Latency / Handler (avg/max)",
+            String.format(
+                "%.1fms / %.1fms, %.2fms / %.2fms",
+                channel.getAverageLatencyMillis(),
+                channel.getMaxLatencyMillis(),
+                channel.getAverageHandlerMillis(),
+                channel.getMaxHandlerMillis()),
+            audience);
+      }
+    }
+  }
+
+  @CommandMethod("community network reset")
+  @CommandDescription("Reset network stats")
+  @CommandPermission(CommunityPermissions.RELOAD)
+  public void resetNetwork(CommandAudience audience) {
+    Community.get().getFeatures().getNetwork().getMetrics().reset();
+    audience.sendWarning(text("Network stats have been reset"));
+  }
+
+  @CommandMethod("community network benchmark [servers] [updates]")
+  @CommandDescription("Measure update delivery between simulated servers on the local network")
+  @CommandPermission(CommunityPermissions.RELOAD)
+  public void benchmarkNetwork(
+      CommandAudience audience,
+      @Argument(value = "servers", defaultValue = "4") int servers,
+      @Argument(value = "updates", defaultValue = "1000") int updates) {
+    NetworkFeature network = Community.get().getFeatures().getNetwork();
+    if (!(network instanceof LocalNetworkFeature) || !network.isEnabled()) {
+      audience.sendWarning(text("Benchmarks can only be run on an enabled local network"));
+      return;
+    }
+
+    LocalNetworkBenchmark benchmark =
+        new LocalNetworkBenchmark((LocalNetworkFeature) network, Community.get().getLogger());
+    audience.sendWarning(text("Running network benchmark..."));
+    // Waits for the updates to be delivered, so runs on its own thread rather than the pool
+    Community.get()
+        .getServer()
+        .getScheduler()
+        .runTaskAsynchronously(
+            Community.get(),
+            () -> {
+              try {
+                LocalNetworkBenchmark.Result result =
+                    benchmark.run(servers, updates, BENCHMARK_TIMEOUT_SECONDS);
+                sendStat(
+                    "Benchmark (servers/delivered/expected)",
+                    String.format(
+                        "%d / %d / %d%s",
+                        result.getServers(),
+                        result.getDelivered(),
+                        result.getExpected(),
+                        result.isCompleted() ? "" : " (timed out)"),
+                    audience);
+                sendStat(
+                    "Benchmark (time/throughput)",
+                    String.format(
+                        "%.1fms / %.0f updates/s",
+                        result.getElapsedMillis(), result.getThroughput()),
+                    audience);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+  }
+
+  private String formatBytes(long bytes) {
+    if (bytes < 1024) return bytes + " B";
+    if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024D);
+    return String.format("%.1f MB", bytes / (1024D * 1024D));
+  }
+
+  private void sendStat(String name, Object value, CommandAudience audience) {
+    audience.sendMessage(
+        text()
+            .append(text(name, NamedTextColor.GOLD))
+            .append(text(": ", NamedTextColor.GRAY))
+            .append(text(String.valueOf(value), NamedTextColor.GREEN))
+            .build());
   }
 
   private void sendTotalCount(Feature feature, String countName, CommandAudience audience) {
@@ -60,6 +347,7 @@ public class CommunityPluginCommand extends CommunityCommand {
                         .append(text(countName, NamedTextColor.GOLD))
                         .append(text(": ", NamedTextColor.GRAY))
                         .append(text(total, NamedTextColor.GREEN))
-                        .build()));
+                        .build()),
+            async());
   }
 }
@@ -0,0 +1,134 @@
+package dev.pgm.community.database;
+
+import static dev.pgm.community.users.services.AddressQuery.IP_ADDRESS_FIELD;
+import static dev.pgm.community.users.services.AddressQuery.IP_ID_FIELD;
+import static dev.pgm.community.users.services.AddressQuery.IP_TABLE_FIELDS;
+import static dev.pgm.community.users.services.AddressQuery.IP_TABLE_NAME;
+import static dev.pgm.community.users.services.AddressQuery.IP_USER_TABLE_FIELDS;
+import static dev.pgm.community.users.services.AddressQuery.IP_USER_TABLE_NAME;
+import static dev.pgm.community.users.services.AddressQuery.USER_ID_FIELD;
+
+import co.aikar.idb.DB;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * A {@link Migration} which makes addresses and ip history unique, so they can be written with
+ * {@code INSERT IGNORE} instead of being read first.
+ *
+ * <p>Addresses which were given more than one ip id keep the lowest, and history is moved over to
+ * it. Duplicate history rows are removed in place, after numbering them with a temporary column as
+ * the table has no primary key.
+ */
+public class AddressUniqueMigration implements Migration, MigrationQuery {
+
+  public static final String ADDRESS_INDEX = "uq_addresses_address";
+  public static final String HISTORY_INDEX = "uq_ip_history";
+
+  // Non-unique indexes from earlier migrations, covered by the unique ones
+  private static final String OLD_ADDRESS_INDEX = "idx_addresses_address";
+  private static final String OLD_HISTORY_INDEX = "idx_ip_history_user";
+
+  // Temporary column numbering history rows while duplicates are removed
+  private static final String ROW_ID_FIELD = "dedup_id";
+  private static final int DUPLICATE_ENTRY_ERROR = 1062;
+  private static final int INDEX_ATTEMPTS = 3;
+
+  private final int version;
+
+  public AddressUniqueMigration(int version) {
+    this.version = version;
+  }
+
+  @Override
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public String getDescription() {
+    return String.format("Add unique indexes to %s and %s", IP_TABLE_NAME, IP_USER_TABLE_NAME);
+  }
+
+  @Override
+  public void apply() throws SQLException {
+    DB.executeUpdate(Query.createTable(IP_TABLE_NAME, IP_TABLE_FIELDS));
+    DB.executeUpdate(Query.createTable(IP_USER_TABLE_NAME, IP_USER_TABLE_FIELDS));
+
+    // Ip ids are compared across tables, which only works once both use the same storage
+    if (!Objects.equals(
+        DB.getFirstColumn(COLUMN_TYPE_QUERY, IP_TABLE_NAME, IP_ID_FIELD),
+        DB.getFirstColumn(COLUMN_TYPE_QUERY, IP_USER_TABLE_NAME, IP_ID_FIELD))) {
+      throw new SQLException(
+          "Ip id columns are mid-way through binary UUID conversion, retrying on next startup");
+    }
+
+    if (!indexExists(IP_TABLE_NAME, ADDRESS_INDEX)) {
+      DB.executeUpdate(
+          String.format(
+              "UPDATE %1$s h JOIN %2$s a ON a.%3$s = h.%3$s"
+                  + " JOIN (SELECT %4$s, MIN(%3$s) AS %3$s FROM %2$s GROUP BY %4$s"
+                  + " HAVING COUNT(*) > 1) c ON c.%4$s = a.%4$s"
+                  + " SET h.%3$s = c.%3$s WHERE h.%3$s <> c.%3$s",
+              IP_USER_TABLE_NAME, IP_TABLE_NAME, IP_ID_FIELD, IP_ADDRESS_FIELD));
+      DB.executeUpdate(
+          String.format(
+              "DELETE a FROM %1$s a JOIN %1$s b ON a.%2$s = b.%2$s AND a.%3$s > b.%3$s",
+              IP_TABLE_NAME, IP_ADDRESS_FIELD, IP_ID_FIELD));
+      DB.executeUpdate(
+          String.format(
+              "ALTER TABLE %s ADD UNIQUE INDEX %s (%s)",
+              IP_TABLE_NAME, ADDRESS_INDEX, IP_ADDRESS_FIELD));
+      dropIndex(IP_TABLE_NAME, OLD_ADDRESS_INDEX);
+    }
+
+    if (!indexExists(IP_USER_TABLE_NAME, HISTORY_INDEX)) {
+      // Duplicate rows are identical, so number them to tell them apart. The table is never
+      // copied, so history other servers write meanwhile is kept, their inserts name the columns
+      if (DB.getFirstColumn(COLUMN_TYPE_QUERY, IP_USER_TABLE_NAME, ROW_ID_FIELD) == null) {
+        DB.executeUpdate(
+            String.format(
+                "ALTER TABLE %s ADD COLUMN %s BIGINT AUTO_INCREMENT PRIMARY KEY",
+                IP_USER_TABLE_NAME, ROW_ID_FIELD));
+      }
+      addUniqueHistoryIndex();
+      dropIndex(IP_USER_TABLE_NAME, OLD_HISTORY_INDEX);
+    }
+
+    if (DB.getFirstColumn(COLUMN_TYPE_QUERY, IP_USER_TABLE_NAME, ROW_ID_FIELD) != null) {
+      DB.executeUpdate(
+          String.format("ALTER TABLE %s DROP COLUMN %s", IP_USER_TABLE_NAME, ROW_ID_FIELD));
+    }
+  }
+
+  private void addUniqueHistoryIndex() throws SQLException {
+    for (int attempt = 1; ; attempt++) {
+      DB.executeUpdate(
+          String.format(
+              "DELETE a FROM %1$s a JOIN %1$s b ON a.%2$s = b.%2$s AND a.%3$s = b.%3$s"
+                  + " AND a.%4$s > b.%4$s",
+              IP_USER_TABLE_NAME, USER_ID_FIELD, IP_ID_FIELD, ROW_ID_FIELD));
+      try {
+        DB.executeUpdate(
+            String.format(
+                "ALTER TABLE %s ADD UNIQUE INDEX %s (%s, %s)",
+                IP_USER_TABLE_NAME, HISTORY_INDEX, USER_ID_FIELD, IP_ID_FIELD));
+        return;
+      } catch (SQLException e) {
+        // A duplicate was written since the delete, remove it and try again
+        if (attempt >= INDEX_ATTEMPTS || e.getErrorCode() != DUPLICATE_ENTRY_ERROR) throw e;
+      }
+    }
+  }
+
+  private void dropIndex(String tableName, String indexName) throws SQLException {
+    if (indexExists(tableName, indexName)) {
+      DB.executeUpdate(String.format("DROP INDEX %s ON %s", indexName, tableName));
+    }
+  }
+
+  private boolean indexExists(String tableName, String indexName) throws SQLException {
+    Number count = DB.getFirstColumn(INDEX_EXISTS_QUERY, tableName, indexName);
+    return count != null && count.intValue() > 0;
+  }
+}
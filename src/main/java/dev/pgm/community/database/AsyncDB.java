@@ -0,0 +1,94 @@
+package dev.pgm.community.database;
+
+import co.aikar.idb.DB;
+import co.aikar.idb.DbRow;
+import dev.pgm.community.CommunityExecutors;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Async versions of the {@link DB} queries, run on the {@link CommunityExecutors#database()}
+ * executor so query load can be measured and kept apart from other async work.
+ *
+ * <p>Large loads use the bulk variants instead, run on {@link CommunityExecutors#bulk()} so they
+ * never hold the threads per-player queries wait on.
+ */
+public final class AsyncDB {
+
+  private AsyncDB() {}
+
+  public static CompletableFuture<DbRow> getFirstRow(String query, Object... params) {
+    return supply(() -> DB.getFirstRow(query, params));
+  }
+
+  public static CompletableFuture<List<DbRow>> getResults(String query, Object... params) {
+    return supply(() -> DB.getResults(query, params));
+  }
+
+  /** Like {@link #getResults(String, Object...)}, but run on the bulk load executor */
+  public static CompletableFuture<List<DbRow>> getBulkResults(String query, Object... params) {
+    return supplyBulk(() -> DB.getResults(query, params));
+  }
+
+  public static <T> CompletableFuture<T> getFirstColumn(String query, Object... params) {
+    return supply(() -> DB.getFirstColumn(query, params));
+  }
+
+  public static <T> CompletableFuture<List<T>> getFirstColumnResults(
+      String query, Object... params) {
+    return supply(() -> DB.getFirstColumnResults(query, params));
+  }
+
+  public static CompletableFuture<Integer> executeUpdate(String query, Object... params) {
+    return supply(() -> DB.executeUpdate(query, params));
+  }
+
+  /**
+   * Runs several statements as a single task on the database executor, e.g an upsert followed by
+   * reading back the row
+   *
+   * @param supplier Runs the statements
+   * @return A future completed with the result of the supplier
+   */
+  public static <T> CompletableFuture<T> supply(SQLSupplier<T> supplier) {
+    return supply(CommunityExecutors.database(), supplier);
+  }
+
+  /**
+   * Runs several statements as a single task on the bulk load executor, e.g reading a whole table
+   * a page at a time
+   *
+   * @param supplier Runs the statements
+   * @return A future completed with the result of the supplier
+   */
+  public static <T> CompletableFuture<T> supplyBulk(SQLSupplier<T> supplier) {
+    return supply(CommunityExecutors.bulk(), supplier);
+  }
+
+  private static <T> CompletableFuture<T> supply(Executor executor, SQLSupplier<T> supplier) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(
+              () -> {
+                // Any failure must complete the future, loading caches wait on it until it does
+                try {
+                  future.complete(supplier.get());
+                } catch (Throwable e) {
+                  future.completeExceptionally(e);
+                }
+              });
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @FunctionalInterface
+  public interface SQLSupplier<T> {
+    T get() throws SQLException;
+  }
+}
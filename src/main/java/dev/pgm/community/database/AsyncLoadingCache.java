@@ -0,0 +1,391 @@
+package dev.pgm.community.database;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of values loaded asynchronously, usually from the database.
+ *
+ * <p>Concurrent requests for the same key share a single load. Entries are evicted once the cache
+ * is full or when they have not been accessed for the idle timeout. Values should be immutable, as
+ * they are handed to many callers at once - use {@link #update(Object, UnaryOperator)} to publish a
+ * changed copy.
+ *
+ * <p>A load which fails is not retained, so the next request will load again. A load which
+ * completes with {@code null} is only remembered for the missing TTL, if one is set, to absorb
+ * repeated lookups of keys which do not exist. Wrap values in an {@link Optional} to cache a
+ * missing result for as long as any other value.
+ *
+ * <p>A cache created with a {@link SharedCodec} has a second level in the {@link SharedCache}, when
+ * one is available. Loads check it before calling the loader, and store what the loader returns.
+ * Changes made through {@link #put(Object, Object)}, {@link #update(Object, UnaryOperator)} and
+ * {@link #invalidate(Object)} are written through, and other servers drop their local copy.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class AsyncLoadingCache<K, V> {
+
+  private final String name;
+  private final Function<K, CompletableFuture<V>> loader;
+  private final ConcurrentMap<K, CompletableFuture<V>> entries;
+  @Nullable private final Cache<String, Boolean> missing; // Keys which loaded null, by string
+  @Nullable private final SharedCodec<K, V> codec;
+  private final Supplier<SharedCache> shared; // The shared level, or null while unavailable
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong sharedHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong totalLoadNanos = new AtomicLong();
+
+  /**
+   * Creates a new cache
+   *
+   * @param name A name for the cache, shown in stats
+   * @param maximumSize The maximum number of entries to hold
+   * @param idleTimeout How long an entry may go without being accessed before it is evicted
+   * @param missingTtl How long to remember keys which loaded {@code null}, zero to disable
+   * @param loader Loads the value for a key
+   */
+  public AsyncLoadingCache(
+      String name,
+      long maximumSize,
+      Duration idleTimeout,
+      Duration missingTtl,
+      Function<K, CompletableFuture<V>> loader) {
+    this(name, maximumSize, idleTimeout, missingTtl, loader, null, () -> null);
+  }
+
+  /**
+   * Creates a new cache with a shared second level
+   *
+   * @param name A name for the cache, shown in stats and used to store shared values
+   * @param maximumSize The maximum number of entries to hold
+   * @param idleTimeout How long an entry may go without being accessed before it is evicted
+   * @param missingTtl How long to remember keys which loaded {@code null}, zero to disable
+   * @param loader Loads the value for a key
+   * @param codec Converts keys and values for the shared level, or {@code null} for none
+   * @param shared Supplies the shared level, or {@code null} while it is unavailable
+   */
+  public AsyncLoadingCache(
+      String name,
+      long maximumSize,
+      Duration idleTimeout,
+      Duration missingTtl,
+      Function<K, CompletableFuture<V>> loader,
+      @Nullable SharedCodec<K, V> codec,
+      Supplier<SharedCache> shared) {
+    this.name = name;
+    this.loader = loader;
+    this.codec = codec;
+    this.shared = shared;
+    Cache<K, CompletableFuture<V>> cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterAccess(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+            .build();
+    this.entries = cache.asMap();
+    this.missing =
+        missingTtl.isZero()
+            ? null
+            : CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(missingTtl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+  }
+
+  /**
+   * Gets the value for a key, loading it if not already cached or loading
+   *
+   * @param key The key
+   * @return A future completed with the value, which may be {@code null}
+   */
+  public CompletableFuture<V> get(K key) {
+    if (missing != null && missing.getIfPresent(String.valueOf(key)) != null) {
+      hits.incrementAndGet();
+      return CompletableFuture.completedFuture(null);
+    }
+
+    CompletableFuture<V> existing = entries.get(key);
+    if (existing != null) {
+      hits.incrementAndGet();
+      return existing;
+    }
+
+    CompletableFuture<V> future = new CompletableFuture<>();
+    existing = entries.putIfAbsent(key, future);
+    if (existing != null) {
+      hits.incrementAndGet();
+      return existing;
+    }
+
+    misses.incrementAndGet();
+    long start = System.nanoTime();
+    CompletableFuture<V> load;
+    try {
+      load = load(key);
+    } catch (RuntimeException e) {
+      load = new CompletableFuture<>();
+      load.completeExceptionally(e);
+    }
+
+    load.whenComplete(
+        (value, error) -> {
+          totalLoadNanos.addAndGet(System.nanoTime() - start);
+          loads.incrementAndGet();
+          if (error != null || value == null) {
+            if (error != null) failures.incrementAndGet();
+            // Only remember a missing key if nothing was cached for it while loading
+            if (entries.remove(key, future) && error == null && missing != null) {
+              missing.put(String.valueOf(key), true);
+            }
+          }
+          if (error != null) future.completeExceptionally(error);
+          else future.complete(value);
+        });
+    return future;
+  }
+
+  /** Loads a value from the shared level if stored there, otherwise from the loader */
+  private CompletableFuture<V> load(K key) {
+    SharedCache store = getShared();
+    if (store == null) return loader.apply(key);
+
+    String id = String.valueOf(key);
+    return store
+        .get(name, id)
+        .thenCompose(
+            data -> {
+              V value = data == null ? null : decode(data);
+              if (value != null) {
+                sharedHits.incrementAndGet();
+                return CompletableFuture.completedFuture(value);
+              }
+              return loader
+                  .apply(key)
+                  .thenApply(
+                      loaded -> {
+                        byte[] encoded = loaded == null ? null : encode(loaded);
+                        if (encoded != null) store.fill(name, id, encoded);
+                        return loaded;
+                      });
+            });
+  }
+
+  @Nullable
+  private V decode(byte[] data) {
+    try {
+      return codec.decode(data);
+    } catch (RuntimeException e) {
+      return null; // Written by an incompatible version, load it again
+    }
+  }
+
+  @Nullable
+  private byte[] encode(V value) {
+    try {
+      return codec.encode(value);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** Writes a changed value through, or removes the shared value if it can't be encoded */
+  private void write(SharedCache store, K key, V value) {
+    byte[] encoded = encode(value);
+    if (encoded != null) {
+      store.write(name, String.valueOf(key), encoded);
+    } else {
+      store.invalidate(name, String.valueOf(key));
+    }
+  }
+
+  /**
+   * Gets the value for a key if it has already been loaded, without loading it
+   *
+   * @param key The key
+   * @return The loaded value, or {@code null} if not loaded
+   */
+  @Nullable
+  public V getIfLoaded(K key) {
+    CompletableFuture<V> future = entries.get(key);
+    return isLoaded(future) ? future.join() : null;
+  }
+
+  /** @return all values which have been loaded */
+  public Stream<V> getLoaded() {
+    return entries.values().stream()
+        .filter(AsyncLoadingCache::isLoaded)
+        .map(CompletableFuture::join)
+        .filter(value -> value != null);
+  }
+
+  /**
+   * Caches a known value, replacing any existing entry
+   *
+   * @param key The key
+   * @param value The value
+   */
+  public void put(K key, V value) {
+    fill(key, value);
+    SharedCache store = getShared();
+    if (store != null && value != null) write(store, key, value);
+  }
+
+  /**
+   * Caches a value read from the database, replacing any existing entry. Unlike {@link
+   * #put(Object, Object)} the value is not written through, as it has not changed.
+   *
+   * @param key The key
+   * @param value The value
+   */
+  public void fill(K key, V value) {
+    entries.put(key, CompletableFuture.completedFuture(value));
+    invalidateMissing(key);
+  }
+
+  /**
+   * Replaces a loaded value with an updated copy. If the value is still loading it is discarded
+   * instead, so the change is picked up by the next load. Values which are not cached are left
+   * alone.
+   *
+   * @param key The key
+   * @param updater Creates the new value from the current one
+   */
+  public void update(K key, UnaryOperator<V> updater) {
+    AtomicReference<V> updated = new AtomicReference<>();
+    entries.computeIfPresent(
+        key,
+        (k, future) -> {
+          if (!isLoaded(future)) return null;
+          V value = updater.apply(future.join());
+          updated.set(value);
+          return CompletableFuture.completedFuture(value);
+        });
+
+    // A shared value which could not be updated here is stale, so remove it
+    SharedCache store = getShared();
+    if (store != null) {
+      if (updated.get() != null) {
+        write(store, key, updated.get());
+      } else {
+        store.invalidate(name, String.valueOf(key));
+      }
+    }
+  }
+
+  public void invalidate(K key) {
+    invalidateLocal(key);
+    SharedCache store = getShared();
+    if (store != null) store.invalidate(name, String.valueOf(key));
+  }
+
+  /**
+   * Drops an entry on this server only, for a change which has already been written through by
+   * another server
+   *
+   * @param key The key
+   */
+  public void invalidateLocal(K key) {
+    entries.remove(key);
+    invalidateMissing(key);
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+    if (missing != null) missing.invalidateAll();
+  }
+
+  /**
+   * Forgets that a key was missing, after the record has been created
+   *
+   * @param key The key, or its string form
+   */
+  public void invalidateMissing(Object key) {
+    if (missing != null) missing.invalidate(String.valueOf(key));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getSize() {
+    return entries.size();
+  }
+
+  public long getMissingSize() {
+    return missing == null ? 0 : missing.size();
+  }
+
+  /** @return whether this cache has a shared level which is currently available */
+  public boolean isShared() {
+    return getShared() != null;
+  }
+
+  @Nullable
+  private SharedCache getShared() {
+    return codec == null ? null : shared.get();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of misses which were found in the shared level */
+  public long getSharedHitCount() {
+    return sharedHits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getFailureCount() {
+    return failures.get();
+  }
+
+  public double getHitRate() {
+    long total = hits.get() + misses.get();
+    return total == 0 ? 1 : hits.get() / (double) total;
+  }
+
+  public double getAverageLoadMillis() {
+    long count = loads.get();
+    return count == 0 ? 0 : totalLoadNanos.get() / 1_000_000D / count;
+  }
+
+  /**
+   * Forgets a missing key, used when another server creates a record. Caches with a shared level
+   * also drop their entry, as the other server has written the change through.
+   *
+   * @param key The string form of the key
+   */
+  void invalidateRemote(String key) {
+    invalidateMissing(key);
+    if (codec != null) {
+      try {
+        entries.remove(codec.parseKey(key));
+      } catch (IllegalArgumentException e) {
+        // Not a key of this cache
+      }
+    }
+  }
+
+  private static boolean isLoaded(@Nullable CompletableFuture<?> future) {
+    return future != null && future.isDone() && !future.isCompletedExceptionally();
+  }
+}
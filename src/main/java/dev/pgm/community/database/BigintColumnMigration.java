@@ -0,0 +1,47 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import co.aikar.idb.DB;
+import java.sql.SQLException;
+
+/**
+ * A {@link Migration} which converts an epoch millis column to {@code BIGINT} and indexes it.
+ *
+ * <p>Older tables declare times as {@code LONG}, which MySQL stores as {@code MEDIUMTEXT}. Text
+ * columns can not be indexed in full, and compare to numbers by converting every row, so range
+ * queries on them always scan the table.
+ */
+public class BigintColumnMigration extends IndexMigration {
+
+  private final String tableName;
+  private final String tableFields;
+  private final String column;
+
+  public BigintColumnMigration(
+      int version, String tableName, String tableFields, String indexName, String column) {
+    super(version, tableName, tableFields, indexName, column);
+    this.tableName = checkNotNull(tableName);
+    this.tableFields = checkNotNull(tableFields);
+    this.column = checkNotNull(column);
+  }
+
+  @Override
+  public String getDescription() {
+    return String.format("Convert %s.%s to BIGINT and index it", tableName, column);
+  }
+
+  @Override
+  public void apply() throws SQLException {
+    // On a fresh install the table is created with the column already a BIGINT
+    DB.executeUpdate(Query.createTable(tableName, tableFields));
+
+    String type = DB.getFirstColumn(COLUMN_TYPE_QUERY, tableName, column);
+    if (type != null && !type.equalsIgnoreCase("bigint")) {
+      DB.executeUpdate(
+          String.format("ALTER TABLE %s MODIFY COLUMN %s BIGINT", tableName, column));
+    }
+
+    super.apply();
+  }
+}
@@ -0,0 +1,406 @@
+package dev.pgm.community.database;
+
+import co.aikar.idb.DB;
+import co.aikar.idb.DbRow;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import dev.pgm.community.Community;
+import dev.pgm.community.assistance.services.AssistanceQuery;
+import dev.pgm.community.friends.services.FriendshipQuery;
+import dev.pgm.community.moderation.services.ModerationQuery;
+import dev.pgm.community.nick.services.NickQuery;
+import dev.pgm.community.requests.services.RequestQuery;
+import dev.pgm.community.sessions.services.SessionDataQuery;
+import dev.pgm.community.users.services.AddressQuery;
+import dev.pgm.community.users.services.UserQuery;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Converts UUID columns from VARCHAR(36) to BINARY(16).
+ *
+ * <p>Conversion happens in two stages so servers can keep running while large tables are
+ * rewritten:
+ *
+ * <ol>
+ *   <li>A shadow {@code <column>_bin} column is added and filled in batches by a background task,
+ *       while the server continues to read and write the string columns
+ *   <li>Once every table has been backfilled, the server with {@code binary-uuids-swap} set locks
+ *       each table in turn, catches up rows written in the meantime and replaces the originals
+ *       with the shadow columns (indexes are rebuilt)
+ * </ol>
+ *
+ * <p>Note: every server sharing the database must run with binary UUIDs enabled before the swap
+ * is enabled, a server still writing strings can not use a converted table.
+ */
+public class BinaryUUIDMigration implements MigrationQuery {
+
+  private static final String SHADOW_SUFFIX = "_bin";
+  private static final String PRIMARY_INDEX = "PRIMARY";
+  private static final long BATCH_PAUSE_MILLIS = 50;
+  private static final long WATCH_INTERVAL_MILLIS = 5000;
+
+  // Converts a string UUID to 16 bytes, values such as "console" become the nil UUID
+  private static final String CONVERT_FORMAT =
+      "CASE WHEN %1$s REGEXP '^[0-9a-fA-F-]{36}$' THEN UNHEX(REPLACE(%1$s, '-', ''))"
+          + " WHEN %1$s IS NULL THEN NULL ELSE UNHEX(REPEAT('0', 32)) END";
+
+  private final Community plugin;
+  private final Logger logger;
+  private final DatabaseConfig config;
+  private final List<UUIDTable> tables;
+
+  public BinaryUUIDMigration(Community plugin, DatabaseConfig config) {
+    this.plugin = plugin;
+    this.logger = plugin.getLogger();
+    this.config = config;
+    this.tables = Lists.newArrayList();
+
+    // The first column of each table is used to walk the table in batches, so must be indexed
+    tables.add(
+        new UUIDTable(
+            ModerationQuery.TABLE_NAME,
+            ModerationQuery.TABLE_FIELDS,
+            "id",
+            "punished",
+            "issuer",
+            "updated_by"));
+    tables.add(new UUIDTable(UserQuery.TABLE_NAME, UserQuery.TABLE_FIELDS, "id"));
+    tables.add(
+        new UUIDTable(SessionDataQuery.TABLE_NAME, SessionDataQuery.TABLE_FIELDS, "id", "player"));
+    tables.add(
+        new UUIDTable(
+            FriendshipQuery.TABLE_NAME,
+            FriendshipQuery.TABLE_FIELDS,
+            "id",
+            "requester",
+            "requested"));
+    tables.add(
+        new UUIDTable(
+            AddressQuery.IP_USER_TABLE_NAME,
+            AddressQuery.IP_USER_TABLE_FIELDS,
+            AddressQuery.USER_ID_FIELD,
+            AddressQuery.IP_ID_FIELD));
+    tables.add(
+        new UUIDTable(
+            AddressQuery.IP_TABLE_NAME, AddressQuery.IP_TABLE_FIELDS, AddressQuery.IP_ID_FIELD));
+    tables.add(
+        new UUIDTable(
+            AddressQuery.LATEST_IP_TABLE_NAME,
+            AddressQuery.LATEST_IP_TABLE_FIELDS,
+            AddressQuery.USER_ID_FIELD));
+    tables.add(new UUIDTable(NickQuery.TABLE_NAME, NickQuery.TABLE_FIELDS, "playerId"));
+    tables.add(new UUIDTable(RequestQuery.TABLE_NAME, RequestQuery.TABLE_FIELDS, "id"));
+    tables.add(
+        new UUIDTable(
+            AssistanceQuery.TABLE_NAME, AssistanceQuery.TABLE_FIELDS, "id", "sender", "reported"));
+  }
+
+  /**
+   * Detects which tables already use binary UUIDs. When binary UUIDs are enabled, backfills any
+   * tables which need it, then converts them in the background.
+   *
+   * <p>Tables are only converted on a server with {@code database.binary-uuids-swap} set, which
+   * acknowledges that every server sharing the database runs with binary UUIDs enabled. Other
+   * servers watch for the conversion and switch each table over once it is done.
+   */
+  public void migrate() {
+    List<UUIDTable> unconverted = Lists.newArrayList();
+    List<UUIDTable> pending = Lists.newArrayList();
+    try {
+      DB.executeUpdate(Query.createTable(UUID_TABLE_NAME, UUID_TABLE_FIELDS));
+
+      for (UUIDTable table : tables) {
+        DB.executeUpdate(Query.createTable(table.name, table.fields));
+
+        if (isBinaryColumn(table.name, table.columns[0])) {
+          UUIDStorage.setBinary(table.name);
+          continue;
+        }
+
+        if (!config.isBinaryUUIDs()) continue;
+
+        addShadowColumns(table);
+        unconverted.add(table);
+        if (!isBackfilled(table)) pending.add(table);
+      }
+    } catch (SQLException e) {
+      logger.severe("Unable to migrate UUID columns to binary storage");
+      e.printStackTrace();
+      return;
+    }
+
+    if (unconverted.isEmpty()) return;
+    if (unconverted.size() < tables.size()) {
+      logger.warning(
+          "Some tables were converted to binary UUIDs before the others,"
+              + " queries joining them are skipped until the remaining tables are converted");
+    }
+
+    plugin
+        .getServer()
+        .getScheduler()
+        .runTaskAsynchronously(
+            plugin,
+            () -> {
+              if (!backfill(pending, config.getUUIDBatchSize())) return;
+              if (config.isBinaryUUIDSwap()) {
+                convertTables(unconverted);
+              } else {
+                watch(unconverted);
+              }
+            });
+  }
+
+  private void addShadowColumns(UUIDTable table) throws SQLException {
+    for (String column : table.columns) {
+      String shadow = column + SHADOW_SUFFIX;
+      if (getColumnType(table.name, shadow) == null) {
+        DB.executeUpdate(
+            String.format("ALTER TABLE %s ADD COLUMN %s BINARY(16) NULL", table.name, shadow));
+      }
+    }
+  }
+
+  /** @return whether every table has been backfilled */
+  private boolean backfill(List<UUIDTable> pending, int batchSize) {
+    int backfilled = 0;
+    for (UUIDTable table : pending) {
+      long start = System.currentTimeMillis();
+      int rows = 0;
+      try {
+        String key = table.columns[0];
+        String last = "";
+        while (plugin.isEnabled()) {
+          String upper =
+              DB.getFirstColumn(
+                  String.format(
+                      "SELECT %1$s FROM %2$s WHERE %1$s > ? ORDER BY %1$s LIMIT 1 OFFSET ?",
+                      key, table.name),
+                  last,
+                  batchSize - 1);
+
+          if (upper == null) {
+            rows +=
+                DB.executeUpdate(
+                    String.format("%s WHERE %s > ?", table.getUpdateQuery(), key), last);
+            DB.executeUpdate(INSERT_BACKFILLED_QUERY, table.name, true);
+            logger.info(
+                String.format(
+                    "Backfilled binary UUIDs for %s (%d rows in %ds)",
+                    table.name, rows, (System.currentTimeMillis() - start) / 1000));
+            backfilled++;
+            break;
+          }
+
+          rows +=
+              DB.executeUpdate(
+                  String.format("%s WHERE %2$s > ? AND %2$s <= ?", table.getUpdateQuery(), key),
+                  last,
+                  upper);
+          last = upper;
+          Thread.sleep(BATCH_PAUSE_MILLIS);
+        }
+      } catch (SQLException e) {
+        logger.warning(String.format("Binary UUID backfill of %s failed", table.name));
+        e.printStackTrace();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    if (backfilled < pending.size()) return false;
+    if (!pending.isEmpty() && !config.isBinaryUUIDSwap()) {
+      logger.info(
+          "Backfilled binary UUIDs for every table, set binary-uuids-swap on one server once"
+              + " every server has binary UUIDs enabled to complete the conversion");
+    }
+    return true;
+  }
+
+  /** Converts each table in turn, while this and every other server keeps running */
+  private void convertTables(List<UUIDTable> unconverted) {
+    for (UUIDTable table : unconverted) {
+      if (!plugin.isEnabled()) return;
+      try (Connection connection = DB.getGlobalDatabase().getConnection()) {
+        swap(connection, table);
+      } catch (SQLException e) {
+        logger.warning(String.format("Binary UUID conversion of %s failed", table.name));
+        e.printStackTrace();
+        return;
+      }
+    }
+  }
+
+  /** Switches tables over to binary UUIDs once another server has converted them */
+  private void watch(List<UUIDTable> unconverted) {
+    List<UUIDTable> remaining = Lists.newArrayList(unconverted);
+    while (plugin.isEnabled() && !remaining.isEmpty()) {
+      try {
+        Thread.sleep(WATCH_INTERVAL_MILLIS);
+        for (Iterator<UUIDTable> iterator = remaining.iterator(); iterator.hasNext(); ) {
+          UUIDTable table = iterator.next();
+          if (isBinaryColumn(table.name, table.columns[0])) {
+            UUIDStorage.setBinary(table.name);
+            iterator.remove();
+            logger.info(String.format("Switched %s to binary UUIDs", table.name));
+          }
+        }
+      } catch (SQLException e) {
+        logger.warning("Unable to check for binary UUID conversion: " + e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Catches up rows written since the backfill and replaces the string columns, holding a write
+   * lock on the table so writes from every server wait for the conversion rather than being lost.
+   */
+  private void swap(Connection connection, UUIDTable table) throws SQLException {
+    long start = System.currentTimeMillis();
+
+    // Read before locking, only locked tables can be queried while the lock is held
+    Map<String, TableIndex> indexes = Maps.newLinkedHashMap();
+    for (DbRow row : DB.getResults(TABLE_INDEXES_QUERY, table.name)) {
+      String name = row.getString("index_name");
+      TableIndex index = indexes.computeIfAbsent(name, TableIndex::new);
+      Number subPart = row.get("sub_part");
+      index.unique = ((Number) row.get("non_unique")).intValue() == 0;
+      index.columns.add(
+          row.getString("column_name") + (subPart != null ? "(" + subPart.intValue() + ")" : ""));
+    }
+    // Indexes on converted columns are lost when the column is dropped, so rebuild them
+    List<TableIndex> rebuilt =
+        indexes.values().stream()
+            .filter(index -> index.contains(table.columns))
+            .collect(Collectors.toList());
+
+    List<String> clauses = Lists.newArrayList();
+    for (TableIndex index : rebuilt) {
+      clauses.add(index.isPrimary() ? "DROP PRIMARY KEY" : "DROP INDEX " + index.name);
+    }
+    for (String column : table.columns) {
+      clauses.add("DROP COLUMN " + column);
+      clauses.add(String.format("CHANGE %s %s BINARY(16)", column + SHADOW_SUFFIX, column));
+    }
+    for (TableIndex index : rebuilt) {
+      clauses.add(index.getAddClause());
+    }
+
+    String changed =
+        Arrays.stream(table.columns)
+            .map(c -> String.format("NOT (%s <=> %s)", c + SHADOW_SUFFIX, convert(c)))
+            .collect(Collectors.joining(" OR "));
+
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(String.format("LOCK TABLES %s WRITE", table.name));
+      try {
+        // Another server may have converted the table since this one started
+        if (!"binary".equalsIgnoreCase(getColumnType(connection, table))) {
+          statement.executeUpdate(String.format("%s WHERE %s", table.getUpdateQuery(), changed));
+          statement.executeUpdate(
+              String.format("ALTER TABLE %s %s", table.name, String.join(", ", clauses)));
+        }
+        // Switched while still locked, so writes queued behind the lock use the new storage
+        UUIDStorage.setBinary(table.name);
+      } finally {
+        statement.execute("UNLOCK TABLES");
+      }
+    }
+
+    logger.info(
+        String.format(
+            "Converted %s to binary UUIDs in %dms",
+            table.name, System.currentTimeMillis() - start));
+  }
+
+  // Queried on the locking connection, as information_schema is not a locked table
+  private String getColumnType(Connection connection, UUIDTable table) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(COLUMN_TYPE_QUERY)) {
+      statement.setString(1, table.name);
+      statement.setString(2, table.columns[0]);
+      try (ResultSet result = statement.executeQuery()) {
+        return result.next() ? result.getString(1) : null;
+      }
+    }
+  }
+
+  private boolean isBackfilled(UUIDTable table) throws SQLException {
+    Object backfilled = DB.getFirstColumn(SELECT_BACKFILLED_QUERY, table.name);
+    if (backfilled instanceof Boolean) return (Boolean) backfilled;
+    return backfilled instanceof Number && ((Number) backfilled).intValue() != 0;
+  }
+
+  private boolean isBinaryColumn(String tableName, String column) throws SQLException {
+    return "binary".equalsIgnoreCase(getColumnType(tableName, column));
+  }
+
+  private String getColumnType(String tableName, String column) throws SQLException {
+    return DB.getFirstColumn(COLUMN_TYPE_QUERY, tableName, column);
+  }
+
+  private static String convert(String column) {
+    return String.format(CONVERT_FORMAT, column);
+  }
+
+  /** A table and the columns which hold UUIDs */
+  private static class UUIDTable {
+    private final String name;
+    private final String fields;
+    private final String[] columns;
+
+    public UUIDTable(String name, String fields, String... columns) {
+      this.name = name;
+      this.fields = fields;
+      this.columns = columns;
+    }
+
+    public String getUpdateQuery() {
+      return String.format(
+          "UPDATE %s SET %s",
+          name,
+          Arrays.stream(columns)
+              .map(c -> String.format("%s = %s", c + SHADOW_SUFFIX, convert(c)))
+              .collect(Collectors.joining(", ")));
+    }
+  }
+
+  /** An existing index read from information_schema */
+  private static class TableIndex {
+    private final String name;
+    private final List<String> columns;
+    private boolean unique;
+
+    public TableIndex(String name) {
+      this.name = name;
+      this.columns = Lists.newArrayList();
+    }
+
+    public boolean isPrimary() {
+      return PRIMARY_INDEX.equals(name);
+    }
+
+    public boolean contains(String[] converted) {
+      return Arrays.stream(converted).anyMatch(columns::contains);
+    }
+
+    public String getAddClause() {
+      String columnList = String.join(", ", columns);
+      if (isPrimary()) return String.format("ADD PRIMARY KEY (%s)", columnList);
+      return String.format("ADD %sINDEX %s (%s)", unique ? "UNIQUE " : "", name, columnList);
+    }
+  }
+}
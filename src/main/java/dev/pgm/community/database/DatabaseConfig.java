@@ -1,5 +1,6 @@
 package dev.pgm.community.database;
 
+import java.time.Duration;
 import org.bukkit.configuration.Configuration;
 
 public class DatabaseConfig {
@@ -11,6 +12,15 @@ public class DatabaseConfig {
   private String databaseName;
   private String timezone;
   private int maxConnections;
+  private boolean binaryUUIDs;
+  private boolean binaryUUIDSwap;
+  private int uuidBatchSize;
+  private long writeDelayMillis;
+  private int writeBatchSize;
+  private int cacheSize;
+  private Duration cacheIdleTimeout;
+  private Duration prefetchTimeout;
+  private Duration missingTtl;
 
   public DatabaseConfig(Configuration config) {
     reload(config);
@@ -24,6 +34,17 @@ public class DatabaseConfig {
     this.databaseName = config.getString("database.databaseName");
     this.timezone = config.getString("database.timezone");
     this.maxConnections = config.getInt("database.max-connections");
+    this.binaryUUIDs = config.getBoolean("database.binary-uuids", false);
+    this.binaryUUIDSwap = config.getBoolean("database.binary-uuids-swap", false);
+    this.uuidBatchSize = config.getInt("database.uuid-batch-size", 1000);
+    this.writeDelayMillis = config.getLong("database.write-behind.delay-ms", 50);
+    this.writeBatchSize = config.getInt("database.write-behind.batch-size", 200);
+    this.cacheSize = config.getInt("database.cache.max-size", 5000);
+    this.cacheIdleTimeout =
+        Duration.ofMinutes(config.getInt("database.cache.idle-timeout-minutes", 30));
+    this.prefetchTimeout =
+        Duration.ofSeconds(config.getInt("database.cache.prefetch-timeout-seconds", 10));
+    this.missingTtl = Duration.ofSeconds(config.getInt("database.cache.missing-ttl-seconds", 30));
   }
 
   public boolean isEnabled() {
@@ -53,4 +74,40 @@ public class DatabaseConfig {
   public int getMaxDatabaseConnections() {
     return maxConnections;
   }
+
+  public boolean isBinaryUUIDs() {
+    return binaryUUIDs;
+  }
+
+  public boolean isBinaryUUIDSwap() {
+    return binaryUUIDSwap;
+  }
+
+  public int getUUIDBatchSize() {
+    return uuidBatchSize;
+  }
+
+  public long getWriteDelayMillis() {
+    return writeDelayMillis;
+  }
+
+  public int getWriteBatchSize() {
+    return writeBatchSize;
+  }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public Duration getCacheIdleTimeout() {
+    return cacheIdleTimeout;
+  }
+
+  public Duration getPrefetchTimeout() {
+    return prefetchTimeout;
+  }
+
+  public Duration getMissingTtl() {
+    return missingTtl;
+  }
 }
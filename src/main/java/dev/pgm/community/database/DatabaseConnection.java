@@ -3,19 +3,33 @@ package dev.pgm.community.database;
 import co.aikar.idb.BukkitDB;
 import co.aikar.idb.DatabaseOptions;
 import co.aikar.idb.PooledDatabaseOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import dev.pgm.community.Community;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 public class DatabaseConnection {
 
+  // Used by the bulk load executor, on top of the connections for per-player queries
+  private static final int BULK_CONNECTIONS = 1;
+
   private DatabaseConfig config;
+  private WriteBehindQueue writeQueue;
+  private final List<AsyncLoadingCache<?, ?>> caches = Lists.newCopyOnWriteArrayList();
+  @Nullable private volatile SharedCache sharedCache;
 
   public DatabaseConnection(Community plugin) {
     this.config = new DatabaseConfig(plugin.getConfig());
 
     Map<String, Object> extraOptions = Maps.newHashMap();
     extraOptions.put("serverTimezone", config.getTimezone());
+    extraOptions.put("rewriteBatchedStatements", true); // Send batched inserts as multi-row inserts
 
     DatabaseOptions options =
         DatabaseOptions.builder()
@@ -31,11 +45,114 @@ public class DatabaseConnection {
     PooledDatabaseOptions poolOptions =
         PooledDatabaseOptions.builder()
             .options(options)
-            .maxConnections(config.getMaxDatabaseConnections())
+            .maxConnections(config.getMaxDatabaseConnections() + BULK_CONNECTIONS)
             .dataSourceProperties(extraOptions)
             .build();
 
     // Setup the main global DB
     BukkitDB.createHikariDatabase(plugin, poolOptions);
+
+    // Bring the schema up to date before any feature queries it
+    new SchemaMigrations(plugin.getLogger()).migrate();
+    new BinaryUUIDMigration(plugin, config).migrate();
+
+    this.writeQueue =
+        new WriteBehindQueue(
+            plugin.getLogger(), config.getWriteDelayMillis(), config.getWriteBatchSize());
+  }
+
+  public DatabaseConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * Creates a cache sized by the database config
+   *
+   * @param name A name for the cache, shown in stats
+   * @param loader Loads the value for a key
+   * @return The new cache
+   */
+  public <K, V> AsyncLoadingCache<K, V> createCache(
+      String name, Function<K, CompletableFuture<V>> loader) {
+    return createCache(name, loader, false);
+  }
+
+  public <K, V> AsyncLoadingCache<K, V> createCache(
+      String name, Function<K, CompletableFuture<V>> loader, boolean cacheMissing) {
+    return createCache(name, loader, cacheMissing, null);
+  }
+
+  /**
+   * Creates a cache sized by the database config, with a second level in the {@link SharedCache}
+   * whenever one is set
+   *
+   * @param name A name for the cache, shown in stats and used to store shared values
+   * @param loader Loads the value for a key
+   * @param cacheMissing Whether to remember keys without a value for a short time
+   * @param codec Converts keys and values for the shared level, or {@code null} for none
+   * @return The new cache
+   */
+  public <K, V> AsyncLoadingCache<K, V> createCache(
+      String name,
+      Function<K, CompletableFuture<V>> loader,
+      boolean cacheMissing,
+      @Nullable SharedCodec<K, V> codec) {
+    AsyncLoadingCache<K, V> cache =
+        new AsyncLoadingCache<>(
+            name,
+            config.getCacheSize(),
+            config.getCacheIdleTimeout(),
+            cacheMissing ? config.getMissingTtl() : Duration.ZERO,
+            loader,
+            codec,
+            this::getSharedCache);
+    caches.add(cache);
+    return cache;
+  }
+
+  /** @return every cache created for this connection, for stats */
+  public List<AsyncLoadingCache<?, ?>> getCaches() {
+    return ImmutableList.copyOf(caches);
+  }
+
+  /**
+   * Forgets a missing key in every cache with the given name, used when another server creates a
+   * record. Caches with a shared level also drop their entry, as the other server has written the
+   * change through.
+   *
+   * @param name The cache name
+   * @param key The string form of the key
+   */
+  public void invalidateRemote(String name, String key) {
+    for (AsyncLoadingCache<?, ?> cache : caches) {
+      if (cache.getName().equals(name)) cache.invalidateRemote(key);
+    }
+  }
+
+  /** @return the cache shared between servers, or {@code null} if there is none */
+  @Nullable
+  public SharedCache getSharedCache() {
+    return sharedCache;
+  }
+
+  /**
+   * Sets the cache shared between servers, used by caches created with a {@link SharedCodec}
+   *
+   * @param sharedCache The shared cache, or {@code null} once it is no longer available
+   */
+  public void setSharedCache(@Nullable SharedCache sharedCache) {
+    this.sharedCache = sharedCache;
+  }
+
+  public WriteBehindQueue getWriteQueue() {
+    return writeQueue;
+  }
+
+  public void close() {
+    writeQueue.shutdown();
+
+    // Release the cached values, the caches are recreated with the features on the next enable
+    caches.forEach(AsyncLoadingCache::invalidateAll);
+    caches.clear();
   }
 }
@@ -0,0 +1,58 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import co.aikar.idb.DB;
+import java.sql.SQLException;
+
+/** A {@link Migration} which adds a secondary index to a table if it does not already exist */
+public class IndexMigration implements Migration, MigrationQuery {
+
+  private final int version;
+  private final String tableName;
+  private final String tableFields;
+  private final String indexName;
+  private final String[] columns;
+
+  public IndexMigration(
+      int version, String tableName, String tableFields, String indexName, String... columns) {
+    checkArgument(columns.length > 0, "An index requires at least one column");
+    this.version = version;
+    this.tableName = checkNotNull(tableName);
+    this.tableFields = checkNotNull(tableFields);
+    this.indexName = checkNotNull(indexName);
+    this.columns = columns;
+  }
+
+  @Override
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public String getDescription() {
+    return String.format(
+        "Add index %s on %s(%s)", indexName, tableName, String.join(", ", columns));
+  }
+
+  @Override
+  public void apply() throws SQLException {
+    // On a fresh install the owning service may not have created its table yet
+    DB.executeUpdate(Query.createTable(tableName, tableFields));
+
+    if (indexExists()) return;
+
+    try {
+      DB.executeUpdate(Query.createIndex(tableName, indexName, columns));
+    } catch (SQLException e) {
+      // Another server may have created the index at the same time
+      if (!indexExists()) throw e;
+    }
+  }
+
+  private boolean indexExists() throws SQLException {
+    Number count = DB.getFirstColumn(INDEX_EXISTS_QUERY, tableName, indexName);
+    return count != null && count.intValue() > 0;
+  }
+}
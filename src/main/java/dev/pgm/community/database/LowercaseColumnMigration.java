@@ -0,0 +1,66 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import co.aikar.idb.DB;
+import java.sql.SQLException;
+
+/**
+ * A {@link Migration} which adds an indexed lowercase copy of a column, so case-insensitive lookups
+ * can use an index seek instead of {@code LOWER(column) = LOWER(?)}.
+ *
+ * <p>The copy is named {@code <column>_lower}, and must be written alongside the original column
+ * by every insert and update.
+ */
+public class LowercaseColumnMigration extends IndexMigration {
+
+  public static final String SUFFIX = "_lower";
+
+  private final String tableName;
+  private final String tableFields;
+  private final String column;
+  private final String columnType;
+
+  public LowercaseColumnMigration(
+      int version,
+      String tableName,
+      String tableFields,
+      String indexName,
+      String column,
+      String columnType) {
+    super(version, tableName, tableFields, indexName, column + SUFFIX);
+    this.tableName = checkNotNull(tableName);
+    this.tableFields = checkNotNull(tableFields);
+    this.column = checkNotNull(column);
+    this.columnType = checkNotNull(columnType);
+  }
+
+  @Override
+  public String getDescription() {
+    return String.format("Add lowercase column %s to %s", column + SUFFIX, tableName);
+  }
+
+  @Override
+  public void apply() throws SQLException {
+    // On a fresh install the table is created with the column already present
+    DB.executeUpdate(Query.createTable(tableName, tableFields));
+
+    String lower = column + SUFFIX;
+    if (DB.getFirstColumn(COLUMN_TYPE_QUERY, tableName, lower) == null) {
+      try {
+        DB.executeUpdate(
+            String.format("ALTER TABLE %s ADD COLUMN %s %s", tableName, lower, columnType));
+      } catch (SQLException e) {
+        // Another server may have added the column at the same time
+        if (DB.getFirstColumn(COLUMN_TYPE_QUERY, tableName, lower) == null) throw e;
+      }
+    }
+
+    DB.executeUpdate(
+        String.format(
+            "UPDATE %1$s SET %2$s = LOWER(%3$s) WHERE %2$s IS NULL AND %3$s IS NOT NULL",
+            tableName, lower, column));
+
+    super.apply();
+  }
+}
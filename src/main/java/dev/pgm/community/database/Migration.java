@@ -0,0 +1,32 @@
+package dev.pgm.community.database;
+
+import java.sql.SQLException;
+
+/** A single versioned change to the database schema, see {@link SchemaMigrations} */
+public interface Migration {
+
+  /**
+   * The schema version this migration brings the database to. Migrations are applied in ascending
+   * order of version.
+   *
+   * @return the schema version
+   */
+  int getVersion();
+
+  /**
+   * A short description of the change, recorded alongside the version
+   *
+   * @return the description
+   */
+  String getDescription();
+
+  /**
+   * Applies the migration.
+   *
+   * <p>Note: Implementations must be idempotent, a migration may run again if the server stopped
+   * before its version was recorded or if two servers start at the same time.
+   *
+   * @throws SQLException if the change could not be applied
+   */
+  void apply() throws SQLException;
+}
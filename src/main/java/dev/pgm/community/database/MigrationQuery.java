@@ -0,0 +1,35 @@
+package dev.pgm.community.database;
+
+public interface MigrationQuery {
+
+  static final String TABLE_NAME = "schema_version";
+  static final String TABLE_FIELDS =
+      "(version INT PRIMARY KEY, description VARCHAR(255), applied_at BIGINT)";
+
+  static final String SELECT_VERSION_QUERY = "SELECT MAX(version) FROM " + TABLE_NAME;
+
+  static final String INSERT_VERSION_QUERY =
+      "INSERT IGNORE INTO " + TABLE_NAME + "(version, description, applied_at) VALUES (?, ?, ?)";
+
+  static final String INDEX_EXISTS_QUERY =
+      "SELECT COUNT(*) FROM information_schema.STATISTICS"
+          + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?";
+
+  static final String COLUMN_TYPE_QUERY =
+      "SELECT DATA_TYPE FROM information_schema.COLUMNS"
+          + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+
+  static final String TABLE_INDEXES_QUERY =
+      "SELECT INDEX_NAME AS index_name, COLUMN_NAME AS column_name,"
+          + " NON_UNIQUE AS non_unique, SUB_PART AS sub_part FROM information_schema.STATISTICS"
+          + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY INDEX_NAME, SEQ_IN_INDEX";
+
+  static final String UUID_TABLE_NAME = "uuid_migrations";
+  static final String UUID_TABLE_FIELDS = "(table_name VARCHAR(64) PRIMARY KEY, backfilled BOOL)";
+
+  static final String SELECT_BACKFILLED_QUERY =
+      "SELECT backfilled FROM " + UUID_TABLE_NAME + " WHERE table_name = ?";
+
+  static final String INSERT_BACKFILLED_QUERY =
+      "REPLACE INTO " + UUID_TABLE_NAME + "(table_name, backfilled) VALUES (?, ?)";
+}
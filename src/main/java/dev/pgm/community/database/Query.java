@@ -15,4 +15,12 @@ public class Query {
     checkNotNull(tableName);
     return String.format("SELECT count(*) from %s", tableName);
   }
+
+  public static String createIndex(String tableName, String indexName, String... columns) {
+    checkNotNull(tableName);
+    checkNotNull(indexName);
+
+    return String.format(
+        "CREATE INDEX %s ON %s (%s)", indexName, tableName, String.join(", ", columns));
+  }
 }
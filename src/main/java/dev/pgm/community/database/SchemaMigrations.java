@@ -0,0 +1,202 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import co.aikar.idb.DB;
+import com.google.common.collect.Lists;
+import dev.pgm.community.assistance.services.AssistanceQuery;
+import dev.pgm.community.friends.services.FriendshipQuery;
+import dev.pgm.community.moderation.services.ModerationQuery;
+import dev.pgm.community.nick.services.NickQuery;
+import dev.pgm.community.sessions.services.SessionDataQuery;
+import dev.pgm.community.users.services.AddressQuery;
+import dev.pgm.community.users.services.UserQuery;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Applies versioned {@link Migration}s to the database on startup.
+ *
+ * <p>The highest applied version is tracked in the schema_version table, any migration with a
+ * greater version is applied in order. New migrations should always be appended with the next
+ * version number, never edited once released.
+ */
+public class SchemaMigrations implements MigrationQuery {
+
+  private final Logger logger;
+  private final List<Migration> migrations;
+
+  public SchemaMigrations(Logger logger) {
+    this.logger = logger;
+    this.migrations = Lists.newArrayList();
+
+    // Secondary indexes for the per-player lookups done on login
+    register(
+        new IndexMigration(
+            1,
+            ModerationQuery.TABLE_NAME,
+            ModerationQuery.TABLE_FIELDS,
+            "idx_punishments_punished",
+            "punished",
+            "active"));
+    register(
+        new IndexMigration(
+            2,
+            AddressQuery.IP_TABLE_NAME,
+            AddressQuery.IP_TABLE_FIELDS,
+            "idx_addresses_address",
+            AddressQuery.IP_ADDRESS_FIELD));
+    register(
+        new IndexMigration(
+            3,
+            AddressQuery.IP_TABLE_NAME,
+            AddressQuery.IP_TABLE_FIELDS,
+            "idx_addresses_ip_id",
+            AddressQuery.IP_ID_FIELD));
+    register(
+        new IndexMigration(
+            4,
+            AddressQuery.IP_USER_TABLE_NAME,
+            AddressQuery.IP_USER_TABLE_FIELDS,
+            "idx_ip_history_user",
+            AddressQuery.USER_ID_FIELD,
+            AddressQuery.IP_ID_FIELD));
+    register(
+        new IndexMigration(
+            5,
+            AddressQuery.IP_USER_TABLE_NAME,
+            AddressQuery.IP_USER_TABLE_FIELDS,
+            "idx_ip_history_ip",
+            AddressQuery.IP_ID_FIELD,
+            AddressQuery.USER_ID_FIELD));
+    register(
+        new IndexMigration(
+            6,
+            FriendshipQuery.TABLE_NAME,
+            FriendshipQuery.TABLE_FIELDS,
+            "idx_friendships_requester",
+            "requester"));
+    register(
+        new IndexMigration(
+            7,
+            FriendshipQuery.TABLE_NAME,
+            FriendshipQuery.TABLE_FIELDS,
+            "idx_friendships_requested",
+            "requested"));
+    register(
+        new IndexMigration(
+            8,
+            AssistanceQuery.TABLE_NAME,
+            AssistanceQuery.TABLE_FIELDS,
+            "idx_reports_reported",
+            "reported"));
+    register(
+        new IndexMigration(
+            9,
+            SessionDataQuery.TABLE_NAME,
+            SessionDataQuery.TABLE_FIELDS,
+            "idx_sessions_player",
+            "player",
+            "disguised",
+            "end_time"));
+    register(
+        new IndexMigration(
+            10,
+            SessionDataQuery.TABLE_NAME,
+            SessionDataQuery.TABLE_FIELDS,
+            "idx_sessions_server",
+            "server",
+            "end_time"));
+
+    // Case-insensitive name lookups
+    register(
+        new LowercaseColumnMigration(
+            11,
+            UserQuery.TABLE_NAME,
+            UserQuery.TABLE_FIELDS,
+            "idx_users_name",
+            "name",
+            "VARCHAR(16)"));
+    register(
+        new LowercaseColumnMigration(
+            12,
+            NickQuery.TABLE_NAME,
+            NickQuery.TABLE_FIELDS,
+            "idx_nicknames_nickname",
+            "nickname",
+            "VARCHAR(16)"));
+
+    // Lets ip tracking insert without reading first
+    register(new AddressUniqueMigration(13));
+
+    // Loads the active bans on startup
+    register(
+        new IndexMigration(
+            14,
+            ModerationQuery.TABLE_NAME,
+            ModerationQuery.TABLE_FIELDS,
+            "idx_punishments_active",
+            "active",
+            "type"));
+
+    // Reads recent punishments newest first
+    register(
+        new BigintColumnMigration(
+            15,
+            ModerationQuery.TABLE_NAME,
+            ModerationQuery.TABLE_FIELDS,
+            "idx_punishments_time",
+            "time"));
+  }
+
+  public void register(Migration migration) {
+    checkArgument(
+        migrations.isEmpty()
+            || migrations.get(migrations.size() - 1).getVersion() < migration.getVersion(),
+        "Migrations must be registered in ascending version order");
+    migrations.add(migration);
+  }
+
+  /**
+   * Applies all pending migrations in version order. Stops at the first failure so later
+   * migrations never run against an incomplete schema.
+   *
+   * @return the schema version after migrating
+   */
+  public int migrate() {
+    int version = 0;
+    try {
+      DB.executeUpdate(Query.createTable(TABLE_NAME, TABLE_FIELDS));
+      version = getCurrentVersion();
+
+      for (Migration migration : migrations) {
+        if (migration.getVersion() <= version) continue;
+
+        long start = System.currentTimeMillis();
+        migration.apply();
+        DB.executeUpdate(
+            INSERT_VERSION_QUERY,
+            migration.getVersion(),
+            migration.getDescription(),
+            Instant.now().toEpochMilli());
+        version = migration.getVersion();
+
+        logger.info(
+            String.format(
+                "Applied schema migration %d (%s) in %dms",
+                version, migration.getDescription(), System.currentTimeMillis() - start));
+      }
+    } catch (SQLException e) {
+      logger.severe(String.format("Schema migration failed, database is at version %d", version));
+      e.printStackTrace();
+    }
+    return version;
+  }
+
+  private int getCurrentVersion() throws SQLException {
+    Number version = DB.getFirstColumn(SELECT_VERSION_QUERY);
+    return version != null ? version.intValue() : 0;
+  }
+}
@@ -0,0 +1,49 @@
+package dev.pgm.community.database;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A store shared by every server, which {@link AsyncLoadingCache caches} created with a {@link
+ * SharedCodec} check before loading from the database.
+ *
+ * <p>Values read from the database are filled in so other servers can skip the query, while
+ * changes are written through and other servers are told to drop their own copy.
+ */
+public interface SharedCache {
+
+  /**
+   * Reads a value
+   *
+   * @param cache The name of the cache
+   * @param key The string form of the key
+   * @return A future completed with the encoded value, or {@code null} if not stored or the read
+   *     failed
+   */
+  CompletableFuture<byte[]> get(String cache, String key);
+
+  /**
+   * Stores a value read from the database, unless another server has already stored one
+   *
+   * @param cache The name of the cache
+   * @param key The string form of the key
+   * @param value The encoded value
+   */
+  void fill(String cache, String key, byte[] value);
+
+  /**
+   * Stores a changed value, then tells other servers to drop their copy
+   *
+   * @param cache The name of the cache
+   * @param key The string form of the key
+   * @param value The encoded value
+   */
+  void write(String cache, String key, byte[] value);
+
+  /**
+   * Removes a value, then tells other servers to drop their copy
+   *
+   * @param cache The name of the cache
+   * @param key The string form of the key
+   */
+  void invalidate(String cache, String key);
+}
@@ -0,0 +1,62 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import dev.pgm.community.network.NetworkCodecs;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Converts the keys and values of an {@link AsyncLoadingCache} to the form they are kept in the
+ * {@link SharedCache}. Values are written as JSON using {@link NetworkCodecs#GSON}.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SharedCodec<K, V> {
+
+  private final Function<String, K> keyParser;
+  private final Type valueType;
+
+  public SharedCodec(Function<String, K> keyParser, Type valueType) {
+    this.keyParser = checkNotNull(keyParser);
+    this.valueType = checkNotNull(valueType);
+  }
+
+  /**
+   * Creates a codec for a cache keyed by UUID
+   *
+   * @param valueType The type values are read back as, which must be assignable to {@code V}
+   */
+  public static <V> SharedCodec<UUID, V> uuid(Type valueType) {
+    return new SharedCodec<>(UUID::fromString, valueType);
+  }
+
+  /**
+   * Creates a codec for a cache keyed by string
+   *
+   * @param valueType The type values are read back as, which must be assignable to {@code V}
+   */
+  public static <V> SharedCodec<String, V> string(Type valueType) {
+    return new SharedCodec<>(Function.identity(), valueType);
+  }
+
+  /**
+   * Parses the string form of a key
+   *
+   * @throws IllegalArgumentException If the key is not valid
+   */
+  public K parseKey(String key) {
+    return keyParser.apply(key);
+  }
+
+  public byte[] encode(V value) {
+    return NetworkCodecs.GSON.toJson(value, valueType).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public V decode(byte[] data) {
+    return NetworkCodecs.GSON.fromJson(new String(data, StandardCharsets.UTF_8), valueType);
+  }
+}
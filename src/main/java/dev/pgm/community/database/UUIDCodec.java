@@ -0,0 +1,64 @@
+package dev.pgm.community.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/** Converts {@link UUID}s to and from the value stored in a database column */
+public enum UUIDCodec {
+
+  /** Stored as a 36 character string in a VARCHAR(36) column */
+  STRING {
+    @Override
+    public Object encode(UUID id) {
+      return id.toString();
+    }
+  },
+
+  /** Stored as 16 raw bytes in a BINARY(16) column */
+  BINARY {
+    @Override
+    public Object encode(UUID id) {
+      return toBytes(id);
+    }
+  };
+
+  /** Stored in binary columns where the string format used a non-UUID value (e.g console) */
+  public static final UUID NIL = new UUID(0, 0);
+
+  /**
+   * Converts a UUID to the value which should be bound to a query parameter
+   *
+   * @param id The UUID
+   * @return A string or byte array depending on the storage type
+   */
+  public abstract Object encode(UUID id);
+
+  /**
+   * Reads a UUID from a column value of either storage type
+   *
+   * @param value A string or byte array read from a row
+   * @return The decoded UUID, or null if the value was null
+   */
+  @Nullable
+  public static UUID decode(@Nullable Object value) {
+    if (value == null) return null;
+    if (value instanceof byte[]) return fromBytes((byte[]) value);
+    return UUID.fromString(value.toString());
+  }
+
+  public static byte[] toBytes(UUID id) {
+    return ByteBuffer.allocate(16)
+        .putLong(id.getMostSignificantBits())
+        .putLong(id.getLeastSignificantBits())
+        .array();
+  }
+
+  public static UUID fromBytes(byte[] bytes) {
+    checkArgument(bytes.length == 16, "A binary UUID must be 16 bytes");
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+}
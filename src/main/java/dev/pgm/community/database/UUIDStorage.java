@@ -0,0 +1,29 @@
+package dev.pgm.community.database;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which tables store their UUID columns as BINARY(16).
+ *
+ * <p>Populated on startup by {@link BinaryUUIDMigration} before any feature is created, tables
+ * converted later are added while their write lock is held, so queries bind the new type.
+ */
+public final class UUIDStorage {
+
+  private static final Set<String> binaryTables = ConcurrentHashMap.newKeySet();
+
+  private UUIDStorage() {}
+
+  public static UUIDCodec getCodec(String tableName) {
+    return isBinary(tableName) ? UUIDCodec.BINARY : UUIDCodec.STRING;
+  }
+
+  public static boolean isBinary(String tableName) {
+    return binaryTables.contains(tableName);
+  }
+
+  static void setBinary(String tableName) {
+    binaryTables.add(tableName);
+  }
+}
@@ -0,0 +1,328 @@
+package dev.pgm.community.database;
+
+import co.aikar.idb.DB;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Write-behind queue for update statements.
+ *
+ * <p>Statements are held for a short window, then statements sharing the same query are sent as a
+ * single JDBC batch (rewritten into multi-row inserts by the driver). Statements queued with a key
+ * replace any pending statement with the same query and key, so only use a key for statements
+ * which write the complete state of a row.
+ *
+ * <p>Statements for the same table are always executed in the order they were queued.
+ *
+ * <p>Note: keys are compared with equals, so use the UUID rather than its bound value.
+ */
+public class WriteBehindQueue {
+
+  private static final Pattern TABLE_PATTERN =
+      Pattern.compile(
+          "^\\s*(?:INSERT\\s+(?:IGNORE\\s+)?INTO|REPLACE\\s+INTO|UPDATE)\\s+(\\w+)",
+          Pattern.CASE_INSENSITIVE);
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final Logger logger;
+  private final long delayMillis;
+  private final int batchSize;
+  private final ScheduledExecutorService executor;
+
+  // Pending statements in the order they were queued
+  private final LinkedHashMap<Object, PendingWrite> pending;
+  private boolean flushScheduled;
+
+  private final AtomicLong statements = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong totalFlushNanos = new AtomicLong();
+  private volatile long lastFlushNanos;
+
+  public WriteBehindQueue(Logger logger, long delayMillis, int batchSize) {
+    this.logger = logger;
+    this.delayMillis = delayMillis;
+    this.batchSize = Math.max(1, batchSize);
+    this.pending = Maps.newLinkedHashMap();
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community DB Writer")
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * Queues an update statement
+   *
+   * @param query The SQL statement
+   * @param params Statement parameters
+   * @return A future completed with the update count once the statement has been executed
+   */
+  public CompletableFuture<Integer> executeUpdate(String query, Object... params) {
+    return enqueue(new Object(), query, params);
+  }
+
+  /**
+   * Queues an update statement, replacing any pending statement with the same query and key
+   *
+   * @param key Identifies the row being written, e.g a player UUID
+   * @param query The SQL statement
+   * @param params Statement parameters
+   * @return A future completed with the update count once the statement has been executed
+   */
+  public CompletableFuture<Integer> executeUpdate(Object key, String query, Object... params) {
+    return enqueue(new WriteKey(query, key), query, params);
+  }
+
+  private CompletableFuture<Integer> enqueue(Object key, String query, Object[] params) {
+    PendingWrite write = new PendingWrite(query, params);
+
+    synchronized (pending) {
+      // Checked under the lock, shutdown takes it before stopping the writer
+      if (executor.isShutdown()) {
+        return DB.executeUpdateAsync(query, params);
+      }
+
+      // Re-insert so a replaced statement keeps its order relative to everything queued before it
+      PendingWrite replaced = pending.remove(key);
+      if (replaced != null) {
+        coalesced.incrementAndGet();
+        write.future.whenComplete(
+            (result, error) -> {
+              if (error != null) replaced.future.completeExceptionally(error);
+              else replaced.future.complete(result);
+            });
+      }
+      pending.put(key, write);
+
+      try {
+        if (pending.size() >= batchSize) {
+          executor.execute(this::flush);
+        } else if (!flushScheduled) {
+          executor.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+          flushScheduled = true;
+        }
+      } catch (RejectedExecutionException e) {
+        // Never queued, so write it directly rather than lose it
+        pending.remove(key);
+        DB.executeUpdateAsync(query, params)
+            .whenComplete(
+                (result, error) -> {
+                  if (error != null) write.future.completeExceptionally(error);
+                  else write.future.complete(result);
+                });
+      }
+    }
+    return write.future;
+  }
+
+  /** Executes all pending statements, called from the writer thread */
+  private void flush() {
+    List<PendingWrite> writes;
+    synchronized (pending) {
+      flushScheduled = false;
+      if (pending.isEmpty()) return;
+      writes = Lists.newArrayList(pending.values());
+      pending.clear();
+    }
+
+    long start = System.nanoTime();
+    try (Connection connection = DB.getGlobalDatabase().getConnection()) {
+      for (List<PendingWrite> group : group(writes)) {
+        executeBatch(connection, group);
+      }
+    } catch (SQLException | RuntimeException e) {
+      // The executor would swallow the error, leaving callers waiting on the futures forever
+      logger.warning("Unable to flush queued writes");
+      e.printStackTrace();
+      writes.forEach(write -> write.future.completeExceptionally(e));
+    }
+
+    lastFlushNanos = System.nanoTime() - start;
+    totalFlushNanos.addAndGet(lastFlushNanos);
+    flushes.incrementAndGet();
+  }
+
+  /**
+   * Groups statements by query. A statement only joins an existing group if no other query for the
+   * same table has been queued since, so per-table ordering is kept.
+   */
+  private List<List<PendingWrite>> group(List<PendingWrite> writes) {
+    List<List<PendingWrite>> groups = Lists.newArrayList();
+    Map<String, List<PendingWrite>> open = Maps.newHashMap();
+    Map<String, String> lastQuery = Maps.newHashMap();
+
+    for (PendingWrite write : writes) {
+      String table = getTable(write.query);
+      String previous = lastQuery.put(table, write.query);
+      if (previous != null && !previous.equals(write.query)) {
+        open.remove(write.query);
+      }
+
+      List<PendingWrite> group = open.get(write.query);
+      if (group == null || group.size() >= batchSize) {
+        group = Lists.newArrayList();
+        open.put(write.query, group);
+        groups.add(group);
+      }
+      group.add(write);
+    }
+    return groups;
+  }
+
+  private void executeBatch(Connection connection, List<PendingWrite> group) {
+    String query = group.get(0).query;
+    int[] results;
+    try {
+      results = executeTransaction(connection, group);
+    } catch (SQLException e) {
+      // The batch was rolled back, so retry individually without writing any statement twice,
+      // and a single bad statement does not discard the whole batch
+      for (PendingWrite write : group) {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+          write.bind(statement);
+          write.future.complete(statement.executeUpdate());
+          statements.incrementAndGet();
+        } catch (SQLException ex) {
+          logger.warning("Queued write failed: " + query);
+          ex.printStackTrace();
+          write.future.completeExceptionally(ex);
+        }
+      }
+      return;
+    }
+
+    for (int i = 0; i < group.size(); i++) {
+      group.get(i).future.complete(i < results.length ? results[i] : 0);
+    }
+    batches.incrementAndGet();
+    statements.addAndGet(group.size());
+  }
+
+  /** Executes a group as one batch in a transaction, so it is written in full or not at all */
+  private int[] executeTransaction(Connection connection, List<PendingWrite> group)
+      throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (PreparedStatement statement = connection.prepareStatement(group.get(0).query)) {
+      for (PendingWrite write : group) {
+        write.bind(statement);
+        statement.addBatch();
+      }
+      int[] results = statement.executeBatch();
+      connection.commit();
+      return results;
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  /** Executes all pending statements and stops the writer, waiting for writes to complete */
+  public void shutdown() {
+    synchronized (pending) {
+      executor.execute(this::flush);
+      executor.shutdown();
+    }
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        logger.warning("Timed out waiting for queued database writes to complete");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public int getQueueDepth() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  public long getStatementCount() {
+    return statements.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  public double getLastFlushMillis() {
+    return lastFlushNanos / 1_000_000D;
+  }
+
+  public double getAverageFlushMillis() {
+    long count = flushes.get();
+    return count == 0 ? 0 : totalFlushNanos.get() / 1_000_000D / count;
+  }
+
+  private static String getTable(String query) {
+    Matcher matcher = TABLE_PATTERN.matcher(query);
+    return matcher.find() ? matcher.group(1).toLowerCase() : query;
+  }
+
+  private static class PendingWrite {
+    private final String query;
+    private final Object[] params;
+    private final CompletableFuture<Integer> future;
+
+    public PendingWrite(String query, Object[] params) {
+      this.query = query;
+      this.params = params;
+      this.future = new CompletableFuture<>();
+    }
+
+    public void bind(PreparedStatement statement) throws SQLException {
+      for (int i = 0; i < params.length; i++) {
+        statement.setObject(i + 1, params[i]);
+      }
+    }
+  }
+
+  private static class WriteKey {
+    private final String query;
+    private final Object key;
+
+    public WriteKey(String query, Object key) {
+      this.query = query;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof WriteKey)) return false;
+      WriteKey other = (WriteKey) obj;
+      return other.query.equals(query) && other.key.equals(key);
+    }
+
+    @Override
+    public int hashCode() {
+      return query.hashCode() * 31 + key.hashCode();
+    }
+  }
+}
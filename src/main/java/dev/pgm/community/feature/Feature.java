@@ -1,6 +1,7 @@
 package dev.pgm.community.feature;
 
 import dev.pgm.community.feature.config.FeatureConfig;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /** A Feature is something can be enabled/disabled, may contain commands, and a config */
@@ -19,4 +20,15 @@ public interface Feature {
   default CompletableFuture<Integer> count() {
     return CompletableFuture.completedFuture(0);
   }
+
+  /**
+   * Starts loading any data for a player which is needed when they join, so it is cached before
+   * login handlers run. Called for every enabled feature in parallel from {@link LoginPrefetcher}.
+   *
+   * @param playerId The player who is logging in
+   * @return A future completed once the data has been loaded
+   */
+  default CompletableFuture<?> prefetch(UUID playerId) {
+    return CompletableFuture.completedFuture(null);
+  }
 }
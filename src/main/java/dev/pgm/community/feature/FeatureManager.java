@@ -1,5 +1,7 @@
 package dev.pgm.community.feature;
 
+import com.google.common.collect.ImmutableList;
+import dev.pgm.community.Community;
 import dev.pgm.community.assistance.feature.AssistanceFeature;
 import dev.pgm.community.assistance.feature.types.SQLAssistanceFeature;
 import dev.pgm.community.broadcast.BroadcastFeature;
@@ -15,7 +17,10 @@ import dev.pgm.community.moderation.feature.ModerationFeature;
 import dev.pgm.community.moderation.feature.types.SQLModerationFeature;
 import dev.pgm.community.motd.MotdFeature;
 import dev.pgm.community.mutations.feature.MutationFeature;
+import dev.pgm.community.network.NetworkConfig;
 import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.network.subs.types.CacheInvalidationSubscriber;
+import dev.pgm.community.network.types.LocalNetworkFeature;
 import dev.pgm.community.network.types.RedisNetworkFeature;
 import dev.pgm.community.nick.feature.NickFeature;
 import dev.pgm.community.nick.feature.types.SQLNickFeature;
@@ -30,6 +35,7 @@ import dev.pgm.community.teleports.TeleportFeatureBase;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.users.feature.types.SQLUsersFeature;
 import fr.minuskube.inv.InventoryManager;
+import java.util.List;
 import java.util.logging.Logger;
 import org.bukkit.configuration.Configuration;
 
@@ -57,22 +63,39 @@ public class FeatureManager {
   private final MapPartyFeature party;
   private final PollFeature polls;
 
+  private final DatabaseConnection database;
+  private final LoginPrefetcher prefetcher;
+
   public FeatureManager(
       Configuration config,
       Logger logger,
       DatabaseConnection database,
       InventoryManager inventory) {
+    this.database = database;
+
+    // Registered first, so player data is loaded before any feature's login handler runs
+    this.prefetcher =
+        new LoginPrefetcher(
+            logger,
+            this::getPrefetchedFeatures,
+            database.getConfig().getPrefetchTimeout().toMillis());
+    Community.get().registerListener(prefetcher);
+
     // Networking
-    this.network = new RedisNetworkFeature(config, logger);
+    this.network =
+        NetworkConfig.isLocal(config)
+            ? new LocalNetworkFeature(config, logger)
+            : new RedisNetworkFeature(config, logger);
+    network.registerSubscriber(new CacheInvalidationSubscriber(network.getNetworkId(), logger));
 
     // DB Features
     this.users = new SQLUsersFeature(config, logger);
-    this.sessions = new SQLSessionFeature(users, logger);
+    this.sessions = new SQLSessionFeature(users, network, logger);
     this.reports = new SQLAssistanceFeature(config, logger, users, network, inventory);
     this.moderation = new SQLModerationFeature(config, logger, users, network);
     this.friends = new SQLFriendshipFeature(config, logger, users);
     this.nick = new SQLNickFeature(config, logger, users);
-    this.requests = new SQLRequestFeature(config, logger, users);
+    this.requests = new SQLRequestFeature(config, logger, users, network);
 
     // TODO: 1. Add support for non-persist database (e.g NoDBUsersFeature)
     // TODO: 2. Support non-sql databases?
@@ -82,7 +105,7 @@ public class FeatureManager {
     // Non-DB Features
     this.teleports = new TeleportFeatureBase(config, logger);
     this.infoCommands = new InfoCommandsFeature(config, logger);
-    this.chatManagement = new ChatManagementFeature(config, logger);
+    this.chatManagement = new ChatManagementFeature(config, logger, network);
     this.motd = new MotdFeature(config, logger);
     this.freeze = new FreezeFeature(config, logger);
     this.mutation = new MutationFeature(config, logger, inventory);
@@ -97,6 +120,10 @@ public class FeatureManager {
     return reports;
   }
 
+  public NetworkFeature getNetwork() {
+    return network;
+  }
+
   public ModerationFeature getModeration() {
     return moderation;
   }
@@ -165,6 +192,15 @@ public class FeatureManager {
     return polls;
   }
 
+  public LoginPrefetcher getLoginPrefetcher() {
+    return prefetcher;
+  }
+
+  /** @return the features which load per-player data on login */
+  private List<Feature> getPrefetchedFeatures() {
+    return ImmutableList.of(network, users, sessions, reports, moderation, friends, nick, requests);
+  }
+
   public void reloadConfig(Configuration config) {
     // Reload all config values here
     getReports().getConfig().reload(config);
@@ -207,5 +243,8 @@ public class FeatureManager {
     if (getMobs().isEnabled()) getMobs().disable();
     if (getParty().isEnabled()) getParty().disable();
     if (getPolls().isEnabled()) getPolls().disable();
+
+    // Flush any writes queued while features were shutting down
+    database.close();
   }
 }
@@ -0,0 +1,91 @@
+package dev.pgm.community.feature;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+/**
+ * Loads the data of a player who is logging in for every feature at once.
+ *
+ * <p>Each feature's queries are issued together before any login handler runs, so handlers which
+ * wait on their data find it already cached (or loading). Login time is then the slowest query
+ * rather than the sum of all of them.
+ *
+ * <p>Must be registered before the features, so it runs first among the lowest priority handlers.
+ */
+public class LoginPrefetcher implements Listener {
+
+  private final Logger logger;
+  private final Supplier<List<Feature>> features;
+  private final long timeoutMillis;
+
+  private final AtomicLong prefetches = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  public LoginPrefetcher(Logger logger, Supplier<List<Feature>> features, long timeoutMillis) {
+    this.logger = logger;
+    this.features = features;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  @EventHandler(priority = EventPriority.LOWEST)
+  public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+    if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+    long start = System.nanoTime();
+    CompletableFuture<Void> all = prefetch(event.getUniqueId());
+    try {
+      all.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      timeouts.incrementAndGet();
+      logger.warning(
+          String.format(
+              "Prefetching data for %s (%s) took longer than %dms",
+              event.getName(), event.getUniqueId(), timeoutMillis));
+    } catch (ExecutionException e) {
+      // Handlers will load (and report) the data again on their own
+      logger.warning(
+          String.format(
+              "Unable to prefetch data for %s (%s): %s",
+              event.getName(), event.getUniqueId(), e.getCause()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    totalNanos.addAndGet(System.nanoTime() - start);
+    prefetches.incrementAndGet();
+  }
+
+  private CompletableFuture<Void> prefetch(UUID playerId) {
+    CompletableFuture<?>[] loads =
+        features.get().stream()
+            .filter(Feature::isEnabled)
+            .map(feature -> feature.prefetch(playerId))
+            .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(loads);
+  }
+
+  public long getPrefetchCount() {
+    return prefetches.get();
+  }
+
+  public long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  public double getAverageMillis() {
+    long count = prefetches.get();
+    return count == 0 ? 0 : totalNanos.get() / 1_000_000D / count;
+  }
+}
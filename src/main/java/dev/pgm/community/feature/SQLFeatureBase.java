@@ -1,8 +1,18 @@
 package dev.pgm.community.feature;
 
-import co.aikar.idb.DB;
+import co.aikar.idb.DbRow;
+import dev.pgm.community.Community;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
 import dev.pgm.community.database.Query;
+import dev.pgm.community.database.SharedCodec;
+import dev.pgm.community.database.UUIDCodec;
+import dev.pgm.community.database.UUIDStorage;
+import dev.pgm.community.network.updates.types.CacheInvalidationUpdate;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /** Base implementation of {@link SQLFeature} * */
 public abstract class SQLFeatureBase<T, R> implements SQLFeature<T, R> {
@@ -18,10 +28,96 @@ public abstract class SQLFeatureBase<T, R> implements SQLFeature<T, R> {
 
   @Override
   public void createTable() {
-    DB.executeUpdateAsync(Query.createTable(tableName, fields));
+    AsyncDB.executeUpdate(Query.createTable(tableName, fields));
   }
 
   public CompletableFuture<Integer> count() {
-    return DB.getFirstColumnAsync(Query.countTable(tableName));
+    return AsyncDB.getFirstColumn(Query.countTable(tableName));
+  }
+
+  /**
+   * Queues an update through the {@link dev.pgm.community.database.WriteBehindQueue}
+   *
+   * @param query The SQL statement
+   * @param params Statement parameters
+   * @return A future completed with the update count
+   */
+  protected CompletableFuture<Integer> queueUpdate(String query, Object... params) {
+    return Community.get().getDatabase().getWriteQueue().executeUpdate(query, params);
+  }
+
+  /**
+   * Queues an update which replaces any pending update with the same query and key
+   *
+   * @param key The UUID of the row being written
+   * @param query The SQL statement
+   * @param params Statement parameters
+   * @return A future completed with the update count
+   */
+  protected CompletableFuture<Integer> queueUpdate(UUID key, String query, Object... params) {
+    return Community.get().getDatabase().getWriteQueue().executeUpdate(key, query, params);
+  }
+
+  /** Creates a cache for rows of this table, see {@link AsyncLoadingCache} */
+  protected <K, V> AsyncLoadingCache<K, V> createCache(
+      String name, Function<K, CompletableFuture<V>> loader) {
+    return Community.get().getDatabase().createCache(name, loader);
+  }
+
+  /**
+   * Creates a cache for rows of this table which is shared with other servers, see {@link
+   * dev.pgm.community.database.SharedCache}
+   */
+  protected <K, V> AsyncLoadingCache<K, V> createCache(
+      String name, SharedCodec<K, V> codec, Function<K, CompletableFuture<V>> loader) {
+    return Community.get().getDatabase().createCache(name, loader, false, codec);
+  }
+
+  /**
+   * Creates a cache for rows of this table which also remembers keys without a row for a short
+   * time. Use {@link #announceCreated(AsyncLoadingCache, Object)} when a row is inserted.
+   */
+  protected <K, V> AsyncLoadingCache<K, V> createMissingAwareCache(
+      String name, Function<K, CompletableFuture<V>> loader) {
+    return Community.get().getDatabase().createCache(name, loader, true);
+  }
+
+  /**
+   * Creates a cache like {@link #createMissingAwareCache(String, Function)} which is shared with
+   * other servers, see {@link dev.pgm.community.database.SharedCache}
+   */
+  protected <K, V> AsyncLoadingCache<K, V> createMissingAwareCache(
+      String name, SharedCodec<K, V> codec, Function<K, CompletableFuture<V>> loader) {
+    return Community.get().getDatabase().createCache(name, loader, true, codec);
+  }
+
+  /**
+   * Drops a cached miss for a key which now has a row, here and on other servers
+   *
+   * @param cache The cache which may hold the miss
+   * @param key The key of the new row
+   */
+  protected void announceCreated(AsyncLoadingCache<?, ?> cache, Object key) {
+    cache.invalidateMissing(key);
+    Community.get()
+        .getFeatures()
+        .getNetwork()
+        .sendUpdate(new CacheInvalidationUpdate(cache.getName(), String.valueOf(key)));
+  }
+
+  /** The codec used for UUID columns of this table, see {@link UUIDStorage} */
+  protected UUIDCodec getCodec() {
+    return UUIDStorage.getCodec(tableName);
+  }
+
+  /** Converts a UUID to the value bound to a query parameter for this table */
+  protected Object bindId(UUID id) {
+    return getCodec().encode(id);
+  }
+
+  /** Reads a UUID column stored in either string or binary form */
+  @Nullable
+  protected UUID readId(DbRow row, String column) {
+    return UUIDCodec.decode(row.get(column));
   }
 }
@@ -1,5 +1,6 @@
 package dev.pgm.community.friends.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
@@ -9,6 +10,8 @@ import static tc.oc.pgm.util.text.TemporalComponent.relativePastApproximate;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityCommand;
@@ -18,7 +21,7 @@ import dev.pgm.community.friends.Friendship;
 import dev.pgm.community.friends.feature.FriendshipFeature;
 import dev.pgm.community.nick.feature.NickFeature;
 import dev.pgm.community.sessions.Session;
-import dev.pgm.community.users.UserProfile;
+import dev.pgm.community.sessions.feature.SessionFeature;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.BroadcastUtils;
 import dev.pgm.community.utils.CommandAudience;
@@ -26,14 +29,18 @@ import dev.pgm.community.utils.PaginatedComponentResults;
 import dev.pgm.community.utils.VisibilityUtils;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.event.HoverEvent;
@@ -74,7 +81,8 @@ public class FriendshipCommand extends CommunityCommand {
         .thenAcceptAsync(
             frs -> {
               sendFriendList(sender, frs, page);
-            });
+            },
+            async());
   }
 
   @CommandMethod("requests [page]")
@@ -89,7 +97,8 @@ public class FriendshipCommand extends CommunityCommand {
         .thenAcceptAsync(
             requests -> {
               sendRequestsList(sender, requests, page);
-            });
+            },
+            async());
   }
 
   @CommandMethod("add <player>")
@@ -143,18 +152,25 @@ public class FriendshipCommand extends CommunityCommand {
                                                 .color(NamedTextColor.GREEN));
                                         break;
                                       case EXISTING:
-                                        if (friends
+                                        friends
                                             .areFriends(
                                                 sender.getPlayer().getUniqueId(), storedId.get())
-                                            .join()) {
-                                          sender.sendWarning(
-                                              text("You are already friends with ").append(name));
-                                        } else {
-                                          sender.sendWarning(
-                                              text("You have already sent a friend request to ")
-                                                  .append(name)
-                                                  .color(NamedTextColor.GRAY));
-                                        }
+                                            .thenAcceptAsync(
+                                                areFriends -> {
+                                                  if (areFriends) {
+                                                    sender.sendWarning(
+                                                        text("You are already friends with ")
+                                                            .append(name));
+                                                  } else {
+                                                    sender.sendWarning(
+                                                        text(
+                                                                "You have already sent a friend"
+                                                                    + " request to ")
+                                                            .append(name)
+                                                            .color(NamedTextColor.GRAY));
+                                                  }
+                                                },
+                                                async());
                                         break;
                                       case PENDING:
                                         sender.sendMessage(
@@ -169,12 +185,15 @@ public class FriendshipCommand extends CommunityCommand {
                                                 .color(NamedTextColor.GRAY));
                                         break;
                                     }
-                                  });
-                        });
+                                  },
+                                  async());
+                        },
+                        async());
               } else {
                 sender.sendWarning(formatNotFoundComponent(target.getIdentifier()));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("remove <player>")
@@ -213,12 +232,15 @@ public class FriendshipCommand extends CommunityCommand {
                                       sender.sendWarning(
                                           text("You are not friends with ").append(name));
                                     }
-                                  });
-                        });
+                                  },
+                                  async());
+                        },
+                        async());
               } else {
                 sender.sendWarning(formatNotFoundComponent(target.getIdentifier()));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("accept <username>")
@@ -227,11 +249,10 @@ public class FriendshipCommand extends CommunityCommand {
   public void acceptRequest(
       CommandAudience sender, Player player, @Argument("username") String target) {
     getTarget(target, users)
-        .thenAcceptAsync(
-            storedId -> {
+        .thenAcceptBothAsync(
+            friends.getIncomingRequests(sender.getPlayer().getUniqueId()),
+            (storedId, requests) -> {
               if (storedId.isPresent()) {
-                List<Friendship> requests =
-                    friends.getIncomingRequests(sender.getPlayer().getUniqueId()).join();
                 if (requests.isEmpty()) {
                   sender.sendWarning(text("You have no pending friend requests"));
                   return;
@@ -274,12 +295,14 @@ public class FriendshipCommand extends CommunityCommand {
                                     .append(name)
                                     .color(NamedTextColor.GRAY));
                           }
-                        });
+                        },
+                        async());
 
               } else {
                 sender.sendWarning(formatNotFoundComponent(target));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("reject <player>")
@@ -287,11 +310,10 @@ public class FriendshipCommand extends CommunityCommand {
   public void rejectRequest(
       CommandAudience sender, Player player, @Argument("player") TargetPlayer target) {
     getTarget(target.getIdentifier(), users)
-        .thenAcceptAsync(
-            storedId -> {
+        .thenAcceptBothAsync(
+            friends.getIncomingRequests(sender.getPlayer().getUniqueId()),
+            (storedId, requests) -> {
               if (storedId.isPresent()) {
-                List<Friendship> requests =
-                    friends.getIncomingRequests(sender.getPlayer().getUniqueId()).join();
                 if (requests.isEmpty()) {
                   sender.sendWarning(text("You have no pending friend requests"));
                   return;
@@ -319,14 +341,24 @@ public class FriendshipCommand extends CommunityCommand {
                                     .append(name)
                                     .color(NamedTextColor.GRAY));
                           }
-                        });
+                        },
+                        async());
               } else {
                 sender.sendWarning(formatNotFoundComponent(target.getIdentifier()));
               }
-            });
+            },
+            async());
   }
 
   private void sendRequestsList(CommandAudience audience, List<Friendship> requests, int page) {
+    UUID viewerId = audience.getPlayer().getUniqueId();
+    renderNames(
+            requests.stream().map(fr -> fr.getOtherPlayer(viewerId)).collect(Collectors.toList()))
+        .thenAcceptAsync(names -> sendRequestsList(audience, requests, names, page), async());
+  }
+
+  private void sendRequestsList(
+      CommandAudience audience, List<Friendship> requests, Map<UUID, Component> names, int page) {
     Collections.sort(requests); // Sorted by most recent request
 
     Component headerResultCount = text(Integer.toString(requests.size()), NamedTextColor.RED);
@@ -361,11 +393,7 @@ public class FriendshipCommand extends CommunityCommand {
       @Override
       public Component format(Friendship data, int index) {
         // [Name] > [ time since requested ] [buttons to accept/reject]
-        Component name =
-            users
-                .renderUsername(
-                    data.getOtherPlayer(audience.getPlayer().getUniqueId()), NameStyle.FANCY)
-                .join();
+        Component name = names.get(data.getOtherPlayer(audience.getPlayer().getUniqueId()));
 
         return text()
             .append(name)
@@ -390,6 +418,39 @@ public class FriendshipCommand extends CommunityCommand {
   }
 
   private void sendFriendList(CommandAudience audience, List<Friendship> friends, int page) {
+    // Look up each friend's session once, rather than on every comparison. Online friends are
+    // answered from the presence directory, the offline ones are all queried at once
+    boolean isStaff = audience.getSender().hasPermission(CommunityPermissions.STAFF);
+    SessionFeature sessionFeature = Community.get().getFeatures().getSessions();
+    Map<UUID, CompletableFuture<Session>> lookups = Maps.newHashMap();
+    for (Friendship friendship : friends) {
+      UUID friendId = friendship.getOtherPlayer(audience.getPlayer().getUniqueId());
+      lookups.put(
+          friendId,
+          sessionFeature.isEnabled()
+              ? sessionFeature.getLatestSession(friendId, !isStaff)
+              : CompletableFuture.completedFuture(null));
+    }
+
+    CompletableFuture<Map<UUID, Component>> names = renderNames(lookups.keySet());
+    CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture[0]))
+        .thenAcceptBothAsync(
+            names,
+            (v, rendered) -> {
+              Map<UUID, Session> sessions = Maps.newHashMap();
+              lookups.forEach((friendId, lookup) -> sessions.put(friendId, lookup.join()));
+              sendFriendList(audience, friends, sessions, rendered, page);
+            },
+            async());
+  }
+
+  private void sendFriendList(
+      CommandAudience audience,
+      List<Friendship> friends,
+      Map<UUID, Session> sessions,
+      Map<UUID, Component> names,
+      int page) {
+    boolean isStaff = audience.getSender().hasPermission(CommunityPermissions.STAFF);
     Collections.sort(
         friends,
         new Comparator<Friendship>() {
@@ -398,18 +459,11 @@ public class FriendshipCommand extends CommunityCommand {
             UUID f1 = o1.getOtherPlayer(audience.getPlayer().getUniqueId());
             UUID f2 = o2.getOtherPlayer(audience.getPlayer().getUniqueId());
 
-            UserProfile friend1 = users.getStoredProfile(f1).join();
-            UserProfile friend2 = users.getStoredProfile(f2).join();
+            Session session1 = sessions.get(f1);
+            Session session2 = sessions.get(f2);
 
-            boolean isStaff = audience.getSender().hasPermission(CommunityPermissions.STAFF);
-            Session session1 = friend1.getLatestSession(!isStaff).join();
-            Session session2 = friend2.getLatestSession(!isStaff).join();
-
-            Player online1 = Bukkit.getPlayer(f1);
-            Player online2 = Bukkit.getPlayer(f2);
-
-            boolean canSee1 = canSee(online1, audience);
-            boolean canSee2 = canSee(online2, audience);
+            boolean canSee1 = canSee(f1, session1, audience);
+            boolean canSee2 = canSee(f2, session2, audience);
 
             // Sort online friends before offline friends
             if (canSee1 && !canSee2) {
@@ -418,6 +472,10 @@ public class FriendshipCommand extends CommunityCommand {
               return 1;
             }
 
+            // Friends who have never joined go last
+            if (session1 == null || session2 == null) {
+              return Boolean.compare(session1 == null, session2 == null);
+            }
             return -session1.getLatestUpdateDate().compareTo(session2.getLatestUpdateDate());
           }
         });
@@ -450,11 +508,7 @@ public class FriendshipCommand extends CommunityCommand {
 
       @Override
       public Component format(Friendship data, int index) {
-        Component name =
-            users
-                .renderUsername(
-                    data.getOtherPlayer(audience.getPlayer().getUniqueId()), NameStyle.FANCY)
-                .join();
+        Component name = names.get(data.getOtherPlayer(audience.getPlayer().getUniqueId()));
 
         TextComponent.Builder builder =
             text()
@@ -463,8 +517,8 @@ public class FriendshipCommand extends CommunityCommand {
                 .append(BroadcastUtils.RIGHT_DIV.color(NamedTextColor.GOLD))
                 .append(
                     renderOnlineStatus(
-                            data.getOtherPlayer(audience.getPlayer().getUniqueId()), audience)
-                        .join());
+                        sessions.get(data.getOtherPlayer(audience.getPlayer().getUniqueId())),
+                        isStaff));
 
         if (data.getLastUpdated() != null) {
           Component hover =
@@ -486,33 +540,42 @@ public class FriendshipCommand extends CommunityCommand {
     }.display(audience.getAudience(), friends, page);
   }
 
-  private CompletableFuture<Component> renderOnlineStatus(UUID playerId, CommandAudience viewer) {
-    boolean staff = viewer.getSender().hasPermission(CommunityPermissions.STAFF);
-    CompletableFuture<Component> future = new CompletableFuture<Component>();
-    users.findUserWithSession(
-        playerId,
-        !staff,
-        (profile, session) -> {
-          boolean online = !session.hasEnded();
-          boolean vanished = session.isDisguised();
-          boolean visible = online && (!vanished || staff);
-
-          Component status =
-              (visible
-                      ? duration(Duration.between(session.getLatestUpdateDate(), Instant.now()))
-                      : relativePastApproximate(session.getLatestUpdateDate()))
-                  .color(visible ? NamedTextColor.GREEN : NamedTextColor.DARK_GREEN);
-          future.complete(
-              text(visible ? " Online for " : " Last seen ")
-                  .append(status)
-                  .append(text(session.isOnThisServer() ? "" : " on "))
-                  .append(
-                      text(session.isOnThisServer() ? "" : session.getServerName())
-                          .color(online ? NamedTextColor.GREEN : NamedTextColor.DARK_GREEN))
-                  .color(NamedTextColor.GRAY));
-        });
+  // Renders every name up front, so rows can be formatted without waiting on each lookup
+  private CompletableFuture<Map<UUID, Component>> renderNames(Collection<UUID> playerIds) {
+    Map<UUID, CompletableFuture<Component>> names = Maps.newHashMap();
+    for (UUID playerId : playerIds) {
+      names.put(playerId, users.renderUsername(playerId, NameStyle.FANCY));
+    }
+    return CompletableFuture.allOf(names.values().toArray(new CompletableFuture[0]))
+        .thenApply(v -> ImmutableMap.copyOf(Maps.transformValues(names, CompletableFuture::join)));
+  }
+
+  private Component renderOnlineStatus(@Nullable Session session, boolean staff) {
+    if (session == null) return Component.empty();
+
+    boolean online = !session.hasEnded();
+    boolean vanished = session.isDisguised();
+    boolean visible = online && (!vanished || staff);
+
+    Component status =
+        (visible
+                ? duration(Duration.between(session.getLatestUpdateDate(), Instant.now()))
+                : relativePastApproximate(session.getLatestUpdateDate()))
+            .color(visible ? NamedTextColor.GREEN : NamedTextColor.DARK_GREEN);
+    return text(visible ? " Online for " : " Last seen ")
+        .append(status)
+        .append(text(session.isOnThisServer() ? "" : " on "))
+        .append(
+            text(session.isOnThisServer() ? "" : session.getServerName())
+                .color(online ? NamedTextColor.GREEN : NamedTextColor.DARK_GREEN))
+        .color(NamedTextColor.GRAY);
+  }
 
-    return future;
+  // Friends on other servers are online if their session is, disguised ones are already hidden
+  private boolean canSee(UUID playerId, @Nullable Session session, CommandAudience viewer) {
+    Player player = Bukkit.getPlayer(playerId);
+    if (player != null) return canSee(player, viewer);
+    return session != null && !session.hasEnded();
   }
 
   private boolean canSee(Player player, CommandAudience viewer) {
@@ -1,5 +1,6 @@
 package dev.pgm.community.friends.feature.types;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
 
@@ -46,7 +47,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
             q ->
                 q.stream()
                     .filter(fr -> fr.getStatus() == FriendshipStatus.ACCEPTED)
-                    .collect(Collectors.toList()));
+                    .collect(Collectors.toList()),
+            async());
   }
 
   @Override
@@ -60,7 +62,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
                         fr ->
                             fr.getRequestedId().equals(playerId)
                                 && fr.getStatus() == FriendshipStatus.PENDING)
-                    .collect(Collectors.toList()));
+                    .collect(Collectors.toList()),
+            async());
   }
 
   @Override
@@ -110,7 +113,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
               }
 
               return FriendRequestStatus.PENDING;
-            });
+            },
+            async());
   }
 
   @Override
@@ -123,7 +127,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
                     .anyMatch(
                         fr ->
                             fr.areInvolved(sender, target)
-                                && fr.getStatus() == FriendshipStatus.ACCEPTED));
+                                && fr.getStatus() == FriendshipStatus.ACCEPTED),
+            async());
   }
 
   @Override
@@ -137,7 +142,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
                         fr ->
                             fr.areInvolved(sender, target)
                                 && fr.getStatus() == FriendshipStatus.PENDING)
-                    .findAny());
+                    .findAny(),
+            async());
   }
 
   @Override
@@ -153,7 +159,8 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
               if (!requests.isEmpty()) {
                 sendFriendRequestLoginMessage(event.getPlayer(), requests.size());
               }
-            });
+            },
+            async());
   }
 
   @Override
@@ -189,7 +196,13 @@ public class SQLFriendshipFeature extends FriendshipFeatureBase {
                 integration.setFriends(playerId, friendIds);
                 integration.callUpdateEvents(playerId, friendIds);
               }
-            });
+            },
+            async());
+  }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    return service.queryList(playerId.toString());
   }
 
   public CompletableFuture<Integer> count() {
@@ -1,11 +1,11 @@
 package dev.pgm.community.friends.services;
 
-import co.aikar.idb.DB;
+import static dev.pgm.community.CommunityExecutors.async;
+
 import co.aikar.idb.DbRow;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.friends.Friendship;
 import dev.pgm.community.friends.Friendship.FriendshipStatus;
@@ -19,39 +19,22 @@ import java.util.concurrent.CompletableFuture;
 public class SQLFriendshipService extends SQLFeatureBase<Friendship, String>
     implements FriendshipQuery {
 
-  private LoadingCache<UUID, PlayerFriendships> friendshipCache;
+  private final AsyncLoadingCache<UUID, Set<Friendship>> friendshipCache;
 
   public SQLFriendshipService() {
     super(TABLE_NAME, TABLE_FIELDS);
-    this.friendshipCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, PlayerFriendships>() {
-                  @Override
-                  public PlayerFriendships load(UUID key) throws Exception {
-                    return new PlayerFriendships(key);
-                  }
-                });
+    this.friendshipCache = createCache("friendships", this::loadFriendships);
   }
 
   @Override
   public void save(Friendship friendship) {
-    PlayerFriendships cachedRequester = friendshipCache.getIfPresent(friendship.getRequesterId());
-    PlayerFriendships cachedRequested = friendshipCache.getIfPresent(friendship.getRequestedId());
-
-    if (cachedRequester != null) {
-      cachedRequester.getFriendships().add(friendship);
-    }
+    updateCached(friendship, true);
 
-    if (cachedRequested != null) {
-      cachedRequested.getFriendships().add(friendship);
-    }
-
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_FRIENDSHIP_QUERY,
-        friendship.getFriendshipId().toString(),
-        friendship.getRequesterId().toString(),
-        friendship.getRequestedId().toString(),
+        bindId(friendship.getFriendshipId()),
+        bindId(friendship.getRequesterId()),
+        bindId(friendship.getRequestedId()),
         friendship.getStatus().toString().toUpperCase(),
         friendship.getRequestDate().toEpochMilli(),
         friendship.getLastUpdated().toEpochMilli());
@@ -61,71 +44,67 @@ public class SQLFriendshipService extends SQLFeatureBase<Friendship, String>
     friendship.setStatus(accept ? FriendshipStatus.ACCEPTED : FriendshipStatus.REJECTED);
     friendship.setLastUpdated(Instant.now());
 
-    PlayerFriendships cachedRequester = friendshipCache.getIfPresent(friendship.getRequesterId());
-    PlayerFriendships cachedRequested = friendshipCache.getIfPresent(friendship.getRequestedId());
-
-    if (cachedRequester != null) {
-      if (accept) {
-        cachedRequester.getFriendships().add(friendship);
-      } else {
-        cachedRequester.getFriendships().remove(friendship);
-      }
-    }
+    updateCached(friendship, accept);
 
-    if (cachedRequested != null) {
-      if (accept) {
-        cachedRequested.getFriendships().add(friendship);
-      } else {
-        cachedRequested.getFriendships().remove(friendship);
-      }
-    }
-
-    DB.executeUpdateAsync(
+    queueUpdate(
+        friendship.getFriendshipId(),
         UPDATE_FRIENDSHIP_QUERY,
         friendship.getStatus().toString().toUpperCase(),
         friendship.getLastUpdated().toEpochMilli(),
-        friendship.getFriendshipId().toString());
+        bindId(friendship.getFriendshipId()));
   }
 
   @Override // TODO: Query list where TARGET == requester or requested, add methods
   // for Incoming & existing
   public CompletableFuture<List<Friendship>> queryList(String target) {
-    UUID playerId = UUID.fromString(target);
-    PlayerFriendships playerFriendships = friendshipCache.getUnchecked(playerId);
-
-    if (playerFriendships.isLoaded()) {
-      return CompletableFuture.completedFuture(new ArrayList<>(playerFriendships.getFriendships()));
-    } else {
-      return DB.getResultsAsync(SELECT_FRIENDSHIPS_QUERY, playerId.toString(), playerId.toString())
-          .thenApplyAsync(
-              results -> {
-                if (results != null) {
-                  for (DbRow row : results) {
-                    String id = row.getString("id");
-                    String requester = row.getString("requester");
-                    String requested = row.getString("requested");
-                    String status = row.getString("status");
-                    long requestDate = Long.parseLong(row.getString("requestDate"));
-                    long updateDate = Long.parseLong(row.getString("updateDate"));
-
-                    Instant requestInstant = Instant.ofEpochMilli(requestDate);
-                    Instant updateInstant = Instant.ofEpochMilli(updateDate);
-
-                    playerFriendships
-                        .getFriendships()
-                        .add(
-                            new Friendship(
-                                UUID.fromString(id),
-                                UUID.fromString(requester),
-                                UUID.fromString(requested),
-                                FriendshipStatus.valueOf(status.toUpperCase()),
-                                requestInstant,
-                                updateInstant));
-                  }
+    return friendshipCache
+        .get(UUID.fromString(target))
+        .thenApplyAsync(ArrayList::new, async());
+  }
+
+  private CompletableFuture<Set<Friendship>> loadFriendships(UUID playerId) {
+    return AsyncDB.getResults(SELECT_FRIENDSHIPS_QUERY, bindId(playerId), bindId(playerId))
+        .thenApplyAsync(
+            results -> {
+              ImmutableSet.Builder<Friendship> friendships = ImmutableSet.builder();
+              if (results != null) {
+                for (DbRow row : results) {
+                  UUID id = readId(row, "id");
+                  UUID requester = readId(row, "requester");
+                  UUID requested = readId(row, "requested");
+                  String status = row.getString("status");
+                  long requestDate = Long.parseLong(row.getString("requestDate"));
+                  long updateDate = Long.parseLong(row.getString("updateDate"));
+
+                  Instant requestInstant = Instant.ofEpochMilli(requestDate);
+                  Instant updateInstant = Instant.ofEpochMilli(updateDate);
+
+                  friendships.add(
+                      new Friendship(
+                          id,
+                          requester,
+                          requested,
+                          FriendshipStatus.valueOf(status.toUpperCase()),
+                          requestInstant,
+                          updateInstant));
                 }
-                playerFriendships.setLoaded(true);
-                return new ArrayList<>(playerFriendships.getFriendships());
-              });
+              }
+              return friendships.build();
+            },
+            async());
+  }
+
+  // Adds or removes a friendship from both players' cached sets
+  private void updateCached(Friendship friendship, boolean add) {
+    for (UUID playerId : new UUID[] {friendship.getRequesterId(), friendship.getRequestedId()}) {
+      friendshipCache.update(
+          playerId,
+          friendships -> {
+            ImmutableSet.Builder<Friendship> updated = ImmutableSet.builder();
+            friendships.stream().filter(f -> !f.equals(friendship)).forEach(updated::add);
+            if (add) updated.add(friendship);
+            return updated.build();
+          });
     }
   }
 
@@ -133,32 +112,4 @@ public class SQLFriendshipService extends SQLFeatureBase<Friendship, String>
   public CompletableFuture<Friendship> query(String target) {
     return null; // Use queryList
   }
-
-  private class PlayerFriendships {
-    private UUID playerId;
-    private Set<Friendship> friendships;
-    private boolean loaded;
-
-    public PlayerFriendships(UUID playerId) {
-      this.playerId = playerId;
-      this.friendships = Sets.newHashSet();
-      this.loaded = false;
-    }
-
-    public UUID getPlayerId() {
-      return playerId;
-    }
-
-    public Set<Friendship> getFriendships() {
-      return friendships;
-    }
-
-    public boolean isLoaded() {
-      return loaded;
-    }
-
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
-  }
 }
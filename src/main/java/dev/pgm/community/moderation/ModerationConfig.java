@@ -34,6 +34,8 @@ public class ModerationConfig extends FeatureConfigImpl {
   private static final String MATCH_BAN_KEY = KICK_KEY + ".match-ban";
 
   private static final String EVASION_MINS = BAN_KEY + ".evasion-expires";
+  private static final String EVASION_IPV4_PREFIX = BAN_KEY + ".evasion-ipv4-prefix";
+  private static final String EVASION_IPV6_PREFIX = BAN_KEY + ".evasion-ipv6-prefix";
 
   private static final String STAFF_SIGNOFF_KEY = KEY + ".staff-signoff";
 
@@ -79,6 +81,8 @@ public class ModerationConfig extends FeatureConfigImpl {
 
   // 2. Bans
   private int evasionMins;
+  private int evasionIpv4Prefix;
+  private int evasionIpv6Prefix;
 
   // Tools
   private boolean modMenuEnabled;
@@ -211,6 +215,14 @@ public class ModerationConfig extends FeatureConfigImpl {
     return evasionMins;
   }
 
+  public int getEvasionIpv4Prefix() {
+    return evasionIpv4Prefix;
+  }
+
+  public int getEvasionIpv6Prefix() {
+    return evasionIpv6Prefix;
+  }
+
   public boolean isStaffSignoff() {
     return includeStaffSignoff;
   }
@@ -291,6 +303,8 @@ public class ModerationConfig extends FeatureConfigImpl {
 
     // Bans
     this.evasionMins = config.getInt(EVASION_MINS);
+    this.evasionIpv4Prefix = config.getInt(EVASION_IPV4_PREFIX, 24);
+    this.evasionIpv6Prefix = config.getInt(EVASION_IPV6_PREFIX, 64);
 
     // Tools
     this.modMenuEnabled = config.getBoolean(getEnabledKey(MOD_MENU_KEY));
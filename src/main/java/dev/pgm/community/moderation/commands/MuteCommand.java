@@ -1,5 +1,6 @@
 package dev.pgm.community.moderation.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
 
@@ -121,7 +122,8 @@ public class MuteCommand extends CommunityCommand {
                                                                 NamedTextColor.GREEN));
                                                   }
                                                 }
-                                              });
+                                              },
+                                              async());
                                     } else {
                                       audience.sendWarning(
                                           text()
@@ -129,8 +131,10 @@ public class MuteCommand extends CommunityCommand {
                                               .append(text(" is not muted", NamedTextColor.GRAY))
                                               .build());
                                     }
-                                  });
-                        });
+                                  },
+                                  async());
+                        },
+                        async());
               }
             });
   }
@@ -1,5 +1,6 @@
 package dev.pgm.community.moderation.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.Component.newline;
 import static net.kyori.adventure.text.Component.space;
@@ -69,7 +70,8 @@ public class PunishmentCommand extends CommunityCommand {
         .thenAcceptAsync(
             punishments -> {
               sendPunishmentHistory(audience, null, punishments, page);
-            });
+            },
+            async());
   }
 
   @CommandMethod("repeatpunishment|rp <target>")
@@ -105,7 +107,8 @@ public class PunishmentCommand extends CommunityCommand {
                             Component lastPunishMsg =
                                 text("Last punishment: ", NamedTextColor.GRAY).append(lpm);
                             audience.sendMessage(lastPunishMsg);
-                          });
+                          },
+                          async());
                 }
               } else {
                 audience.sendMessage(
@@ -144,13 +147,15 @@ public class PunishmentCommand extends CommunityCommand {
                                 CommunityPermissions.UNBAN);
                           }
                           // TODO: translate
-                        });
+                        },
+                        async());
               } else {
                 audience.sendWarning(
                     text(target.getIdentifier(), NamedTextColor.AQUA)
                         .append(text(" has no active bans", NamedTextColor.GRAY)));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("record|infractions|mypunishments [page]")
@@ -174,7 +179,8 @@ public class PunishmentCommand extends CommunityCommand {
         .query(target.getIdentifier())
         .thenAcceptAsync(
             punishments ->
-                sendPunishmentHistory(audience, target.getIdentifier(), punishments, page));
+                sendPunishmentHistory(audience, target.getIdentifier(), punishments, page),
+            async());
   }
 
   public void sendPunishmentHistory(
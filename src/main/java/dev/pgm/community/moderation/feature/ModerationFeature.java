@@ -8,7 +8,9 @@ import dev.pgm.community.moderation.punishments.types.MutePunishment;
 import dev.pgm.community.moderation.tools.ModerationTools;
 import dev.pgm.community.utils.CommandAudience;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -93,6 +95,14 @@ public interface ModerationFeature extends Feature {
    */
   CompletableFuture<Optional<Punishment>> getActiveBan(String target);
 
+  /**
+   * Gets the active bans of a group of players, e.g a player's alts
+   *
+   * @param targets Player UUIDs
+   * @return The players who are banned, with their ban
+   */
+  CompletableFuture<Map<UUID, Punishment>> getActiveBans(Collection<UUID> targets);
+
   /**
    * Unmutes any active mutes for the provided target
    *
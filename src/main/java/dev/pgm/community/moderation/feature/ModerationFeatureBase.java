@@ -1,23 +1,31 @@
 package dev.pgm.community.moderation.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
+import static dev.pgm.community.CommunityExecutors.sync;
+import static dev.pgm.community.CommunityExecutors.timers;
 import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.Component.translatable;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityPermissions;
 import dev.pgm.community.events.PlayerPunishmentEvent;
 import dev.pgm.community.feature.FeatureBase;
 import dev.pgm.community.moderation.ModerationConfig;
+import dev.pgm.community.moderation.punishments.ActiveBans;
+import dev.pgm.community.moderation.punishments.BanEvasionIndex;
 import dev.pgm.community.moderation.punishments.NetworkPunishment;
 import dev.pgm.community.moderation.punishments.Punishment;
 import dev.pgm.community.moderation.punishments.PunishmentFormats;
 import dev.pgm.community.moderation.punishments.PunishmentType;
+import dev.pgm.community.moderation.punishments.RecentPunishments;
 import dev.pgm.community.moderation.punishments.types.MutePunishment;
 import dev.pgm.community.moderation.tools.ModerationTools;
 import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.network.subs.types.PunishmentSubscriber;
+import dev.pgm.community.network.subs.types.RefreshPunishmentSubscriber;
 import dev.pgm.community.network.updates.types.PunishmentUpdate;
 import dev.pgm.community.network.updates.types.RefreshPunishmentUpdate;
 import dev.pgm.community.users.feature.UsersFeature;
@@ -28,7 +36,7 @@ import dev.pgm.community.utils.Sounds;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -54,13 +62,19 @@ import tc.oc.pgm.util.player.PlayerComponent;
 
 public abstract class ModerationFeatureBase extends FeatureBase implements ModerationFeature {
 
+  // Punishments kept in memory for the punishment history and /repeatpunishment
+  protected static final int RECENT_PUNISHMENTS = 500;
+
   private final UsersFeature users;
   private final NetworkFeature network;
-  private final Set<Punishment> recents;
-  private final Cache<UUID, MutePunishment> muteCache;
-  private final Cache<UUID, Set<String>> banEvasionCache;
+  private final RecentPunishments recents;
+  private final ActiveBans activeBans;
+  private final Map<UUID, MutePunishment> muteCache;
+  private final BanEvasionIndex banEvasion;
+  // Nothing adds to this yet, so unlike mutes and pardons it has nothing to expire. Once banned
+  // players can stay on as observers, drop their entry through the timing wheel as the ban ends
   private final Cache<UUID, Punishment> observerBanCache;
-  private final Cache<UUID, Instant> pardonedPlayers;
+  private final Map<UUID, Instant> pardonedPlayers;
   private Cache<UUID, Punishment> matchBan;
 
   private PGMPunishmentIntegration integration;
@@ -75,14 +89,14 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
     super(config, logger, featureName);
     this.users = users;
     this.network = network;
-    this.recents = Sets.newHashSet();
-    this.muteCache = CacheBuilder.newBuilder().build();
-    this.banEvasionCache =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(config.getEvasionExpireMins(), TimeUnit.MINUTES)
-            .build();
+    this.recents = new RecentPunishments(RECENT_PUNISHMENTS);
+    this.activeBans = new ActiveBans(config.getService(), timers());
+    this.muteCache = Maps.newConcurrentMap();
+    this.banEvasion =
+        new BanEvasionIndex(
+            timers(), config.getEvasionIpv4Prefix(), config.getEvasionIpv6Prefix());
     this.observerBanCache = CacheBuilder.newBuilder().build();
-    this.pardonedPlayers = CacheBuilder.newBuilder().build();
+    this.pardonedPlayers = Maps.newConcurrentMap();
 
     if (config.getMatchBanDuration() != null) {
       this.matchBan =
@@ -107,6 +121,8 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
 
       // Register punishment subscriber
       network.registerSubscriber(new PunishmentSubscriber(this, network.getNetworkId(), logger));
+      network.registerSubscriber(
+          new RefreshPunishmentSubscriber(this, network.getNetworkId(), logger));
     }
   }
 
@@ -118,6 +134,11 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
     return users;
   }
 
+  /** @return the active bans of this service, used to check logins without the database */
+  public ActiveBans getActiveBans() {
+    return activeBans;
+  }
+
   public ModerationConfig getModerationConfig() {
     return (ModerationConfig) getConfig();
   }
@@ -156,10 +177,7 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
 
   @Override
   public Optional<Punishment> getLastPunishment(UUID issuer) {
-    return recents.stream()
-        .filter(p -> p.getIssuerId().isPresent() && p.getIssuerId().get().equals(issuer))
-        .sorted()
-        .findFirst();
+    return recents.getLatest(issuer);
   }
 
   @Override
@@ -178,13 +196,16 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
   @Override
   public void recieveUpdate(NetworkPunishment punishment) {
     recieveRefresh(punishment.getPunishment().getTargetId());
+    activeBans.add(punishment.getPunishment());
+    recents.add(punishment.getPunishment());
+    if (punishment.getPunishment().getType().isLoginPrevented()) {
+      trackBanEvasion(punishment.getPunishment());
+    }
     broadcastPunishment(punishment.getPunishment(), true, punishment.getServer(), null);
-    // Extra step due to gson limitation (maybe look into type tokens)
-    Punishment typedPunishment = Punishment.of(punishment.getPunishment());
     Community.get()
         .getServer()
         .getScheduler()
-        .scheduleSyncDelayedTask(Community.get(), () -> typedPunishment.punish(true));
+        .scheduleSyncDelayedTask(Community.get(), () -> punishment.getPunishment().punish(true));
   }
 
   @Override
@@ -237,13 +258,11 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
             punishment, network.getNetworkId())); // Send out network punishment update
 
     switch (punishment.getType()) {
-        // Cache known IPS of a recently banned player, so if they rejoin on an alt we can find them
       case BAN:
       case TEMP_BAN:
       case NAME_BAN:
-        users
-            .getKnownIPs(punishment.getTargetId())
-            .thenAcceptAsync(ips -> banEvasionCache.put(punishment.getTargetId(), ips));
+        activeBans.add(punishment);
+        trackBanEvasion(punishment);
         break;
       case MUTE: // Cache mute for easy lookup for sign/chat events
         addMute(punishment.getTargetId(), MutePunishment.class.cast(punishment));
@@ -283,7 +302,8 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
                       Sounds.BAN_EVASION,
                       CommunityPermissions.UNBAN);
                 }
-              });
+              },
+              async());
     }
   }
 
@@ -318,25 +338,72 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
     return matchBan;
   }
 
+  public RecentPunishments getRecents() {
+    return recents;
+  }
+
+  public BanEvasionIndex getBanEvasion() {
+    return banEvasion;
+  }
+
+  // Track known IPS of a recently banned player, so if they rejoin on an alt we can find them
+  private void trackBanEvasion(Punishment ban) {
+    Instant expires =
+        ban.getTimeIssued().plus(Duration.ofMinutes(getModerationConfig().getEvasionExpireMins()));
+    users
+        .getKnownIPs(ban.getTargetId())
+        .thenAcceptAsync(
+            ips -> {
+              if (ban.isActive()) banEvasion.add(ban.getTargetId(), ips, expires);
+            },
+            async());
+  }
+
   protected void removeCachedBan(UUID playerId) {
-    banEvasionCache.invalidate(playerId);
-    pardonedPlayers.put(playerId, Instant.now());
+    banEvasion.remove(playerId);
+
+    // Pardoned players are excused from ban evasion alerts for as long as evasion is tracked
+    Instant now = Instant.now();
+    pardonedPlayers.put(playerId, now);
+    timers()
+        .schedule(
+            "recent_pardon",
+            playerId,
+            now.plus(Duration.ofMinutes(getModerationConfig().getEvasionExpireMins())),
+            () -> pardonedPlayers.remove(playerId, now));
   }
 
   // MUTES
   protected void addMute(UUID playerId, MutePunishment punishment) {
     muteCache.put(playerId, punishment);
+    timers().schedule("mute", playerId, punishment.getExpireTime(), () -> expireMute(punishment));
   }
 
   protected void removeMute(UUID playerId) {
-    muteCache.invalidate(playerId);
+    muteCache.remove(playerId);
+    timers().cancel("mute", playerId);
+  }
+
+  // Unmutes the player the moment their mute ends, rather than on their next message
+  private void expireMute(MutePunishment mute) {
+    if (!muteCache.remove(mute.getTargetId(), mute)) return;
+
+    sync()
+        .execute(
+            () -> {
+              Player online = Bukkit.getPlayer(mute.getTargetId());
+              if (online != null) {
+                Audience.get(online)
+                    .sendWarning(translatable("moderation.unmute.target", NamedTextColor.GREEN));
+              }
+            });
   }
 
   @Override
   public Optional<MutePunishment> getCachedMute(UUID playerId) {
-    MutePunishment mute = muteCache.getIfPresent(playerId);
+    MutePunishment mute = muteCache.get(playerId);
     if (mute != null && !mute.isActive()) {
-      muteCache.invalidate(playerId);
+      muteCache.remove(playerId, mute);
       return Optional.empty();
     }
     return Optional.ofNullable(mute);
@@ -348,15 +415,11 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
   }
 
   private Optional<UUID> isBanEvasion(String address) {
-    Optional<Entry<UUID, Set<String>>> cached =
-        banEvasionCache.asMap().entrySet().stream()
-            .filter(s -> s.getValue().contains(address))
-            .findAny();
-    return Optional.ofNullable(cached.isPresent() ? cached.get().getKey() : null);
+    return Optional.ofNullable(banEvasion.find(address));
   }
 
   private boolean hasRecentPardon(UUID playerId) {
-    return pardonedPlayers.getIfPresent(playerId) != null;
+    return pardonedPlayers.containsKey(playerId);
   }
 
   private void banHover() {
@@ -411,7 +474,8 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
           .thenAcceptAsync(
               broadcast -> {
                 getGlobalAudience().sendMessage(broadcast);
-              });
+              },
+              async());
     }
 
     PunishmentFormats.formatBroadcast(punishment, server, getStaffFormat(), users)
@@ -419,6 +483,7 @@ public abstract class ModerationFeatureBase extends FeatureBase implements Moder
             broadcast -> {
               BroadcastUtils.sendAdminChatMessage(
                   broadcast, CommunityPermissions.PUNISHMENT_BROADCASTS);
-            });
+            },
+            async());
   }
 }
@@ -1,18 +1,26 @@
 package dev.pgm.community.moderation.feature.types;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import dev.pgm.community.Community;
 import dev.pgm.community.moderation.ModerationConfig;
 import dev.pgm.community.moderation.feature.ModerationFeatureBase;
 import dev.pgm.community.moderation.punishments.Punishment;
 import dev.pgm.community.moderation.punishments.PunishmentType;
+import dev.pgm.community.moderation.punishments.RecentPunishments;
 import dev.pgm.community.moderation.punishments.types.MutePunishment;
 import dev.pgm.community.moderation.services.SQLModerationService;
 import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.NameUtils;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -32,12 +40,43 @@ import tc.oc.pgm.util.named.NameStyle;
 
 public class SQLModerationFeature extends ModerationFeatureBase {
 
+  private static final int RECENT_LIMIT = 50;
+
   private SQLModerationService service;
 
   public SQLModerationFeature(
       Configuration config, Logger logger, UsersFeature usernames, NetworkFeature network) {
     super(new ModerationConfig(config), logger, "Punishments (SQL)", usernames, network);
     this.service = new SQLModerationService(getModerationConfig());
+
+    if (isEnabled()) {
+      service
+          .getActiveBans()
+          .thenAcceptAsync(
+              bans -> {
+                getActiveBans().load(bans);
+                logger.info(bans.size() + " active bans have been loaded");
+              },
+              async())
+          .exceptionally(
+              e -> {
+                logger.warning("Unable to load active bans, checking logins against the database");
+                return null;
+              });
+
+      service
+          .getLatestPunishments(RECENT_PUNISHMENTS)
+          .thenAcceptAsync(
+              punishments ->
+                  getRecents().load(punishments, punishments.size() < RECENT_PUNISHMENTS),
+              async());
+
+      // Players banned before a restart may still try to evade on an alt
+      Duration window = Duration.ofMinutes(getModerationConfig().getEvasionExpireMins());
+      service
+          .getBannedAddresses(window)
+          .thenAcceptAsync(banned -> getBanEvasion().load(banned, window), async());
+    }
   }
 
   @Override
@@ -54,11 +93,12 @@ public class SQLModerationFeature extends ModerationFeatureBase {
                     if (banned) {
                       service
                           .pardon(punishment.getTargetId(), punishment.getIssuerId())
-                          .thenAcceptAsync(x -> service.save(punishment));
+                          .thenAcceptAsync(x -> service.save(punishment), async());
                     } else {
                       service.save(punishment);
                     }
-                  });
+                  },
+                  async());
           break;
         case MUTE:
           isMuted(punishment.getTargetId())
@@ -67,11 +107,12 @@ public class SQLModerationFeature extends ModerationFeatureBase {
                     if (mute.isPresent()) {
                       service
                           .unmute(punishment.getTargetId(), punishment.getIssuerId())
-                          .thenAcceptAsync(x -> service.save(punishment));
+                          .thenAcceptAsync(x -> service.save(punishment), async());
                     } else {
                       service.save(punishment);
                     }
-                  });
+                  },
+                  async());
           break;
         default:
           service.save(punishment);
@@ -86,11 +127,12 @@ public class SQLModerationFeature extends ModerationFeatureBase {
       // CONVERT TO UUID if username
       return getUsers()
           .getStoredId(target)
-          .thenApplyAsync(
+          .thenComposeAsync(
               uuid ->
                   uuid != null && uuid.isPresent()
-                      ? service.queryList(uuid.get().toString()).join()
-                      : Lists.newArrayList());
+                      ? service.queryList(uuid.get().toString())
+                      : CompletableFuture.completedFuture(Lists.newArrayList()),
+              async());
     }
     return service.queryList(target);
   }
@@ -101,17 +143,23 @@ public class SQLModerationFeature extends ModerationFeatureBase {
         NameUtils.isMinecraftName(target)
             ? getUsers().getStoredId(target)
             : CompletableFuture.completedFuture(Optional.of(UUID.fromString(target)));
-    return playerId.thenApplyAsync(
+    return playerId.thenComposeAsync(
         uuid -> {
-          if (uuid.isPresent()) {
-            if (service.pardon(uuid.get(), issuer).join()) {
-              sendRefresh(uuid.get());
-              removeCachedBan(uuid.get());
-              return true;
-            }
-          }
-          return false;
-        });
+          if (!uuid.isPresent()) return CompletableFuture.completedFuture(false);
+          return service
+              .pardon(uuid.get(), issuer)
+              .thenApplyAsync(
+                  pardoned -> {
+                    if (pardoned) {
+                      getActiveBans().remove(uuid.get());
+                      sendRefresh(uuid.get());
+                      removeCachedBan(uuid.get());
+                    }
+                    return pardoned;
+                  },
+                  async());
+        },
+        async());
   }
 
   @Override
@@ -120,16 +168,24 @@ public class SQLModerationFeature extends ModerationFeatureBase {
         NameUtils.isMinecraftName(target)
             ? getUsers().getStoredId(target)
             : CompletableFuture.completedFuture(Optional.of(UUID.fromString(target)));
-    return playerId.thenApplyAsync(
+    return playerId.thenComposeAsync(
         uuid -> {
-          if (uuid.isPresent()) {
-            if (service.deactivate(uuid.get(), punishmentType).join()) {
-              sendRefresh(uuid.get());
-              return true;
-            }
-          }
-          return false;
-        });
+          if (!uuid.isPresent()) return CompletableFuture.completedFuture(false);
+          return service
+              .deactivate(uuid.get(), punishmentType)
+              .thenApplyAsync(
+                  deactivated -> {
+                    if (deactivated) {
+                      if (punishmentType.isLoginPrevented()) {
+                        getActiveBans().remove(uuid.get(), punishmentType);
+                      }
+                      sendRefresh(uuid.get());
+                    }
+                    return deactivated;
+                  },
+                  async());
+        },
+        async());
   }
 
   @Override
@@ -137,8 +193,12 @@ public class SQLModerationFeature extends ModerationFeatureBase {
     if (NameUtils.isMinecraftName(target)) {
       return getUsers()
           .getStoredId(target)
-          .thenApplyAsync(
-              uuid -> uuid.isPresent() ? service.isBanned(uuid.get().toString()).join() : false);
+          .thenComposeAsync(
+              uuid ->
+                  uuid.isPresent()
+                      ? service.isBanned(uuid.get().toString())
+                      : CompletableFuture.completedFuture(false),
+              async());
     }
     return service.isBanned(target);
   }
@@ -148,79 +208,126 @@ public class SQLModerationFeature extends ModerationFeatureBase {
     if (NameUtils.isMinecraftName(target)) {
       return getUsers()
           .getStoredId(target)
-          .thenApplyAsync(
+          .thenComposeAsync(
               uuid ->
                   uuid.isPresent()
-                      ? service.getActiveBan(uuid.get().toString()).join()
-                      : Optional.empty());
+                      ? service.getActiveBan(uuid.get().toString())
+                      : CompletableFuture.completedFuture(Optional.empty()),
+              async());
     }
     return service.getActiveBan(target);
   }
 
+  @Override
+  public CompletableFuture<Map<UUID, Punishment>> getActiveBans(Collection<UUID> targets) {
+    if (getActiveBans().isLoaded()) {
+      Map<UUID, Punishment> bans = Maps.newHashMap();
+      for (UUID target : targets) {
+        Punishment ban = getActiveBans().get(target);
+        if (ban != null) bans.put(target, ban);
+      }
+      return CompletableFuture.completedFuture(bans);
+    }
+
+    // Until the index is loaded, check each player against the database
+    Map<UUID, CompletableFuture<Optional<Punishment>>> lookups = Maps.newHashMap();
+    for (UUID target : targets) {
+      lookups.put(target, service.getActiveBan(target.toString()));
+    }
+    return CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture[0]))
+        .thenApply(
+            v -> {
+              Map<UUID, Punishment> bans = Maps.newHashMap();
+              lookups.forEach((target, ban) -> ban.join().ifPresent(p -> bans.put(target, p)));
+              return bans;
+            });
+  }
+
   @Override
   public void onPreLogin(AsyncPlayerPreLoginEvent event) {
-    List<Punishment> punishments;
-    try {
-      punishments =
-          service
-              .queryList(event.getUniqueId().toString())
-              .get(getModerationConfig().getLoginTimeout(), TimeUnit.SECONDS);
-
-      Optional<Punishment> ban = hasActiveBan(punishments);
-      if (ban.isPresent()) {
-        Punishment punishment = ban.get();
-        event.setKickMessage(
-            punishment.formatPunishmentScreen(
-                getModerationConfig(),
-                getUsers().renderUsername(punishment.getIssuerId(), NameStyle.FANCY).join(),
-                false));
-        event.setLoginResult(Result.KICK_BANNED);
-
-        if (punishment.getType() == PunishmentType.NAME_BAN) {
-          String bannedName = punishment.getReason();
-          if (!event.getName().equalsIgnoreCase(bannedName)) {
-            pardon(punishment.getTargetId().toString(), Optional.empty());
-            event.setLoginResult(Result.ALLOWED);
-            logger.info(
-                String.format(
-                    "Name change detected for (%s) | %s -> %s | Account unbanned",
-                    punishment.getTargetId().toString(), punishment.getReason(), event.getName()));
-          }
-        }
+    boolean indexed = getActiveBans().isLoaded();
+    if (indexed) {
+      Punishment ban = getActiveBans().get(event.getUniqueId());
+      if (ban != null) {
+        kickBanned(event, ban);
+        if (event.getLoginResult() != Result.ALLOWED) return;
       }
+    }
+
+    // Mutes must be applied before the player can chat, so the login still waits for them
+    checkLogin(event, !indexed);
+  }
+
+  private void kickBanned(AsyncPlayerPreLoginEvent event, Punishment punishment) {
+    event.setKickMessage(
+        punishment.formatPunishmentScreen(
+            getModerationConfig(),
+            getUsers().renderUsername(punishment.getIssuerId(), NameStyle.FANCY).join(),
+            false));
+    event.setLoginResult(Result.KICK_BANNED);
 
-      Optional<MutePunishment> mute = hasActiveMute(punishments);
-      if (mute.isPresent()) {
-        addMute(event.getUniqueId(), mute.get());
+    if (punishment.getType() == PunishmentType.NAME_BAN) {
+      String bannedName = punishment.getReason();
+      if (!event.getName().equalsIgnoreCase(bannedName)) {
+        pardon(punishment.getTargetId().toString(), Optional.empty());
+        event.setLoginResult(Result.ALLOWED);
+        logger.info(
+            String.format(
+                "Name change detected for (%s) | %s -> %s | Account unbanned",
+                punishment.getTargetId().toString(), punishment.getReason(), event.getName()));
       }
+    }
+  }
 
-      Set<Punishment> deferredPunishments = getDeferredPunishments(punishments);
-      for (Punishment punishment : deferredPunishments) {
-        Bukkit.getScheduler()
-            .runTaskLater(
-                Community.get(),
-                () -> {
-                  if (PunishmentType.WARN.equals(punishment.getType())
-                      || PunishmentType.KICK.equals(punishment.getType())) {
-                    if (punishment.punish(true)) {
-                      deactivate(event.getUniqueId().toString(), punishment.getType());
-                    }
+  private void applyLoginPunishments(UUID playerId, List<Punishment> punishments) {
+    Optional<MutePunishment> mute = hasActiveMute(punishments);
+    if (mute.isPresent()) {
+      addMute(playerId, mute.get());
+    }
+
+    Set<Punishment> deferredPunishments = getDeferredPunishments(punishments);
+    for (Punishment punishment : deferredPunishments) {
+      Bukkit.getScheduler()
+          .runTaskLater(
+              Community.get(),
+              () -> {
+                if (PunishmentType.WARN.equals(punishment.getType())
+                    || PunishmentType.KICK.equals(punishment.getType())) {
+                  if (punishment.punish(true)) {
+                    deactivate(playerId.toString(), punishment.getType());
                   }
-                },
-                20 * 5);
+                }
+              },
+              20 * 5);
+    }
+
+    logger.info(punishments.size() + " Punishments have been fetched for " + playerId.toString());
+  }
+
+  // Waits for the player's punishments, bans are only checked here until the active bans load
+  private void checkLogin(AsyncPlayerPreLoginEvent event, boolean checkBans) {
+    CompletableFuture<List<Punishment>> query = service.queryList(event.getUniqueId().toString());
+    try {
+      List<Punishment> punishments =
+          query.get(getModerationConfig().getLoginTimeout(), TimeUnit.SECONDS);
+
+      if (checkBans) {
+        hasActiveBan(punishments).ifPresent(ban -> kickBanned(event, ban));
       }
 
-      logger.info(
-          punishments.size()
-              + " Punishments have been fetched for "
-              + event.getUniqueId().toString());
+      applyLoginPunishments(event.getUniqueId(), punishments);
     } catch (InterruptedException | ExecutionException e) {
       event.setLoginResult(Result.KICK_OTHER);
       event.setKickMessage(
           ChatColor.DARK_RED + "Error joining, please try again."); // TODO: Pretty this up
       e.printStackTrace();
     } catch (TimeoutException e) {
-      scheduleDelayedCheck(event.getUniqueId());
+      if (checkBans) {
+        scheduleDelayedCheck(event.getUniqueId());
+      } else {
+        query.thenAcceptAsync(
+            punishments -> applyLoginPunishments(event.getUniqueId(), punishments), async());
+      }
     }
   }
 
@@ -262,7 +369,8 @@ public class SQLModerationFeature extends ModerationFeatureBase {
                                     + punishments.size()
                                     + " Punishments have been fetched for "
                                     + playerId.toString());
-                          });
+                          },
+                          async());
                 }
               }
             });
@@ -315,12 +423,42 @@ public class SQLModerationFeature extends ModerationFeatureBase {
                 sendRefresh(id); // Successful unmute will update other servers
               }
               return success;
-            });
+            },
+            async());
   }
 
   @Override
   public CompletableFuture<List<Punishment>> getRecentPunishments(Duration period) {
-    return service.getRecentPunishments(period);
+    Instant now = Instant.now();
+    Instant since = now.minus(period);
+
+    // Punishments from other servers are only heard of over the network
+    if (!getNetwork().isEnabled()) {
+      return service.getRecentPunishments(since, now, RECENT_LIMIT);
+    }
+
+    RecentPunishments recents = getRecents();
+    Instant horizon;
+    List<Punishment> recent;
+    synchronized (recents) {
+      horizon = recents.getHorizon();
+      recent = recents.getSince(since, RECENT_LIMIT);
+    }
+    if (recent.size() >= RECENT_LIMIT || !since.isBefore(horizon)) {
+      return CompletableFuture.completedFuture(recent);
+    }
+
+    // Older punishments are no longer in memory, continue from where the buffer ends
+    return service
+        .getRecentPunishments(since, horizon, RECENT_LIMIT - recent.size())
+        .thenApplyAsync(
+            older -> ImmutableList.<Punishment>builder().addAll(recent).addAll(older).build(),
+            async());
+  }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    return service.queryList(playerId.toString());
   }
 
   @Override
@@ -333,5 +471,8 @@ public class SQLModerationFeature extends ModerationFeatureBase {
     service.invalidate(playerId);
     removeCachedBan(playerId);
     removeMute(playerId);
+    service
+        .queryList(playerId.toString())
+        .thenAcceptAsync(punishments -> getActiveBans().refresh(playerId, punishments), async());
   }
 }
@@ -0,0 +1,243 @@
+package dev.pgm.community.moderation.punishments;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import dev.pgm.community.TimingWheel;
+import dev.pgm.community.moderation.punishments.types.ExpirablePunishment;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Every active punishment which prevents login (bans, temp bans and name bans) issued by a
+ * service, by target.
+ *
+ * <p>Loaded in bulk on startup and kept up to date as punishments are issued and pardoned here or
+ * on other servers, so logins can be checked without querying the database. Until it has been
+ * loaded, {@link #isLoaded()} is false and logins should be checked against the database instead.
+ * Temporary bans are dropped by a {@link TimingWheel} as they expire.
+ *
+ * <p>A player can hold bans of several types at once, e.g a temp ban issued on top of a permanent
+ * one, so the latest ban of each type is kept, and lifting or expiring one leaves the others.
+ */
+public class ActiveBans {
+
+  private static final String TIMER = "active_ban";
+
+  // Most severe first, a name ban is lifted as soon as the player changes name
+  private static final Comparator<Punishment> SEVERITY =
+      Comparator.comparing((Punishment ban) -> ban instanceof ExpirablePunishment)
+          .thenComparing(ban -> ban.getType() != PunishmentType.BAN)
+          .thenComparing(ActiveBans::getExpiry, Comparator.reverseOrder());
+
+  private final String service;
+  private final TimingWheel timers;
+  // Guarded by this, the inner maps are replaced rather than modified
+  private final Map<UUID, Map<PunishmentType, Punishment>> bans = Maps.newHashMap();
+  private volatile boolean loaded;
+
+  // Bans lifted while loading, so a stale read does not restore them
+  private final Set<BanKey> lifted = Sets.newHashSet();
+
+  /**
+   * Creates an empty index
+   *
+   * @param service The service whose bans are tracked, bans from other services are ignored
+   * @param timers The timing wheel to expire temporary bans with
+   */
+  public ActiveBans(String service, TimingWheel timers) {
+    this.service = service;
+    this.timers = timers;
+  }
+
+  /**
+   * Gets the active ban of a player
+   *
+   * @param playerId The player
+   * @return The most severe ban, permanent bans first, or {@code null} if the player is not banned
+   */
+  @Nullable
+  public synchronized Punishment get(UUID playerId) {
+    Map<PunishmentType, Punishment> held = bans.get(playerId);
+    if (held == null) return null;
+
+    Punishment worst = null;
+    for (Punishment ban : held.values()) {
+      if (!ban.isActive()) {
+        remove(ban);
+      } else if (worst == null || SEVERITY.compare(ban, worst) < 0) {
+        worst = ban;
+      }
+    }
+    return worst;
+  }
+
+  /**
+   * Tracks a punishment if it is an active ban of this service
+   *
+   * @param punishment The punishment
+   * @return Whether the punishment was tracked
+   */
+  public synchronized boolean add(Punishment punishment) {
+    if (!isBan(punishment)) return false;
+    lifted.remove(new BanKey(punishment.getTargetId(), punishment.getType()));
+    track(punishment);
+    return true;
+  }
+
+  /**
+   * Updates the bans of a player from their punishments, after they were changed on another server
+   *
+   * @param playerId The player
+   * @param punishments Every punishment of the player, as read from the database
+   */
+  public synchronized void refresh(UUID playerId, Collection<Punishment> punishments) {
+    punishments.stream().filter(this::isBan).forEach(this::track);
+
+    // A ban missing from the database may not have been written yet, only drop a ban once the
+    // database shows it was lifted
+    Map<PunishmentType, Punishment> held = bans.get(playerId);
+    if (held == null) return;
+    for (Punishment current : held.values()) {
+      if (punishments.stream().anyMatch(p -> isSame(p, current) && !p.isActive())) {
+        remove(playerId, current.getType());
+      }
+    }
+  }
+
+  /** Drops every ban of a player, after they were pardoned */
+  public synchronized void remove(UUID playerId) {
+    for (PunishmentType type : PunishmentType.values()) {
+      if (type.isLoginPrevented()) remove(playerId, type);
+    }
+  }
+
+  /**
+   * Drops the ban of one type from a player, leaving their other bans
+   *
+   * @param playerId The player
+   * @param type The type of ban which was lifted
+   */
+  public synchronized void remove(UUID playerId, PunishmentType type) {
+    BanKey key = new BanKey(playerId, type);
+    if (!loaded) lifted.add(key);
+    timers.cancel(TIMER, key);
+
+    Map<PunishmentType, Punishment> held = bans.get(playerId);
+    if (held == null || !held.containsKey(type)) return;
+    Map<PunishmentType, Punishment> remaining = Maps.newEnumMap(held);
+    remaining.remove(type);
+    if (remaining.isEmpty()) bans.remove(playerId);
+    else bans.put(playerId, remaining);
+  }
+
+  /**
+   * Adds the bans read from the database on startup, and starts treating the index as complete
+   *
+   * @param punishments The active bans
+   */
+  public synchronized void load(Collection<Punishment> punishments) {
+    // Bans issued while loading are kept, they are merged with what was read
+    for (Punishment punishment : punishments) {
+      if (isBan(punishment)
+          && !lifted.contains(new BanKey(punishment.getTargetId(), punishment.getType()))) {
+        track(punishment);
+      }
+    }
+    this.loaded = true;
+    lifted.clear();
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /** @return the number of banned players */
+  public synchronized int size() {
+    return bans.size();
+  }
+
+  // Keeps the ban unless the player already holds a longer one of the same type
+  private void track(Punishment ban) {
+    UUID playerId = ban.getTargetId();
+    Map<PunishmentType, Punishment> held = bans.get(playerId);
+    Punishment current = held == null ? null : held.get(ban.getType());
+    if (current != null && current.isActive() && SEVERITY.compare(current, ban) < 0) return;
+
+    Map<PunishmentType, Punishment> updated =
+        held == null ? Maps.newEnumMap(PunishmentType.class) : Maps.newEnumMap(held);
+    updated.put(ban.getType(), ban);
+    bans.put(playerId, updated);
+    scheduleExpiry(ban);
+  }
+
+  private void scheduleExpiry(Punishment ban) {
+    BanKey key = new BanKey(ban.getTargetId(), ban.getType());
+    if (ban instanceof ExpirablePunishment) {
+      timers.schedule(TIMER, key, getExpiry(ban), () -> expire(ban));
+    } else {
+      timers.cancel(TIMER, key);
+    }
+  }
+
+  private synchronized void expire(Punishment ban) {
+    // The ban may have been replaced by a longer one of the same type since
+    Map<PunishmentType, Punishment> held = bans.get(ban.getTargetId());
+    if (held != null && held.get(ban.getType()) == ban) remove(ban);
+  }
+
+  private void remove(Punishment ban) {
+    UUID playerId = ban.getTargetId();
+    Map<PunishmentType, Punishment> remaining = Maps.newEnumMap(bans.get(playerId));
+    remaining.remove(ban.getType());
+    if (remaining.isEmpty()) bans.remove(playerId);
+    else bans.put(playerId, remaining);
+  }
+
+  private static Instant getExpiry(Punishment ban) {
+    return ban instanceof ExpirablePunishment
+        ? ((ExpirablePunishment) ban).getExpireTime()
+        : Instant.MAX;
+  }
+
+  // Punishments are stored with a new id, so match them by type and time issued instead
+  private boolean isSame(Punishment a, Punishment b) {
+    return a.getType() == b.getType()
+        && a.getTimeIssued().toEpochMilli() == b.getTimeIssued().toEpochMilli();
+  }
+
+  private boolean isBan(Punishment punishment) {
+    return punishment.isActive()
+        && punishment.getType().isLoginPrevented()
+        && service.equalsIgnoreCase(punishment.getService());
+  }
+
+  /** A player and a type of ban, also the id of its expiry timer */
+  private static class BanKey {
+    private final UUID playerId;
+    private final PunishmentType type;
+
+    BanKey(UUID playerId, PunishmentType type) {
+      this.playerId = playerId;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof BanKey)) return false;
+      BanKey other = (BanKey) obj;
+      return playerId.equals(other.playerId) && type == other.type;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(playerId, type);
+    }
+  }
+}
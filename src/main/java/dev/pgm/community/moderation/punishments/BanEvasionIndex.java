@@ -0,0 +1,242 @@
+package dev.pgm.community.moderation.punishments;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.net.InetAddresses;
+import dev.pgm.community.TimingWheel;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * The addresses of recently banned players, so players joining from them can be flagged as
+ * possible ban evasion.
+ *
+ * <p>Addresses are stored in a binary trie per address family, with banned players kept on the node
+ * of each full address and on the node of its subnet (e.g the /24 of an IPv4 address). Looking up
+ * an address walks at most one node per bit, however many players are banned, and an exact match
+ * is preferred over a subnet match. Entries are dropped by a {@link TimingWheel} once the evasion
+ * window of the ban ends, or when the ban is pardoned.
+ */
+public class BanEvasionIndex {
+
+  private static final String TIMER = "ban_evasion";
+
+  private final TimingWheel timers;
+  private final int ipv4Prefix;
+  private final int ipv6Prefix;
+
+  // Guarded by this
+  private final Node ipv4 = new Node();
+  private final Node ipv6 = new Node();
+  private final Map<UUID, Entry> players = Maps.newHashMap();
+
+  /**
+   * Creates an empty index
+   *
+   * @param timers The timing wheel to expire entries with
+   * @param ipv4Prefix The subnet size IPv4 addresses also match on, 32 for exact matches only
+   * @param ipv6Prefix The subnet size IPv6 addresses also match on, 128 for exact matches only
+   */
+  public BanEvasionIndex(TimingWheel timers, int ipv4Prefix, int ipv6Prefix) {
+    this.timers = timers;
+    this.ipv4Prefix = Math.max(0, Math.min(32, ipv4Prefix));
+    this.ipv6Prefix = Math.max(0, Math.min(128, ipv6Prefix));
+  }
+
+  /**
+   * Tracks the addresses of a banned player, along with any already tracked for them
+   *
+   * @param playerId The banned player
+   * @param addresses The addresses the player has used, invalid addresses are ignored
+   * @param expires When to stop tracking the player
+   */
+  public synchronized void add(UUID playerId, Collection<String> addresses, Instant expires) {
+    Entry previous = players.remove(playerId);
+    Set<String> known = Sets.newHashSet();
+    if (previous != null) {
+      unindex(playerId, previous);
+      known.addAll(previous.addresses);
+    }
+
+    for (String address : addresses) {
+      InetAddress parsed = parse(address);
+      if (parsed != null) known.add(InetAddresses.toAddrString(parsed));
+    }
+    if (known.isEmpty()) return;
+
+    Entry entry = new Entry(ImmutableSet.copyOf(known));
+    players.put(playerId, entry);
+    for (String address : entry.addresses) {
+      insert(playerId, parse(address).getAddress());
+    }
+
+    timers.schedule(TIMER, playerId, expires, () -> expire(playerId, entry));
+  }
+
+  /** Stops tracking a player, e.g after they were pardoned */
+  public synchronized void remove(UUID playerId) {
+    Entry entry = players.remove(playerId);
+    if (entry == null) return;
+    unindex(playerId, entry);
+    timers.cancel(TIMER, playerId);
+  }
+
+  /**
+   * Finds a banned player who used an address, or its subnet
+   *
+   * @param address The address
+   * @return The banned player, preferring one who used the exact address, or {@code null} if none
+   */
+  @Nullable
+  public synchronized UUID find(String address) {
+    InetAddress parsed = parse(address);
+    if (parsed == null) return null;
+
+    byte[] bytes = parsed.getAddress();
+    Node node = root(bytes);
+    Set<UUID> match = node.players;
+    for (int bit = 0; bit < bytes.length * 8 && node != null; bit++) {
+      node = node.children[bit(bytes, bit)];
+      if (node != null && node.players != null) match = node.players;
+    }
+    return match == null ? null : match.iterator().next();
+  }
+
+  /**
+   * Tracks every player in a bulk load, e.g on startup
+   *
+   * @param banned The banned players and their addresses
+   * @param window How long after being banned a player is tracked
+   */
+  public void load(Collection<BannedAddresses> banned, Duration window) {
+    for (BannedAddresses player : banned) {
+      add(player.getPlayerId(), player.getAddresses(), player.getBannedAt().plus(window));
+    }
+  }
+
+  public synchronized int size() {
+    return players.size();
+  }
+
+  private synchronized void expire(UUID playerId, Entry entry) {
+    // The player may have been banned again since, leave their newer entry alone
+    if (players.remove(playerId, entry)) unindex(playerId, entry);
+  }
+
+  private void unindex(UUID playerId, Entry entry) {
+    for (String address : entry.addresses) {
+      delete(playerId, parse(address).getAddress());
+    }
+  }
+
+  private void insert(UUID playerId, byte[] address) {
+    int bits = address.length * 8;
+    int prefix = prefix(address);
+    Node node = root(address);
+    for (int bit = 0; bit < bits; bit++) {
+      if (bit == prefix) node.add(playerId);
+      int next = bit(address, bit);
+      if (node.children[next] == null) node.children[next] = new Node();
+      node = node.children[next];
+    }
+    node.add(playerId);
+  }
+
+  private void delete(UUID playerId, byte[] address) {
+    int bits = address.length * 8;
+    int prefix = prefix(address);
+    Node[] path = new Node[bits + 1];
+    path[0] = root(address);
+    for (int bit = 0; bit < bits; bit++) {
+      if (bit == prefix) path[bit].remove(playerId);
+      path[bit + 1] = path[bit].children[bit(address, bit)];
+      if (path[bit + 1] == null) return;
+    }
+    path[bits].remove(playerId);
+
+    // Prune the branch back up to the first node still in use
+    for (int bit = bits; bit > 0 && path[bit].isEmpty(); bit--) {
+      path[bit - 1].children[bit(address, bit - 1)] = null;
+    }
+  }
+
+  private Node root(byte[] address) {
+    return address.length == 4 ? ipv4 : ipv6;
+  }
+
+  private int prefix(byte[] address) {
+    return address.length == 4 ? ipv4Prefix : ipv6Prefix;
+  }
+
+  private static int bit(byte[] address, int bit) {
+    return (address[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+  }
+
+  @Nullable
+  private static InetAddress parse(String address) {
+    try {
+      // Parses literals only, never resolves a host name
+      return InetAddresses.forString(address);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** The addresses a player had used when they were banned */
+  public static class BannedAddresses {
+    private final UUID playerId;
+    private final Instant bannedAt;
+    private final Set<String> addresses;
+
+    public BannedAddresses(UUID playerId, Instant bannedAt, Set<String> addresses) {
+      this.playerId = playerId;
+      this.bannedAt = bannedAt;
+      this.addresses = addresses;
+    }
+
+    public UUID getPlayerId() {
+      return playerId;
+    }
+
+    public Instant getBannedAt() {
+      return bannedAt;
+    }
+
+    public Set<String> getAddresses() {
+      return addresses;
+    }
+  }
+
+  private static class Entry {
+    private final Set<String> addresses; // Canonical forms, so each is indexed once
+
+    Entry(Set<String> addresses) {
+      this.addresses = addresses;
+    }
+  }
+
+  private static class Node {
+    private final Node[] children = new Node[2];
+    private Set<UUID> players; // Banned players whose address or subnet ends here, if any
+
+    void add(UUID playerId) {
+      if (players == null) players = Sets.newLinkedHashSet();
+      players.add(playerId);
+    }
+
+    void remove(UUID playerId) {
+      if (players != null && players.remove(playerId) && players.isEmpty()) players = null;
+    }
+
+    boolean isEmpty() {
+      return players == null && children[0] == null && children[1] == null;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package dev.pgm.community.moderation.punishments;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
@@ -37,7 +38,8 @@ public class PunishmentFormats {
             x -> {
               Component msg = punishment.formatBroadcast(issuer.join(), target.join(), format);
               broadcast.complete(msg);
-            });
+            },
+            async());
     return broadcast;
   }
 
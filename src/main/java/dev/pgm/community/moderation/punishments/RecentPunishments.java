@@ -0,0 +1,162 @@
+package dev.pgm.community.moderation.punishments;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The most recent punishments issued across the network, oldest first, in a fixed size ring.
+ *
+ * <p>Once full, adding a punishment drops the oldest. The buffer keeps track of its horizon, the
+ * time at or before which it may be missing punishments (because they were dropped, or were issued
+ * before it was created and not loaded), so callers know when to fall back to the database. It also
+ * keeps the latest punishment of every issuer, which outlives the punishment being dropped.
+ */
+public class RecentPunishments {
+
+  private final Punishment[] ring;
+  private int head; // Index of the oldest punishment
+  private int size;
+
+  // Every punishment issued after the horizon is in the buffer
+  private Instant loadedFrom;
+  private Instant dropped = Instant.EPOCH;
+
+  private final Map<UUID, Punishment> latest = Maps.newHashMap();
+
+  /**
+   * Creates an empty buffer, which knows of no punishments issued before now
+   *
+   * @param capacity The number of punishments to keep
+   */
+  public RecentPunishments(int capacity) {
+    this.ring = new Punishment[Math.max(1, capacity)];
+    this.loadedFrom = Instant.now();
+  }
+
+  /**
+   * Adds a punishment, in order of the time it was issued
+   *
+   * @param punishment The punishment, ignored if it has already been added
+   */
+  public synchronized void add(Punishment punishment) {
+    punishment
+        .getIssuerId()
+        .ifPresent(issuer -> latest.merge(issuer, punishment, RecentPunishments::newest));
+
+    // Punishments almost always arrive in order, so search for their position from the newest
+    int position = size;
+    while (position > 0 && isAfter(get(position - 1), punishment)) {
+      position--;
+    }
+    for (int i = position - 1; i >= 0 && !isAfter(punishment, get(i)); i--) {
+      if (isSame(get(i), punishment)) return;
+    }
+
+    if (size == ring.length) {
+      if (position == 0) {
+        // Older than everything kept, so it is dropped straight away
+        drop(punishment);
+        return;
+      }
+      drop(get(0));
+      head = (head + 1) % ring.length;
+      size--;
+      position--;
+    }
+
+    for (int i = size; i > position; i--) {
+      set(i, get(i - 1));
+    }
+    set(position, punishment);
+    size++;
+  }
+
+  /**
+   * Adds punishments read from the database, extending the buffer back to the oldest of them
+   *
+   * @param punishments The newest punishments in the database
+   * @param complete Whether every punishment in the database was read
+   */
+  public synchronized void load(Collection<Punishment> punishments, boolean complete) {
+    punishments.forEach(this::add);
+
+    // Other punishments may have been issued at the same time as the oldest one read
+    Instant oldest = Instant.EPOCH;
+    if (!complete) {
+      oldest =
+          punishments.stream()
+              .map(Punishment::getTimeIssued)
+              .min(Instant::compareTo)
+              .orElse(Instant.EPOCH);
+    }
+    if (oldest.isBefore(loadedFrom)) loadedFrom = oldest;
+  }
+
+  /** @return the latest punishment issued by a player */
+  public synchronized Optional<Punishment> getLatest(UUID issuer) {
+    return Optional.ofNullable(latest.get(issuer));
+  }
+
+  /**
+   * Gets the punishments issued after a time, which are also after {@link #getHorizon()}
+   *
+   * @param since The time
+   * @param limit The maximum number of punishments
+   * @return The punishments, newest first
+   */
+  public synchronized List<Punishment> getSince(Instant since, int limit) {
+    Instant after = since.isAfter(getHorizon()) ? since : getHorizon();
+
+    ImmutableList.Builder<Punishment> punishments = ImmutableList.builder();
+    int count = 0;
+    for (int i = size - 1; i >= 0 && count < limit; i--) {
+      Punishment punishment = get(i);
+      if (!punishment.getTimeIssued().isAfter(after)) break;
+      punishments.add(punishment);
+      count++;
+    }
+    return punishments.build();
+  }
+
+  /** @return the time after which every punishment is known to the buffer */
+  public synchronized Instant getHorizon() {
+    return dropped.isAfter(loadedFrom) ? dropped : loadedFrom;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private void drop(Punishment punishment) {
+    if (punishment.getTimeIssued().isAfter(dropped)) dropped = punishment.getTimeIssued();
+  }
+
+  private Punishment get(int index) {
+    return ring[(head + index) % ring.length];
+  }
+
+  private void set(int index, Punishment punishment) {
+    ring[(head + index) % ring.length] = punishment;
+  }
+
+  private static Punishment newest(Punishment a, Punishment b) {
+    return isAfter(b, a) ? b : a;
+  }
+
+  private static boolean isAfter(Punishment a, Punishment b) {
+    return a.getTimeIssued().isAfter(b.getTimeIssued());
+  }
+
+  // Punishments are stored with a new id, so match them by target, type and time issued instead
+  private static boolean isSame(Punishment a, Punishment b) {
+    return a.getTargetId().equals(b.getTargetId())
+        && a.getType() == b.getType()
+        && a.getTimeIssued().toEpochMilli() == b.getTimeIssued().toEpochMilli();
+  }
+}
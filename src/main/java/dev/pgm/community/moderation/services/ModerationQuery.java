@@ -1,10 +1,12 @@
 package dev.pgm.community.moderation.services;
 
+import dev.pgm.community.users.services.AddressQuery;
+
 public interface ModerationQuery {
 
   static final String TABLE_NAME = "punishments";
   static final String TABLE_FIELDS =
-      "(id VARCHAR(36) PRIMARY KEY, punished VARCHAR(36), issuer VARCHAR(36), reason VARCHAR(255), type VARCHAR(8), time LONG, expires LONG, active BOOL, last_updated LONG, updated_by VARCHAR(36), service VARCHAR(255))";
+      "(id VARCHAR(36) PRIMARY KEY, punished VARCHAR(36), issuer VARCHAR(36), reason VARCHAR(255), type VARCHAR(8), time BIGINT, expires LONG, active BOOL, last_updated LONG, updated_by VARCHAR(36), service VARCHAR(255))";
 
   static final String INSERT_PUNISHMENT_QUERY =
       "INSERT INTO "
@@ -23,6 +25,30 @@ public interface ModerationQuery {
   static final String DEACTIVATE_QUERY =
       "UPDATE " + TABLE_NAME + " SET active = ?  WHERE active = ? AND punished = ? ";
 
+  static final String SELECT_ACTIVE_BANS_QUERY =
+      "SELECT * from "
+          + TABLE_NAME
+          + " WHERE active = ? AND service = ? AND (type = ? OR type = ? OR type = ?)";
+
+  // Every address used by players banned since a time, for ban evasion checks
+  static final String SELECT_BANNED_ADDRESSES_QUERY =
+      String.format(
+          "SELECT p.punished, p.time, a.%1$s FROM %2$s p"
+              + " JOIN %3$s h ON h.%4$s = p.punished JOIN %5$s a ON a.%6$s = h.%6$s"
+              + " WHERE p.active = ? AND p.service = ? AND (p.type = ? OR p.type = ? OR p.type = ?)"
+              + " AND p.time > ?",
+          AddressQuery.IP_ADDRESS_FIELD,
+          TABLE_NAME,
+          AddressQuery.IP_USER_TABLE_NAME,
+          AddressQuery.USER_ID_FIELD,
+          AddressQuery.IP_TABLE_NAME,
+          AddressQuery.IP_ID_FIELD);
+
+  // Punishments issued within a period, newest first. The upper bound is inclusive, so the next
+  // page continues from the time of the last punishment read
   static final String SELECT_RECENT_QUERY =
-      "SELECT * from " + TABLE_NAME + " WHERE time > ? LIMIT ?";
+      "SELECT * from " + TABLE_NAME + " WHERE time > ? AND time <= ? ORDER BY time DESC LIMIT ?";
+
+  static final String SELECT_LATEST_QUERY =
+      "SELECT * from " + TABLE_NAME + " ORDER BY time DESC LIMIT ?";
 }
@@ -1,19 +1,31 @@
 package dev.pgm.community.moderation.services;
 
-import co.aikar.idb.DB;
+import static dev.pgm.community.CommunityExecutors.async;
+import static dev.pgm.community.users.services.AddressQuery.IP_TABLE_NAME;
+import static dev.pgm.community.users.services.AddressQuery.IP_USER_TABLE_NAME;
+
 import co.aikar.idb.DbRow;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.gson.reflect.TypeToken;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.SharedCodec;
+import dev.pgm.community.database.UUIDCodec;
+import dev.pgm.community.database.UUIDStorage;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.moderation.ModerationConfig;
+import dev.pgm.community.moderation.punishments.BanEvasionIndex.BannedAddresses;
 import dev.pgm.community.moderation.punishments.Punishment;
 import dev.pgm.community.moderation.punishments.PunishmentType;
 import dev.pgm.community.moderation.punishments.types.ExpirablePunishment;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -24,9 +36,7 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
   private static final String CONSOLE_DB_NAME =
       "console"; // Used in issuer field when punishment issued by console
 
-  private static final int RECENT_LIMIT = 50;
-
-  private LoadingCache<UUID, PlayerPunishments> punishmentCache;
+  private final AsyncLoadingCache<UUID, List<Punishment>> punishmentCache;
 
   private final ModerationConfig config;
 
@@ -34,27 +44,23 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
     super(TABLE_NAME, TABLE_FIELDS);
     this.config = config;
     this.punishmentCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, PlayerPunishments>() {
-                  @Override
-                  public PlayerPunishments load(UUID key) throws Exception {
-                    return new PlayerPunishments(key);
-                  }
-                });
+        createCache(
+            "punishments",
+            SharedCodec.uuid(new TypeToken<List<Punishment>>() {}.getType()),
+            this::loadPunishments);
   }
 
   @Override
   public void save(Punishment punishment) {
-    PlayerPunishments punishments = punishmentCache.getUnchecked(punishment.getTargetId());
-    if (punishments.isLoaded()) {
-      punishments.getPunishments().add(punishment);
-    }
+    punishmentCache.update(
+        punishment.getTargetId(),
+        punishments ->
+            ImmutableList.<Punishment>builder().addAll(punishments).add(punishment).build());
 
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_PUNISHMENT_QUERY,
-        UUID.randomUUID().toString(),
-        punishment.getTargetId().toString(),
+        bindId(UUID.randomUUID()),
+        bindId(punishment.getTargetId()),
         convertIssuer(punishment.getIssuerId()),
         punishment.getReason(),
         punishment.getType().toString(),
@@ -68,55 +74,22 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
 
   @Override
   public CompletableFuture<List<Punishment>> queryList(String target) {
-    UUID playerId = UUID.fromString(target);
-    PlayerPunishments punishments = punishmentCache.getUnchecked(playerId);
-
-    if (punishments.isLoaded()) {
-      return CompletableFuture.completedFuture(punishments.getPunishments());
-    } else {
-      return DB.getResultsAsync(SELECT_PUNISHMENTS_QUERY, playerId.toString())
-          .thenApplyAsync(
-              results -> {
-                if (results != null && !results.isEmpty()) {
-                  for (DbRow row : results) {
-                    String id = row.getString("id");
-                    String issuer = row.getString("issuer");
-                    String reason = row.getString("reason");
-                    String type = row.getString("type");
-                    long time = Long.parseLong(row.getString("time"));
-                    long expires = Long.parseLong(row.getString("expires"));
-                    Instant timeIssued = Instant.ofEpochMilli(time);
-                    Duration length =
-                        Duration.between(Instant.ofEpochMilli(time), Instant.ofEpochMilli(expires));
-                    boolean active = row.get("active");
-                    long lastUpdateTime = Long.parseLong(row.getString("last_updated"));
-                    Instant lastUpdate = Instant.ofEpochMilli(lastUpdateTime);
-                    String lastUpdateBy = row.getString("updated_by");
-                    String service = row.getString("service");
-
-                    punishments
-                        .getPunishments()
-                        .add(
-                            Punishment.of(
-                                UUID.fromString(id),
-                                playerId,
-                                parseIssuer(issuer),
-                                reason,
-                                timeIssued,
-                                length,
-                                PunishmentType.valueOf(type.toUpperCase()),
-                                active,
-                                lastUpdate,
-                                parseIssuer(lastUpdateBy),
-                                service));
-                  }
-                }
-
-                punishments.setLoaded(true);
+    return punishmentCache.get(UUID.fromString(target));
+  }
 
-                return punishments.getPunishments();
-              });
-    }
+  private CompletableFuture<List<Punishment>> loadPunishments(UUID playerId) {
+    return AsyncDB.getResults(SELECT_PUNISHMENTS_QUERY, bindId(playerId))
+        .thenApplyAsync(
+            results -> {
+              ImmutableList.Builder<Punishment> punishments = ImmutableList.builder();
+              if (results != null) {
+                for (DbRow row : results) {
+                  punishments.add(readPunishment(row));
+                }
+              }
+              return punishments.build();
+            },
+            async());
   }
 
   @Override // TODO: fetch single punishment
@@ -139,57 +112,99 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
     return expires;
   }
 
+  private Punishment readPunishment(DbRow row) {
+    long time = readTime(row);
+    long expires = Long.parseLong(row.getString("expires"));
+    long lastUpdateTime = Long.parseLong(row.getString("last_updated"));
+    boolean active = row.get("active");
+
+    return Punishment.of(
+        readId(row, "id"),
+        readId(row, "punished"),
+        parseIssuer(row.get("issuer")),
+        row.getString("reason"),
+        Instant.ofEpochMilli(time),
+        Duration.between(Instant.ofEpochMilli(time), Instant.ofEpochMilli(expires)),
+        PunishmentType.valueOf(row.getString("type").toUpperCase()),
+        active,
+        Instant.ofEpochMilli(lastUpdateTime),
+        parseIssuer(row.get("updated_by")),
+        row.getString("service"));
+  }
+
+  // Times are text until the column is converted to BIGINT by its migration
+  private long readTime(DbRow row) {
+    Object time = row.get("time");
+    return time instanceof Number ? ((Number) time).longValue() : Long.parseLong(time.toString());
+  }
+
   private boolean isConsole(String data) {
     return data.equalsIgnoreCase(CONSOLE_DB_NAME);
   }
 
-  private Optional<UUID> parseIssuer(String issuer) {
-    if (isConsole(issuer)) return Optional.empty();
-    return Optional.of(UUID.fromString(issuer));
+  private Optional<UUID> parseIssuer(Object issuer) {
+    if (issuer instanceof String && isConsole((String) issuer)) return Optional.empty();
+    UUID id = UUIDCodec.decode(issuer);
+    return UUIDCodec.NIL.equals(id) ? Optional.empty() : Optional.of(id);
   }
 
-  private String convertIssuer(Optional<UUID> issuer) {
-    return issuer.isPresent() ? issuer.get().toString() : CONSOLE_DB_NAME;
+  // Binary columns can't hold the console name, so the nil UUID is stored in its place
+  private Object convertIssuer(Optional<UUID> issuer) {
+    if (issuer.isPresent()) return bindId(issuer.get());
+    return getCodec() == UUIDCodec.BINARY ? bindId(UUIDCodec.NIL) : CONSOLE_DB_NAME;
   }
 
   public CompletableFuture<Boolean> pardon(UUID id, Optional<UUID> issuer) {
     punishmentCache.invalidate(id);
-    return DB.executeUpdateAsync(
+    return invalidateAfter(
+        id,
+        queueUpdate(
             PARDON_QUERY + MULTI_PARDON_TYPE,
             false,
             Instant.now().toEpochMilli(),
             convertIssuer(issuer),
             true,
-            id.toString(),
+            bindId(id),
             PunishmentType.BAN.toString(),
             PunishmentType.TEMP_BAN.toString(),
-            PunishmentType.NAME_BAN.toString())
-        .thenApplyAsync(result -> result != 0);
+            PunishmentType.NAME_BAN.toString()));
   }
 
   public CompletableFuture<Boolean> deactivate(UUID id, PunishmentType punishmentType) {
     punishmentCache.invalidate(id);
-    return DB.executeUpdateAsync(
+    return invalidateAfter(
+        id,
+        queueUpdate(
             DEACTIVATE_QUERY + SINGLE_PARDON_TYPE,
             false,
             true,
-            id.toString(),
-            punishmentType.toString())
-        .thenApplyAsync(result -> result != 0);
+            bindId(id),
+            punishmentType.toString()));
   }
 
   public CompletableFuture<Boolean> unmute(UUID id, Optional<UUID> issuer) {
     punishmentCache.invalidate(id);
 
-    return DB.executeUpdateAsync(
+    return invalidateAfter(
+        id,
+        queueUpdate(
             PARDON_QUERY + SINGLE_PARDON_TYPE,
             false,
             Instant.now().toEpochMilli(),
             convertIssuer(issuer),
             true,
-            id.toString(),
-            PunishmentType.MUTE.toString())
-        .thenApplyAsync(result -> result != 0);
+            bindId(id),
+            PunishmentType.MUTE.toString()));
+  }
+
+  // Drops anything loaded while the update was queued
+  private CompletableFuture<Boolean> invalidateAfter(UUID id, CompletableFuture<Integer> update) {
+    return update.thenApplyAsync(
+        result -> {
+          punishmentCache.invalidate(id);
+          return result != 0;
+        },
+        async());
   }
 
   public CompletableFuture<Boolean> isBanned(String id) {
@@ -204,7 +219,8 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
                 }
               }
               return banned;
-            });
+            },
+            async());
   }
 
   public CompletableFuture<Optional<Punishment>> isMuted(UUID target) {
@@ -215,7 +231,8 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
               return punishments.stream()
                   .filter(p -> p.getType() == PunishmentType.MUTE && p.isActive())
                   .findFirst();
-            });
+            },
+            async());
   }
 
   public CompletableFuture<Optional<Punishment>> getActiveBan(String id) {
@@ -228,85 +245,109 @@ public class SQLModerationService extends SQLFeatureBase<Punishment, String>
                 }
               }
               return Optional.empty();
-            });
+            },
+            async());
   }
 
-  public CompletableFuture<List<Punishment>> getRecentPunishments(Duration period) {
-    return DB.getResultsAsync(
-            SELECT_RECENT_QUERY, Instant.now().toEpochMilli() - period.toMillis(), RECENT_LIMIT)
+  /** @return every active punishment of this service which prevents login */
+  public CompletableFuture<List<Punishment>> getActiveBans() {
+    return AsyncDB.getBulkResults(
+            SELECT_ACTIVE_BANS_QUERY,
+            true,
+            config.getService(),
+            PunishmentType.BAN.toString(),
+            PunishmentType.TEMP_BAN.toString(),
+            PunishmentType.NAME_BAN.toString())
         .thenApplyAsync(
             results -> {
               List<Punishment> punishments = Lists.newArrayList();
-
-              if (results != null && !results.isEmpty()) {
+              if (results != null) {
                 for (DbRow row : results) {
-                  String id = row.getString("id");
-                  String target = row.getString("punished");
-                  String issuer = row.getString("issuer");
-                  String reason = row.getString("reason");
-                  String type = row.getString("type");
-                  long time = Long.parseLong(row.getString("time"));
-                  long expires = Long.parseLong(row.getString("expires"));
-                  Instant timeIssued = Instant.ofEpochMilli(time);
-                  Duration length =
-                      Duration.between(Instant.ofEpochMilli(time), Instant.ofEpochMilli(expires));
-                  boolean active = row.get("active");
-                  long lastUpdateTime = Long.parseLong(row.getString("last_updated"));
-                  Instant lastUpdate = Instant.ofEpochMilli(lastUpdateTime);
-                  String lastUpdateBy = row.getString("updated_by");
-                  String service = row.getString("service");
-                  punishments.add(
-                      Punishment.of(
-                          UUID.fromString(id),
-                          UUID.fromString(target),
-                          parseIssuer(issuer),
-                          reason,
-                          timeIssued,
-                          length,
-                          PunishmentType.valueOf(type.toUpperCase()),
-                          active,
-                          lastUpdate,
-                          parseIssuer(lastUpdateBy),
-                          service));
+                  Punishment punishment = readPunishment(row);
+                  if (punishment.isActive()) punishments.add(punishment);
                 }
               }
-
               return punishments;
-            });
+            },
+            async());
   }
 
-  public void invalidate(UUID playerId) {
-    if (punishmentCache.getIfPresent(playerId) != null) {
-      punishmentCache.invalidate(playerId);
+  /**
+   * Gets the addresses of every player banned by this service within a period
+   *
+   * @param period How long ago the oldest ban may have been issued
+   * @return The players, with the time of their latest ban
+   */
+  public CompletableFuture<List<BannedAddresses>> getBannedAddresses(Duration period) {
+    // Player and ip ids can not be joined while only some of the tables use binary UUIDs
+    if (UUIDStorage.isBinary(TABLE_NAME) != UUIDStorage.isBinary(IP_USER_TABLE_NAME)
+        || UUIDStorage.isBinary(IP_USER_TABLE_NAME) != UUIDStorage.isBinary(IP_TABLE_NAME)) {
+      return CompletableFuture.completedFuture(ImmutableList.of());
     }
-  }
 
-  private class PlayerPunishments {
-
-    private final UUID playerId;
-    private final List<Punishment> punishments;
-    private boolean loaded;
+    return AsyncDB.getBulkResults(
+            SELECT_BANNED_ADDRESSES_QUERY,
+            true,
+            config.getService(),
+            PunishmentType.BAN.toString(),
+            PunishmentType.TEMP_BAN.toString(),
+            PunishmentType.NAME_BAN.toString(),
+            Instant.now().toEpochMilli() - period.toMillis())
+        .thenApplyAsync(
+            results -> {
+              Map<UUID, Instant> bannedAt = Maps.newHashMap();
+              SetMultimap<UUID, String> addresses = HashMultimap.create();
+              if (results != null) {
+                for (DbRow row : results) {
+                  UUID playerId = readId(row, "punished");
+                  Instant time = Instant.ofEpochMilli(readTime(row));
+                  bannedAt.merge(playerId, time, (a, b) -> a.isAfter(b) ? a : b);
+                  addresses.put(playerId, row.getString("address"));
+                }
+              }
 
-    public PlayerPunishments(UUID playerId) {
-      this.playerId = playerId;
-      this.punishments = Lists.newArrayList();
-      this.loaded = false;
-    }
+              List<BannedAddresses> banned = Lists.newArrayList();
+              bannedAt.forEach(
+                  (playerId, time) ->
+                      banned.add(new BannedAddresses(playerId, time, addresses.get(playerId))));
+              return banned;
+            },
+            async());
+  }
 
-    public UUID getPlayerId() {
-      return playerId;
-    }
+  /**
+   * Gets the punishments issued within a period
+   *
+   * @param since When the period starts, exclusive
+   * @param until When the period ends, inclusive
+   * @param limit The maximum number of punishments
+   * @return The newest punishments in the period, newest first
+   */
+  public CompletableFuture<List<Punishment>> getRecentPunishments(
+      Instant since, Instant until, int limit) {
+    return AsyncDB.getResults(
+            SELECT_RECENT_QUERY, since.toEpochMilli(), until.toEpochMilli(), limit)
+        .thenApplyAsync(this::readPunishments, async());
+  }
 
-    public List<Punishment> getPunishments() {
-      return punishments;
-    }
+  /** @return the newest punishments, newest first */
+  public CompletableFuture<List<Punishment>> getLatestPunishments(int limit) {
+    return AsyncDB.getBulkResults(SELECT_LATEST_QUERY, limit)
+        .thenApplyAsync(this::readPunishments, async());
+  }
 
-    public boolean isLoaded() {
-      return loaded;
+  private List<Punishment> readPunishments(List<DbRow> results) {
+    List<Punishment> punishments = Lists.newArrayList();
+    if (results != null) {
+      for (DbRow row : results) {
+        punishments.add(readPunishment(row));
+      }
     }
+    return punishments;
+  }
 
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
+  // Called for changes made on other servers, which have already written them through
+  public void invalidate(UUID playerId) {
+    punishmentCache.invalidateLocal(playerId);
   }
 }
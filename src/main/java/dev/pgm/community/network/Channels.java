@@ -1,5 +1,8 @@
 package dev.pgm.community.network;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+
 /** Channels - Names of Channels used by NetworkUpdates * */
 public class Channels {
 
@@ -15,6 +18,27 @@ public class Channels {
   // PUNISHMENT_UPDATE - Used to alert servers of unmuted or unbanned players
   public static final String PUNISHMENT_UPDATE = formatChannel("punishment_update");
 
+  // CACHE_INVALIDATION - Used to alert servers a record was created, so cached misses are dropped
+  public static final String CACHE_INVALIDATION = formatChannel("cache_invalidation");
+
+  // PRESENCE - Used to alert servers a player joined, quit or vanished
+  public static final String PRESENCE = formatChannel("presence");
+
+  // PRESENCE_SNAPSHOT - Used to periodically send every player online on a server
+  public static final String PRESENCE_SNAPSHOT = formatChannel("presence_snapshot");
+
+  // SPONSORS - Used to share sponsor queues and map cooldowns with other servers
+  public static final String SPONSORS = formatChannel("sponsors");
+
+  // BENCHMARK - Used by the local network benchmark, between simulated servers only
+  public static final String BENCHMARK = formatChannel("benchmark");
+
+  // DURABLE - Channels which servers must not miss, sent over streams when enabled
+  public static final Set<String> DURABLE = ImmutableSet.of(PUNISHMENTS, PUNISHMENT_UPDATE);
+
+  // PATTERN - Matches every channel, used to receive all updates on one subscription
+  public static final String PATTERN = formatChannel("*");
+
   private static final String formatChannel(String name) {
     return "community_" + name;
   }
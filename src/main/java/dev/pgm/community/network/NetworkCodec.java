@@ -0,0 +1,26 @@
+package dev.pgm.community.network;
+
+/**
+ * Converts the body of an update sent on a channel to and from bytes. Each channel has a single
+ * codec, shared by the update which sends it and the subscriber which receives it, see {@link
+ * NetworkCodecs}.
+ *
+ * @param <T> the type of update
+ */
+public interface NetworkCodec<T> {
+
+  /** @return the channel updates are sent on */
+  String getChannel();
+
+  /**
+   * The schema version of the body, which must be incremented whenever the format changes in a way
+   * older servers can not read. Servers skip updates with a newer version than their own.
+   *
+   * @return the schema version
+   */
+  int getVersion();
+
+  byte[] encode(T update);
+
+  T decode(byte[] data);
+}
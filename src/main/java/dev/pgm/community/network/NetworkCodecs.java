@@ -0,0 +1,164 @@
+package dev.pgm.community.network;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import dev.pgm.community.assistance.AssistanceRequest;
+import dev.pgm.community.chat.network.NetworkChatMessage;
+import dev.pgm.community.database.UUIDCodec;
+import dev.pgm.community.moderation.punishments.NetworkPunishment;
+import dev.pgm.community.moderation.punishments.Punishment;
+import dev.pgm.community.network.updates.types.CacheInvalidationUpdate.CacheKey;
+import dev.pgm.community.requests.SponsorState;
+import dev.pgm.community.sessions.Presence;
+import dev.pgm.community.sessions.PresenceSnapshot;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/** The {@link NetworkCodec} of every channel, sharing a single {@link Gson} instance */
+public final class NetworkCodecs {
+
+  private NetworkCodecs() {}
+
+  public static final Gson GSON =
+      new GsonBuilder()
+          .registerTypeAdapter(Instant.class, new InstantAdapter().nullSafe())
+          .registerTypeAdapter(Duration.class, new DurationAdapter().nullSafe())
+          .registerTypeAdapterFactory(new PunishmentAdapterFactory())
+          .create();
+
+  public static final NetworkCodec<AssistanceRequest> ASSISTANCE =
+      json(Channels.ASSISTANCE, AssistanceRequest.class, 1);
+
+  public static final NetworkCodec<NetworkChatMessage> CHAT =
+      json(Channels.CHAT, NetworkChatMessage.class, 1);
+
+  public static final NetworkCodec<NetworkPunishment> PUNISHMENTS =
+      json(Channels.PUNISHMENTS, NetworkPunishment.class, 1);
+
+  public static final NetworkCodec<UUID> PUNISHMENT_UPDATE = uuid(Channels.PUNISHMENT_UPDATE, 1);
+
+  public static final NetworkCodec<CacheKey> CACHE_INVALIDATION =
+      json(Channels.CACHE_INVALIDATION, CacheKey.class, 1);
+
+  public static final NetworkCodec<Presence> PRESENCE = json(Channels.PRESENCE, Presence.class, 1);
+
+  public static final NetworkCodec<PresenceSnapshot> PRESENCE_SNAPSHOT =
+      json(Channels.PRESENCE_SNAPSHOT, PresenceSnapshot.class, 1);
+
+  public static final NetworkCodec<SponsorState> SPONSORS =
+      json(Channels.SPONSORS, SponsorState.class, 1);
+
+  /** Creates a codec which writes updates as JSON using {@link #GSON} */
+  public static <T> NetworkCodec<T> json(String channel, Class<T> type, int version) {
+    checkNotNull(type);
+    return new Codec<T>(channel, version) {
+      @Override
+      public byte[] encode(T update) {
+        return GSON.toJson(update, type).getBytes(StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public T decode(byte[] data) {
+        return GSON.fromJson(new String(data, StandardCharsets.UTF_8), type);
+      }
+    };
+  }
+
+  /** Creates a codec which writes a single UUID as 16 bytes */
+  public static NetworkCodec<UUID> uuid(String channel, int version) {
+    return new Codec<UUID>(channel, version) {
+      @Override
+      public byte[] encode(UUID update) {
+        return UUIDCodec.toBytes(update);
+      }
+
+      @Override
+      public UUID decode(byte[] data) {
+        return UUIDCodec.fromBytes(data);
+      }
+    };
+  }
+
+  private abstract static class Codec<T> implements NetworkCodec<T> {
+    private final String channel;
+    private final int version;
+
+    Codec(String channel, int version) {
+      this.channel = checkNotNull(channel);
+      this.version = version;
+    }
+
+    @Override
+    public String getChannel() {
+      return channel;
+    }
+
+    @Override
+    public int getVersion() {
+      return version;
+    }
+  }
+
+  private static class InstantAdapter extends TypeAdapter<Instant> {
+    @Override
+    public void write(JsonWriter out, Instant value) throws IOException {
+      out.value(value.toEpochMilli());
+    }
+
+    @Override
+    public Instant read(JsonReader in) throws IOException {
+      return Instant.ofEpochMilli(in.nextLong());
+    }
+  }
+
+  private static class DurationAdapter extends TypeAdapter<Duration> {
+    @Override
+    public void write(JsonWriter out, Duration value) throws IOException {
+      out.value(value.toMillis());
+    }
+
+    @Override
+    public Duration read(JsonReader in) throws IOException {
+      return Duration.ofMillis(in.nextLong());
+    }
+  }
+
+  /**
+   * Writes punishments by their common fields, and reads them back as the subclass for their
+   * {@link dev.pgm.community.moderation.punishments.PunishmentType}
+   */
+  private static class PunishmentAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+      if (!Punishment.class.isAssignableFrom(type.getRawType())) return null;
+
+      TypeAdapter<Punishment> delegate =
+          gson.getDelegateAdapter(this, TypeToken.get(Punishment.class));
+      return (TypeAdapter<T>)
+          new TypeAdapter<Punishment>() {
+            @Override
+            public void write(JsonWriter out, Punishment value) throws IOException {
+              delegate.write(out, value);
+            }
+
+            @Override
+            public Punishment read(JsonReader in) throws IOException {
+              Punishment punishment = delegate.read(in);
+              if (punishment == null || punishment.getType() == null) return punishment;
+              return Punishment.of(punishment);
+            }
+          };
+    }
+  }
+}
@@ -2,6 +2,7 @@ package dev.pgm.community.network;
 
 import dev.pgm.community.feature.config.FeatureConfigImpl;
 import dev.pgm.community.utils.NetworkUtils;
+import java.time.Duration;
 import java.util.UUID;
 import org.bukkit.configuration.Configuration;
 
@@ -10,19 +11,41 @@ public class NetworkConfig extends FeatureConfigImpl {
   private static final String KEY = "network";
 
   private static final String ID = KEY + ".id";
+  private static final String TYPE = KEY + ".type";
+
+  private static final String LOCAL_ASYNC = KEY + ".local.async";
 
   private static final String REDIS = KEY + ".redis";
   private static final String REDIS_HOST = REDIS + ".host";
   private static final String REDIS_PASSWORD = REDIS + ".password";
   private static final String REDIS_PORT = REDIS + ".port";
   private static final String REDIS_SSL = REDIS + ".ssl";
+  private static final String REDIS_STREAMS = REDIS + ".streams";
+  private static final String REDIS_STREAMS_ENABLED = REDIS_STREAMS + ".enabled";
+  private static final String REDIS_STREAMS_MAX_LENGTH = REDIS_STREAMS + ".max-length";
+  private static final String REDIS_CACHE = REDIS + ".cache";
+  private static final String REDIS_CACHE_ENABLED = REDIS_CACHE + ".enabled";
+  private static final String REDIS_CACHE_TTL = REDIS_CACHE + ".ttl-minutes";
+
+  private static final String COMPRESSION_THRESHOLD = KEY + ".compression-threshold";
+  private static final String PUBLISH_QUEUE_SIZE = KEY + ".publish-queue-size";
 
   private String host;
   private String password;
   private int port;
   private boolean ssl;
+  private boolean streams;
+  private long streamMaxLength;
+  private boolean sharedCache;
+  private Duration sharedCacheTtl;
+
+  private int compressionThreshold;
+  private int publishQueueSize;
 
   private String networkId;
+  private boolean fixedNetworkId;
+
+  private boolean localAsync;
 
   public NetworkConfig(Configuration config) {
     super(KEY, config);
@@ -32,6 +55,11 @@ public class NetworkConfig extends FeatureConfigImpl {
     return NetworkUtils.getServerVar(networkId);
   }
 
+  /** @return whether the network id is configured, rather than generated on each start */
+  public boolean hasFixedNetworkId() {
+    return fixedNetworkId;
+  }
+
   public String getHost() {
     return host;
   }
@@ -48,6 +76,49 @@ public class NetworkConfig extends FeatureConfigImpl {
     return ssl;
   }
 
+  /** @return whether the local network handles updates on the dispatcher thread */
+  public boolean isLocalAsync() {
+    return localAsync;
+  }
+
+  /** @return whether durable channels are sent over Redis Streams */
+  public boolean isStreamsEnabled() {
+    return streams;
+  }
+
+  /** @return the approximate number of entries kept in each stream */
+  public long getStreamMaxLength() {
+    return streamMaxLength;
+  }
+
+  /** @return whether player data is cached in Redis, shared between servers */
+  public boolean isSharedCacheEnabled() {
+    return sharedCache;
+  }
+
+  /** @return how long shared cache entries are kept after they were last stored */
+  public Duration getSharedCacheTtl() {
+    return sharedCacheTtl;
+  }
+
+  /** @return the size in bytes at which update bodies are compressed, zero to never compress */
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /** @return the maximum number of updates waiting to be published */
+  public int getPublishQueueSize() {
+    return publishQueueSize;
+  }
+
+  /**
+   * @param config The plugin config
+   * @return whether the network is in-memory rather than Redis
+   */
+  public static boolean isLocal(Configuration config) {
+    return "local".equalsIgnoreCase(config.getString(TYPE, "redis"));
+  }
+
   @Override
   public void reload(Configuration config) {
     super.reload(config);
@@ -55,8 +126,17 @@ public class NetworkConfig extends FeatureConfigImpl {
     this.password = config.getString(REDIS_PASSWORD);
     this.port = config.getInt(REDIS_PORT);
     this.ssl = config.getBoolean(REDIS_SSL);
+    this.streams = config.getBoolean(REDIS_STREAMS_ENABLED, false);
+    this.streamMaxLength = Math.max(1, config.getLong(REDIS_STREAMS_MAX_LENGTH, 10000));
+    this.sharedCache = config.getBoolean(REDIS_CACHE_ENABLED, true);
+    this.sharedCacheTtl = Duration.ofMinutes(Math.max(1, config.getInt(REDIS_CACHE_TTL, 30)));
+    this.compressionThreshold = Math.max(0, config.getInt(COMPRESSION_THRESHOLD, 1024));
+    this.publishQueueSize = Math.max(1, config.getInt(PUBLISH_QUEUE_SIZE, 10000));
+
+    this.localAsync = config.getBoolean(LOCAL_ASYNC, true);
 
     String netId = config.getString(ID);
-    this.networkId = netId != null && !netId.isEmpty() ? netId : UUID.randomUUID().toString();
+    this.fixedNetworkId = netId != null && !netId.isEmpty();
+    this.networkId = fixedNetworkId ? netId : UUID.randomUUID().toString();
   }
 }
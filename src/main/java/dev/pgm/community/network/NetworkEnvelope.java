@@ -0,0 +1,200 @@
+package dev.pgm.community.network;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import dev.pgm.community.network.updates.NetworkUpdate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An update as it is sent over the network: a header describing where and when it was sent,
+ * followed by the body written by the channel's {@link NetworkCodec}.
+ *
+ * <p>Wire format:
+ *
+ * <pre>
+ * byte   format, always {@link #FORMAT}
+ * byte   flags, see {@link #COMPRESSED}
+ * UTF    origin network id
+ * UTF    channel
+ * short  schema version of the body
+ * long   send time, in epoch millis
+ * int    body length, followed by the body (deflated when compressed)
+ * </pre>
+ */
+public class NetworkEnvelope {
+
+  public static final byte FORMAT = 1;
+
+  // Flags
+  public static final byte COMPRESSED = 1;
+
+  // Guards against allocating huge buffers for a corrupt length
+  private static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
+
+  private final String origin;
+  private final String channel;
+  private final int version;
+  private final long timestamp;
+  private final byte[] body;
+
+  public NetworkEnvelope(String origin, String channel, int version, long timestamp, byte[] body) {
+    this.origin = checkNotNull(origin);
+    this.channel = checkNotNull(channel);
+    this.version = version;
+    this.timestamp = timestamp;
+    this.body = checkNotNull(body);
+  }
+
+  /**
+   * Wraps an update to be sent now
+   *
+   * @param origin The network id of this server
+   * @param update The update
+   * @return The envelope for the update
+   */
+  public static NetworkEnvelope of(String origin, NetworkUpdate update) {
+    return new NetworkEnvelope(
+        origin,
+        update.getChannel(),
+        update.getVersion(),
+        System.currentTimeMillis(),
+        update.getData());
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * Writes the envelope to bytes
+   *
+   * @param compressionThreshold Bodies of at least this many bytes are compressed, zero to never
+   *     compress
+   * @return The encoded envelope
+   */
+  public byte[] encode(int compressionThreshold) {
+    byte flags = 0;
+    byte[] data = body;
+    if (compressionThreshold > 0 && body.length >= compressionThreshold) {
+      byte[] deflated = deflate(body);
+      // Already compact bodies may grow, send those as they are
+      if (deflated.length < body.length) {
+        flags |= COMPRESSED;
+        data = deflated;
+      }
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + 64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(FORMAT);
+      out.writeByte(flags);
+      out.writeUTF(origin);
+      out.writeUTF(channel);
+      out.writeShort(version);
+      out.writeLong(timestamp);
+      out.writeInt(data.length);
+      out.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Reads an envelope from bytes
+   *
+   * @param data The encoded envelope
+   * @return The envelope, with its body decompressed
+   * @throws IOException If the data is not a valid envelope
+   */
+  public static NetworkEnvelope decode(byte[] data) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      byte format = in.readByte();
+      if (format != FORMAT) {
+        throw new IOException("Unknown envelope format " + format);
+      }
+
+      byte flags = in.readByte();
+      String origin = in.readUTF();
+      String channel = in.readUTF();
+      int version = in.readUnsignedShort();
+      long timestamp = in.readLong();
+
+      int length = in.readInt();
+      if (length < 0 || length > MAX_BODY_LENGTH) {
+        throw new IOException("Invalid body length " + length);
+      }
+      byte[] body = new byte[length];
+      in.readFully(body);
+
+      if ((flags & COMPRESSED) != 0) {
+        body = inflate(body);
+      }
+      return new NetworkEnvelope(origin, channel, version, timestamp, body);
+    }
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] data) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+      byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        int read = inflater.inflate(buffer);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated compressed body");
+        }
+        out.write(buffer, 0, read);
+        if (out.size() > MAX_BODY_LENGTH) {
+          throw new IOException("Compressed body is too large");
+        }
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid compressed body", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package dev.pgm.community.network;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-channel counters for the network: updates and bytes sent and received, how long subscribers
+ * take to handle updates, and how long updates take to arrive.
+ *
+ * <p>Latency is measured from the send time in the {@link NetworkEnvelope} to when the update is
+ * handed to subscribers, so it includes time spent waiting for the dispatcher. It relies on the
+ * clocks of the servers agreeing, any skew between them shows up as latency (and negative
+ * latencies are counted as zero).
+ */
+public class NetworkMetrics {
+
+  private final Map<String, ChannelMetrics> channels = Maps.newConcurrentMap();
+
+  public void recordSent(String channel, int bytes) {
+    ChannelMetrics metrics = get(channel);
+    metrics.sent.increment();
+    metrics.sentBytes.add(bytes);
+  }
+
+  /**
+   * Records an update received from another server
+   *
+   * @param channel The channel
+   * @param bytes The size of the encoded envelope
+   * @param latencyMillis The time between the update being sent and handed to subscribers
+   */
+  public void recordReceived(String channel, int bytes, long latencyMillis) {
+    ChannelMetrics metrics = get(channel);
+    metrics.received.increment();
+    metrics.receivedBytes.add(bytes);
+    metrics.latency.record(Math.max(0, latencyMillis) * 1_000_000L);
+  }
+
+  /**
+   * Records the time taken by every subscriber of a channel to handle an update
+   *
+   * @param channel The channel
+   * @param nanos The time taken, in nanoseconds
+   */
+  public void recordHandled(String channel, long nanos) {
+    get(channel).handler.record(nanos);
+  }
+
+  /** @return the metrics of every channel which has been used, by channel */
+  public SortedMap<String, ChannelMetrics> getChannels() {
+    return ImmutableSortedMap.copyOf(channels);
+  }
+
+  /** Forgets everything recorded so far */
+  public void reset() {
+    channels.clear();
+  }
+
+  private ChannelMetrics get(String channel) {
+    return channels.computeIfAbsent(channel, c -> new ChannelMetrics());
+  }
+
+  public static class ChannelMetrics {
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final Timing latency = new Timing();
+    private final Timing handler = new Timing();
+
+    public long getSentCount() {
+      return sent.sum();
+    }
+
+    public long getSentBytes() {
+      return sentBytes.sum();
+    }
+
+    public long getReceivedCount() {
+      return received.sum();
+    }
+
+    public long getReceivedBytes() {
+      return receivedBytes.sum();
+    }
+
+    public double getAverageLatencyMillis() {
+      return latency.getAverageMillis();
+    }
+
+    public double getMaxLatencyMillis() {
+      return latency.getMaxMillis();
+    }
+
+    public double getAverageHandlerMillis() {
+      return handler.getAverageMillis();
+    }
+
+    public double getMaxHandlerMillis() {
+      return handler.getMaxMillis();
+    }
+  }
+
+  private static class Timing {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    double getAverageMillis() {
+      long samples = count.sum();
+      return samples == 0 ? 0 : totalNanos.sum() / 1_000_000D / samples;
+    }
+
+    double getMaxMillis() {
+      return maxNanos.get() / 1_000_000D;
+    }
+  }
+}
@@ -1,8 +1,10 @@
 package dev.pgm.community.network.feature;
 
 import dev.pgm.community.feature.Feature;
+import dev.pgm.community.network.NetworkMetrics;
 import dev.pgm.community.network.subs.NetworkSubscriber;
 import dev.pgm.community.network.updates.NetworkUpdate;
+import dev.pgm.community.ratelimit.RateLimiter;
 
 /** NetworkFeature - Feature related to communicating across multiple servers (Bungee) * */
 public interface NetworkFeature extends Feature {
@@ -20,7 +22,7 @@ public interface NetworkFeature extends Feature {
    *
    * @param sub
    */
-  void registerSubscriber(NetworkSubscriber sub);
+  void registerSubscriber(NetworkSubscriber<?> sub);
 
   /**
    * Get the Network ID The network id is used to identify server where update originated from.
@@ -30,4 +32,19 @@ public interface NetworkFeature extends Feature {
    * @return the network id
    */
   String getNetworkId();
+
+  /**
+   * Get the rate limiter for features to check cooldowns with. Limits are shared with other
+   * servers when the network supports it.
+   *
+   * @return the rate limiter
+   */
+  RateLimiter getRateLimiter();
+
+  /**
+   * Get the per-channel traffic, latency and handler timings of this server
+   *
+   * @return the network metrics
+   */
+  NetworkMetrics getMetrics();
 }
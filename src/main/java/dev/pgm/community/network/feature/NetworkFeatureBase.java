@@ -1,12 +1,39 @@
 package dev.pgm.community.network.feature;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dev.pgm.community.feature.FeatureBase;
 import dev.pgm.community.network.NetworkConfig;
+import dev.pgm.community.network.NetworkEnvelope;
+import dev.pgm.community.network.NetworkMetrics;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.network.updates.NetworkUpdate;
+import dev.pgm.community.ratelimit.RateLimiter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bukkit.configuration.Configuration;
 
 public abstract class NetworkFeatureBase extends FeatureBase implements NetworkFeature {
 
+  // Channel -> subscribers
+  private final Map<String, List<NetworkSubscriber<?>>> subscribers = Maps.newConcurrentMap();
+
+  private final RateLimiter rateLimiter = new RateLimiter();
+
+  private final NetworkMetrics metrics = new NetworkMetrics();
+
+  private Executor dispatcher;
+  private volatile boolean dispatching;
+
   public NetworkFeatureBase(Configuration config, Logger logger, String featureName) {
     super(new NetworkConfig(config), logger, featureName);
     if (getConfig().isEnabled()) {
@@ -22,4 +49,114 @@ public abstract class NetworkFeatureBase extends FeatureBase implements NetworkF
   public String getNetworkId() {
     return getNetworkConfig().getNetworkId();
   }
+
+  @Override
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  @Override
+  public NetworkMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    return rateLimiter.prefetch(playerId);
+  }
+
+  @Override
+  public void enable() {
+    super.enable();
+    this.dispatcher = createDispatcher();
+    this.dispatching = true;
+  }
+
+  @Override
+  public void disable() {
+    super.disable();
+    this.dispatching = false;
+    if (dispatcher instanceof ExecutorService) {
+      ((ExecutorService) dispatcher).shutdown();
+    }
+  }
+
+  /**
+   * Creates the executor subscribers are run on, called on enable. By default this is a single
+   * thread, so updates on a channel are handled in the order received.
+   *
+   * @return The executor
+   */
+  protected Executor createDispatcher() {
+    return Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("Community Network Dispatcher")
+            .setDaemon(true)
+            .build());
+  }
+
+  @Override
+  public void registerSubscriber(NetworkSubscriber<?> sub) {
+    subscribers
+        .computeIfAbsent(sub.getChannel(), channel -> Lists.newCopyOnWriteArrayList())
+        .add(sub);
+  }
+
+  /**
+   * Wraps an update in an envelope from this server, ready to be sent
+   *
+   * @param update The update
+   * @return The encoded envelope
+   */
+  protected byte[] encode(NetworkUpdate update) {
+    byte[] data =
+        NetworkEnvelope.of(getNetworkId(), update)
+            .encode(getNetworkConfig().getCompressionThreshold());
+    metrics.recordSent(update.getChannel(), data.length);
+    return data;
+  }
+
+  /**
+   * Hands a received message to the subscribers of its channel
+   *
+   * @param channel The channel the message was received on
+   * @param message The encoded envelope
+   * @return A future completed once every subscriber has handled the message
+   */
+  protected CompletableFuture<Void> dispatch(String channel, byte[] message) {
+    List<NetworkSubscriber<?>> subs = subscribers.get(channel);
+    if (subs == null || !dispatching) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return CompletableFuture.runAsync(
+        () -> {
+          NetworkEnvelope envelope;
+          try {
+            envelope = NetworkEnvelope.decode(message);
+          } catch (IOException e) {
+            logger.warning(
+                String.format("Unable to read update on channel %s: %s", channel, e.getMessage()));
+            return;
+          }
+
+          // Updates echoed back to this server are ignored by every subscriber
+          boolean remote = !getNetworkId().equalsIgnoreCase(envelope.getOrigin());
+          if (remote) {
+            metrics.recordReceived(
+                channel, message.length, System.currentTimeMillis() - envelope.getTimestamp());
+          }
+
+          long start = System.nanoTime();
+          for (NetworkSubscriber<?> sub : subs) {
+            try {
+              sub.onMessage(envelope);
+            } catch (RuntimeException e) {
+              logger.log(Level.WARNING, "Unable to handle update on channel " + channel, e);
+            }
+          }
+          if (remote) metrics.recordHandled(channel, System.nanoTime() - start);
+        },
+        dispatcher);
+  }
 }
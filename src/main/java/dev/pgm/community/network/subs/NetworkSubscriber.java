@@ -1,21 +1,25 @@
 package dev.pgm.community.network.subs;
 
-import com.google.gson.Gson;
+import dev.pgm.community.network.NetworkCodec;
+import dev.pgm.community.network.NetworkEnvelope;
 import java.util.logging.Logger;
-import redis.clients.jedis.JedisPubSub;
 
-public abstract class NetworkSubscriber extends JedisPubSub {
+/**
+ * Consumes updates sent to a channel, see {@link
+ * dev.pgm.community.network.feature.NetworkFeature#registerSubscriber(NetworkSubscriber)}
+ *
+ * @param <T> the type of update
+ */
+public abstract class NetworkSubscriber<T> {
 
-  private String channel;
-  private String networkId;
+  private final NetworkCodec<T> codec;
+  private final String networkId;
   protected Logger logger;
-  protected Gson gson;
 
-  public NetworkSubscriber(String channel, String networkId, Logger logger) {
-    this.channel = channel;
+  public NetworkSubscriber(NetworkCodec<T> codec, String networkId, Logger logger) {
+    this.codec = codec;
     this.networkId = networkId;
     this.logger = logger;
-    this.gson = new Gson();
   }
 
   public String getNetworkId() {
@@ -23,23 +27,27 @@ public abstract class NetworkSubscriber extends JedisPubSub {
   }
 
   public String getChannel() {
-    return channel;
+    return codec.getChannel();
   }
 
-  public abstract void onReceiveUpdate(String data);
-
-  @Override
-  public void onMessage(String channel, String msg) {
-    if (channel.equalsIgnoreCase(getChannel())) {
-      // Data format -> 'networkId;message'
-      String[] parts = msg.split(";");
-      if (parts.length == 2) {
-        String id = parts[0];
-        String data = parts[1];
-        if (!getNetworkId().equalsIgnoreCase(id)) {
-          this.onReceiveUpdate(data);
-        }
-      }
+  public abstract void onReceiveUpdate(T update);
+
+  public void onMessage(NetworkEnvelope envelope) {
+    // Ignore updates sent by this server
+    if (!envelope.getChannel().equalsIgnoreCase(getChannel())
+        || getNetworkId().equalsIgnoreCase(envelope.getOrigin())) return;
+
+    if (envelope.getVersion() > codec.getVersion()) {
+      logger.warning(
+          String.format(
+              "Skipped update on channel %s from %s with newer schema version %d (expected %d)",
+              getChannel(), envelope.getOrigin(), envelope.getVersion(), codec.getVersion()));
+      return;
+    }
+
+    T update = codec.decode(envelope.getBody());
+    if (update != null) {
+      this.onReceiveUpdate(update);
     }
   }
 }
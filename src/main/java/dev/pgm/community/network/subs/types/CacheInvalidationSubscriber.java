@@ -0,0 +1,22 @@
+package dev.pgm.community.network.subs.types;
+
+import dev.pgm.community.Community;
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.network.updates.types.CacheInvalidationUpdate.CacheKey;
+import java.util.logging.Logger;
+
+/** CacheInvalidationSubscriber - Drops cached records created or changed on other servers */
+public class CacheInvalidationSubscriber extends NetworkSubscriber<CacheKey> {
+
+  public CacheInvalidationSubscriber(String networkId, Logger logger) {
+    super(NetworkCodecs.CACHE_INVALIDATION, networkId, logger);
+  }
+
+  @Override
+  public void onReceiveUpdate(CacheKey key) {
+    if (key.getCache() != null && key.getKey() != null) {
+      Community.get().getDatabase().invalidateRemote(key.getCache(), key.getKey());
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package dev.pgm.community.network.subs.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.sessions.PresenceDirectory;
+import dev.pgm.community.sessions.PresenceSnapshot;
+import java.util.logging.Logger;
+
+/** PresenceSnapshotSubscriber - Listens for {@link PresenceSnapshot}s from other servers */
+public class PresenceSnapshotSubscriber extends NetworkSubscriber<PresenceSnapshot> {
+
+  private final PresenceDirectory directory;
+
+  public PresenceSnapshotSubscriber(PresenceDirectory directory, String networkId, Logger logger) {
+    super(NetworkCodecs.PRESENCE_SNAPSHOT, networkId, logger);
+    this.directory = directory;
+  }
+
+  @Override
+  public void onReceiveUpdate(PresenceSnapshot snapshot) {
+    directory.recieveSnapshot(snapshot);
+  }
+}
@@ -0,0 +1,23 @@
+package dev.pgm.community.network.subs.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.sessions.Presence;
+import dev.pgm.community.sessions.PresenceDirectory;
+import java.util.logging.Logger;
+
+/** PresenceSubscriber - Listens for {@link Presence} changes on other servers */
+public class PresenceSubscriber extends NetworkSubscriber<Presence> {
+
+  private final PresenceDirectory directory;
+
+  public PresenceSubscriber(PresenceDirectory directory, String networkId, Logger logger) {
+    super(NetworkCodecs.PRESENCE, networkId, logger);
+    this.directory = directory;
+  }
+
+  @Override
+  public void onReceiveUpdate(Presence presence) {
+    directory.recieveUpdate(presence);
+  }
+}
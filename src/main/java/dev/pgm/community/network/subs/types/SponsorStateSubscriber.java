@@ -0,0 +1,23 @@
+package dev.pgm.community.network.subs.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.requests.SponsorDirectory;
+import dev.pgm.community.requests.SponsorState;
+import java.util.logging.Logger;
+
+/** SponsorStateSubscriber - Listens for {@link SponsorState}s from other servers */
+public class SponsorStateSubscriber extends NetworkSubscriber<SponsorState> {
+
+  private final SponsorDirectory directory;
+
+  public SponsorStateSubscriber(SponsorDirectory directory, String networkId, Logger logger) {
+    super(NetworkCodecs.SPONSORS, networkId, logger);
+    this.directory = directory;
+  }
+
+  @Override
+  public void onReceiveUpdate(SponsorState state) {
+    directory.recieveState(state);
+  }
+}
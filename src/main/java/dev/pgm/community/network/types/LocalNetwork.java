@@ -0,0 +1,56 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory network joined by {@link LocalNetworkFeature}s, standing in for Redis. Every update
+ * sent is delivered to every server which has joined, including the one which sent it, just as
+ * Redis pub/sub would.
+ */
+public class LocalNetwork {
+
+  private final CopyOnWriteArrayList<LocalNetworkFeature> servers =
+      Lists.newCopyOnWriteArrayList();
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong delivered = new AtomicLong();
+
+  void join(LocalNetworkFeature server) {
+    servers.addIfAbsent(server);
+  }
+
+  void leave(LocalNetworkFeature server) {
+    servers.remove(server);
+  }
+
+  /**
+   * Delivers a message to every server
+   *
+   * @param channel The channel
+   * @param message The encoded envelope
+   */
+  void send(String channel, byte[] message) {
+    sent.incrementAndGet();
+    for (LocalNetworkFeature server : servers) {
+      server.receive(channel, message);
+      delivered.incrementAndGet();
+    }
+  }
+
+  /** @return every server on the network, including simulated ones */
+  public List<LocalNetworkFeature> getServers() {
+    return ImmutableList.copyOf(servers);
+  }
+
+  public long getSentCount() {
+    return sent.get();
+  }
+
+  public long getDeliveredCount() {
+    return delivered.get();
+  }
+}
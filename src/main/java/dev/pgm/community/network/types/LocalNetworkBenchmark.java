@@ -0,0 +1,126 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.collect.Lists;
+import dev.pgm.community.network.Channels;
+import dev.pgm.community.network.NetworkCodec;
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.subs.NetworkSubscriber;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures cross server delivery on a {@link LocalNetwork}, by simulating several logical servers
+ * inside this JVM which all send updates to each other.
+ *
+ * <p>Updates are sent on {@link Channels#BENCHMARK}, which no real feature subscribes to, and the
+ * simulated servers are disabled once the run ends, so the server it runs on is left untouched.
+ */
+public class LocalNetworkBenchmark {
+
+  private static final NetworkCodec<UUID> CODEC = NetworkCodecs.uuid(Channels.BENCHMARK, 1);
+
+  private final LocalNetworkFeature network;
+  private final Logger logger;
+
+  public LocalNetworkBenchmark(LocalNetworkFeature network, Logger logger) {
+    this.network = network;
+    this.logger = logger;
+  }
+
+  /**
+   * Simulates servers which each send updates to every other, and waits for them to be delivered
+   *
+   * @param servers The number of servers to simulate, at least two
+   * @param updates The number of updates each server sends
+   * @param timeoutSeconds How long to wait for every update to be delivered
+   * @return The result of the run
+   * @throws InterruptedException If interrupted while waiting for updates
+   */
+  public Result run(int servers, int updates, long timeoutSeconds) throws InterruptedException {
+    servers = Math.max(2, servers);
+    long expected = (long) servers * (servers - 1) * updates;
+    CountDownLatch received = new CountDownLatch((int) Math.min(Integer.MAX_VALUE, expected));
+
+    List<LocalNetworkFeature> simulated = Lists.newArrayList();
+    try {
+      for (int i = 0; i < servers; i++) {
+        LocalNetworkFeature server = network.simulateServer("benchmark-" + i);
+        // Each subscriber skips updates sent by its own server, as on a real network
+        server.registerSubscriber(
+            new NetworkSubscriber<UUID>(CODEC, server.getNetworkId(), logger) {
+              @Override
+              public void onReceiveUpdate(UUID update) {
+                received.countDown();
+              }
+            });
+        simulated.add(server);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < updates; i++) {
+        for (LocalNetworkFeature server : simulated) {
+          server.sendUpdate(new BenchmarkUpdate(UUID.randomUUID()));
+        }
+      }
+      boolean completed = received.await(timeoutSeconds, TimeUnit.SECONDS);
+      long elapsedNanos = System.nanoTime() - start;
+
+      return new Result(servers, expected, expected - received.getCount(), completed, elapsedNanos);
+    } finally {
+      simulated.forEach(LocalNetworkFeature::disable);
+    }
+  }
+
+  /** The deliveries and time taken by a run */
+  public static class Result {
+    private final int servers;
+    private final long expected;
+    private final long delivered;
+    private final boolean completed;
+    private final long elapsedNanos;
+
+    Result(int servers, long expected, long delivered, boolean completed, long elapsedNanos) {
+      this.servers = servers;
+      this.expected = expected;
+      this.delivered = delivered;
+      this.completed = completed;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getServers() {
+      return servers;
+    }
+
+    public long getExpected() {
+      return expected;
+    }
+
+    public long getDelivered() {
+      return delivered;
+    }
+
+    /** @return whether every update was delivered before the timeout */
+    public boolean isCompleted() {
+      return completed;
+    }
+
+    public double getElapsedMillis() {
+      return elapsedNanos / 1_000_000D;
+    }
+
+    /** @return the number of updates delivered per second */
+    public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : delivered * 1_000_000_000D / elapsedNanos;
+    }
+  }
+
+  private static class BenchmarkUpdate extends NetworkUpdateBase<UUID> {
+    BenchmarkUpdate(UUID id) {
+      super(id, CODEC);
+    }
+  }
+}
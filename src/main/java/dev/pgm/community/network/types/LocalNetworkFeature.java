@@ -0,0 +1,91 @@
+package dev.pgm.community.network.types;
+
+import dev.pgm.community.network.feature.NetworkFeatureBase;
+import dev.pgm.community.network.updates.NetworkUpdate;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import org.bukkit.configuration.Configuration;
+
+/**
+ * LocalNetworkFeature - In-memory implementation of NetworkFeature, for single server deployments
+ * which want networked features without running Redis.
+ *
+ * <p>Updates are still encoded and decoded, and are handled on the dispatcher thread or, with
+ * {@code network.local.async} off, on the thread which sent them. Further logical servers can be
+ * added to the same {@link LocalNetwork} with {@link #simulateServer(String)}, to exercise cross
+ * server behavior and measure the network layer inside one JVM, see {@link LocalNetworkBenchmark}.
+ */
+public class LocalNetworkFeature extends NetworkFeatureBase {
+
+  private final Configuration config;
+  private final LocalNetwork network;
+  private final @Nullable String networkId;
+
+  public LocalNetworkFeature(Configuration config, Logger logger) {
+    this(config, logger, new LocalNetwork(), null);
+  }
+
+  private LocalNetworkFeature(
+      Configuration config, Logger logger, LocalNetwork network, @Nullable String networkId) {
+    super(config, logger, networkId == null ? "Network (Local)" : "Network (" + networkId + ")");
+    this.config = config;
+    this.network = network;
+    this.networkId = networkId;
+    // Enabled by the super constructor, before the network was set
+    if (isEnabled()) {
+      network.join(this);
+    }
+  }
+
+  @Override
+  public String getNetworkId() {
+    return networkId != null ? networkId : super.getNetworkId();
+  }
+
+  @Override
+  public void enable() {
+    super.enable();
+    if (network != null) {
+      network.join(this);
+    }
+  }
+
+  @Override
+  public void disable() {
+    super.disable();
+    if (network != null) {
+      network.leave(this);
+    }
+  }
+
+  @Override
+  protected Executor createDispatcher() {
+    return getNetworkConfig().isLocalAsync() ? super.createDispatcher() : Runnable::run;
+  }
+
+  @Override
+  public void sendUpdate(NetworkUpdate update) {
+    if (!isEnabled()) return;
+    network.send(update.getChannel(), encode(update));
+  }
+
+  void receive(String channel, byte[] message) {
+    dispatch(channel, message);
+  }
+
+  /**
+   * Adds another logical server to this network, which receives every update sent by this server
+   * and can send its own
+   *
+   * @param networkId The network id of the new server
+   * @return The new server
+   */
+  public LocalNetworkFeature simulateServer(String networkId) {
+    return new LocalNetworkFeature(config, logger, network, networkId);
+  }
+
+  public LocalNetwork getLocalNetwork() {
+    return network;
+  }
+}
@@ -1,13 +1,14 @@
 package dev.pgm.community.network.types;
 
-import com.google.common.collect.Sets;
 import dev.pgm.community.Community;
+import dev.pgm.community.network.Channels;
 import dev.pgm.community.network.feature.NetworkFeatureBase;
-import dev.pgm.community.network.subs.NetworkSubscriber;
 import dev.pgm.community.network.updates.NetworkUpdate;
-import java.util.Set;
+import dev.pgm.community.network.updates.types.CacheInvalidationUpdate;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 import org.bukkit.configuration.Configuration;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -17,17 +18,19 @@ import redis.clients.jedis.exceptions.JedisConnectionException;
 /** RedisNetworkFeature - Redis implementation of NetworkFeature * */
 public class RedisNetworkFeature extends NetworkFeatureBase {
 
+  private static final long RESUBSCRIBE_DELAY_MILLIS = 5000;
+
   private JedisPool pool;
+  private RedisPublisher publisher;
+  private RedisStreams streams;
+  private RedisSharedCache sharedCache;
+  private RedisRateLimitStore rateLimits;
 
-  private Set<NetworkSubscriber> subscribers;
+  // A single subscription to every channel, dispatched to subscribers by channel
+  private BinaryJedisPubSub listener;
 
   public RedisNetworkFeature(Configuration config, Logger logger) {
     super(config, logger, "Network (Redis)");
-    this.subscribers = Sets.newHashSet();
-  }
-
-  public void registerSubscriber(NetworkSubscriber sub) {
-    this.subscribers.add(sub);
   }
 
   @Override
@@ -43,6 +46,39 @@ public class RedisNetworkFeature extends NetworkFeatureBase {
             getNetworkConfig().isSSL());
 
     testConnection();
+    if (pool.isClosed()) return; // Disabled after failing to connect
+
+    if (getNetworkConfig().isStreamsEnabled()) {
+      if (getNetworkConfig().hasFixedNetworkId()) {
+        this.streams =
+            new RedisStreams(
+                logger,
+                pool,
+                getNetworkId(),
+                getNetworkConfig().getStreamMaxLength(),
+                this::dispatch);
+      } else {
+        // A generated id would create a new consumer group on every start, and never replay
+        logger.warning("- REDIS: Streams require a network id to be set, using pub/sub instead");
+      }
+    }
+
+    this.publisher =
+        new RedisPublisher(
+            logger, pool, getNetworkConfig().getPublishQueueSize(), this::encode, streams);
+
+    this.rateLimits = new RedisRateLimitStore(logger, pool);
+    getRateLimiter().setStore(rateLimits);
+
+    if (getNetworkConfig().isSharedCacheEnabled()) {
+      this.sharedCache =
+          new RedisSharedCache(
+              logger,
+              pool,
+              getNetworkConfig().getSharedCacheTtl(),
+              (cache, key) -> sendUpdate(new CacheInvalidationUpdate(cache, key)));
+      Community.get().getDatabase().setSharedCache(sharedCache);
+    }
 
     // Delay subscriber so all features can register
     Community.get().getServer().getScheduler().runTaskLater(Community.get(), this::subscribe, 20l);
@@ -50,7 +86,26 @@ public class RedisNetworkFeature extends NetworkFeatureBase {
 
   @Override
   public void disable() {
+    // Stop reading streams first, so nothing is acknowledged without being handled
+    if (streams != null) {
+      streams.close();
+    }
     super.disable();
+    if (listener != null && listener.isSubscribed()) {
+      listener.punsubscribe();
+    }
+    if (rateLimits != null) {
+      getRateLimiter().setStore(null);
+      rateLimits.close();
+    }
+    // Before the publisher, as pending writes tell other servers once they are stored
+    if (sharedCache != null) {
+      Community.get().getDatabase().setSharedCache(null);
+      sharedCache.close();
+    }
+    if (publisher != null) {
+      publisher.close();
+    }
     if (pool != null && !pool.isClosed()) {
       pool.close();
     }
@@ -68,38 +123,62 @@ public class RedisNetworkFeature extends NetworkFeatureBase {
   }
 
   private void subscribe() {
-    subscribers.forEach(this::asyncSubscribe);
-  }
+    if (pool == null || pool.isClosed()) return;
+
+    if (streams != null) {
+      streams.start();
+    }
+
+    this.listener =
+        new BinaryJedisPubSub() {
+          @Override
+          public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+            dispatch(new String(channel, StandardCharsets.UTF_8), message);
+          }
+        };
 
-  private void asyncSubscribe(NetworkSubscriber sub) {
     Community.get()
         .getServer()
         .getScheduler()
         .runTaskAsynchronously(
             Community.get(),
             () -> {
-              try (Jedis jedi = pool.getResource()) {
-                jedi.subscribe(sub, sub.getChannel());
+              // Blocks until unsubscribed, resubscribing if the connection is lost
+              while (isEnabled() && !pool.isClosed()) {
+                try (Jedis jedi = pool.getResource()) {
+                  jedi.psubscribe(listener, Channels.PATTERN.getBytes(StandardCharsets.UTF_8));
+                } catch (JedisConnectionException e) {
+                  if (pool.isClosed()) break;
+                  logger.warning("- REDIS: Subscription lost, reconnecting...");
+                }
+                try {
+                  Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  break;
+                }
               }
             });
   }
 
   @Override
   public void sendUpdate(NetworkUpdate update) {
-    if (!isEnabled()) return;
-    Community.get()
-        .getServer()
-        .getScheduler()
-        .runTaskAsynchronously(
-            Community.get(),
-            () -> {
-              if (pool != null) {
-                try (Jedis jedi = pool.getResource()) {
-                  jedi.publish(
-                      update.getChannel(),
-                      String.format("%s;%s", getNetworkConfig().getNetworkId(), update.getData()));
-                }
-              }
-            });
+    if (!isEnabled() || publisher == null) return;
+    publisher.publish(update);
+  }
+
+  /** @return the streams durable channels are sent over, or {@code null} if not enabled */
+  public RedisStreams getStreams() {
+    return streams;
+  }
+
+  /** @return the cache shared with other servers, or {@code null} if not enabled */
+  public RedisSharedCache getSharedCache() {
+    return sharedCache;
+  }
+
+  /** @return the publisher, or {@code null} if not connected */
+  public RedisPublisher getPublisher() {
+    return publisher;
   }
 }
@@ -0,0 +1,347 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import dev.pgm.community.network.Channels;
+import dev.pgm.community.network.updates.NetworkUpdate;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import org.bukkit.Bukkit;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Publishes updates to Redis from a single thread.
+ *
+ * <p>Updates are queued, and everything queued while the previous batch was being sent is
+ * published together over one pipeline, so a burst of updates costs a single round trip. Updates
+ * with a {@link NetworkUpdate#getCoalesceKey() coalesce key} replace any pending update on the
+ * same channel with the same key.
+ *
+ * <p>The queue is bounded. When it is full, async callers wait briefly for space, while the main
+ * thread never waits - its updates are dropped and counted instead. Updates on {@link
+ * Channels#DURABLE durable channels} are never dropped, they are queued past the bound, and are
+ * queued again to be retried when Redis can not be reached.
+ */
+public class RedisPublisher {
+
+  private static final int BATCH_SIZE = 500;
+  private static final long BLOCK_TIMEOUT_MILLIS = 1000;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+  private static final long DROP_WARNING_INTERVAL_MILLIS = 10000;
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  private final Logger logger;
+  private final JedisPool pool;
+  private final Function<NetworkUpdate, byte[]> encoder;
+  @Nullable private final RedisStreams streams;
+  private final int capacity;
+  private final Thread thread;
+
+  // Pending updates in the order they were queued
+  private final LinkedHashMap<Object, PendingUpdate> pending;
+  private boolean closed;
+  private long lastDropWarning;
+
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+  private volatile long lastLatencyNanos;
+
+  /**
+   * Creates and starts a publisher
+   *
+   * @param logger A logger for failed publishes
+   * @param pool The pool to borrow a connection from for each batch
+   * @param capacity The maximum number of pending updates
+   * @param encoder Encodes an update, called from the publisher thread
+   * @param streams Streams to add durable updates to, or {@code null} to publish every update
+   */
+  public RedisPublisher(
+      Logger logger,
+      JedisPool pool,
+      int capacity,
+      Function<NetworkUpdate, byte[]> encoder,
+      @Nullable RedisStreams streams) {
+    this.logger = logger;
+    this.pool = pool;
+    this.capacity = Math.max(1, capacity);
+    this.encoder = encoder;
+    this.streams = streams;
+    this.pending = Maps.newLinkedHashMap();
+    this.thread = new Thread(this::run, "Community Network Publisher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Queues an update to be published
+   *
+   * @param update The update
+   * @return Whether the update was queued, false if it was dropped
+   */
+  public boolean publish(NetworkUpdate update) {
+    Object coalesceKey = update.getCoalesceKey();
+    Object key =
+        coalesceKey == null ? new Object() : new UpdateKey(update.getChannel(), coalesceKey);
+    PendingUpdate entry = new PendingUpdate(key, update);
+
+    synchronized (pending) {
+      if (closed) return drop();
+
+      // Re-insert so a replaced update keeps its order relative to everything queued before it
+      if (pending.remove(key) != null) {
+        coalesced.incrementAndGet();
+      } else if (pending.size() >= capacity && !isDurable(update) && !awaitCapacity()) {
+        return drop();
+      }
+
+      pending.put(key, entry);
+      pending.notifyAll();
+    }
+    return true;
+  }
+
+  /** Waits for the queue to have space, called while holding the lock */
+  private boolean awaitCapacity() {
+    if (Bukkit.isPrimaryThread()) return false;
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOCK_TIMEOUT_MILLIS);
+    try {
+      while (pending.size() >= capacity && !closed) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) return false;
+        pending.wait(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return !closed;
+  }
+
+  private boolean drop() {
+    dropped.incrementAndGet();
+    long now = System.currentTimeMillis();
+    if (now - lastDropWarning >= DROP_WARNING_INTERVAL_MILLIS) {
+      lastDropWarning = now;
+      logger.warning(
+          String.format(
+              "- REDIS: Publish queue is full, %d updates dropped so far", dropped.get()));
+    }
+    return false;
+  }
+
+  /** Stops accepting updates and waits for pending updates to be published */
+  public void close() {
+    synchronized (pending) {
+      closed = true;
+      pending.notifyAll();
+    }
+    try {
+      thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    while (true) {
+      List<PendingUpdate> batch = Lists.newArrayList();
+      synchronized (pending) {
+        try {
+          while (pending.isEmpty() && !closed) {
+            pending.wait();
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (pending.isEmpty()) return;
+
+        Iterator<PendingUpdate> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+          batch.add(iterator.next());
+          iterator.remove();
+        }
+        // Wake any callers waiting for space
+        pending.notifyAll();
+      }
+
+      if (!flush(batch)) {
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Publishes a batch of updates over a single pipeline, called from the publisher thread
+   *
+   * @return Whether Redis could be reached, if not durable updates have been queued again
+   */
+  private boolean flush(List<PendingUpdate> batch) {
+    List<PendingUpdate> encoded = Lists.newArrayListWithCapacity(batch.size());
+    for (PendingUpdate entry : batch) {
+      // Kept from a previous attempt when retrying
+      if (entry.data == null) {
+        try {
+          entry.data = encoder.apply(entry.update);
+        } catch (RuntimeException e) {
+          failed.incrementAndGet();
+          logger.log(
+              Level.WARNING, "Unable to encode update on channel " + entry.update.getChannel(), e);
+          continue;
+        }
+      }
+      encoded.add(entry);
+    }
+
+    try (Jedis jedis = pool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (PendingUpdate entry : encoded) {
+        String channel = entry.update.getChannel();
+        if (streams != null && streams.isDurable(channel)) {
+          streams.add(pipeline, channel, entry.data);
+        } else {
+          pipeline.publish(channel.getBytes(StandardCharsets.UTF_8), entry.data);
+        }
+      }
+      pipeline.sync();
+    } catch (JedisException e) {
+      int requeued = requeue(encoded);
+      failed.addAndGet(encoded.size() - requeued);
+      logger.warning(
+          String.format(
+              "- REDIS: Unable to publish %d updates, %d queued to retry: %s",
+              encoded.size(), requeued, e.getMessage()));
+      return false;
+    }
+
+    long now = System.nanoTime();
+    for (PendingUpdate entry : encoded) {
+      lastLatencyNanos = now - entry.queuedNanos;
+      totalLatencyNanos.addAndGet(lastLatencyNanos);
+    }
+    published.addAndGet(encoded.size());
+    batches.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Queues the durable updates of a failed batch again, ahead of everything queued since. Some of
+   * them may have been sent before the failure, so they can be delivered twice.
+   *
+   * @return The number of updates queued again
+   */
+  private int requeue(List<PendingUpdate> batch) {
+    synchronized (pending) {
+      // Once closed the publisher stops, so the updates can not be retried
+      if (closed) return 0;
+
+      LinkedHashMap<Object, PendingUpdate> queued = Maps.newLinkedHashMap();
+      for (PendingUpdate entry : batch) {
+        // A newer update with the same coalesce key replaces the failed one
+        if (isDurable(entry.update) && !pending.containsKey(entry.key)) {
+          queued.put(entry.key, entry);
+        }
+      }
+      int requeued = queued.size();
+      queued.putAll(pending);
+      pending.clear();
+      pending.putAll(queued);
+      return requeued;
+    }
+  }
+
+  private static boolean isDurable(NetworkUpdate update) {
+    return Channels.DURABLE.contains(update.getChannel());
+  }
+
+  public int getQueueDepth() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  public long getPublishedCount() {
+    return published.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  /** @return the time from queueing to being sent of the most recently published update */
+  public double getLastLatencyMillis() {
+    return lastLatencyNanos / 1_000_000D;
+  }
+
+  public double getAverageLatencyMillis() {
+    long count = published.get();
+    return count == 0 ? 0 : totalLatencyNanos.get() / 1_000_000D / count;
+  }
+
+  private static class PendingUpdate {
+    private final Object key;
+    private final NetworkUpdate update;
+    private final long queuedNanos = System.nanoTime();
+    private byte[] data; // Only accessed from the publisher thread
+
+    PendingUpdate(Object key, NetworkUpdate update) {
+      this.key = key;
+      this.update = update;
+    }
+  }
+
+  private static class UpdateKey {
+    private final String channel;
+    private final Object key;
+
+    UpdateKey(String channel, Object key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof UpdateKey)) return false;
+      UpdateKey other = (UpdateKey) obj;
+      return channel.equals(other.channel) && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(channel, key);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dev.pgm.community.ratelimit.RateLimit;
+import dev.pgm.community.ratelimit.RateLimitStore;
+import dev.pgm.community.ratelimit.TokenBucket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Keeps token buckets in Redis, in a hash per player with two fields per limit.
+ *
+ * <p>Taking a token runs as a script, so the refill and take are atomic even when the player uses
+ * the same limit on several servers at once. A player's hash expires once all of their buckets
+ * would have refilled.
+ */
+public class RedisRateLimitStore implements RateLimitStore {
+
+  private static final String KEY_PREFIX = "community:ratelimit:";
+  private static final String TOKENS_SUFFIX = ":tokens";
+  private static final String UPDATED_SUFFIX = ":time";
+  private static final int THREADS = 2;
+
+  // KEYS[1] = hash, ARGV = limit name, capacity, interval millis, now millis, ttl millis
+  private static final String ACQUIRE_SCRIPT =
+      "local tokens = tonumber(redis.call('HGET', KEYS[1], ARGV[1] .. '"
+          + TOKENS_SUFFIX
+          + "'))\n"
+          + "local time = tonumber(redis.call('HGET', KEYS[1], ARGV[1] .. '"
+          + UPDATED_SUFFIX
+          + "'))\n"
+          + "local capacity = tonumber(ARGV[2])\n"
+          + "local now = tonumber(ARGV[4])\n"
+          + "if tokens == nil or time == nil then tokens = capacity; time = now end\n"
+          + "tokens = math.min(capacity, tokens + math.max(0, now - time) / tonumber(ARGV[3]))\n"
+          + "if tokens >= 1 then tokens = tokens - 1 end\n"
+          + "time = math.max(time, now)\n"
+          + "redis.call('HMSET', KEYS[1], ARGV[1] .. '"
+          + TOKENS_SUFFIX
+          + "', tostring(tokens), ARGV[1] .. '"
+          + UPDATED_SUFFIX
+          + "', tostring(time))\n"
+          + "if redis.call('PTTL', KEYS[1]) < tonumber(ARGV[5]) then\n"
+          + "  redis.call('PEXPIRE', KEYS[1], ARGV[5])\n"
+          + "end\n"
+          + "return {tostring(tokens), tostring(time)}";
+
+  private final Logger logger;
+  private final JedisPool pool;
+  private final ExecutorService executor;
+  private volatile String scriptSha;
+
+  public RedisRateLimitStore(Logger logger, JedisPool pool) {
+    this.logger = logger;
+    this.pool = pool;
+    this.executor =
+        Executors.newFixedThreadPool(
+            THREADS,
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community Rate Limits #%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  @Override
+  public CompletableFuture<Map<String, TokenBucket>> load(UUID playerId) {
+    return supply(
+        () -> {
+          Map<String, String> fields;
+          try (Jedis jedis = pool.getResource()) {
+            fields = jedis.hgetAll(getKey(playerId));
+          }
+
+          Map<String, TokenBucket> buckets = Maps.newHashMap();
+          for (Map.Entry<String, String> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (!name.endsWith(TOKENS_SUFFIX)) continue;
+            name = name.substring(0, name.length() - TOKENS_SUFFIX.length());
+            String updated = fields.get(name + UPDATED_SUFFIX);
+            if (updated == null) continue;
+            try {
+              buckets.put(
+                  name,
+                  new TokenBucket(
+                      Double.parseDouble(field.getValue()), (long) Double.parseDouble(updated)));
+            } catch (NumberFormatException e) {
+              // Ignore a corrupt bucket, it is replaced on the next use
+            }
+          }
+          return buckets;
+        },
+        Collections.emptyMap());
+  }
+
+  @Override
+  public CompletableFuture<TokenBucket> acquire(RateLimit limit, UUID playerId, long now) {
+    List<String> keys = ImmutableList.of(getKey(playerId));
+    List<String> args =
+        ImmutableList.of(
+            limit.getName(),
+            Integer.toString(limit.getCapacity()),
+            Long.toString(limit.getInterval().toMillis()),
+            Long.toString(now),
+            Long.toString(limit.getRefillTime().toMillis()));
+    return supply(
+        () -> {
+          List<?> result;
+          try (Jedis jedis = pool.getResource()) {
+            result = (List<?>) eval(jedis, keys, args);
+          }
+          return new TokenBucket(
+              Double.parseDouble(String.valueOf(result.get(0))),
+              (long) Double.parseDouble(String.valueOf(result.get(1))));
+        },
+        null);
+  }
+
+  private Object eval(Jedis jedis, List<String> keys, List<String> args) {
+    String sha = scriptSha;
+    if (sha != null) {
+      try {
+        return jedis.evalsha(sha, keys, args);
+      } catch (JedisDataException e) {
+        if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) throw e;
+        // Flushed or restarted, load it again
+      }
+    }
+    this.scriptSha = jedis.scriptLoad(ACQUIRE_SCRIPT);
+    return jedis.evalsha(scriptSha, keys, args);
+  }
+
+  /** Runs a Redis call on the store's threads, completing with the fallback if it fails */
+  private <T> CompletableFuture<T> supply(Supplier<T> call, T fallback) {
+    try {
+      return CompletableFuture.supplyAsync(
+          () -> {
+            try {
+              return call.get();
+            } catch (JedisException | ClassCastException | NumberFormatException e) {
+              logger.warning("- REDIS: Rate limit request failed: " + e.getMessage());
+              return fallback;
+            }
+          },
+          executor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(fallback); // Closed
+    }
+  }
+
+  /** Stops accepting requests */
+  public void close() {
+    executor.shutdown();
+  }
+
+  private static String getKey(UUID playerId) {
+    return KEY_PREFIX + playerId;
+  }
+}
@@ -0,0 +1,180 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dev.pgm.community.database.SharedCache;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Keeps the {@link SharedCache} in Redis.
+ *
+ * <p>Each value is stored under its own key, {@code community:cache:<cache>:<key>}, and expires
+ * after the configured TTL. Values read from the database are only stored if no other server has
+ * stored one first, so a slow load can't replace a newer write.
+ *
+ * <p>Writes and invalidations run in order on a single thread, and other servers are only told to
+ * drop their copy once Redis has been updated, so they never reload the old value.
+ */
+public class RedisSharedCache implements SharedCache {
+
+  private static final String KEY_PREFIX = "community:cache:";
+  private static final int READ_THREADS = 4;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+  private final Logger logger;
+  private final JedisPool pool;
+  private final long ttlMillis;
+  private final BiConsumer<String, String> onChange;
+
+  private final ExecutorService reads;
+  private final ExecutorService writes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  /**
+   * Creates a shared cache
+   *
+   * @param logger A logger for failed writes
+   * @param pool The pool to borrow connections from
+   * @param ttl How long a value is kept after it was last stored
+   * @param onChange Tells other servers a value has changed, called with the cache and key
+   */
+  public RedisSharedCache(
+      Logger logger, JedisPool pool, Duration ttl, BiConsumer<String, String> onChange) {
+    this.logger = logger;
+    this.pool = pool;
+    this.ttlMillis = Math.max(1, ttl.toMillis());
+    this.onChange = onChange;
+    this.reads =
+        Executors.newFixedThreadPool(
+            READ_THREADS,
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community Shared Cache Reader #%d")
+                .setDaemon(true)
+                .build());
+    this.writes =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("Community Shared Cache Writer")
+                .setDaemon(true)
+                .build());
+  }
+
+  @Override
+  public CompletableFuture<byte[]> get(String cache, String key) {
+    try {
+      return CompletableFuture.supplyAsync(() -> read(cache, key), reads);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(null); // Closed
+    }
+  }
+
+  private byte[] read(String cache, String key) {
+    try (Jedis jedis = pool.getResource()) {
+      byte[] value = jedis.get(getKey(cache, key));
+      (value == null ? misses : hits).incrementAndGet();
+      return value;
+    } catch (JedisException e) {
+      failed.incrementAndGet();
+      return null; // Fall back to the database
+    }
+  }
+
+  @Override
+  public void fill(String cache, String key, byte[] value) {
+    submit(() -> set(cache, key, value, SetParams.setParams().px(ttlMillis).nx()));
+  }
+
+  @Override
+  public void write(String cache, String key, byte[] value) {
+    submit(
+        () -> {
+          set(cache, key, value, SetParams.setParams().px(ttlMillis));
+          onChange.accept(cache, key);
+        });
+  }
+
+  @Override
+  public void invalidate(String cache, String key) {
+    submit(
+        () -> {
+          try (Jedis jedis = pool.getResource()) {
+            jedis.del(getKey(cache, key));
+          } catch (JedisException e) {
+            fail("remove", cache, key, e);
+          }
+          onChange.accept(cache, key);
+        });
+  }
+
+  private void set(String cache, String key, byte[] value, SetParams params) {
+    try (Jedis jedis = pool.getResource()) {
+      jedis.set(getKey(cache, key), value, params);
+      written.incrementAndGet();
+    } catch (JedisException e) {
+      fail("store", cache, key, e);
+    }
+  }
+
+  private void fail(String action, String cache, String key, JedisException e) {
+    failed.incrementAndGet();
+    logger.warning(
+        String.format(
+            "- REDIS: Unable to %s shared cache entry %s:%s: %s",
+            action, cache, key, e.getMessage()));
+  }
+
+  private void submit(Runnable task) {
+    try {
+      writes.execute(task);
+    } catch (RejectedExecutionException e) {
+      // Closed, the value expires on its own
+    }
+  }
+
+  /** Stops accepting work and waits for pending writes */
+  public void close() {
+    reads.shutdown();
+    writes.shutdown();
+    try {
+      writes.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getWriteCount() {
+    return written.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  private static byte[] getKey(String cache, String key) {
+    return (KEY_PREFIX + cache + ":" + key).getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,238 @@
+package dev.pgm.community.network.types;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import dev.pgm.community.network.Channels;
+import java.util.AbstractMap;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Sends the {@link Channels#DURABLE durable channels} over Redis Streams instead of pub/sub, so
+ * servers which are restarting or disconnected receive them once they are back.
+ *
+ * <p>Each channel has a stream, capped to roughly the configured length, and each server reads it
+ * through its own consumer group named after its network id. Entries are acknowledged once every
+ * subscriber has handled them. On start, and after reconnecting, entries which were delivered but
+ * not acknowledged are handled first, followed by everything added since the last one read.
+ *
+ * <p>A new consumer group starts at the end of the stream, so history from before the server first
+ * joined is never replayed.
+ */
+public class RedisStreams {
+
+  private static final String STREAM_SUFFIX = ":stream";
+  private static final String DATA_FIELD = "data";
+
+  private static final int READ_COUNT = 100;
+  private static final int BLOCK_MILLIS = 1000; // Below the Jedis socket timeout
+  private static final long RETRY_DELAY_MILLIS = 5000;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+  private final Logger logger;
+  private final JedisPool pool;
+  private final String group;
+  private final long maxLength;
+  private final BiFunction<String, byte[], CompletableFuture<Void>> handler;
+
+  private volatile boolean running;
+  private Thread thread;
+
+  private final AtomicLong added = new AtomicLong();
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong replayed = new AtomicLong();
+
+  /**
+   * Creates a stream reader and writer
+   *
+   * @param logger A logger for read errors
+   * @param pool The pool to borrow connections from
+   * @param networkId The network id of this server, used as its consumer group
+   * @param maxLength The approximate number of entries to keep in each stream
+   * @param handler Handles an entry read from a channel, completing once it has been handled
+   */
+  public RedisStreams(
+      Logger logger,
+      JedisPool pool,
+      String networkId,
+      long maxLength,
+      BiFunction<String, byte[], CompletableFuture<Void>> handler) {
+    this.logger = logger;
+    this.pool = pool;
+    this.group = networkId;
+    this.maxLength = Math.max(1, maxLength);
+    this.handler = handler;
+  }
+
+  /**
+   * @param channel A channel
+   * @return whether updates on the channel are sent over a stream
+   */
+  public boolean isDurable(String channel) {
+    return Channels.DURABLE.contains(channel);
+  }
+
+  /**
+   * Adds an update to the stream of its channel
+   *
+   * @param pipeline The pipeline of the batch being published
+   * @param channel The channel, which must be {@link #isDurable(String) durable}
+   * @param data The encoded update
+   */
+  public void add(Pipeline pipeline, String channel, byte[] data) {
+    pipeline.xadd(
+        getStreamKey(channel),
+        StreamEntryID.NEW_ENTRY,
+        ImmutableMap.of(DATA_FIELD, Base64.getEncoder().encodeToString(data)),
+        maxLength,
+        true);
+    added.incrementAndGet();
+  }
+
+  /** Starts reading the streams, replaying anything missed since this server last read them */
+  public void start() {
+    if (running) return;
+    this.running = true;
+    this.thread = new Thread(this::run, "Community Network Streams");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** Stops reading, waiting for the current batch to be handled and acknowledged */
+  public void close() {
+    this.running = false;
+    if (thread != null) {
+      try {
+        thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    while (running && !pool.isClosed()) {
+      try (Jedis jedis = pool.getResource()) {
+        createGroups(jedis);
+
+        // Entries delivered before a restart or disconnect, but never acknowledged
+        while (running && read(jedis, new StreamEntryID(), 0, true) > 0) {}
+
+        while (running) {
+          read(jedis, StreamEntryID.UNRECEIVED_ENTRY, BLOCK_MILLIS, false);
+        }
+      } catch (JedisConnectionException | JedisDataException e) {
+        if (!running || pool.isClosed()) break;
+        logger.warning("- REDIS: Stream read failed, retrying: " + e.getMessage());
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  private void createGroups(Jedis jedis) {
+    for (String channel : Channels.DURABLE) {
+      try {
+        jedis.xgroupCreate(getStreamKey(channel), group, StreamEntryID.LAST_ENTRY, true);
+      } catch (JedisDataException e) {
+        // BUSYGROUP - this server has read the stream before
+        if (!e.getMessage().startsWith("BUSYGROUP")) throw e;
+      }
+    }
+  }
+
+  /**
+   * Reads, handles and acknowledges one batch of entries from every stream
+   *
+   * @return the number of entries read
+   */
+  @SuppressWarnings("unchecked")
+  private int read(Jedis jedis, StreamEntryID from, int blockMillis, boolean replay) {
+    List<Entry<String, StreamEntryID>> streams = Lists.newArrayList();
+    for (String channel : Channels.DURABLE) {
+      streams.add(new AbstractMap.SimpleImmutableEntry<>(getStreamKey(channel), from));
+    }
+
+    List<Entry<String, List<StreamEntry>>> results =
+        jedis.xreadGroup(
+            group, group, READ_COUNT, blockMillis, false, streams.toArray(new Entry[0]));
+    if (results == null) return 0;
+
+    int count = 0;
+    for (Entry<String, List<StreamEntry>> result : results) {
+      String stream = result.getKey();
+      String channel = getChannel(stream);
+      List<StreamEntry> entries = result.getValue();
+      if (entries == null || entries.isEmpty()) continue;
+
+      List<CompletableFuture<Void>> handled = Lists.newArrayListWithCapacity(entries.size());
+      for (StreamEntry entry : entries) {
+        handled.add(handle(channel, entry));
+      }
+      // Only acknowledge once handled, so entries are replayed if the server stops first
+      try {
+        CompletableFuture.allOf(handled.toArray(new CompletableFuture[0])).join();
+      } catch (CompletionException e) {
+        logger.log(Level.WARNING, "Unable to handle update on channel " + channel, e.getCause());
+      }
+      jedis.xack(
+          stream, group, entries.stream().map(StreamEntry::getID).toArray(StreamEntryID[]::new));
+
+      count += entries.size();
+      (replay ? replayed : received).addAndGet(entries.size());
+    }
+    return count;
+  }
+
+  private CompletableFuture<Void> handle(String channel, StreamEntry entry) {
+    Map<String, String> fields = entry.getFields();
+    String data = fields == null ? null : fields.get(DATA_FIELD);
+    if (data == null) return CompletableFuture.completedFuture(null);
+
+    try {
+      return handler.apply(channel, Base64.getDecoder().decode(data));
+    } catch (IllegalArgumentException e) {
+      logger.warning("- REDIS: Invalid stream entry " + entry.getID() + " on " + channel);
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  public long getAddedCount() {
+    return added.get();
+  }
+
+  public long getReceivedCount() {
+    return received.get();
+  }
+
+  public long getReplayedCount() {
+    return replayed.get();
+  }
+
+  private static String getStreamKey(String channel) {
+    return channel + STREAM_SUFFIX;
+  }
+
+  private static String getChannel(String streamKey) {
+    return streamKey.substring(0, streamKey.length() - STREAM_SUFFIX.length());
+  }
+}
@@ -1,8 +1,23 @@
 package dev.pgm.community.network.updates;
 
+import dev.pgm.community.network.NetworkCodec;
+
 public interface NetworkUpdate {
 
   String getChannel();
 
-  String getData();
+  /** @return the schema version of {@link #getData()}, see {@link NetworkCodec#getVersion()} */
+  int getVersion();
+
+  byte[] getData();
+
+  /**
+   * Updates on the same channel with equal keys replace each other while waiting to be sent, so
+   * only use a key when the latest update makes earlier ones redundant.
+   *
+   * @return the key, or {@code null} to always send this update
+   */
+  default Object getCoalesceKey() {
+    return null;
+  }
 }
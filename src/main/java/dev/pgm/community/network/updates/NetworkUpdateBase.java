@@ -1,26 +1,33 @@
 package dev.pgm.community.network.updates;
 
-import com.google.gson.Gson;
+import dev.pgm.community.network.NetworkCodec;
 
 public abstract class NetworkUpdateBase<T> implements NetworkUpdate {
 
-  private T item;
-  private String channel;
-  private Gson gson;
+  private final T item;
+  private final NetworkCodec<T> codec;
 
-  public NetworkUpdateBase(T item, String channel) {
+  public NetworkUpdateBase(T item, NetworkCodec<T> codec) {
     this.item = item;
-    this.channel = channel;
-    this.gson = new Gson();
+    this.codec = codec;
+  }
+
+  public T getItem() {
+    return item;
   }
 
   @Override
   public String getChannel() {
-    return channel;
+    return codec.getChannel();
+  }
+
+  @Override
+  public int getVersion() {
+    return codec.getVersion();
   }
 
   @Override
-  public String getData() {
-    return gson.toJson(item);
+  public byte[] getData() {
+    return codec.encode(item);
   }
 }
@@ -0,0 +1,39 @@
+package dev.pgm.community.network.updates.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
+import dev.pgm.community.network.updates.types.CacheInvalidationUpdate.CacheKey;
+
+/**
+ * CacheInvalidationUpdate - Called when a record is created or changed for a key which may be
+ * cached
+ */
+public class CacheInvalidationUpdate extends NetworkUpdateBase<CacheKey> {
+
+  public CacheInvalidationUpdate(String cache, String key) {
+    super(new CacheKey(cache, key), NetworkCodecs.CACHE_INVALIDATION);
+  }
+
+  @Override
+  public Object getCoalesceKey() {
+    return getItem().getCache() + ":" + getItem().getKey();
+  }
+
+  public static class CacheKey {
+    private final String cache;
+    private final String key;
+
+    public CacheKey(String cache, String key) {
+      this.cache = cache;
+      this.key = key;
+    }
+
+    public String getCache() {
+      return cache;
+    }
+
+    public String getKey() {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package dev.pgm.community.network.updates.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
+import dev.pgm.community.sessions.PresenceSnapshot;
+
+/** PresenceSnapshotUpdate - Sent periodically with every player online on a server */
+public class PresenceSnapshotUpdate extends NetworkUpdateBase<PresenceSnapshot> {
+
+  public PresenceSnapshotUpdate(PresenceSnapshot snapshot) {
+    super(snapshot, NetworkCodecs.PRESENCE_SNAPSHOT);
+  }
+
+  @Override
+  public Object getCoalesceKey() {
+    return getItem().getServer();
+  }
+}
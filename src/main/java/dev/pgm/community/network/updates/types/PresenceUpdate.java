@@ -0,0 +1,18 @@
+package dev.pgm.community.network.updates.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
+import dev.pgm.community.sessions.Presence;
+
+/** PresenceUpdate - Called when a player joins, quits or vanishes */
+public class PresenceUpdate extends NetworkUpdateBase<Presence> {
+
+  public PresenceUpdate(Presence presence) {
+    super(presence, NetworkCodecs.PRESENCE);
+  }
+
+  @Override
+  public Object getCoalesceKey() {
+    return getItem().getPlayerId();
+  }
+}
@@ -1,25 +1,18 @@
 package dev.pgm.community.network.updates.types;
 
-import dev.pgm.community.network.Channels;
-import dev.pgm.community.network.updates.NetworkUpdate;
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
 import java.util.UUID;
 
 /** RefreshPunishmentUpdate - Called on ban pardon or unmute */
-public class RefreshPunishmentUpdate implements NetworkUpdate {
-
-  private final UUID playerId;
+public class RefreshPunishmentUpdate extends NetworkUpdateBase<UUID> {
 
   public RefreshPunishmentUpdate(UUID playerId) {
-    this.playerId = playerId;
-  }
-
-  @Override
-  public String getChannel() {
-    return Channels.PUNISHMENT_UPDATE;
+    super(playerId, NetworkCodecs.PUNISHMENT_UPDATE);
   }
 
   @Override
-  public String getData() {
-    return playerId.toString();
+  public Object getCoalesceKey() {
+    return getItem();
   }
 }
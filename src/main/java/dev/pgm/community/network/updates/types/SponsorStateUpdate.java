@@ -0,0 +1,18 @@
+package dev.pgm.community.network.updates.types;
+
+import dev.pgm.community.network.NetworkCodecs;
+import dev.pgm.community.network.updates.NetworkUpdateBase;
+import dev.pgm.community.requests.SponsorState;
+
+/** SponsorStateUpdate - Called when the sponsor queue or map cooldowns of a server change */
+public class SponsorStateUpdate extends NetworkUpdateBase<SponsorState> {
+
+  public SponsorStateUpdate(SponsorState state) {
+    super(state, NetworkCodecs.SPONSORS);
+  }
+
+  @Override
+  public Object getCoalesceKey() {
+    return getItem().getServer();
+  }
+}
@@ -1,5 +1,6 @@
 package dev.pgm.community.nick.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.newline;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
@@ -66,11 +67,13 @@ public class NickCommands extends CommunityCommand {
                           name -> {
                             sendNickStatus(viewer, viewer.getPlayer(), uuid.get(), name);
                             return;
-                          });
+                          },
+                          async());
                 } else {
                   viewer.sendWarning(formatNotFoundComponent(target));
                 }
-              });
+              },
+              async());
     } else {
       if (!viewer.isPlayer()) return;
 
@@ -152,7 +155,8 @@ public class NickCommands extends CommunityCommand {
                     TextFormatter.horizontalLineHeading(
                         viewer.getSender(), buttons.build(), NamedTextColor.DARK_AQUA, 250));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("confirm <name>")
@@ -173,7 +177,8 @@ public class NickCommands extends CommunityCommand {
                 return;
               }
               setOwnNick(viewer, sender, name);
-            });
+            },
+            async());
   }
 
   @CommandMethod("skin <name>")
@@ -209,7 +214,8 @@ public class NickCommands extends CommunityCommand {
                       .append(text(name, NamedTextColor.AQUA))
                       .color(NamedTextColor.GRAY)
                       .build());
-            });
+            },
+            async());
   }
 
   // /nick set [name]
@@ -260,7 +266,8 @@ public class NickCommands extends CommunityCommand {
                         .append(text(nick, NamedTextColor.AQUA))
                         .build());
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("setother <target> <nick>")
@@ -296,7 +303,8 @@ public class NickCommands extends CommunityCommand {
                                                       TextDecoration.BOLD))
                                               .color(NamedTextColor.GRAY)
                                               .build());
-                                    });
+                                    },
+                                    async());
                           } else {
                             viewer.sendWarning(
                                 text()
@@ -304,12 +312,14 @@ public class NickCommands extends CommunityCommand {
                                     .append(text(target.getIdentifier(), NamedTextColor.AQUA))
                                     .build());
                           }
-                        });
+                        },
+                        async());
 
               } else {
                 viewer.sendWarning(formatNotFoundComponent(target.getIdentifier()));
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("clear [target]")
@@ -342,12 +352,15 @@ public class NickCommands extends CommunityCommand {
                                               .color(NamedTextColor.RED)
                                               .build();
                                       viewer.sendWarning(success ? setName : noName);
-                                    });
-                          });
+                                    },
+                                    async());
+                          },
+                          async());
                 } else {
                   viewer.sendWarning(formatNotFoundComponent(target.getIdentifier()));
                 }
-              });
+              },
+              async());
       return;
     }
 
@@ -362,7 +375,8 @@ public class NickCommands extends CommunityCommand {
                   text(
                       success ? "You have reset your nickname" : "You do not have a nickname set",
                       success ? NamedTextColor.GRAY : NamedTextColor.RED));
-            });
+            },
+            async());
   }
 
   @CommandMethod("toggle")
@@ -381,7 +395,8 @@ public class NickCommands extends CommunityCommand {
                                 : text("disabled", NamedTextColor.RED))
                         .append(text(" your nickname."))
                         .color(NamedTextColor.GRAY)
-                        .build()));
+                        .build()),
+            async());
   }
 
   @ProxiedBy("nicks")
@@ -498,7 +513,8 @@ public class NickCommands extends CommunityCommand {
                       text("Your nickname will be removed once you logout", NamedTextColor.RED));
                 }
               }
-            });
+            },
+            async());
   }
 
   private Component createTextButton(
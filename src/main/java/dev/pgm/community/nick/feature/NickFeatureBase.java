@@ -1,5 +1,6 @@
 package dev.pgm.community.nick.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.Component.text;
 
@@ -22,7 +23,9 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -53,7 +56,7 @@ public abstract class NickFeatureBase extends FeatureBase implements NickFeature
 
   public NickFeatureBase(Configuration config, Logger logger, String featureName) {
     super(new NickConfig(config), logger, featureName);
-    this.nickedPlayers = Maps.newHashMap();
+    this.nickedPlayers = Maps.newConcurrentMap();
     this.loginSubdomains =
         CacheBuilder.newBuilder().expireAfterAccess(30, TimeUnit.SECONDS).build();
     this.autoNicked = Lists.newArrayList();
@@ -129,7 +132,8 @@ public abstract class NickFeatureBase extends FeatureBase implements NickFeature
               NickSelection selection = new NickSelection(names);
               nickChoices.put(playerId, selection);
               return selection;
-            });
+            },
+            async());
   }
 
   @EventHandler(priority = EventPriority.MONITOR)
@@ -189,14 +193,17 @@ public abstract class NickFeatureBase extends FeatureBase implements NickFeature
                                                       NamedTextColor.GREEN));
                                           sendLoginNotification(player, nick.getName(), true);
                                         }
-                                      });
-                            });
+                                      },
+                                      async());
+                            },
+                            async());
                   }
 
                 } else {
                   nickedPlayers.remove(player.getUniqueId());
                 }
-              });
+              },
+              async());
     }
 
     // Nickname notification
@@ -243,11 +250,29 @@ public abstract class NickFeatureBase extends FeatureBase implements NickFeature
   @EventHandler
   public void onPrelogin(AsyncPlayerPreLoginEvent event) {
     if (!getConfig().isEnabled()) return;
-    Nick nick = this.getNick(event.getUniqueId()).join();
-    if (nick != null && nick.isEnabled()) {
-      nickedPlayers.put(event.getUniqueId(), nick.getName());
-    } else {
-      nickedPlayers.remove(event.getUniqueId());
+    UUID playerId = event.getUniqueId();
+
+    // Usually prefetched by now, so only wait briefly and record a late nick once it arrives
+    CompletableFuture<Void> lookup =
+        getNick(playerId)
+            .thenAccept(
+                nick -> {
+                  if (nick != null && nick.isEnabled()) {
+                    nickedPlayers.put(playerId, nick.getName());
+                  } else {
+                    nickedPlayers.remove(playerId);
+                  }
+                });
+    try {
+      lookup.get(
+          Community.get().getDatabase().getConfig().getPrefetchTimeout().toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      logger.warning("Timed out loading the nick of " + event.getName());
+    } catch (ExecutionException e) {
+      logger.warning("Unable to load the nick of " + event.getName() + ": " + e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
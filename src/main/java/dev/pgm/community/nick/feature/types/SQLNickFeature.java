@@ -1,5 +1,7 @@
 package dev.pgm.community.nick.feature.types;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import dev.pgm.community.CommunityPermissions;
 import dev.pgm.community.nick.Nick;
 import dev.pgm.community.nick.feature.NickFeatureBase;
@@ -49,9 +51,11 @@ public class SQLNickFeature extends NickFeatureBase {
                           nick.setName(nickName);
                           service.update(nick);
                         }
-                      });
+                      },
+                      async());
               return true;
-            });
+            },
+            async());
   }
 
   @Override
@@ -63,7 +67,8 @@ public class SQLNickFeature extends NickFeatureBase {
               nick.clear();
               service.update(nick);
               return true;
-            });
+            },
+            async());
   }
 
   @Override
@@ -73,7 +78,8 @@ public class SQLNickFeature extends NickFeatureBase {
         .thenApplyAsync(
             available -> {
               return available && users.getStoredProfile(nickName).join() == null;
-            });
+            },
+            async());
   }
 
   @Override
@@ -86,6 +92,12 @@ public class SQLNickFeature extends NickFeatureBase {
               nick.setEnabled(!nick.isEnabled());
               service.update(nick);
               return nick.isEnabled();
-            });
+            },
+            async());
+  }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    return service.query(playerId.toString());
   }
 }
@@ -1,49 +1,52 @@
 package dev.pgm.community.nick.services;
 
-import co.aikar.idb.DB;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import static dev.pgm.community.CommunityExecutors.async;
+
+import dev.pgm.community.database.AsyncDB;
+import com.google.gson.reflect.TypeToken;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.SharedCodec;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.nick.Nick;
 import dev.pgm.community.nick.NickConfig;
 import dev.pgm.community.nick.NickImpl;
+import dev.pgm.community.utils.NameUtils;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 public class SQLNickService extends SQLFeatureBase<Nick, String> implements NickQuery {
 
-  private LoadingCache<UUID, NickInfo> nickCache;
+  private final AsyncLoadingCache<UUID, Optional<Nick>> nickCache;
+  private final AsyncLoadingCache<String, UUID> ownerCache; // Lowercase nickname -> player id
 
   public SQLNickService(NickConfig config) {
     super(TABLE_NAME, TABLE_FIELDS);
-
     this.nickCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, NickInfo>() {
-                  @Override
-                  public NickInfo load(UUID key) throws Exception {
-                    return new NickInfo(key);
-                  }
-                });
+        createCache(
+            "nicknames",
+            SharedCodec.uuid(new TypeToken<Optional<NickImpl>>() {}.getType()),
+            this::loadNick);
+    this.ownerCache =
+        createMissingAwareCache(
+            "nickname_owners", SharedCodec.string(UUID.class), this::loadOwner);
   }
 
   @Override
   public void save(Nick nick) {
-    NickInfo nickInfo = nickCache.getUnchecked(nick.getPlayerId());
-    if (nickInfo.getNick() == null) {
-      nickInfo.setNick(nick);
-    }
+    nickCache.update(
+        nick.getPlayerId(), existing -> existing.isPresent() ? existing : Optional.of(nick));
 
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_NICKNAME_QUERY,
-        nick.getPlayerId().toString(),
+        bindId(nick.getPlayerId()),
         nick.getName(),
+        NameUtils.toLookupKey(nick.getName()),
         nick.getDateSet().toEpochMilli(),
         nick.isEnabled());
+    announceName(nick);
   }
 
   @Override
@@ -53,85 +56,69 @@ public class SQLNickService extends SQLFeatureBase<Nick, String> implements Nick
 
   @Override
   public CompletableFuture<Nick> query(String target) {
-    UUID playerId = UUID.fromString(target);
-    NickInfo nick = nickCache.getUnchecked(playerId);
-
-    if (nick.isLoaded()) {
-      return CompletableFuture.completedFuture(nick.getNick());
-    } else {
-      return DB.getFirstRowAsync(SELECT_NICKNAME_BY_ID_QUERY, playerId.toString())
-          .thenApplyAsync(
-              row -> {
-                if (row != null) {
-                  String nickName = row.getString("nickname");
-                  Instant date = Instant.ofEpochMilli(Long.parseLong(row.getString("date")));
-                  boolean enabled = row.get("enabled");
-                  nick.setNick(new NickImpl(playerId, nickName, date, enabled));
-                }
-                nick.setLoaded(true);
-                return nick.getNick();
-              });
-    }
+    return nickCache
+        .get(UUID.fromString(target))
+        .thenApplyAsync(nick -> nick.orElse(null), async());
+  }
+
+  private CompletableFuture<Optional<Nick>> loadNick(UUID playerId) {
+    return AsyncDB.getFirstRow(SELECT_NICKNAME_BY_ID_QUERY, bindId(playerId))
+        .thenApplyAsync(
+            row -> {
+              if (row == null) return Optional.empty();
+
+              String nickName = row.getString("nickname");
+              Instant date = Instant.ofEpochMilli(Long.parseLong(row.getString("date")));
+              boolean enabled = row.get("enabled");
+              return Optional.of(new NickImpl(playerId, nickName, date, enabled));
+            },
+            async());
   }
 
   public CompletableFuture<Boolean> update(Nick nick) {
-    return DB.executeUpdateAsync(
+    nickCache.put(nick.getPlayerId(), Optional.of(nick)); // Write the change through
+    announceName(nick);
+    return queueUpdate(
+            nick.getPlayerId(),
             UPDATE_NICKNAME_QUERY,
             nick.getName(),
+            NameUtils.toLookupKey(nick.getName()),
             nick.isEnabled(),
             nick.getDateSet().toEpochMilli(),
-            nick.getPlayerId().toString())
-        .thenApplyAsync(result -> result != 0);
+            bindId(nick.getPlayerId()))
+        .thenApplyAsync(result -> result != 0, async());
   }
 
   public CompletableFuture<Boolean> isNameAvailable(String name) {
-    return queryByName(name).thenApplyAsync(results -> results == null);
+    return queryByName(name).thenApplyAsync(results -> results == null, async());
   }
 
   public CompletableFuture<Nick> queryByName(String name) {
-    return DB.getFirstRowAsync(SELECT_NICKNAME_BY_NAME_QUERY, name)
-        .thenApplyAsync(
-            row -> {
-              if (row == null) return null;
-
-              UUID playerId = UUID.fromString(row.getString("playerId"));
-              String nickName = row.getString("nickname");
-              Instant date = Instant.ofEpochMilli(Long.parseLong(row.getString("date")));
-              boolean enabled = row.get("enabled");
-              return new NickImpl(playerId, nickName, date, enabled);
-            });
+    String key = NameUtils.toLookupKey(name);
+    return ownerCache
+        .get(key)
+        .thenComposeAsync(
+            playerId -> {
+              if (playerId == null) return CompletableFuture.completedFuture(null);
+              return query(playerId.toString())
+                  .thenApply(
+                      nick -> {
+                        if (nick != null && name.equalsIgnoreCase(nick.getName())) return nick;
+                        ownerCache.invalidate(key); // Nickname changed since it was looked up
+                        return null;
+                      });
+            },
+            async());
   }
 
-  private class NickInfo {
-
-    private final UUID playerId;
-    private Nick nick;
-    private boolean loaded;
-
-    public NickInfo(UUID playerId) {
-      this.playerId = playerId;
-      this.nick = null;
-      this.loaded = false;
-    }
-
-    public UUID getPlayerId() {
-      return playerId;
-    }
-
-    public Nick getNick() {
-      return nick;
-    }
-
-    public void setNick(Nick nick) {
-      this.nick = nick;
-    }
-
-    public boolean isLoaded() {
-      return loaded;
-    }
+  private CompletableFuture<UUID> loadOwner(String name) {
+    return AsyncDB.getFirstRow(SELECT_NICKNAME_BY_NAME_QUERY, name)
+        .thenApplyAsync(row -> row == null ? null : readId(row, "playerId"), async());
+  }
 
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
+  private void announceName(Nick nick) {
+    if (nick.getName() != null && !nick.getName().isEmpty()) {
+      announceCreated(ownerCache, NameUtils.toLookupKey(nick.getName()));
     }
   }
 }
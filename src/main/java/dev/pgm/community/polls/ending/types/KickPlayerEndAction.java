@@ -1,5 +1,6 @@
 package dev.pgm.community.polls.ending.types;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.text;
 import static tc.oc.pgm.util.bukkit.BukkitUtils.colorize;
 import static tc.oc.pgm.util.player.PlayerComponent.player;
@@ -60,7 +61,8 @@ public class KickPlayerEndAction implements EndAction {
                         .append(playerName)
                         .append(text(" is no longer online!", NamedTextColor.YELLOW))
                         .build());
-              });
+              },
+              async());
       return;
     }
 
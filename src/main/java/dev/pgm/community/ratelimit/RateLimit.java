@@ -0,0 +1,79 @@
+package dev.pgm.community.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A limit on how often a player may do something: a bucket holding up to {@code capacity} tokens,
+ * refilled by one token every {@code interval}. Each use takes a token.
+ *
+ * <p>A cooldown is a limit with a capacity of one.
+ */
+public class RateLimit {
+
+  private final String name;
+  private final int capacity;
+  private final Duration interval;
+
+  private RateLimit(String name, int capacity, Duration interval) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    checkArgument(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+    this.name = checkNotNull(name);
+    this.capacity = capacity;
+    this.interval = interval;
+  }
+
+  /**
+   * Creates a limit
+   *
+   * @param name A unique name for the limit, which is shared between servers
+   * @param capacity The number of uses allowed in a burst
+   * @param interval How long it takes to regain a use
+   */
+  public static RateLimit of(String name, int capacity, Duration interval) {
+    return new RateLimit(name, capacity, interval);
+  }
+
+  /**
+   * Creates a limit which allows one use per period
+   *
+   * @param name A unique name for the limit, which is shared between servers
+   * @param period How long to wait between uses
+   */
+  public static RateLimit cooldown(String name, Duration period) {
+    return new RateLimit(name, 1, period);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public Duration getInterval() {
+    return interval;
+  }
+
+  /** @return how long an unused bucket takes to fill up from empty */
+  public Duration getRefillTime() {
+    return interval.multipliedBy(capacity);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof RateLimit)) return false;
+    RateLimit other = (RateLimit) obj;
+    return name.equals(other.name) && capacity == other.capacity && interval.equals(other.interval);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, capacity, interval);
+  }
+}
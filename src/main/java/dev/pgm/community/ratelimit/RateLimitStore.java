@@ -0,0 +1,27 @@
+package dev.pgm.community.ratelimit;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/** Keeps the token buckets of every player in one place, so all servers share the same limits */
+public interface RateLimitStore {
+
+  /**
+   * Reads every stored bucket of a player
+   *
+   * @param playerId The player
+   * @return A future completed with the buckets by limit name, empty if none are stored
+   */
+  CompletableFuture<Map<String, TokenBucket>> load(UUID playerId);
+
+  /**
+   * Atomically refills a player's bucket and takes a token if one is available
+   *
+   * @param limit The limit
+   * @param playerId The player
+   * @param now The current time in epoch millis
+   * @return A future completed with the bucket once the token was taken (or not)
+   */
+  CompletableFuture<TokenBucket> acquire(RateLimit limit, UUID playerId, long now);
+}
@@ -0,0 +1,193 @@
+package dev.pgm.community.ratelimit;
+
+import com.google.common.collect.Maps;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Checks {@link RateLimit rate limits} and cooldowns for players.
+ *
+ * <p>Every check is answered from buckets held on this server, so it never waits on the network.
+ * When a {@link RateLimitStore} is set, each token taken here is also taken from the shared bucket,
+ * and the shared result is merged back, so a use on another server counts against this one too.
+ * The shared buckets of a player are loaded when they log in, so moving between servers does not
+ * reset their limits. A use on two servers at the same moment may both be allowed.
+ */
+public class RateLimiter {
+
+  // Buckets which are full are dropped after this many checks
+  private static final int PRUNE_INTERVAL = 1000;
+
+  // How long a bucket loaded on login is kept if its limit is never checked
+  private static final long UNCHECKED_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final ConcurrentMap<Key, Entry> buckets = Maps.newConcurrentMap();
+  @Nullable private volatile RateLimitStore store;
+
+  private final AtomicLong checks = new AtomicLong();
+  private final AtomicLong denied = new AtomicLong();
+  private final AtomicLong synced = new AtomicLong();
+
+  /**
+   * Takes a use of a limit if the player has one left
+   *
+   * @param limit The limit
+   * @param playerId The player
+   * @return whether the player may go ahead
+   */
+  public boolean tryAcquire(RateLimit limit, UUID playerId) {
+    long now = System.currentTimeMillis();
+    TokenBucket bucket = getBucket(limit, playerId, now);
+    if (!bucket.tryTake(limit, now)) {
+      denied.incrementAndGet();
+      return false;
+    }
+
+    RateLimitStore store = this.store;
+    if (store != null) {
+      store
+          .acquire(limit, playerId, now)
+          .thenAccept(
+              shared -> {
+                if (shared == null) return; // Only limited on this server until reconnected
+                bucket.merge(limit, shared, System.currentTimeMillis());
+                synced.incrementAndGet();
+              });
+    }
+    return true;
+  }
+
+  /**
+   * Gets how long a player must wait before they may use a limit, without using it
+   *
+   * @param limit The limit
+   * @param playerId The player
+   * @return The time to wait, zero if a use is available now
+   */
+  public Duration getWaitTime(RateLimit limit, UUID playerId) {
+    long now = System.currentTimeMillis();
+    Entry entry = buckets.get(new Key(limit.getName(), playerId));
+    return entry == null
+        ? Duration.ZERO
+        : Duration.ofMillis(entry.bucket.getWaitMillis(limit, now));
+  }
+
+  /**
+   * Loads a player's shared buckets, called when they log in
+   *
+   * @param playerId The player
+   * @return A future completed once loaded
+   */
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    RateLimitStore store = this.store;
+    if (store == null) return CompletableFuture.completedFuture(null);
+
+    return store
+        .load(playerId)
+        .thenAccept(
+            shared -> {
+              long now = System.currentTimeMillis();
+              for (Map.Entry<String, TokenBucket> state : shared.entrySet()) {
+                TokenBucket stored = state.getValue();
+                buckets.merge(
+                    new Key(state.getKey(), playerId),
+                    new Entry(null, stored),
+                    (current, loaded) -> {
+                      if (current.limit == null) return loaded;
+                      current.bucket.merge(current.limit, stored, now);
+                      return current;
+                    });
+              }
+            });
+  }
+
+  /**
+   * Sets where buckets are shared with other servers
+   *
+   * @param store The store, or {@code null} to only limit on this server
+   */
+  public void setStore(@Nullable RateLimitStore store) {
+    this.store = store;
+  }
+
+  private TokenBucket getBucket(RateLimit limit, UUID playerId, long now) {
+    if (checks.incrementAndGet() % PRUNE_INTERVAL == 0) prune(now);
+
+    Entry entry =
+        buckets.compute(
+            new Key(limit.getName(), playerId),
+            (key, current) -> {
+              if (current == null) return new Entry(limit, TokenBucket.full(limit, now));
+              // Loaded before the limit was known, or the limit was reconfigured
+              return limit.equals(current.limit) ? current : new Entry(limit, current.bucket);
+            });
+    return entry.bucket;
+  }
+
+  private void prune(long now) {
+    buckets
+        .values()
+        .removeIf(
+            entry ->
+                entry.limit == null
+                    ? now - entry.bucket.getUpdated() > UNCHECKED_TTL_MILLIS
+                    : entry.bucket.isFull(entry.limit, now));
+  }
+
+  public int getBucketCount() {
+    return buckets.size();
+  }
+
+  public long getCheckCount() {
+    return checks.get();
+  }
+
+  public long getDeniedCount() {
+    return denied.get();
+  }
+
+  /** @return the number of uses which were also taken from the shared buckets */
+  public long getSyncedCount() {
+    return synced.get();
+  }
+
+  private static class Entry {
+    @Nullable private final RateLimit limit; // Null until checked, for buckets loaded on login
+    private final TokenBucket bucket;
+
+    Entry(@Nullable RateLimit limit, TokenBucket bucket) {
+      this.limit = limit;
+      this.bucket = bucket;
+    }
+  }
+
+  private static class Key {
+    private final String limit;
+    private final UUID playerId;
+
+    Key(String limit, UUID playerId) {
+      this.limit = limit;
+      this.playerId = playerId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return limit.equals(other.limit) && playerId.equals(other.playerId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(limit, playerId);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package dev.pgm.community.ratelimit;
+
+/**
+ * The tokens left in a player's bucket for a {@link RateLimit}, as of a point in time. Tokens
+ * refill continuously, so the count may be fractional.
+ */
+public class TokenBucket {
+
+  private double tokens;
+  private long updated; // Epoch millis
+
+  public TokenBucket(double tokens, long updated) {
+    this.tokens = tokens;
+    this.updated = updated;
+  }
+
+  /** Creates a full bucket */
+  public static TokenBucket full(RateLimit limit, long now) {
+    return new TokenBucket(limit.getCapacity(), now);
+  }
+
+  public synchronized double getTokens() {
+    return tokens;
+  }
+
+  public synchronized long getUpdated() {
+    return updated;
+  }
+
+  /**
+   * Takes a token if one is available
+   *
+   * @return whether a token was taken
+   */
+  public synchronized boolean tryTake(RateLimit limit, long now) {
+    refill(limit, now);
+    if (tokens < 1) return false;
+    tokens -= 1;
+    return true;
+  }
+
+  /** @return how long until a token is available, in millis */
+  public synchronized long getWaitMillis(RateLimit limit, long now) {
+    refill(limit, now);
+    if (tokens >= 1) return 0;
+    return (long) Math.ceil((1 - tokens) * limit.getInterval().toMillis());
+  }
+
+  /** @return whether the bucket has refilled completely, and need not be kept */
+  public synchronized boolean isFull(RateLimit limit, long now) {
+    refill(limit, now);
+    return tokens >= limit.getCapacity();
+  }
+
+  /**
+   * Merges the state of the same bucket as seen elsewhere, keeping whichever has fewer tokens
+   *
+   * @param other The other state
+   */
+  public synchronized void merge(RateLimit limit, TokenBucket other, long now) {
+    refill(limit, now);
+    double otherTokens = Math.min(limit.getCapacity(), other.tokensAt(limit, now));
+    tokens = Math.min(tokens, otherTokens);
+  }
+
+  private synchronized double tokensAt(RateLimit limit, long now) {
+    long elapsed = Math.max(0, now - updated);
+    return tokens + elapsed / (double) limit.getInterval().toMillis();
+  }
+
+  private void refill(RateLimit limit, long now) {
+    tokens = Math.min(limit.getCapacity(), tokensAt(limit, now));
+    updated = Math.max(updated, now);
+  }
+}
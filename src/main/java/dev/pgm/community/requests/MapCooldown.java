@@ -16,6 +16,10 @@ public class MapCooldown {
     return endTime;
   }
 
+  public Duration getMatchLength() {
+    return matchLength;
+  }
+
   public boolean hasExpired() {
     return getTimeRemaining().isNegative();
   }
@@ -23,6 +23,7 @@ public class RequestConfig extends FeatureConfigImpl {
   private static final String MAX_TOKENS = SPONSORS + ".max-tokens";
   private static final String REFUND = SPONSORS + ".refund";
   private static final String MAP_COOLDOWN_MULTIPLY = SPONSORS + ".map-cooldown";
+  private static final String SPONSORS_NETWORK = SPONSORS + ".network";
 
   private Duration cooldown; // Cooldown for using /request
   private Duration sponsorCooldown; // Default cooldown for sponsor requests
@@ -40,6 +41,8 @@ public class RequestConfig extends FeatureConfigImpl {
 
   private int mapCooldownMultiply; // # to multiply match length by to determine cooldown
 
+  private boolean network; // If queues and map cooldowns are shared with other servers
+
   public RequestConfig(Configuration config) {
     super(KEY, config);
   }
@@ -88,6 +91,10 @@ public class RequestConfig extends FeatureConfigImpl {
     return refund;
   }
 
+  public boolean isNetworkShared() {
+    return network;
+  }
+
   public int getMapCooldownMultiply() {
     return mapCooldownMultiply;
   }
@@ -104,5 +111,6 @@ public class RequestConfig extends FeatureConfigImpl {
     this.maxQueue = config.getInt(SPONSORS_LIMIT);
     this.refund = config.getBoolean(REFUND);
     this.mapCooldownMultiply = config.getInt(MAP_COOLDOWN_MULTIPLY);
+    this.network = config.getBoolean(SPONSORS_NETWORK, true);
   }
 }
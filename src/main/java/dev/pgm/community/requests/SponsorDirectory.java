@@ -0,0 +1,120 @@
+package dev.pgm.community.requests;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.network.subs.types.SponsorStateSubscriber;
+import dev.pgm.community.network.updates.types.SponsorStateUpdate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import tc.oc.pgm.api.map.MapInfo;
+
+/**
+ * A replicated view of the sponsor queues of the other servers on the network.
+ *
+ * <p>Each server sends its {@link SponsorState} whenever its queue or map cooldowns change, and
+ * periodically in case one was missed. A server which stops sending them (e.g it crashed) has its
+ * queue forgotten after a few intervals.
+ */
+public class SponsorDirectory {
+
+  public static final Duration SNAPSHOT_INTERVAL = Duration.ofSeconds(30);
+
+  // Snapshots missed before a server's queue is forgotten
+  private static final int MISSED_SNAPSHOTS = 3;
+
+  private final NetworkFeature network;
+  private final Supplier<SponsorState> local;
+  private final Consumer<SponsorState> onReceive;
+
+  // Server -> its most recent queue
+  private final Map<String, RemoteQueue> servers = Maps.newConcurrentMap();
+
+  /**
+   * Creates a directory and subscribes to sponsor updates
+   *
+   * @param network The network to share sponsor queues over
+   * @param local Takes the state of this server
+   * @param onReceive Called with the state of another server when it is received
+   * @param logger A logger for the subscriber
+   */
+  public SponsorDirectory(
+      NetworkFeature network,
+      Supplier<SponsorState> local,
+      Consumer<SponsorState> onReceive,
+      Logger logger) {
+    this.network = network;
+    this.local = local;
+    this.onReceive = onReceive;
+
+    network.registerSubscriber(new SponsorStateSubscriber(this, network.getNetworkId(), logger));
+  }
+
+  /** @return whether the player has a request queued on another server */
+  public boolean isQueued(UUID playerId) {
+    return servers.values().stream().anyMatch(queue -> queue.players.contains(playerId));
+  }
+
+  /** @return whether the map is queued on another server */
+  public boolean isQueued(MapInfo map) {
+    return servers.values().stream().anyMatch(queue -> queue.maps.contains(map.getId()));
+  }
+
+  /** Tells the other servers the state of this server has changed */
+  public void sendState() {
+    network.sendUpdate(new SponsorStateUpdate(local.get()));
+  }
+
+  public void recieveState(SponsorState state) {
+    RemoteQueue queue = new RemoteQueue(state);
+    boolean known = servers.containsKey(state.getServer());
+
+    // Updates may arrive out of order, never replace a newer state
+    servers.merge(
+        state.getServer(),
+        queue,
+        (current, update) -> update.time < current.time ? current : update);
+    onReceive.accept(state);
+
+    // Help a server which just started learn the cooldowns, rather than wait for the next interval
+    if (!known) {
+      sendState();
+    }
+  }
+
+  /**
+   * Sends the state of this server, and forgets servers which have stopped sending theirs. Called
+   * every {@link #SNAPSHOT_INTERVAL}.
+   */
+  public void tick() {
+    sendState();
+
+    Instant expired = Instant.now().minus(SNAPSHOT_INTERVAL.multipliedBy(MISSED_SNAPSHOTS));
+    servers.values().removeIf(queue -> queue.received.isBefore(expired));
+  }
+
+  private static class RemoteQueue {
+    private final long time;
+    private final Instant received = Instant.now();
+    private final Set<UUID> players;
+    private final Set<String> maps;
+
+    RemoteQueue(SponsorState state) {
+      this.time = state.getTime();
+      ImmutableSet.Builder<UUID> players = ImmutableSet.builder();
+      ImmutableSet.Builder<String> maps = ImmutableSet.builder();
+      for (SponsorState.QueuedSponsor sponsor : state.getQueue()) {
+        players.add(sponsor.getPlayerId());
+        maps.add(sponsor.getMap());
+      }
+      this.players = players.build();
+      this.maps = maps.build();
+    }
+  }
+}
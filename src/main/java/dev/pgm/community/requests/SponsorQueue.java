@@ -0,0 +1,155 @@
+package dev.pgm.community.requests;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import tc.oc.pgm.api.map.MapInfo;
+
+/**
+ * The queue of sponsor requests, indexed by player and by map.
+ *
+ * <p>A player and a map may each only be queued once, so {@link #offer(SponsorRequest)} rejects a
+ * request for a player or map which is already queued. Lookups by either are constant time, only
+ * {@link #indexOf(SponsorRequest)} walks the queue, which is capped by the sponsor limit.
+ *
+ * <p>Safe to use from any thread. Iterators walk a copy of the queue, removing through them
+ * removes the request from the queue.
+ */
+public class SponsorQueue extends AbstractQueue<SponsorRequest> {
+
+  // Requests in queue order, by player
+  private final LinkedHashMap<UUID, SponsorRequest> players = Maps.newLinkedHashMap();
+
+  // Requests by map id
+  private final Map<String, SponsorRequest> maps = Maps.newHashMap();
+
+  @Override
+  public synchronized boolean offer(SponsorRequest request) {
+    String map = request.getMap().getId();
+    if (players.containsKey(request.getPlayerId()) || maps.containsKey(map)) return false;
+
+    players.put(request.getPlayerId(), request);
+    maps.put(map, request);
+    return true;
+  }
+
+  @Override
+  @Nullable
+  public synchronized SponsorRequest poll() {
+    SponsorRequest request = peek();
+    if (request != null) remove(request.getPlayerId());
+    return request;
+  }
+
+  @Override
+  @Nullable
+  public synchronized SponsorRequest peek() {
+    Iterator<SponsorRequest> iterator = players.values().iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * Gets the queued request of a player
+   *
+   * @param playerId The player
+   * @return The request, or {@code null} if the player has none queued
+   */
+  @Nullable
+  public synchronized SponsorRequest get(UUID playerId) {
+    return players.get(playerId);
+  }
+
+  public synchronized boolean isQueued(UUID playerId) {
+    return players.containsKey(playerId);
+  }
+
+  public synchronized boolean isQueued(MapInfo map) {
+    return maps.containsKey(map.getId());
+  }
+
+  /**
+   * Removes the queued request of a player
+   *
+   * @param playerId The player
+   * @return Whether a request was removed
+   */
+  public synchronized boolean remove(UUID playerId) {
+    SponsorRequest request = players.remove(playerId);
+    if (request == null) return false;
+    maps.remove(request.getMap().getId(), request);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean remove(Object o) {
+    if (!(o instanceof SponsorRequest)) return false;
+    SponsorRequest request = (SponsorRequest) o;
+    return players.get(request.getPlayerId()) == request && remove(request.getPlayerId());
+  }
+
+  /**
+   * Gets the position of a request in the queue
+   *
+   * @param request The request
+   * @return The zero based position, or -1 if the request is not queued
+   */
+  public synchronized int indexOf(SponsorRequest request) {
+    if (players.get(request.getPlayerId()) != request) return -1;
+
+    int index = 0;
+    for (SponsorRequest queued : players.values()) {
+      if (queued == request) return index;
+      index++;
+    }
+    return -1;
+  }
+
+  /** @return a copy of the queue, in order */
+  public synchronized List<SponsorRequest> getRequests() {
+    return ImmutableList.copyOf(players.values());
+  }
+
+  @Override
+  public synchronized int size() {
+    return players.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    players.clear();
+    maps.clear();
+  }
+
+  @Override
+  public Iterator<SponsorRequest> iterator() {
+    Iterator<SponsorRequest> snapshot = getRequests().iterator();
+    return new Iterator<SponsorRequest>() {
+      private SponsorRequest last;
+
+      @Override
+      public boolean hasNext() {
+        return snapshot.hasNext();
+      }
+
+      @Override
+      public SponsorRequest next() {
+        return last = snapshot.next();
+      }
+
+      @Override
+      public void remove() {
+        checkState(last != null);
+        SponsorQueue.this.remove(last);
+        last = null;
+      }
+    };
+  }
+}
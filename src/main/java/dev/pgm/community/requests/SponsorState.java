@@ -0,0 +1,105 @@
+package dev.pgm.community.requests;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The sponsor queue and map cooldowns of a server, sent to other servers and restored on startup.
+ * Maps are referred to by id, so servers with different map libraries can share them.
+ */
+public class SponsorState {
+
+  private final String server;
+  private final long time; // When the state was taken, in epoch millis
+  private final List<QueuedSponsor> queue;
+  private final List<Cooldown> cooldowns;
+
+  public SponsorState(
+      String server, long time, List<QueuedSponsor> queue, List<Cooldown> cooldowns) {
+    this.server = server;
+    this.time = time;
+    this.queue = queue;
+    this.cooldowns = cooldowns;
+  }
+
+  public String getServer() {
+    return server;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public List<QueuedSponsor> getQueue() {
+    return queue;
+  }
+
+  public List<Cooldown> getCooldowns() {
+    return cooldowns;
+  }
+
+  /** A request in the sponsor queue, in queue order */
+  public static class QueuedSponsor {
+    private final UUID playerId;
+    private final String map;
+    private final boolean refund;
+
+    public QueuedSponsor(UUID playerId, String map, boolean refund) {
+      this.playerId = playerId;
+      this.map = map;
+      this.refund = refund;
+    }
+
+    public static QueuedSponsor of(SponsorRequest request) {
+      return new QueuedSponsor(
+          request.getPlayerId(), request.getMap().getId(), request.canRefund());
+    }
+
+    public UUID getPlayerId() {
+      return playerId;
+    }
+
+    public String getMap() {
+      return map;
+    }
+
+    public boolean canRefund() {
+      return refund;
+    }
+  }
+
+  /** A map which may not be sponsored until its cooldown ends */
+  public static class Cooldown {
+    private final String map;
+    private final Instant endTime; // When the match on the map ended
+    private final Duration length;
+
+    public Cooldown(String map, Instant endTime, Duration length) {
+      this.map = map;
+      this.endTime = endTime;
+      this.length = length;
+    }
+
+    public String getMap() {
+      return map;
+    }
+
+    public Instant getEndTime() {
+      return endTime;
+    }
+
+    public Duration getLength() {
+      return length;
+    }
+
+    public static Cooldown of(String map, MapCooldown cooldown) {
+      return new Cooldown(map, cooldown.getEndTime(), cooldown.getMatchLength());
+    }
+
+    public MapCooldown toMapCooldown() {
+      return new MapCooldown(endTime, length);
+    }
+  }
+}
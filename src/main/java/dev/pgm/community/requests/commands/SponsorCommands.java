@@ -1,5 +1,6 @@
 package dev.pgm.community.requests.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.Component.translatable;
@@ -203,7 +204,8 @@ public class SponsorCommands extends CommunityCommand {
               audience.sendMessage(buttons);
 
               audience.sendMessage(footer);
-            });
+            },
+            async());
   }
 
   @CommandMethod("request <map>")
@@ -1,5 +1,6 @@
 package dev.pgm.community.requests.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.space;
 import static net.kyori.adventure.text.Component.text;
 import static tc.oc.pgm.util.text.TemporalComponent.duration;
@@ -57,7 +58,8 @@ public class TokenCommands extends CommunityCommand {
                 } else {
                   audience.sendWarning(formatNotFoundComponent(target.getIdentifier()));
                 }
-              });
+              },
+              async());
     } else if (audience.isPlayer()) {
       Player player = audience.getPlayer();
       requests
@@ -67,7 +69,8 @@ public class TokenCommands extends CommunityCommand {
                 int tokens = profile.getSponsorTokens();
                 sendTokenBalanceMessage(audience.getAudience(), null, tokens);
                 sendRefreshDuration(audience.getAudience(), player, profile);
-              });
+              },
+              async());
     } else {
       audience.sendWarning(text("Please provide a username to check the token balance of"));
     }
@@ -103,7 +106,8 @@ public class TokenCommands extends CommunityCommand {
                 }
               }
               audience.sendWarning(formatNotFoundComponent(target.getIdentifier()));
-            });
+            },
+            async());
   }
 
   private void sendTokenBalanceMessage(Audience viewer, Component name, int tokens) {
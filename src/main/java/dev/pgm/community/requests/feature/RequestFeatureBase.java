@@ -1,5 +1,6 @@
 package dev.pgm.community.requests.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static dev.pgm.community.utils.MessageUtils.formatTokenTransaction;
 import static dev.pgm.community.utils.PGMUtils.compareMatchLength;
 import static dev.pgm.community.utils.PGMUtils.getCurrentMap;
@@ -21,11 +22,19 @@ import com.google.common.collect.Maps;
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityPermissions;
 import dev.pgm.community.feature.FeatureBase;
+import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.party.MapParty;
+import dev.pgm.community.ratelimit.RateLimit;
+import dev.pgm.community.ratelimit.RateLimiter;
 import dev.pgm.community.requests.MapCooldown;
 import dev.pgm.community.requests.RequestConfig;
 import dev.pgm.community.requests.RequestProfile;
+import dev.pgm.community.requests.SponsorDirectory;
+import dev.pgm.community.requests.SponsorQueue;
 import dev.pgm.community.requests.SponsorRequest;
+import dev.pgm.community.requests.SponsorState;
+import dev.pgm.community.requests.SponsorState.Cooldown;
+import dev.pgm.community.requests.SponsorState.QueuedSponsor;
 import dev.pgm.community.requests.menu.SponsorMenu;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.BroadcastUtils;
@@ -35,7 +44,6 @@ import dev.pgm.community.utils.VisibilityUtils;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -43,6 +51,7 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -78,34 +87,148 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
 
   private Cache<UUID, MapInfo> requests;
 
-  private Cache<UUID, Instant> cooldown;
+  private final RateLimiter rateLimiter;
 
-  private Map<MapInfo, MapCooldown> mapCooldown;
+  private final Map<MapInfo, MapCooldown> mapCooldown;
 
-  private LinkedList<SponsorRequest> sponsors;
+  private final SponsorQueue sponsors;
+
+  // Queues and cooldowns of other servers, null when not shared
+  @Nullable private SponsorDirectory directory;
 
   private SponsorRequest currentSponsor;
   private SponsorVotingBookCreator bookCreator;
 
   public RequestFeatureBase(
-      RequestConfig config, Logger logger, String featureName, UsersFeature users) {
+      RequestConfig config,
+      Logger logger,
+      String featureName,
+      UsersFeature users,
+      NetworkFeature network) {
     super(config, logger, "Requests (" + featureName + ")");
     this.requests = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
-    this.cooldown =
-        CacheBuilder.newBuilder()
-            .expireAfterWrite(config.getCooldown().getSeconds(), TimeUnit.SECONDS)
-            .build();
-    this.mapCooldown = Maps.newHashMap();
-    this.sponsors = Lists.newLinkedList();
+    this.rateLimiter = network.getRateLimiter();
+    this.mapCooldown = Maps.newConcurrentMap();
+    this.sponsors = new SponsorQueue();
     this.currentSponsor = null;
     this.bookCreator = new SponsorVotingBookCreator(this);
 
     if (getConfig().isEnabled() && PGMUtils.isPGMEnabled()) {
       enable();
       MapPoll.setVotingBookCreator(bookCreator);
+
+      if (getRequestConfig().isNetworkShared() && network.isEnabled()) {
+        this.directory =
+            new SponsorDirectory(network, this::getSponsorState, this::onRemoteState, logger);
+        long interval = SponsorDirectory.SNAPSHOT_INTERVAL.getSeconds() * 20;
+        Community.get()
+            .getServer()
+            .getScheduler()
+            .runTaskTimerAsynchronously(Community.get(), directory::tick, interval, interval);
+      }
     }
   }
 
+  /**
+   * Loads the stored sponsor queue of this server and the map cooldowns of the network
+   *
+   * @param server The id of this server
+   * @return A future completed with the stored state, or null if nothing is stored
+   */
+  protected CompletableFuture<SponsorState> loadSponsorState(String server) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Stores the sponsor queue of this server, replacing the previous queue
+   *
+   * @param server The id of this server
+   * @param queue The queue, in order
+   */
+  protected void saveSponsorQueue(String server, List<QueuedSponsor> queue) {}
+
+  /**
+   * Stores a map cooldown which has just started
+   *
+   * @param cooldown The cooldown
+   */
+  protected void saveMapCooldown(Cooldown cooldown) {}
+
+  /** Restores the sponsor queue and map cooldowns stored before the server restarted */
+  protected void restoreSponsorState() {
+    if (!isEnabled() || !PGMUtils.isPGMEnabled()) return;
+
+    loadSponsorState(Community.get().getServerId())
+        .thenAcceptAsync(
+            state -> {
+              if (state == null) return;
+              state.getCooldowns().forEach(this::applyCooldown);
+
+              int restored = 0;
+              for (QueuedSponsor sponsor : state.getQueue()) {
+                MapInfo map = PGM.get().getMapLibrary().getMap(sponsor.getMap());
+                if (map != null
+                    && sponsors.offer(
+                        new SponsorRequest(sponsor.getPlayerId(), map, sponsor.canRefund()))) {
+                  restored++;
+                }
+              }
+              if (restored > 0) {
+                Community.log("Restored %d queued sponsor requests", restored);
+              }
+              if (directory != null) directory.sendState();
+            },
+            async())
+        .exceptionally(
+            e -> {
+              logger.warning("Unable to restore sponsor queue: " + e.getMessage());
+              return null;
+            });
+  }
+
+  private SponsorState getSponsorState() {
+    List<QueuedSponsor> queue =
+        sponsors.getRequests().stream().map(QueuedSponsor::of).collect(Collectors.toList());
+    List<Cooldown> cooldowns =
+        mapCooldown.entrySet().stream()
+            .filter(e -> !e.getValue().hasExpired())
+            .map(e -> Cooldown.of(e.getKey().getId(), e.getValue()))
+            .collect(Collectors.toList());
+    return new SponsorState(
+        Community.get().getServerId(), System.currentTimeMillis(), queue, cooldowns);
+  }
+
+  private void onRemoteState(SponsorState state) {
+    state.getCooldowns().forEach(this::applyCooldown);
+  }
+
+  private void applyCooldown(Cooldown cooldown) {
+    MapInfo map = PGM.get().getMapLibrary().getMap(cooldown.getMap());
+    if (map != null) putMapCooldown(map, cooldown.toMapCooldown());
+  }
+
+  /**
+   * Starts a cooldown for a map, unless it already has one
+   *
+   * @return Whether the cooldown was started
+   */
+  private boolean putMapCooldown(MapInfo map, MapCooldown cooldown) {
+    if (cooldown.hasExpired()) return false;
+    MapCooldown applied =
+        mapCooldown.merge(
+            map, cooldown, (current, update) -> current.hasExpired() ? update : current);
+    return applied == cooldown;
+  }
+
+  /** Stores the sponsor queue and tells the other servers, after it has changed */
+  private void onQueueChange() {
+    String server = Community.get().getServerId();
+    saveSponsorQueue(
+        server,
+        sponsors.getRequests().stream().map(QueuedSponsor::of).collect(Collectors.toList()));
+    if (directory != null) directory.sendState();
+  }
+
   public RequestConfig getRequestConfig() {
     return (RequestConfig) getConfig();
   }
@@ -176,7 +299,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
                       event.getPlayer(), refresh, daily, profile.getSponsorTokens());
                 }
               }
-            });
+            },
+            async());
   }
 
   @EventHandler
@@ -197,6 +321,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
     if (!sponsors.isEmpty() && options.canAddMap()) {
       SponsorRequest nextRequest = sponsors.poll();
       if (nextRequest != null) {
+        onQueueChange();
+
         // Notify PGM of sponsored map
         options.addMap(nextRequest.getMap(), nextRequest.getPlayerId());
 
@@ -210,7 +336,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
                   // Update RequestProfile with sponsor map info
                   profile.sponsor(nextRequest.getMap());
                   update(profile);
-                });
+                },
+                async());
 
         // Alert online player if their sponsor request has been processed
         Player requester = Bukkit.getPlayer(nextRequest.getPlayerId());
@@ -258,7 +385,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
                                 TextDecoration.BOLD)));
                     viewer.playSound(Sounds.GET_TOKENS);
                   }
-                });
+                },
+                async());
       }
     }
   }
@@ -334,7 +462,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
     requests.put(player.getUniqueId(), map);
 
     // Start new cooldown
-    cooldown.put(player.getUniqueId(), Instant.now());
+    RateLimit limit = getRequestLimit();
+    if (limit != null) rateLimiter.tryAcquire(limit, player.getUniqueId());
 
     // Update profile
     getRequestProfile(player.getUniqueId())
@@ -342,7 +471,8 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
             profile -> {
               profile.request(map);
               update(profile);
-            });
+            },
+            async());
 
     // Alert the staff
     alertStaff(player, map, false);
@@ -460,7 +590,14 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
 
               // Sponsor Queue
               // -> Add to queue, don't charge token until sponsor is processed
-              queueRequest(player, map);
+              if (!queueRequest(player, map)) {
+                viewer.sendWarning(
+                    text()
+                        .append(map.getStyledName(MapNameStyle.COLOR))
+                        .append(text(" is already in the queue!"))
+                        .build());
+                return;
+              }
 
               // Send confirmation, including map queue position
               viewer.sendMessage(
@@ -485,12 +622,22 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
                 viewer.sendMessage(
                     text("Request will be added to the next map vote", NamedTextColor.GRAY));
               }
-            });
+            },
+            async());
   }
 
   @Override
   public boolean canRequest(UUID playerId) {
-    return cooldown.getIfPresent(playerId) == null;
+    RateLimit limit = getRequestLimit();
+    return limit == null || rateLimiter.getWaitTime(limit, playerId).isZero();
+  }
+
+  // Shared between servers, so requests can't be repeated by switching server
+  @Nullable
+  private RateLimit getRequestLimit() {
+    Duration cooldown = getRequestConfig().getCooldown();
+    if (cooldown.isZero() || cooldown.isNegative()) return null;
+    return RateLimit.cooldown("map_request", cooldown);
   }
 
   @Override
@@ -526,12 +673,14 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
 
   @Override
   public boolean cancelSponsorRequest(UUID playerId) {
-    return this.sponsors.removeIf(s -> s.getPlayerId().equals(playerId));
+    if (!sponsors.remove(playerId)) return false;
+    onQueueChange();
+    return true;
   }
 
   @Override
   public Optional<SponsorRequest> getPendingSponsor(UUID playerId) {
-    return this.sponsors.stream().filter(sr -> sr.getPlayerId().equals(playerId)).findAny();
+    return Optional.ofNullable(sponsors.get(playerId));
   }
 
   @Override
@@ -545,7 +694,7 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
     if (cooldown == null) return false;
 
     if (cooldown.hasExpired()) {
-      mapCooldown.remove(map);
+      mapCooldown.remove(map, cooldown);
       return false;
     }
 
@@ -558,8 +707,10 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
   }
 
   private Component getCooldownMessage(Instant lastRequest, Duration cooldownTime) {
-    Duration timeLeft = cooldownTime.minus(Duration.between(lastRequest, Instant.now()));
+    return getCooldownMessage(cooldownTime.minus(Duration.between(lastRequest, Instant.now())));
+  }
 
+  private Component getCooldownMessage(Duration timeLeft) {
     return text()
         .append(text("Please wait "))
         .append(duration(timeLeft, NamedTextColor.YELLOW))
@@ -568,15 +719,14 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
   }
 
   private boolean hasCooldown(Player player, Audience viewer) {
-    boolean canRequest = canRequest(player.getUniqueId());
+    RateLimit limit = getRequestLimit();
+    if (limit == null) return false;
 
-    if (!canRequest) {
-      Instant lastRequestTime = cooldown.getIfPresent(player.getUniqueId());
-      if (lastRequestTime != null) {
-        viewer.sendWarning(getCooldownMessage(lastRequestTime, getRequestConfig().getCooldown()));
-      }
-    }
-    return !canRequest;
+    Duration timeLeft = rateLimiter.getWaitTime(limit, player.getUniqueId());
+    if (timeLeft.isZero()) return false;
+
+    viewer.sendWarning(getCooldownMessage(timeLeft));
+    return true;
   }
 
   private boolean canRefund(Player player) {
@@ -669,20 +819,27 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
     BroadcastUtils.sendAdminChatMessage(alert, CommunityPermissions.REQUEST_STAFF);
   }
 
-  private void queueRequest(Player player, MapInfo map) {
-    this.sponsors.add(new SponsorRequest(player.getUniqueId(), map, canRefund(player)));
+  private boolean queueRequest(Player player, MapInfo map) {
+    // Checked before the profile loaded, another request may have been queued since
+    if (isMapQueued(map)
+        || !sponsors.offer(new SponsorRequest(player.getUniqueId(), map, canRefund(player)))) {
+      return false;
+    }
+    onQueueChange();
     Community.log(
         "%s has queued a map (%s) (refund: %s) - Total Queued == %d",
         player.getName(), map.getName(), canRefund(player), sponsors.size());
     alertStaff(player, map, true);
+    return true;
   }
 
+  // Includes requests queued on other servers, so a map is only queued once on the network
   private boolean isQueued(UUID playerId) {
-    return sponsors.stream().anyMatch(sr -> sr.getPlayerId().equals(playerId));
+    return sponsors.isQueued(playerId) || (directory != null && directory.isQueued(playerId));
   }
 
   private boolean isMapQueued(MapInfo map) {
-    return sponsors.stream().anyMatch(sr -> sr.getMap().equals(map));
+    return sponsors.isQueued(map) || (directory != null && directory.isQueued(map));
   }
 
   private boolean isQueueOpen() {
@@ -699,13 +856,17 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
   }
 
   private void startNewMapCooldown(MapInfo map, Duration matchLength) {
-    this.mapCooldown.putIfAbsent(
-        map,
+    MapCooldown cooldown =
         new MapCooldown(
-            Instant.now(), matchLength.multipliedBy(getRequestConfig().getMapCooldownMultiply())));
+            Instant.now(), matchLength.multipliedBy(getRequestConfig().getMapCooldownMultiply()));
+    if (!putMapCooldown(map, cooldown)) return;
+
+    saveMapCooldown(Cooldown.of(map.getId(), cooldown));
+    if (directory != null) directory.sendState();
   }
 
   private void checkQueuedMaps() {
+    boolean changed = false;
     Iterator<SponsorRequest> queue = this.sponsors.iterator();
     while (queue.hasNext()) {
       SponsorRequest request = queue.next();
@@ -718,8 +879,10 @@ public abstract class RequestFeatureBase extends FeatureBase implements RequestF
                 .append(text(" no longer fits the online player count.", NamedTextColor.RED))
                 .build());
         queue.remove();
+        changed = true;
       }
     }
+    if (changed) onQueueChange();
   }
 
   private boolean isPartyActive() {
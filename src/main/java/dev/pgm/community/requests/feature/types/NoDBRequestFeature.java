@@ -3,6 +3,7 @@ package dev.pgm.community.requests.feature.types;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.requests.RequestConfig;
 import dev.pgm.community.requests.RequestProfile;
 import dev.pgm.community.requests.feature.RequestFeatureBase;
@@ -25,8 +26,9 @@ public class NoDBRequestFeature extends RequestFeatureBase {
                 }
               });
 
-  public NoDBRequestFeature(Configuration config, Logger logger, UsersFeature users) {
-    super(new RequestConfig(config), logger, "NoDb", users);
+  public NoDBRequestFeature(
+      Configuration config, Logger logger, UsersFeature users, NetworkFeature network) {
+    super(new RequestConfig(config), logger, "NoDb", users, network);
   }
 
   @Override
@@ -1,10 +1,15 @@
 package dev.pgm.community.requests.feature.types;
 
+import dev.pgm.community.network.feature.NetworkFeature;
 import dev.pgm.community.requests.RequestConfig;
 import dev.pgm.community.requests.RequestProfile;
+import dev.pgm.community.requests.SponsorState;
+import dev.pgm.community.requests.SponsorState.Cooldown;
+import dev.pgm.community.requests.SponsorState.QueuedSponsor;
 import dev.pgm.community.requests.feature.RequestFeatureBase;
 import dev.pgm.community.requests.services.SQLRequestService;
 import dev.pgm.community.users.feature.UsersFeature;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
@@ -15,9 +20,11 @@ public class SQLRequestFeature extends RequestFeatureBase {
 
   private SQLRequestService service;
 
-  public SQLRequestFeature(Configuration config, Logger logger, UsersFeature users) {
-    super(new RequestConfig(config), logger, "Requests (SQL)", users);
+  public SQLRequestFeature(
+      Configuration config, Logger logger, UsersFeature users, NetworkFeature network) {
+    super(new RequestConfig(config), logger, "Requests (SQL)", users, network);
     this.service = new SQLRequestService();
+    restoreSponsorState();
   }
 
   @Override
@@ -39,4 +46,24 @@ public class SQLRequestFeature extends RequestFeatureBase {
   public RequestProfile getCached(UUID playerId) {
     return service.getCached(playerId);
   }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    return service.query(playerId.toString());
+  }
+
+  @Override
+  protected CompletableFuture<SponsorState> loadSponsorState(String server) {
+    return service.loadSponsorState(server);
+  }
+
+  @Override
+  protected void saveSponsorQueue(String server, List<QueuedSponsor> queue) {
+    service.saveSponsorQueue(server, queue);
+  }
+
+  @Override
+  protected void saveMapCooldown(Cooldown cooldown) {
+    service.saveMapCooldown(cooldown);
+  }
 }
@@ -7,7 +7,14 @@ public interface RequestQuery {
   static final String TABLE_NAME = "requests";
 
   static final String INSERT_REQUESTS_QUERY =
-      "INSERT INTO " + TABLE_NAME + " VALUES (?,?,?,?,?,?,?)";
+      "INSERT INTO "
+          + TABLE_NAME
+          + "(id, last_request_time, last_request_map, last_sponsor_time, last_sponsor_map, tokens, last_token_refresh) VALUES (?,?,?,?,?,?,?)";
+
+  static final String LOGIN_REQUESTS_QUERY =
+      "INSERT IGNORE INTO "
+          + TABLE_NAME
+          + "(id, last_request_time, last_request_map, last_sponsor_time, last_sponsor_map, tokens, last_token_refresh) VALUES (?,?,?,?,?,?,?)";
 
   static final String UPDATE_REQUEST_QUERY =
       "UPDATE "
@@ -16,4 +23,34 @@ public interface RequestQuery {
 
   static final String SELECT_REQUEST_QUERY =
       "SELECT * from " + TABLE_NAME + " WHERE id = ? LIMIT 1";
+
+  static final String SPONSOR_QUEUE_TABLE_FIELDS =
+      "(server VARCHAR(255), position INT, player VARCHAR(36), map VARCHAR(255), refund BOOL, PRIMARY KEY (server, position))";
+  static final String SPONSOR_QUEUE_TABLE_NAME = "sponsor_queue";
+
+  static final String DELETE_SPONSOR_QUEUE_QUERY =
+      "DELETE FROM " + SPONSOR_QUEUE_TABLE_NAME + " WHERE server = ?";
+
+  static final String INSERT_SPONSOR_QUEUE_QUERY =
+      "INSERT INTO "
+          + SPONSOR_QUEUE_TABLE_NAME
+          + "(server, position, player, map, refund) VALUES (?,?,?,?,?)";
+
+  static final String SELECT_SPONSOR_QUEUE_QUERY =
+      "SELECT * from " + SPONSOR_QUEUE_TABLE_NAME + " WHERE server = ? ORDER BY position";
+
+  static final String MAP_COOLDOWN_TABLE_FIELDS =
+      "(map VARCHAR(255) PRIMARY KEY, end_time BIGINT, length BIGINT, expires BIGINT)";
+  static final String MAP_COOLDOWN_TABLE_NAME = "map_cooldowns";
+
+  static final String INSERT_MAP_COOLDOWN_QUERY =
+      "REPLACE INTO "
+          + MAP_COOLDOWN_TABLE_NAME
+          + "(map, end_time, length, expires) VALUES (?,?,?,?)";
+
+  static final String SELECT_MAP_COOLDOWNS_QUERY =
+      "SELECT * from " + MAP_COOLDOWN_TABLE_NAME + " WHERE expires > ?";
+
+  static final String DELETE_EXPIRED_MAP_COOLDOWNS_QUERY =
+      "DELETE FROM " + MAP_COOLDOWN_TABLE_NAME + " WHERE expires <= ?";
 }
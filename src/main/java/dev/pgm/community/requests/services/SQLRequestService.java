@@ -1,12 +1,20 @@
 package dev.pgm.community.requests.services;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import co.aikar.idb.DB;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import co.aikar.idb.DbRow;
 import com.google.common.collect.Lists;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.Query;
+import dev.pgm.community.database.SharedCodec;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.requests.RequestProfile;
+import dev.pgm.community.requests.SponsorState;
+import dev.pgm.community.requests.SponsorState.Cooldown;
+import dev.pgm.community.requests.SponsorState.QueuedSponsor;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
@@ -16,60 +24,76 @@ import javax.annotation.Nullable;
 public class SQLRequestService extends SQLFeatureBase<RequestProfile, String>
     implements RequestQuery {
 
-  private LoadingCache<UUID, UserRequestData> profileCache;
+  private final AsyncLoadingCache<UUID, RequestProfile> profileCache;
 
   public SQLRequestService() {
     super(TABLE_NAME, TABLE_FIELDS);
-
     this.profileCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, UserRequestData>() {
-                  @Override
-                  public UserRequestData load(UUID key) throws Exception {
-                    return new UserRequestData(key);
-                  }
-                });
+        createMissingAwareCache(
+            "requests", SharedCodec.uuid(RequestProfile.class), this::loadProfile);
+  }
+
+  @Override
+  public void createTable() {
+    super.createTable();
+    AsyncDB.executeUpdate(Query.createTable(SPONSOR_QUEUE_TABLE_NAME, SPONSOR_QUEUE_TABLE_FIELDS));
+    AsyncDB.executeUpdate(Query.createTable(MAP_COOLDOWN_TABLE_NAME, MAP_COOLDOWN_TABLE_FIELDS));
   }
 
   public CompletableFuture<RequestProfile> login(UUID playerId) {
-    return query(playerId.toString())
+    return profileCache
+        .get(playerId)
+        .thenCompose(
+            cached ->
+                cached != null ? CompletableFuture.completedFuture(cached) : create(playerId));
+  }
+
+  private CompletableFuture<RequestProfile> create(UUID playerId) {
+    // Create the profile if it does not exist, then read back whichever profile is stored
+    RequestProfile created = new RequestProfile(playerId);
+    return AsyncDB.supply(
+            () -> {
+              int inserted = DB.executeUpdate(LOGIN_REQUESTS_QUERY, getInsertParams(created));
+              DbRow row = DB.getFirstRow(SELECT_REQUEST_QUERY, bindId(playerId));
+              if (inserted > 0) announceCreated(profileCache, playerId);
+              return row == null ? created : readProfile(row);
+            })
         .thenApplyAsync(
             profile -> {
-              RequestProfile reqProfile = new RequestProfile(playerId);
-              if (profile == null) {
-                save(reqProfile);
-                return reqProfile;
-              }
+              profileCache.put(playerId, profile);
               return profile;
-            });
+            },
+            async());
   }
 
   @Nullable
   public RequestProfile getCached(UUID playerId) {
-    UserRequestData data = profileCache.getUnchecked(playerId);
-    if (data.getProfile() != null) {
-      return data.getProfile();
-    }
-    return null;
+    return profileCache.getIfLoaded(playerId);
   }
 
   @Override
   public void save(RequestProfile profile) {
-    DB.executeUpdateAsync(
-        INSERT_REQUESTS_QUERY,
-        profile.getPlayerId().toString(),
-        convertTime(profile.getLastRequestTime()),
-        profile.getLastRequestMap(),
-        convertTime(profile.getLastSponsorTime()),
-        profile.getLastSponsorMap(),
-        profile.getSponsorTokens(),
-        convertTime(profile.getLastTokenRefreshTime()));
-    profileCache.invalidate(profile.getPlayerId());
+    queueUpdate(INSERT_REQUESTS_QUERY, getInsertParams(profile));
+    profileCache.put(profile.getPlayerId(), profile);
+    announceCreated(profileCache, profile.getPlayerId());
+  }
+
+  private Object[] getInsertParams(RequestProfile profile) {
+    return new Object[] {
+      bindId(profile.getPlayerId()),
+      convertTime(profile.getLastRequestTime()),
+      profile.getLastRequestMap(),
+      convertTime(profile.getLastSponsorTime()),
+      profile.getLastSponsorMap(),
+      profile.getSponsorTokens(),
+      convertTime(profile.getLastTokenRefreshTime())
+    };
   }
 
   public void update(RequestProfile profile) {
-    DB.executeUpdateAsync(
+    profileCache.put(profile.getPlayerId(), profile); // Write the change through
+    queueUpdate(
+        profile.getPlayerId(),
         UPDATE_REQUEST_QUERY,
         convertTime(profile.getLastRequestTime()),
         profile.getLastRequestMap(),
@@ -77,7 +101,7 @@ public class SQLRequestService extends SQLFeatureBase<RequestProfile, String>
         profile.getLastSponsorMap(),
         profile.getSponsorTokens(),
         convertTime(profile.getLastTokenRefreshTime()),
-        profile.getPlayerId().toString());
+        bindId(profile.getPlayerId()));
   }
 
   @Override
@@ -87,83 +111,101 @@ public class SQLRequestService extends SQLFeatureBase<RequestProfile, String>
 
   @Override
   public CompletableFuture<RequestProfile> query(String target) {
-    UUID playerId = UUID.fromString(target);
-    UserRequestData profile = profileCache.getUnchecked(playerId);
-
-    if (profile.isLoaded() && profile.getProfile() != null) {
-      return CompletableFuture.completedFuture(profile.getProfile());
-    } else {
-      return DB.getFirstRowAsync(SELECT_REQUEST_QUERY, playerId.toString())
-          .thenApplyAsync(
-              result -> {
-                if (result != null) {
-                  final UUID id = UUID.fromString(result.getString("id"));
-                  final long lastRequest = Long.parseLong(result.getString("last_request_time"));
-                  final String lastRequestMap = result.getString("last_request_map");
-                  final long lastSponsor = Long.parseLong(result.getString("last_sponsor_time"));
-                  final String lastSponsorMap = result.getString("last_sponsor_map");
-                  final int tokens = result.getInt("tokens");
-                  final long lastToken = Long.parseLong(result.getString("last_token_refresh"));
-
-                  final Instant lastRequestTime =
-                      lastRequest == -1 ? null : Instant.ofEpochMilli(lastRequest);
-                  final Instant lastSponsorTime =
-                      lastSponsor == -1 ? null : Instant.ofEpochMilli(lastSponsor);
-                  final Instant lastTokenRefreshTime =
-                      lastToken == -1 ? null : Instant.ofEpochMilli(lastToken);
-
-                  profile.setProfile(
-                      new RequestProfile(
-                          id,
-                          lastRequestTime,
-                          lastRequestMap,
-                          lastSponsorTime,
-                          lastSponsorMap,
-                          tokens,
-                          lastTokenRefreshTime));
-                }
-                profile.setLoaded(true);
-                return profile.getProfile();
-              });
-    }
+    return profileCache.get(UUID.fromString(target));
   }
 
-  private long convertTime(Instant time) {
-    if (time == null) {
-      return -1;
-    }
-    return time.toEpochMilli();
+  private CompletableFuture<RequestProfile> loadProfile(UUID playerId) {
+    return AsyncDB.getFirstRow(SELECT_REQUEST_QUERY, bindId(playerId))
+        .thenApplyAsync(result -> result == null ? null : readProfile(result), async());
   }
 
-  private class UserRequestData {
-
-    private UUID playerId;
-    private RequestProfile profile;
-    private boolean loaded;
-
-    public UserRequestData(UUID playerId) {
-      this.playerId = playerId;
-      this.profile = null;
-    }
-
-    public UUID getPlayerId() {
-      return playerId;
-    }
+  /**
+   * Loads the sponsor queue of a server and every map cooldown which has not expired
+   *
+   * @param server The id of the server
+   * @return A future completed with the stored state
+   */
+  public CompletableFuture<SponsorState> loadSponsorState(String server) {
+    return AsyncDB.supply(
+        () -> {
+          long now = System.currentTimeMillis();
+          DB.executeUpdate(DELETE_EXPIRED_MAP_COOLDOWNS_QUERY, now);
+
+          List<QueuedSponsor> queue = Lists.newArrayList();
+          for (DbRow row : DB.getResults(SELECT_SPONSOR_QUEUE_QUERY, server)) {
+            boolean refund = row.get("refund");
+            queue.add(new QueuedSponsor(readId(row, "player"), row.getString("map"), refund));
+          }
+
+          List<Cooldown> cooldowns = Lists.newArrayList();
+          for (DbRow row : DB.getResults(SELECT_MAP_COOLDOWNS_QUERY, now)) {
+            cooldowns.add(
+                new Cooldown(
+                    row.getString("map"),
+                    Instant.ofEpochMilli((Long) row.get("end_time")),
+                    Duration.ofMillis((Long) row.get("length"))));
+          }
+          return new SponsorState(server, now, queue, cooldowns);
+        });
+  }
 
-    public RequestProfile getProfile() {
-      return profile;
+  /**
+   * Replaces the stored sponsor queue of a server
+   *
+   * @param server The id of the server
+   * @param queue The queue, in order
+   */
+  public void saveSponsorQueue(String server, List<QueuedSponsor> queue) {
+    // Queued writes to a table run in order, so the delete always precedes the inserts
+    queueUpdate(DELETE_SPONSOR_QUEUE_QUERY, server);
+    for (int i = 0; i < queue.size(); i++) {
+      QueuedSponsor sponsor = queue.get(i);
+      queueUpdate(
+          INSERT_SPONSOR_QUEUE_QUERY,
+          server,
+          i,
+          sponsor.getPlayerId().toString(),
+          sponsor.getMap(),
+          sponsor.canRefund());
     }
+  }
 
-    public void setProfile(RequestProfile profile) {
-      this.profile = profile;
-    }
+  public void saveMapCooldown(Cooldown cooldown) {
+    queueUpdate(
+        INSERT_MAP_COOLDOWN_QUERY,
+        cooldown.getMap(),
+        cooldown.getEndTime().toEpochMilli(),
+        cooldown.getLength().toMillis(),
+        cooldown.getEndTime().plus(cooldown.getLength()).toEpochMilli());
+  }
 
-    public boolean isLoaded() {
-      return loaded;
-    }
+  private RequestProfile readProfile(DbRow result) {
+    final UUID id = readId(result, "id");
+    final long lastRequest = Long.parseLong(result.getString("last_request_time"));
+    final String lastRequestMap = result.getString("last_request_map");
+    final long lastSponsor = Long.parseLong(result.getString("last_sponsor_time"));
+    final String lastSponsorMap = result.getString("last_sponsor_map");
+    final int tokens = result.getInt("tokens");
+    final long lastToken = Long.parseLong(result.getString("last_token_refresh"));
+
+    final Instant lastRequestTime = lastRequest == -1 ? null : Instant.ofEpochMilli(lastRequest);
+    final Instant lastSponsorTime = lastSponsor == -1 ? null : Instant.ofEpochMilli(lastSponsor);
+    final Instant lastTokenRefreshTime = lastToken == -1 ? null : Instant.ofEpochMilli(lastToken);
+
+    return new RequestProfile(
+        id,
+        lastRequestTime,
+        lastRequestMap,
+        lastSponsorTime,
+        lastSponsorMap,
+        tokens,
+        lastTokenRefreshTime);
+  }
 
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
+  private long convertTime(Instant time) {
+    if (time == null) {
+      return -1;
     }
+    return time.toEpochMilli();
   }
 }
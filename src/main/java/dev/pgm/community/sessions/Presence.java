@@ -0,0 +1,69 @@
+package dev.pgm.community.sessions;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Where a player is online on the network, shared between servers by {@link PresenceDirectory} */
+public class Presence {
+
+  private final UUID sessionId; // ID of the session the player is online in
+  private final UUID playerId; // UUID of player
+  private final String server; // The server the player is on
+  private final Instant since; // When the session started
+  private final boolean disguised; // Whether the player is disguised/vanished
+  private final boolean online; // False once the session has ended
+
+  public Presence(
+      UUID sessionId,
+      UUID playerId,
+      String server,
+      Instant since,
+      boolean disguised,
+      boolean online) {
+    this.sessionId = sessionId;
+    this.playerId = playerId;
+    this.server = server;
+    this.since = since;
+    this.disguised = disguised;
+    this.online = online;
+  }
+
+  public static Presence of(Session session, boolean online) {
+    return new Presence(
+        session.getSessionId(),
+        session.getPlayerId(),
+        session.getServerName(),
+        session.getStartDate(),
+        session.isDisguised(),
+        online);
+  }
+
+  public UUID getSessionId() {
+    return sessionId;
+  }
+
+  public UUID getPlayerId() {
+    return playerId;
+  }
+
+  public String getServer() {
+    return server;
+  }
+
+  public Instant getSince() {
+    return since;
+  }
+
+  public boolean isDisguised() {
+    return disguised;
+  }
+
+  public boolean isOnline() {
+    return online;
+  }
+
+  /** @return the ongoing session this presence describes */
+  public Session toSession() {
+    return new Session(sessionId, playerId, disguised, server, since, null);
+  }
+}
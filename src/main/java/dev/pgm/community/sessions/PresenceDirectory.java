@@ -0,0 +1,219 @@
+package dev.pgm.community.sessions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.network.subs.types.PresenceSnapshotSubscriber;
+import dev.pgm.community.network.subs.types.PresenceSubscriber;
+import dev.pgm.community.network.updates.types.PresenceSnapshotUpdate;
+import dev.pgm.community.network.updates.types.PresenceUpdate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * A replicated, in-memory directory of which server every player on the network is on.
+ *
+ * <p>Each server sends a delta when one of its sessions starts or ends, and periodically sends a
+ * snapshot of all its sessions. Snapshots correct any deltas which were missed, and a server which
+ * stops sending them (e.g it crashed) has its players removed after a few intervals.
+ *
+ * <p>When a delta and the directory disagree, the most recently started session wins.
+ */
+public class PresenceDirectory {
+
+  public static final Duration SNAPSHOT_INTERVAL = Duration.ofSeconds(30);
+
+  // Snapshots missed before a server's players are removed
+  private static final int MISSED_SNAPSHOTS = 3;
+
+  private final NetworkFeature network;
+  private final String server;
+  private final Consumer<UUID> onRemoteQuit;
+
+  // Sessions on this server, by player
+  private final Map<UUID, Session> local = Maps.newConcurrentMap();
+
+  // Every player on the network, including this server
+  private final Map<UUID, Presence> players = Maps.newConcurrentMap();
+
+  // Server -> when its last snapshot was received
+  private final Map<String, Instant> servers = Maps.newConcurrentMap();
+
+  /**
+   * Creates a directory and subscribes to presence updates
+   *
+   * @param network The network to share presence over
+   * @param server The id of this server
+   * @param onRemoteQuit Called when a player leaves another server
+   * @param logger A logger for the subscribers
+   */
+  public PresenceDirectory(
+      NetworkFeature network, String server, Consumer<UUID> onRemoteQuit, Logger logger) {
+    this.network = network;
+    this.server = server;
+    this.onRemoteQuit = onRemoteQuit;
+
+    network.registerSubscriber(new PresenceSubscriber(this, network.getNetworkId(), logger));
+    network.registerSubscriber(
+        new PresenceSnapshotSubscriber(this, network.getNetworkId(), logger));
+  }
+
+  /**
+   * Gets where a player is online
+   *
+   * @param playerId The player
+   * @return The player's presence, or empty if offline
+   */
+  public Optional<Presence> getPresence(UUID playerId) {
+    return Optional.ofNullable(players.get(playerId));
+  }
+
+  /**
+   * Gets the ongoing session of a player, without querying the database
+   *
+   * @param playerId The player
+   * @param ignoreDisguised Whether to ignore a disguised session
+   * @return The ongoing session, or {@code null} if the player is offline or disguised
+   */
+  @Nullable
+  public Session getSession(UUID playerId, boolean ignoreDisguised) {
+    // Local sessions are returned as is, so ending them updates every reference
+    Session session = local.get(playerId);
+    if (session == null) {
+      Presence presence = players.get(playerId);
+      session = presence == null ? null : presence.toSession();
+    }
+    return session == null || (ignoreDisguised && session.isDisguised()) ? null : session;
+  }
+
+  /** @return every player online on the given server */
+  public List<Presence> getPlayers(String server) {
+    return players.values().stream()
+        .filter(presence -> presence.getServer().equals(server))
+        .collect(Collectors.toList());
+  }
+
+  /** @return every player online on the network */
+  public Collection<Presence> getPlayers() {
+    return ImmutableList.copyOf(players.values());
+  }
+
+  /** @return the servers which have sent a snapshot recently */
+  public Collection<String> getServers() {
+    return ImmutableList.copyOf(servers.keySet());
+  }
+
+  /**
+   * Records that a session on this server has started, and tells the other servers
+   *
+   * @param session The session
+   */
+  public void onSessionStart(Session session) {
+    local.put(session.getPlayerId(), session);
+    Presence presence = Presence.of(session, true);
+    apply(presence);
+    network.sendUpdate(new PresenceUpdate(presence));
+  }
+
+  /**
+   * Records that a session on this server has ended, and tells the other servers
+   *
+   * @param session The session
+   */
+  public void onSessionEnd(Session session) {
+    local.remove(session.getPlayerId(), session);
+    Presence presence = Presence.of(session, false);
+    apply(presence);
+    network.sendUpdate(new PresenceUpdate(presence));
+  }
+
+  /** Forgets every session on this server, when they have all been ended at once */
+  public void onSessionsEnded() {
+    local.clear();
+    players.values().removeIf(presence -> presence.getServer().equals(server));
+    sendSnapshot();
+  }
+
+  public void recieveUpdate(Presence presence) {
+    apply(presence);
+  }
+
+  public void recieveSnapshot(PresenceSnapshot snapshot) {
+    String from = snapshot.getServer();
+    Instant taken = Instant.ofEpochMilli(snapshot.getTime());
+    boolean known = servers.put(from, Instant.now()) != null;
+
+    // Anyone not in the snapshot has left, unless they joined after it was taken
+    Map<UUID, Presence> online =
+        snapshot.getPlayers().stream()
+            .collect(Collectors.toMap(Presence::getPlayerId, p -> p, (a, b) -> b));
+    for (Presence presence : players.values()) {
+      if (presence.getServer().equals(from)
+          && presence.getSince().isBefore(taken)
+          && !online.containsKey(presence.getPlayerId())) {
+        remove(presence);
+      }
+    }
+    online.values().forEach(this::apply);
+
+    // Help a server which just started fill its directory, rather than wait for the next interval
+    if (!known) {
+      sendSnapshot();
+    }
+  }
+
+  /**
+   * Sends a snapshot of this server, and removes servers which have stopped sending theirs. Called
+   * every {@link #SNAPSHOT_INTERVAL}.
+   */
+  public void tick() {
+    sendSnapshot();
+
+    Instant expired = Instant.now().minus(SNAPSHOT_INTERVAL.multipliedBy(MISSED_SNAPSHOTS));
+    servers.forEach(
+        (id, lastSnapshot) -> {
+          if (lastSnapshot.isBefore(expired) && servers.remove(id, lastSnapshot)) {
+            getPlayers(id).forEach(this::remove);
+          }
+        });
+  }
+
+  private void sendSnapshot() {
+    List<Presence> sessions =
+        local.values().stream()
+            .map(session -> Presence.of(session, true))
+            .collect(Collectors.toList());
+    network.sendUpdate(
+        new PresenceSnapshotUpdate(
+            new PresenceSnapshot(server, System.currentTimeMillis(), sessions)));
+  }
+
+  private void apply(Presence presence) {
+    if (presence.isOnline()) {
+      players.merge(
+          presence.getPlayerId(),
+          presence,
+          (current, update) -> update.getSince().isBefore(current.getSince()) ? current : update);
+    } else {
+      Presence current = players.get(presence.getPlayerId());
+      if (current != null && current.getSessionId().equals(presence.getSessionId())) {
+        remove(current);
+      }
+    }
+  }
+
+  private void remove(Presence presence) {
+    if (players.remove(presence.getPlayerId(), presence) && !presence.getServer().equals(server)) {
+      onRemoteQuit.accept(presence.getPlayerId());
+    }
+  }
+}
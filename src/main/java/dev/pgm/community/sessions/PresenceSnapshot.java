@@ -0,0 +1,29 @@
+package dev.pgm.community.sessions;
+
+import java.util.List;
+
+/** Every player online on a server, sent periodically to correct missed presence updates */
+public class PresenceSnapshot {
+
+  private final String server;
+  private final long time; // When the snapshot was taken, in epoch millis
+  private final List<Presence> players;
+
+  public PresenceSnapshot(String server, long time, List<Presence> players) {
+    this.server = server;
+    this.time = time;
+    this.players = players;
+  }
+
+  public String getServer() {
+    return server;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public List<Presence> getPlayers() {
+    return players;
+  }
+}
@@ -1,5 +1,7 @@
 package dev.pgm.community.sessions;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import dev.pgm.community.sessions.feature.SessionFeature;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -25,6 +27,7 @@ public class VanishedSessionListener implements Listener {
             session -> {
               sessions.endSession(session);
               sessions.startSession(player);
-            });
+            },
+            async());
   }
 }
@@ -1,7 +1,11 @@
 package dev.pgm.community.sessions.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import dev.pgm.community.Community;
 import dev.pgm.community.feature.FeatureBase;
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.sessions.PresenceDirectory;
 import dev.pgm.community.sessions.VanishedSessionListener;
 import dev.pgm.community.users.feature.UsersFeature;
 import dev.pgm.community.utils.PGMUtils;
@@ -9,6 +13,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -23,16 +28,29 @@ public abstract class SessionFeatureBase extends FeatureBase implements SessionF
 
   private List<UUID> joiningPlayers;
   private VanishedSessionListener vanishedSessionListener;
+  private PresenceDirectory presence;
 
   private boolean serverRestarting;
 
-  public SessionFeatureBase(UsersFeature users, Logger logger, String featureName) {
+  public SessionFeatureBase(
+      UsersFeature users, NetworkFeature network, Logger logger, String featureName) {
     super(users.getConfig(), logger, featureName);
 
     if (getConfig().isEnabled()) {
       this.joiningPlayers = new ArrayList<UUID>();
       enable();
 
+      if (network.isEnabled()) {
+        this.presence =
+            new PresenceDirectory(
+                network, Community.get().getServerId(), this::onRemoteQuit, logger);
+        long interval = PresenceDirectory.SNAPSHOT_INTERVAL.getSeconds() * 20;
+        Community.get()
+            .getServer()
+            .getScheduler()
+            .runTaskTimerAsynchronously(Community.get(), presence::tick, interval, interval);
+      }
+
       if (PGMUtils.isPGMEnabled()) {
         vanishedSessionListener = new VanishedSessionListener(this);
         Bukkit.getPluginManager().registerEvents(vanishedSessionListener, Community.get());
@@ -45,7 +63,7 @@ public abstract class SessionFeatureBase extends FeatureBase implements SessionF
     if (vanishedSessionListener != null) HandlerList.unregisterAll(vanishedSessionListener);
 
     for (Player player : Bukkit.getOnlinePlayers())
-      getLatestSession(player.getUniqueId(), false).thenAcceptAsync(this::endSession);
+      getLatestSession(player.getUniqueId(), false).thenAcceptAsync(this::endSession, async());
   }
 
   @EventHandler(priority = EventPriority.LOWEST)
@@ -62,9 +80,28 @@ public abstract class SessionFeatureBase extends FeatureBase implements SessionF
   @EventHandler(priority = EventPriority.HIGHEST)
   public void onQuitHighest(PlayerQuitEvent event) {
     if (!serverRestarting)
-      getLatestSession(event.getPlayer().getUniqueId(), false).thenAcceptAsync(this::endSession);
+      getLatestSession(event.getPlayer().getUniqueId(), false)
+          .thenAcceptAsync(this::endSession, async());
   }
 
+  /**
+   * Gets the network-wide presence directory, which answers whether and where players are online
+   * from memory
+   *
+   * @return The directory, or {@code null} if networking is disabled
+   */
+  @Nullable
+  public PresenceDirectory getPresence() {
+    return presence;
+  }
+
+  /**
+   * Called when a player's session on another server ends
+   *
+   * @param playerId The player
+   */
+  protected void onRemoteQuit(UUID playerId) {}
+
   @Override
   public boolean isPlayerJoining(Player player) {
     return joiningPlayers.contains(player.getUniqueId());
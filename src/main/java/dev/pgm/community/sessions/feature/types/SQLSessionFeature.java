@@ -1,5 +1,7 @@
 package dev.pgm.community.sessions.feature.types;
 
+import dev.pgm.community.network.feature.NetworkFeature;
+import dev.pgm.community.sessions.PresenceDirectory;
 import dev.pgm.community.sessions.Session;
 import dev.pgm.community.sessions.SessionQuery;
 import dev.pgm.community.sessions.feature.SessionFeatureBase;
@@ -16,13 +18,18 @@ public class SQLSessionFeature extends SessionFeatureBase {
 
   private final SQLSessionService service;
 
-  public SQLSessionFeature(UsersFeature users, Logger logger) {
-    super(users, logger, "Sessions (SQL)");
+  public SQLSessionFeature(UsersFeature users, NetworkFeature network, Logger logger) {
+    super(users, network, logger, "Sessions (SQL)");
     this.service = new SQLSessionService();
   }
 
   @Override
   public CompletableFuture<Session> getLatestSession(UUID playerId, boolean ignoreDisguised) {
+    // Online players are answered from memory, only offline players need their last session
+    PresenceDirectory presence = getPresence();
+    Session online = presence == null ? null : presence.getSession(playerId, ignoreDisguised);
+    if (online != null) return CompletableFuture.completedFuture(online);
+
     return service.query(new SessionQuery(playerId, ignoreDisguised));
   }
 
@@ -30,6 +37,7 @@ public class SQLSessionFeature extends SessionFeatureBase {
   public Session startSession(Player player) {
     Session session = new Session(player.getUniqueId(), VisibilityUtils.isDisguised(player));
     service.save(session);
+    if (getPresence() != null) getPresence().onSessionStart(session);
 
     return session;
   }
@@ -38,10 +46,18 @@ public class SQLSessionFeature extends SessionFeatureBase {
   public void endSession(Session session) {
     session.setEndDate(Instant.now());
     service.updateSessionEndTime(session);
+    if (getPresence() != null) getPresence().onSessionEnd(session);
   }
 
   @Override
   public void endOngoingSessions() {
     service.endOngoingSessions();
+    if (getPresence() != null) getPresence().onSessionsEnded();
+  }
+
+  @Override
+  protected void onRemoteQuit(UUID playerId) {
+    // The cached session was ongoing, read the ended one next time
+    service.invalidate(playerId);
   }
 }
@@ -1,10 +1,10 @@
 package dev.pgm.community.sessions.services;
 
-import co.aikar.idb.DB;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import static dev.pgm.community.CommunityExecutors.async;
+
 import dev.pgm.community.Community;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.sessions.Session;
 import dev.pgm.community.sessions.SessionQuery;
@@ -12,38 +12,26 @@ import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import javax.annotation.Nonnull;
 
 public class SQLSessionService extends SQLFeatureBase<Session, SessionQuery>
     implements SessionDataQuery {
 
-  private final LoadingCache<SessionQuery, SessionData> sessionCache;
+  private final AsyncLoadingCache<SessionQuery, Session> sessionCache;
 
   public SQLSessionService() {
     super(TABLE_NAME, TABLE_FIELDS);
-    this.sessionCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<SessionQuery, SessionData>() {
-                  @Override
-                  public SessionData load(@Nonnull SessionQuery key) {
-                    return new SessionData(key.getPlayerId(), key.ignoreDisguised());
-                  }
-                });
+    this.sessionCache = createCache("sessions", this::loadSession);
   }
 
   @Override
   public void save(Session session) {
-    SessionData query = sessionCache.getUnchecked(new SessionQuery(session.getPlayerId(), false));
-    query.setSession(session);
-
-    query = sessionCache.getUnchecked(new SessionQuery(session.getPlayerId(), true));
-    query.invalidate();
+    sessionCache.put(new SessionQuery(session.getPlayerId(), false), session);
+    sessionCache.invalidate(new SessionQuery(session.getPlayerId(), true));
 
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_SESSION_QUERY,
-        session.getSessionId().toString(),
-        session.getPlayerId().toString(),
+        bindId(session.getSessionId()),
+        bindId(session.getPlayerId()),
         session.isDisguised(),
         session.getServerName(),
         session.getStartDate().toEpochMilli(),
@@ -51,14 +39,25 @@ public class SQLSessionService extends SQLFeatureBase<Session, SessionQuery>
   }
 
   public void updateSessionEndTime(Session session) {
-    DB.executeUpdateAsync(
+    queueUpdate(
+        session.getSessionId(),
         UPDATE_SESSION_ENDTIME_QUERY,
         session.getEndDate() == null ? null : session.getEndDate().toEpochMilli(),
-        session.getSessionId().toString());
+        bindId(session.getSessionId()));
+  }
+
+  /**
+   * Drops the cached sessions of a player, after their session was ended elsewhere
+   *
+   * @param playerId The player
+   */
+  public void invalidate(UUID playerId) {
+    sessionCache.invalidate(new SessionQuery(playerId, false));
+    sessionCache.invalidate(new SessionQuery(playerId, true));
   }
 
   public void endOngoingSessions() {
-    DB.executeUpdateAsync(
+    queueUpdate(
         UPDATE_ONGOING_SESSION_ENDING_QUERY,
         Instant.now().toEpochMilli(),
         Community.get().getServerId());
@@ -71,79 +70,35 @@ public class SQLSessionService extends SQLFeatureBase<Session, SessionQuery>
 
   @Override
   public CompletableFuture<Session> query(SessionQuery target) {
-    SessionData data = sessionCache.getUnchecked(target);
-
-    if (data.isLoaded()) {
-      return CompletableFuture.completedFuture(data.getSession());
-    } else {
-      return DB.getFirstRowAsync(
-              target.ignoreDisguised() ? SELECT_DISGUISED_SESSION_QUERY : SELECT_SESSION_QUERY,
-              target.getPlayerId().toString())
-          .thenApplyAsync(
-              result -> {
-                if (result != null) {
-                  String id = result.getString("id");
-
-                  String player = result.getString("player");
-                  boolean disguised = result.get("disguised");
-
-                  String server = result.getString("server");
-
-                  Object startTime = result.get("start_time");
-                  Object endTime = result.get("end_time");
-
-                  data.setSession(
-                      new Session(
-                          UUID.fromString(id),
-                          UUID.fromString(player),
-                          disguised,
-                          server,
-                          Instant.ofEpochMilli((Long) startTime),
-                          endTime == null ? null : Instant.ofEpochMilli((Long) endTime)));
-                }
-                return data.getSession();
-              });
-    }
+    return sessionCache.get(target);
   }
 
-  private class SessionData {
-
-    private final UUID playerId;
-    private final boolean ignoreDisguised;
-    private Session session;
-    private boolean loaded;
-
-    public SessionData(UUID playerId, boolean ignoreDisguised) {
-      this.playerId = playerId;
-      this.ignoreDisguised = ignoreDisguised;
-      this.session = null;
-      this.loaded = false;
-    }
-
-    public UUID getPlayerId() {
-      return playerId;
-    }
-
-    public boolean isDisguiseIgnored() {
-      return ignoreDisguised;
-    }
-
-    public Session getSession() {
-      return session;
-    }
-
-    public void setSession(Session session) {
-      loaded = true;
-      this.session = session;
-    }
-
-    public boolean isLoaded() {
-      return loaded;
-    }
-
-    public void invalidate() {
-      loaded = false;
-      session = null;
-    }
+  private CompletableFuture<Session> loadSession(SessionQuery target) {
+    return AsyncDB.getFirstRow(
+            target.ignoreDisguised() ? SELECT_DISGUISED_SESSION_QUERY : SELECT_SESSION_QUERY,
+            bindId(target.getPlayerId()))
+        .thenApplyAsync(
+            result -> {
+              if (result == null) return null;
+
+              UUID id = readId(result, "id");
+
+              UUID player = readId(result, "player");
+              boolean disguised = result.get("disguised");
+
+              String server = result.getString("server");
+
+              Object startTime = result.get("start_time");
+              Object endTime = result.get("end_time");
+
+              return new Session(
+                  id,
+                  player,
+                  disguised,
+                  server,
+                  Instant.ofEpochMilli((Long) startTime),
+                  endTime == null ? null : Instant.ofEpochMilli((Long) endTime));
+            },
+            async());
   }
 }
@@ -1,5 +1,6 @@
 package dev.pgm.community.users.commands;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.Component.newline;
 import static net.kyori.adventure.text.Component.text;
@@ -8,7 +9,9 @@ import static tc.oc.pgm.util.player.PlayerComponent.player;
 import static tc.oc.pgm.util.text.TemporalComponent.duration;
 import static tc.oc.pgm.util.text.TemporalComponent.relativePastApproximate;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import dev.pgm.community.Community;
 import dev.pgm.community.CommunityCommand;
@@ -27,10 +30,8 @@ import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -215,7 +216,8 @@ public class UserInfoCommands extends CommunityCommand {
               if (altsWithBans.size() > 0) {
                 audience.sendMessage(altBans);
               }
-            });
+            },
+            async());
   }
 
   @CommandMethod("profile|user <target> [all]")
@@ -293,7 +295,8 @@ public class UserInfoCommands extends CommunityCommand {
                                     .color(NamedTextColor.GRAY)
                                     .build()));
                       }
-                    });
+                    },
+                    async());
 
             users
                 .getKnownIPs(profile.getId())
@@ -338,7 +341,8 @@ public class UserInfoCommands extends CommunityCommand {
                                   .build());
                         }
                       }
-                    });
+                    },
+                    async());
           }
         });
   }
@@ -366,47 +370,61 @@ public class UserInfoCommands extends CommunityCommand {
   }
 
   private void showOnlineAlts(CommandAudience audience, int page) {
-    Set<Component> altAccounts = Sets.newHashSet();
-    Set<UUID> accountedFor = Sets.newHashSet();
-
-    for (Player player : Bukkit.getOnlinePlayers()) {
-      Set<UUID> alts = getOnlineAltAccounts(player);
-
-      if (alts.isEmpty() || accountedFor.contains(player.getUniqueId())) {
-        continue;
-      } else {
-        altAccounts.add(formatAltAccountList(player, alts));
-        accountedFor.add(player.getUniqueId());
-        accountedFor.addAll(alts);
-      }
-    }
+    users
+        .getAltClusters(getOnlinePlayerIds())
+        .thenAcceptAsync(
+            clusters -> {
+              Set<Component> altAccounts = Sets.newHashSet();
+              for (Set<UUID> cluster : clusters) {
+                UUID target = cluster.iterator().next();
+                Set<UUID> alts = Sets.difference(cluster, ImmutableSet.of(target));
+                altAccounts.add(formatAltAccountList(target, alts));
+              }
 
-    sendAltList(audience, page, altAccounts, false);
+              sendAltList(audience, page, altAccounts, false);
+            },
+            async());
   }
 
   private void showBannedAlts(CommandAudience audience, int page) {
-    CompletableFuture.runAsync(
-        () -> {
-          Set<Component> altAccounts = Sets.newHashSet();
-          Set<UUID> accountedFor = Sets.newHashSet();
-
-          for (Player player : Bukkit.getOnlinePlayers()) {
-            Set<UUID> alts = users.getAlternateAccounts(player.getUniqueId()).join();
-            Map<UUID, Punishment> punishmentMap = new HashMap<>();
-            for (UUID alt : alts) {
-              Optional<Punishment> punishment = moderation.getActiveBan(alt.toString()).join();
-              punishment.ifPresent(value -> punishmentMap.put(alt, value));
-            }
-
-            if (!punishmentMap.isEmpty() && !accountedFor.contains(player.getUniqueId())) {
-              altAccounts.add(formatAltAccountList(player, punishmentMap));
-              accountedFor.add(player.getUniqueId());
-              accountedFor.addAll(punishmentMap.keySet());
-            }
-          }
+    Map<UUID, CompletableFuture<Set<UUID>>> lookups = Maps.newLinkedHashMap();
+    for (UUID playerId : getOnlinePlayerIds()) {
+      lookups.put(playerId, users.getAlternateAccounts(playerId));
+    }
 
-          sendAltList(audience, page, altAccounts, true);
-        });
+    CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture[0]))
+        .thenComposeAsync(
+            v -> {
+              Map<UUID, CompletableFuture<Map<UUID, Punishment>>> bans = Maps.newLinkedHashMap();
+              Set<UUID> accountedFor = Sets.newHashSet();
+              lookups.forEach(
+                  (playerId, lookup) -> {
+                    // Players in a cluster share their alts, so each cluster is only checked once
+                    if (!accountedFor.add(playerId)) return;
+                    Set<UUID> alts = lookup.join();
+                    accountedFor.addAll(alts);
+
+                    // Checked against the in-memory ban index once it is loaded
+                    bans.put(playerId, moderation.getActiveBans(alts));
+                  });
+              return CompletableFuture.allOf(bans.values().toArray(new CompletableFuture[0]))
+                  .thenApply(x -> bans);
+            },
+            async())
+        .thenAcceptAsync(
+            bans -> {
+              Set<Component> altAccounts = Sets.newHashSet();
+              bans.forEach(
+                  (playerId, lookup) -> {
+                    Map<UUID, Punishment> punishmentMap = lookup.join();
+                    if (!punishmentMap.isEmpty()) {
+                      altAccounts.add(formatAltAccountList(playerId, punishmentMap));
+                    }
+                  });
+
+              sendAltList(audience, page, altAccounts, true);
+            },
+            async());
   }
 
   private void sendAltList(
@@ -453,7 +471,7 @@ public class UserInfoCommands extends CommunityCommand {
     }.display(audience.getAudience(), altAccounts, page);
   }
 
-  private Component formatAltAccountList(Player target, Set<UUID> alts) {
+  private Component formatAltAccountList(UUID target, Set<UUID> alts) {
     Component names =
         Component.join(
             text(", ", NamedTextColor.GRAY),
@@ -471,7 +489,7 @@ public class UserInfoCommands extends CommunityCommand {
         .append(names);
   }
 
-  private Component formatAltAccountList(Player target, Map<UUID, Punishment> alts) {
+  private Component formatAltAccountList(UUID target, Map<UUID, Punishment> alts) {
     Component names =
         Component.join(
             text(", ", NamedTextColor.GRAY),
@@ -507,17 +525,7 @@ public class UserInfoCommands extends CommunityCommand {
         .append(names);
   }
 
-  private Set<UUID> getOnlineAltAccounts(Player target) {
-    Set<UUID> sameIPs = Sets.newHashSet();
-    String address = target.getAddress().getAddress().getHostAddress();
-
-    for (Player other : Bukkit.getOnlinePlayers()) {
-      if (other.getAddress().getAddress().getHostAddress().equals(address)
-          && !other.equals(target)) {
-        sameIPs.add(other.getUniqueId());
-      }
-    }
-
-    return sameIPs;
+  private List<UUID> getOnlinePlayerIds() {
+    return Bukkit.getOnlinePlayers().stream().map(Player::getUniqueId).collect(Collectors.toList());
   }
 }
@@ -1,11 +1,14 @@
 package dev.pgm.community.users.feature;
 
+import static dev.pgm.community.CommunityExecutors.async;
 import static tc.oc.pgm.util.player.PlayerComponent.player;
 
 import dev.pgm.community.feature.Feature;
 import dev.pgm.community.users.UserProfile;
 import dev.pgm.community.users.UserProfileWithSessionCallback;
 import dev.pgm.community.users.services.AddressHistoryService.LatestAddressInfo;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -37,7 +40,7 @@ public interface UsersFeature extends Feature {
   default CompletableFuture<Component> renderUsername(Optional<UUID> userId, NameStyle style) {
     if (!userId.isPresent()) return CompletableFuture.completedFuture(PlayerComponent.CONSOLE);
     return getStoredUsername(userId.get())
-        .thenApplyAsync(name -> player(Bukkit.getPlayer(userId.get()), name, style));
+        .thenApplyAsync(name -> player(Bukkit.getPlayer(userId.get()), name, style), async());
   }
 
   /**
@@ -121,13 +124,21 @@ public interface UsersFeature extends Feature {
   CompletableFuture<LatestAddressInfo> getLatestAddress(UUID playerId);
 
   /**
-   * Gets a set of alternate account ids related to the target
+   * Gets a set of alternate account ids related to the target, including alts of its alts
    *
    * @param playerId Player UUID
    * @return A set of UUIDs belonging to alternate accounts
    */
   CompletableFuture<Set<UUID>> getAlternateAccounts(UUID playerId);
 
+  /**
+   * Groups players who are alternate accounts of each other
+   *
+   * @param playerIds Player UUIDs, e.g those online
+   * @return Groups of two or more of the players which are alternate accounts of each other
+   */
+  CompletableFuture<List<Set<UUID>>> getAltClusters(Collection<UUID> playerIds);
+
   /**
    * Updates the stored username for matching id
    *
@@ -159,8 +170,10 @@ public interface UsersFeature extends Feature {
               if (profile == null) return null;
 
               return profile.getLatestSession(ignoreDisguised).join();
-            }),
-        (profile, session) -> callback.run(profile, session));
+            },
+            async()),
+        (profile, session) -> callback.run(profile, session),
+        async());
   }
 
   /**
@@ -180,7 +193,9 @@ public interface UsersFeature extends Feature {
               if (profile == null) return null;
 
               return profile.getLatestSession(ignoreDisguised).join();
-            }),
-        (profile, session) -> callback.run(profile, session));
+            },
+            async()),
+        (profile, session) -> callback.run(profile, session),
+        async());
   }
 }
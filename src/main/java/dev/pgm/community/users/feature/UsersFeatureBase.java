@@ -2,11 +2,14 @@ package dev.pgm.community.users.feature;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
 import dev.pgm.community.Community;
 import dev.pgm.community.feature.FeatureBase;
 import dev.pgm.community.users.UserProfile;
 import dev.pgm.community.users.UsersConfig;
 import dev.pgm.community.users.listeners.UserProfileLoginListener;
+import dev.pgm.community.utils.NameUtils;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Logger;
@@ -15,12 +18,14 @@ import javax.annotation.Nullable;
 public abstract class UsersFeatureBase extends FeatureBase implements UsersFeature {
 
   protected final Cache<UUID, String> names;
+  private final Map<String, UUID> ids; // Lowercase name -> id, kept in sync with names
   protected final Cache<UUID, UserProfile> profiles;
 
   public UsersFeatureBase(UsersConfig config, Logger logger, String featureName) {
     super(config, logger, featureName);
     this.profiles = CacheBuilder.newBuilder().build();
     this.names = CacheBuilder.newBuilder().build();
+    this.ids = Maps.newConcurrentMap();
 
     // Auto register username change listener
     Community.get().registerListener(new UserProfileLoginListener(this));
@@ -37,10 +42,7 @@ public abstract class UsersFeatureBase extends FeatureBase implements UsersFeatu
 
   @Override
   public Optional<UUID> getId(String username) {
-    return names.asMap().entrySet().stream()
-        .filter(e -> e.getValue().equalsIgnoreCase(username))
-        .map(e -> e.getKey())
-        .findAny();
+    return Optional.ofNullable(ids.get(NameUtils.toLookupKey(username)));
   }
 
   @Override
@@ -49,7 +51,9 @@ public abstract class UsersFeatureBase extends FeatureBase implements UsersFeatu
   }
 
   @Override
-  public void setName(UUID id, String name) {
-    names.put(id, name);
+  public synchronized void setName(UUID id, String name) {
+    String previous = names.asMap().put(id, name);
+    if (previous != null) ids.remove(NameUtils.toLookupKey(previous), id);
+    ids.put(NameUtils.toLookupKey(name), id);
   }
 }
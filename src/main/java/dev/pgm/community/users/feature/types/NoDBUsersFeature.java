@@ -1,5 +1,6 @@
 package dev.pgm.community.users.feature.types;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import dev.pgm.community.users.UserProfile;
 import dev.pgm.community.users.UserProfileImpl;
@@ -7,11 +8,15 @@ import dev.pgm.community.users.UsersConfig;
 import dev.pgm.community.users.feature.UsersFeatureBase;
 import dev.pgm.community.users.services.AddressHistoryService.LatestAddressInfo;
 import dev.pgm.community.utils.NameUtils;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.Configuration;
 import org.bukkit.entity.Player;
@@ -60,6 +65,22 @@ public class NoDBUsersFeature extends UsersFeatureBase {
     return CompletableFuture.completedFuture(Sets.newHashSet()); // TODO
   }
 
+  @Override
+  public CompletableFuture<List<Set<UUID>>> getAltClusters(Collection<UUID> playerIds) {
+    // Without ip history, only online players on the same address are known to be alts
+    Map<String, Set<UUID>> byAddress = Maps.newHashMap();
+    for (UUID playerId : playerIds) {
+      Player player = Bukkit.getPlayer(playerId);
+      if (player == null) continue;
+      byAddress
+          .computeIfAbsent(
+              player.getAddress().getAddress().getHostAddress(), address -> Sets.newHashSet())
+          .add(playerId);
+    }
+    return CompletableFuture.completedFuture(
+        byAddress.values().stream().filter(ids -> ids.size() > 1).collect(Collectors.toList()));
+  }
+
   @Override
   public CompletableFuture<LatestAddressInfo> getLatestAddress(UUID playerId) {
     return CompletableFuture.completedFuture(null);
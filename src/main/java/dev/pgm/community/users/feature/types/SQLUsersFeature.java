@@ -1,6 +1,8 @@
 package dev.pgm.community.users.feature.types;
 
-import dev.pgm.community.Community;
+import static dev.pgm.community.CommunityExecutors.async;
+import static dev.pgm.community.CommunityExecutors.sync;
+
 import dev.pgm.community.events.UserProfileLoadEvent;
 import dev.pgm.community.users.UserProfile;
 import dev.pgm.community.users.UserProfileImpl;
@@ -9,6 +11,8 @@ import dev.pgm.community.users.feature.UsersFeatureBase;
 import dev.pgm.community.users.services.AddressHistoryService;
 import dev.pgm.community.users.services.AddressHistoryService.LatestAddressInfo;
 import dev.pgm.community.users.services.SQLUserService;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -47,7 +51,8 @@ public class SQLUsersFeature extends UsersFeatureBase {
                   profiles.put(id, profile); // Cache profile
                 }
                 return profile;
-              });
+              },
+              async());
     }
     return CompletableFuture.completedFuture(cached);
   }
@@ -65,7 +70,8 @@ public class SQLUsersFeature extends UsersFeatureBase {
                   this.setName(id, profile.getUsername());
                 }
                 return profile.getUsername();
-              });
+              },
+              async());
     }
 
     return CompletableFuture.completedFuture(cached);
@@ -85,7 +91,8 @@ public class SQLUsersFeature extends UsersFeatureBase {
                   id = profile.getId();
                 }
                 return Optional.ofNullable(id);
-              });
+              },
+              async());
     }
 
     return CompletableFuture.completedFuture(cached);
@@ -101,6 +108,11 @@ public class SQLUsersFeature extends UsersFeatureBase {
     return addresses.getAlternateAccounts(playerId);
   }
 
+  @Override
+  public CompletableFuture<List<Set<UUID>>> getAltClusters(Collection<UUID> playerIds) {
+    return addresses.getAltClusters(playerIds);
+  }
+
   @Override
   public CompletableFuture<LatestAddressInfo> getLatestAddress(UUID playerId) {
     return addresses.getLatestAddressInfo(playerId);
@@ -120,16 +132,14 @@ public class SQLUsersFeature extends UsersFeatureBase {
         .login(id, name, address)
         .thenAcceptAsync(
             profile -> {
+              if (profile == null) return;
               profiles.put(id, profile);
 
               // Call profile load event
-              Community.get()
-                  .getServer()
-                  .getScheduler()
-                  .runTask(
-                      Community.get(),
-                      () -> Bukkit.getPluginManager().callEvent(new UserProfileLoadEvent(profile)));
-            }); // Login save
+              sync().execute(
+                  () -> Bukkit.getPluginManager().callEvent(new UserProfileLoadEvent(profile)));
+            },
+            async()); // Login save
     addresses.trackIp(id, address); // Track IP
   }
 
@@ -143,7 +153,14 @@ public class SQLUsersFeature extends UsersFeatureBase {
                 service.save(up);
                 setName(id, username);
               }
-            });
+            },
+            async());
+  }
+
+  @Override
+  public CompletableFuture<?> prefetch(UUID playerId) {
+    // The profile is not prefetched, the login upsert reads it back after counting the join
+    return addresses.getKnownIps(playerId);
   }
 
   @Override
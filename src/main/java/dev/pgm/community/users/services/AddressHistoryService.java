@@ -1,14 +1,29 @@
 package dev.pgm.community.users.services;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import co.aikar.idb.DB;
 import co.aikar.idb.DbRow;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import dev.pgm.community.Community;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.DatabaseConnection;
 import dev.pgm.community.database.Query;
+import dev.pgm.community.database.UUIDCodec;
+import dev.pgm.community.database.UUIDStorage;
+import dev.pgm.community.database.WriteBehindQueue;
+import java.sql.SQLException;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -16,287 +31,247 @@ import java.util.stream.Collectors;
 
 public class AddressHistoryService implements AddressQuery {
 
-  private LoadingCache<UUID, AddressHistory> historyCache;
+  private static final int HISTORY_PAGE_SIZE = 10_000;
+  private static final int ALTS_BATCH_SIZE = 500;
 
-  private LoadingCache<UUID, LatestAddressInfo> latestCache;
+  // Player id -> ip id -> address, for every address the player has used
+  private final AsyncLoadingCache<UUID, Map<String, String>> historyCache;
 
-  private LoadingCache<String, ResolvedIP> resolvedIPCache;
+  private final AsyncLoadingCache<UUID, LatestAddressInfo> latestCache;
 
-  private LoadingCache<String, IpAlts> altsCache;
+  private final AltGraph altGraph = new AltGraph();
 
   public AddressHistoryService() {
-    this.historyCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, AddressHistory>() {
-                  @Override
-                  public AddressHistory load(UUID key) throws Exception {
-                    return new AddressHistory(key);
-                  }
-                });
-    this.latestCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, LatestAddressInfo>() {
-                  @Override
-                  public LatestAddressInfo load(UUID key) throws Exception {
-                    return new LatestAddressInfo(key);
-                  }
-                });
-    this.resolvedIPCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<String, ResolvedIP>() {
-                  @Override
-                  public ResolvedIP load(String key) throws Exception {
-                    return new ResolvedIP(key);
-                  }
-                });
-    this.altsCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<String, IpAlts>() {
-                  @Override
-                  public IpAlts load(String key) throws Exception {
-                    return new IpAlts(key);
-                  }
-                });
-
-    DB.executeUpdateAsync(Query.createTable(IP_TABLE_NAME, IP_TABLE_FIELDS));
-    DB.executeUpdateAsync(Query.createTable(IP_USER_TABLE_NAME, IP_USER_TABLE_FIELDS));
-    DB.executeUpdateAsync(Query.createTable(LATEST_IP_TABLE_NAME, LATEST_IP_TABLE_FIELDS));
+    DatabaseConnection database = Community.get().getDatabase();
+    this.historyCache = database.createCache("ip_history", this::loadHistory);
+    this.latestCache = database.createCache("latest_ip", this::loadLatestAddressInfo);
+
+    AsyncDB.executeUpdate(Query.createTable(IP_TABLE_NAME, IP_TABLE_FIELDS));
+    AsyncDB.executeUpdate(Query.createTable(IP_USER_TABLE_NAME, IP_USER_TABLE_FIELDS));
+    AsyncDB.executeUpdate(Query.createTable(LATEST_IP_TABLE_NAME, LATEST_IP_TABLE_FIELDS));
+
+    loadAltGraph()
+        .exceptionally(
+            e -> {
+              Community.get()
+                  .getLogger()
+                  .warning("Unable to load the alt graph, looking up alts in the database");
+              return null;
+            });
   }
 
-  public void trackIp(UUID id, String address) {
-    historyCache.invalidate(id);
-
-    DB.executeUpdateAsync(
-        INSERT_LATEST_IP_QUERY, id.toString(), address, Instant.now().toEpochMilli());
+  // Reads ip history a page at a time, so the whole table is never held as rows at once. Runs on
+  // the bulk load thread, so per-player lookups are not queued behind it
+  private CompletableFuture<Void> loadAltGraph() {
+    return AsyncDB.supplyBulk(
+        () -> {
+          List<DbRow> page = DB.getResults(SELECT_HISTORY_FIRST_PAGE_QUERY, HISTORY_PAGE_SIZE);
+          while (page != null && !page.isEmpty()) {
+            for (DbRow row : page) {
+              altGraph.link(
+                  UUIDCodec.decode(row.get(USER_ID_FIELD)), UUIDCodec.decode(row.get(IP_ID_FIELD)));
+            }
+            if (page.size() < HISTORY_PAGE_SIZE) break;
+
+            DbRow last = page.get(page.size() - 1);
+            page =
+                DB.getResults(
+                    SELECT_HISTORY_PAGE_QUERY,
+                    last.get(USER_ID_FIELD),
+                    last.get(USER_ID_FIELD),
+                    last.get(IP_ID_FIELD),
+                    HISTORY_PAGE_SIZE);
+          }
+          altGraph.setLoaded();
+          return null;
+        });
+  }
 
-    DB.getFirstRowAsync(SELECT_IP_QUERY, address)
+  public void trackIp(UUID id, String address) {
+    latestCache.put(id, new LatestAddressInfo(id, address, Instant.now()));
+
+    getWriteQueue()
+        .executeUpdate(
+            id,
+            INSERT_LATEST_IP_QUERY,
+            bindId(LATEST_IP_TABLE_NAME, id),
+            address,
+            Instant.now().toEpochMilli());
+
+    // Addresses are unique, so a new ip id is only kept if the address has not been seen before
+    UUID randomId = UUID.randomUUID();
+    AsyncDB.supply(
+            () -> {
+              DB.executeUpdate(INSERT_IP_QUERY, address, bindId(IP_TABLE_NAME, randomId));
+              return DB.getFirstRow(SELECT_IP_QUERY, address);
+            })
         .thenAcceptAsync(
             result -> {
-              final UUID randomId = UUID.randomUUID();
-              String ipId = randomId.toString();
-
-              if (result == null) {
-                // Track a new ip-id
-                DB.executeUpdateAsync(INSERT_IP_QUERY, address, ipId);
-              } else {
-                ipId = result.getString(IP_ID_FIELD);
-              }
-
-              // Update alts for an already cached IP
-              IpAlts alts = altsCache.getUnchecked(ipId);
-              if (alts.isLoaded()) {
-                alts.getPlayerIds().add(id.toString());
-              }
-
-              Set<String> known = getKnownIps(id).join();
-              if (known == null
-                  || known.isEmpty()
-                  || !known.stream().anyMatch(ip -> ip.equalsIgnoreCase(address))) {
-                // Add user to known ip-id list
-                DB.executeUpdateAsync(INSERT_IP_USER_QUERY, id.toString(), ipId);
-              }
-            });
+              if (result == null) return;
+              String ipId = readIpId(result);
+              altGraph.link(id, UUID.fromString(ipId));
+
+              historyCache.update(
+                  id,
+                  history ->
+                      history.containsKey(ipId)
+                          ? history
+                          : ImmutableMap.<String, String>builder()
+                              .putAll(history)
+                              .put(ipId, address)
+                              .build());
+
+              // Ignored if the player has used this address before
+              getWriteQueue()
+                  .executeUpdate(
+                      INSERT_IP_USER_QUERY,
+                      bindId(IP_USER_TABLE_NAME, id),
+                      bindId(IP_USER_TABLE_NAME, UUID.fromString(ipId)));
+            },
+            async());
   }
 
   public CompletableFuture<LatestAddressInfo> getLatestAddressInfo(UUID playerId) {
-    LatestAddressInfo info = latestCache.getUnchecked(playerId);
-    if (info.isLoaded()) {
-      return CompletableFuture.completedFuture(info);
-    } else {
-      return DB.getFirstRowAsync(SELECT_LATEST_IP_QUERY, playerId.toString())
-          .thenApplyAsync(
-              result -> {
-                if (result != null) {
-                  String address = result.getString(IP_ADDRESS_FIELD);
-                  Instant date = Instant.ofEpochMilli(Long.parseLong(result.getString(DATE_FIELD)));
-                  info.setAddress(address);
-                  info.setDate(date);
-                }
-                info.setLoaded(true);
-                return info;
-              });
-    }
+    return latestCache.get(playerId);
   }
 
-  public CompletableFuture<AddressHistory> getIpIds(UUID playerId) {
-    AddressHistory history = historyCache.getUnchecked(playerId);
-
-    if (history.isLoaded()) {
-      return CompletableFuture.completedFuture(history);
-    } else {
-      return DB.getResultsAsync(SELECT_IP_HISTORY_QUERY, playerId.toString())
-          .thenApplyAsync(
-              results -> {
-                if (results != null && !results.isEmpty()) {
-                  for (DbRow row : results) {
-                    String ipId = row.getString("ip_id");
-                    history.addAddress(ipId);
-                  }
-                }
-                history.setLoaded(true);
-                return history;
-              });
-    }
-  }
-
-  public CompletableFuture<Set<String>> getKnownIps(UUID playerId) {
-    return getIpIds(playerId)
+  private CompletableFuture<LatestAddressInfo> loadLatestAddressInfo(UUID playerId) {
+    return AsyncDB.getFirstRow(SELECT_LATEST_IP_QUERY, bindId(LATEST_IP_TABLE_NAME, playerId))
         .thenApplyAsync(
-            addressHistory -> {
-              if (addressHistory.getAddresses().isEmpty()) {
-                return Sets.newHashSet();
-              }
-              Set<String> ips = Sets.newHashSet();
-              for (String ipId : addressHistory.getAddresses()) {
-                ResolvedIP ip = resolvedIPCache.getUnchecked(ipId);
-                if (!ip.isLoaded()) {
-                  DbRow row = DB.getFirstRowAsync(SELECT_IP_ID_QUERY, ipId).join();
-                  if (row != null) {
-                    String resolved = row.getString(IP_ADDRESS_FIELD);
-                    ip.setAddress(resolved);
-                  }
-                }
-                ips.add(ip.getAddress());
-              }
-              return ips;
-            });
+            result -> {
+              if (result == null) return null;
+              String address = result.getString(IP_ADDRESS_FIELD);
+              Instant date = Instant.ofEpochMilli(Long.parseLong(result.getString(DATE_FIELD)));
+              return new LatestAddressInfo(playerId, address, date);
+            },
+            async());
   }
 
-  public CompletableFuture<Set<UUID>> getAlternateAccounts(UUID playerId) {
-    return getIpIds(playerId)
-        .thenApplyAsync(
-            history -> {
-              Set<UUID> ids = Sets.newHashSet();
-
-              for (String address : history.getAddresses()) {
-                IpAlts addressAlts = altsCache.getUnchecked(address);
-
-                if (!addressAlts.isLoaded()) {
-                  List<DbRow> rows = DB.getResultsAsync(SELECT_ALTS_QUERY, address).join();
-                  if (rows != null && !rows.isEmpty()) {
-                    for (DbRow row : rows) {
-                      String userId = row.getString(USER_ID_FIELD);
-                      addressAlts.getPlayerIds().add(userId);
-                    }
-                  }
-                  addressAlts.setLoaded(true);
-                }
-                ids.addAll(
-                    addressAlts.getPlayerIds().stream()
-                        .map(UUID::fromString)
-                        .filter(id -> !playerId.equals(id))
-                        .collect(Collectors.toSet()));
-              }
-              return ids;
-            });
+  public CompletableFuture<Set<String>> getIpIds(UUID playerId) {
+    return historyCache.get(playerId).thenApply(Map::keySet);
   }
 
-  private class IpAlts {
-    private String ipId;
-    private Set<String> playerIds;
-    private boolean loaded;
-
-    public IpAlts(String ipId) {
-      this.ipId = ipId;
-      this.playerIds = Sets.newHashSet();
-      this.loaded = false;
-    }
-
-    public String getIpId() {
-      return ipId;
-    }
-
-    public Set<String> getPlayerIds() {
-      return playerIds;
-    }
+  public CompletableFuture<Set<String>> getKnownIps(UUID playerId) {
+    return historyCache.get(playerId).thenApply(history -> ImmutableSet.copyOf(history.values()));
+  }
 
-    public boolean isLoaded() {
-      return loaded;
+  private CompletableFuture<Map<String, String>> loadHistory(UUID playerId) {
+    if (UUIDStorage.isBinary(IP_TABLE_NAME) == UUIDStorage.isBinary(IP_USER_TABLE_NAME)) {
+      return AsyncDB.getResults(SELECT_KNOWN_IPS_QUERY, bindId(IP_USER_TABLE_NAME, playerId))
+          .thenApplyAsync(this::readHistory, async());
     }
 
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
+    // Ip ids can not be joined while only one of the tables uses binary UUIDs
+    return AsyncDB.supply(
+            () -> {
+              List<DbRow> ipIds =
+                  DB.getResults(SELECT_IP_HISTORY_QUERY, bindId(IP_USER_TABLE_NAME, playerId));
+              if (ipIds == null || ipIds.isEmpty()) return ipIds;
+
+              Object[] params =
+                  ipIds.stream()
+                      .map(row -> bindId(IP_TABLE_NAME, UUID.fromString(readIpId(row))))
+                      .toArray();
+              String placeholders =
+                  ipIds.stream().map(row -> "?").collect(Collectors.joining(",", "(", ")"));
+              return DB.getResults(SELECT_ADDRESSES_QUERY + placeholders, params);
+            })
+        .thenApplyAsync(this::readHistory, async());
   }
 
-  public static class ResolvedIP {
-
-    private String ipId;
-    private String address;
-    private boolean loaded;
-
-    public ResolvedIP(String ipId) {
-      this.ipId = ipId;
-      this.address = null;
-      this.loaded = false;
+  private Map<String, String> readHistory(List<DbRow> rows) {
+    Map<String, String> history = Maps.newHashMap();
+    if (rows != null) {
+      for (DbRow row : rows) {
+        history.put(readIpId(row), row.getString(IP_ADDRESS_FIELD));
+      }
     }
+    return ImmutableMap.copyOf(history);
+  }
 
-    public String getIpId() {
-      return ipId;
+  public CompletableFuture<Set<UUID>> getAlternateAccounts(UUID playerId) {
+    if (altGraph.isLoaded()) {
+      return CompletableFuture.completedFuture(altGraph.getAlts(playerId));
     }
 
-    public String getAddress() {
-      return address;
-    }
+    // Until the graph is loaded, follow alts of alts in the database so both give the same answer
+    return AsyncDB.supply(() -> findAlts(playerId));
+  }
 
-    public void setAddress(String address) {
-      this.address = address;
-      this.loaded = true;
+  // Expands the cluster a level at a time, looking up every account found in a level together
+  private Set<UUID> findAlts(UUID playerId) throws SQLException {
+    Set<UUID> cluster = Sets.newHashSet(playerId);
+    List<UUID> level = ImmutableList.of(playerId);
+    while (!level.isEmpty()) {
+      List<UUID> found = Lists.newArrayList();
+      for (List<UUID> batch : Lists.partition(level, ALTS_BATCH_SIZE)) {
+        String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+        List<DbRow> rows =
+            DB.getResults(
+                String.format(SELECT_ALTS_QUERY_FORMAT, placeholders),
+                batch.stream().map(id -> bindId(IP_USER_TABLE_NAME, id)).toArray());
+        if (rows == null) continue;
+        for (DbRow row : rows) {
+          UUID altId = UUIDCodec.decode(row.get(USER_ID_FIELD));
+          if (cluster.add(altId)) found.add(altId);
+        }
+      }
+      level = found;
     }
 
-    public boolean isLoaded() {
-      return loaded;
-    }
+    cluster.remove(playerId);
+    return ImmutableSet.copyOf(cluster);
   }
 
-  /** Holds Player ID and list of IP ids that match */
-  public static class AddressHistory {
-    private UUID playerId;
-    private Set<String> addressesIds;
-    private boolean loaded;
-
-    public AddressHistory(UUID playerId) {
-      this.playerId = playerId;
-      this.addressesIds = Sets.newHashSet();
-      this.loaded = false;
+  /**
+   * Groups players who are alts of each other
+   *
+   * @param playerIds The players to group, e.g those online
+   * @return Groups of two or more of the players
+   */
+  public CompletableFuture<List<Set<UUID>>> getAltClusters(Collection<UUID> playerIds) {
+    if (altGraph.isLoaded()) {
+      return CompletableFuture.completedFuture(altGraph.getClusters(playerIds));
     }
 
-    public UUID getPlayerId() {
-      return playerId;
+    // Until the graph is loaded, cluster the players by the alts found in the database
+    List<CompletableFuture<Void>> lookups = Lists.newArrayList();
+    AltGraph clusters = new AltGraph();
+    for (UUID playerId : playerIds) {
+      lookups.add(
+          getAlternateAccounts(playerId)
+              .thenAccept(alts -> alts.forEach(alt -> clusters.linkAccounts(playerId, alt))));
     }
+    return CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+        .thenApply(x -> clusters.getClusters(playerIds));
+  }
 
-    public Set<String> getAddresses() {
-      return addressesIds;
-    }
+  public AltGraph getAltGraph() {
+    return altGraph;
+  }
 
-    public void addAddress(String addressId) {
-      this.addressesIds.add(addressId);
-    }
+  private WriteBehindQueue getWriteQueue() {
+    return Community.get().getDatabase().getWriteQueue();
+  }
 
-    public boolean isLoaded() {
-      return loaded;
-    }
+  private Object bindId(String tableName, UUID id) {
+    return UUIDStorage.getCodec(tableName).encode(id);
+  }
 
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
+  // IP ids are kept as strings in memory regardless of how they are stored
+  private String readIpId(DbRow row) {
+    return UUIDCodec.decode(row.get(IP_ID_FIELD)).toString();
   }
 
   public static class LatestAddressInfo {
     private final UUID playerId;
-    private String address;
-    private Instant date;
-    private boolean loaded;
+    private final String address;
+    private final Instant date;
 
-    public LatestAddressInfo(UUID playerId) {
+    public LatestAddressInfo(UUID playerId, String address, Instant date) {
       this.playerId = playerId;
-      this.address = null;
-      this.date = null;
-      this.loaded = false;
+      this.address = address;
+      this.date = date;
     }
 
     public UUID getPlayerId() {
@@ -307,24 +282,8 @@ public class AddressHistoryService implements AddressQuery {
       return address;
     }
 
-    public void setAddress(String address) {
-      this.address = address;
-    }
-
     public Instant getDate() {
       return date;
     }
-
-    public void setDate(Instant date) {
-      this.date = date;
-    }
-
-    public boolean isLoaded() {
-      return loaded;
-    }
-
-    public void setLoaded(boolean loaded) {
-      this.loaded = loaded;
-    }
   }
 }
@@ -22,7 +22,7 @@ public interface AddressQuery {
   static final String LATEST_IP_TABLE_NAME = "latest_ip";
 
   static final String INSERT_LATEST_IP_QUERY =
-      "REPLACE INTO "
+      "INSERT INTO "
           + LATEST_IP_TABLE_NAME
           + "("
           + USER_ID_FIELD
@@ -31,13 +31,21 @@ public interface AddressQuery {
           + ","
           + DATE_FIELD
           + ")"
-          + " VALUES(?,?,?)";
+          + " VALUES(?,?,?) ON DUPLICATE KEY UPDATE "
+          + IP_ADDRESS_FIELD
+          + " = VALUES("
+          + IP_ADDRESS_FIELD
+          + "), "
+          + DATE_FIELD
+          + " = VALUES("
+          + DATE_FIELD
+          + ")";
 
   static final String SELECT_IP_QUERY =
       "SELECT " + IP_ID_FIELD + " FROM " + IP_TABLE_NAME + " WHERE " + IP_ADDRESS_FIELD + " = ?";
 
   static final String INSERT_IP_QUERY =
-      "INSERT INTO "
+      "INSERT IGNORE INTO "
           + IP_TABLE_NAME
           + " ("
           + IP_ADDRESS_FIELD
@@ -46,7 +54,7 @@ public interface AddressQuery {
           + ") VALUES (?,?)";
 
   static final String INSERT_IP_USER_QUERY =
-      "INSERT INTO "
+      "INSERT IGNORE INTO "
           + IP_USER_TABLE_NAME
           + " ("
           + USER_ID_FIELD
@@ -60,9 +68,33 @@ public interface AddressQuery {
   static final String SELECT_IP_HISTORY_QUERY =
       "SELECT ip_id FROM " + IP_USER_TABLE_NAME + " WHERE user_id = ?";
 
-  static final String SELECT_IP_ID_QUERY =
-      "SELECT " + IP_ADDRESS_FIELD + " FROM " + IP_TABLE_NAME + " WHERE " + IP_ID_FIELD + " = ?";
+  // Every ip id and address a player has used
+  static final String SELECT_KNOWN_IPS_QUERY =
+      String.format(
+          "SELECT a.%1$s, a.%2$s FROM %3$s h JOIN %4$s a ON a.%2$s = h.%2$s WHERE h.%5$s = ?",
+          IP_ADDRESS_FIELD, IP_ID_FIELD, IP_USER_TABLE_NAME, IP_TABLE_NAME, USER_ID_FIELD);
+
+  // Addresses for a list of ip ids, append the IN list
+  static final String SELECT_ADDRESSES_QUERY =
+      String.format(
+          "SELECT %s, %s FROM %s WHERE %s IN ",
+          IP_ADDRESS_FIELD, IP_ID_FIELD, IP_TABLE_NAME, IP_ID_FIELD);
 
-  static final String SELECT_ALTS_QUERY =
-      "SELECT " + USER_ID_FIELD + " FROM " + IP_USER_TABLE_NAME + " WHERE " + IP_ID_FIELD + " = ?";
+  // A page of every player and ip id, in index order, for loading the alt graph
+  static final String SELECT_HISTORY_FIRST_PAGE_QUERY =
+      String.format(
+          "SELECT %1$s, %2$s FROM %3$s ORDER BY %1$s, %2$s LIMIT ?",
+          USER_ID_FIELD, IP_ID_FIELD, IP_USER_TABLE_NAME);
+  static final String SELECT_HISTORY_PAGE_QUERY =
+      String.format(
+          "SELECT %1$s, %2$s FROM %3$s WHERE %1$s > ? OR (%1$s = ? AND %2$s > ?)"
+              + " ORDER BY %1$s, %2$s LIMIT ?",
+          USER_ID_FIELD, IP_ID_FIELD, IP_USER_TABLE_NAME);
+
+  // Every player who has used any ip id of the given players, formatted with one ? per player
+  static final String SELECT_ALTS_QUERY_FORMAT =
+      String.format(
+          "SELECT DISTINCT other.%1$s FROM %2$s mine JOIN %2$s other ON other.%3$s = mine.%3$s"
+              + " WHERE mine.%1$s IN (%%s)",
+          USER_ID_FIELD, IP_USER_TABLE_NAME, IP_ID_FIELD);
 }
@@ -0,0 +1,165 @@
+package dev.pgm.community.users.services;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Clusters of accounts linked by the ip ids they have used, kept in memory.
+ *
+ * <p>Accounts which share an ip id are alts of each other, and so are alts of alts. Clusters are
+ * kept with union-find (union by size, with path halving), so linking an account to an ip id is
+ * near constant time. Each cluster also keeps its accounts in a circular list, which is spliced in
+ * constant time when two clusters merge, so the accounts of a cluster are listed in time
+ * proportional to its size.
+ *
+ * <p>Accounts are only ever linked, never unlinked, as ip history is never deleted.
+ */
+public class AltGraph {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // Guarded by this
+  private final Map<UUID, Integer> accounts = Maps.newHashMap();
+  private final Map<UUID, Integer> ipIds = Maps.newHashMap(); // Ip id -> first account to use it
+  private UUID[] ids = new UUID[INITIAL_CAPACITY];
+  private int[] parent = new int[INITIAL_CAPACITY];
+  private int[] size = new int[INITIAL_CAPACITY];
+  private int[] next = new int[INITIAL_CAPACITY]; // Next account in the same cluster
+  private int count;
+
+  private volatile boolean loaded;
+
+  /**
+   * Records that an account used an ip id, merging the clusters of every account which used it
+   *
+   * @param playerId The account
+   * @param ipId The ip id
+   */
+  public synchronized void link(UUID playerId, UUID ipId) {
+    int account = index(playerId);
+    Integer first = ipIds.putIfAbsent(ipId, account);
+    if (first != null) union(account, first);
+  }
+
+  /**
+   * Records that two accounts are alts of each other
+   *
+   * @param playerId An account
+   * @param altId The other account
+   */
+  public synchronized void linkAccounts(UUID playerId, UUID altId) {
+    union(index(playerId), index(altId));
+  }
+
+  /**
+   * Gets every alt of an account, including alts of its alts
+   *
+   * @param playerId The account
+   * @return The other accounts in its cluster
+   */
+  public synchronized Set<UUID> getAlts(UUID playerId) {
+    Integer account = accounts.get(playerId);
+    if (account == null || size[find(account)] == 1) return ImmutableSet.of();
+
+    ImmutableSet.Builder<UUID> alts = ImmutableSet.builder();
+    for (int other = next[account]; other != account; other = next[other]) {
+      alts.add(ids[other]);
+    }
+    return alts.build();
+  }
+
+  /**
+   * Groups accounts by cluster, e.g to find which online players are alts of each other
+   *
+   * @param playerIds The accounts to group
+   * @return Groups of two or more of the given accounts which are alts of each other
+   */
+  public synchronized List<Set<UUID>> getClusters(Collection<UUID> playerIds) {
+    Map<Integer, Set<UUID>> clusters = Maps.newLinkedHashMap();
+    for (UUID playerId : playerIds) {
+      Integer account = accounts.get(playerId);
+      if (account == null) continue;
+      clusters.computeIfAbsent(find(account), root -> Sets.newLinkedHashSet()).add(playerId);
+    }
+
+    List<Set<UUID>> groups = Lists.newArrayList();
+    for (Set<UUID> cluster : clusters.values()) {
+      if (cluster.size() > 1) groups.add(ImmutableSet.copyOf(cluster));
+    }
+    return ImmutableList.copyOf(groups);
+  }
+
+  public synchronized int getAccountCount() {
+    return count;
+  }
+
+  public synchronized int getAddressCount() {
+    return ipIds.size();
+  }
+
+  /** @return whether all ip history has been read, before then only recent logins are known */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public void setLoaded() {
+    this.loaded = true;
+  }
+
+  private int index(UUID playerId) {
+    Integer account = accounts.get(playerId);
+    if (account != null) return account;
+
+    if (count == ids.length) {
+      int capacity = ids.length * 2;
+      ids = Arrays.copyOf(ids, capacity);
+      parent = Arrays.copyOf(parent, capacity);
+      size = Arrays.copyOf(size, capacity);
+      next = Arrays.copyOf(next, capacity);
+    }
+
+    int index = count++;
+    ids[index] = playerId;
+    parent[index] = index;
+    size[index] = 1;
+    next[index] = index;
+    accounts.put(playerId, index);
+    return index;
+  }
+
+  private int find(int account) {
+    while (parent[account] != account) {
+      parent[account] = parent[parent[account]];
+      account = parent[account];
+    }
+    return account;
+  }
+
+  private void union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA == rootB) return;
+
+    if (size[rootA] < size[rootB]) {
+      int swap = rootA;
+      rootA = rootB;
+      rootB = swap;
+    }
+    parent[rootB] = rootA;
+    size[rootA] += size[rootB];
+
+    // Swapping successors joins the two circular lists into one
+    int swap = next[a];
+    next[a] = next[b];
+    next[b] = swap;
+  }
+}
@@ -1,46 +1,53 @@
 package dev.pgm.community.users.services;
 
+import static dev.pgm.community.CommunityExecutors.async;
+
 import co.aikar.idb.DB;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import co.aikar.idb.DbRow;
+import com.google.common.collect.Maps;
+import dev.pgm.community.database.AsyncDB;
+import dev.pgm.community.database.AsyncLoadingCache;
+import dev.pgm.community.database.SharedCodec;
 import dev.pgm.community.feature.SQLFeatureBase;
 import dev.pgm.community.users.UserProfile;
 import dev.pgm.community.users.UserProfileImpl;
 import dev.pgm.community.utils.NameUtils;
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 public class SQLUserService extends SQLFeatureBase<UserProfile, String> implements UserQuery {
 
-  private LoadingCache<UUID, UserData> profileCache;
+  private final AsyncLoadingCache<UUID, UserProfile> profileCache;
+  private final AsyncLoadingCache<String, UUID> nameCache; // Lowercase name -> id from database
+  private final Map<String, UUID> nameIndex; // Lowercase name -> id of cached profiles
 
   public SQLUserService() {
     super(TABLE_NAME, TABLE_FIELDS);
-
     this.profileCache =
-        CacheBuilder.newBuilder()
-            .build(
-                new CacheLoader<UUID, UserData>() {
-                  @Override
-                  public UserData load(UUID key) throws Exception {
-                    return new UserData(key);
-                  }
-                });
+        createMissingAwareCache(
+            "users", SharedCodec.uuid(UserProfileImpl.class), this::loadProfile);
+    this.nameCache =
+        createMissingAwareCache("user_names", SharedCodec.string(UUID.class), this::loadId);
+    this.nameIndex = Maps.newConcurrentMap();
   }
 
   @Override
   public void save(UserProfile profile) {
-    DB.executeUpdateAsync(
+    queueUpdate(
         INSERT_USER_QUERY,
-        profile.getId().toString(),
+        bindId(profile.getId()),
         profile.getUsername(),
+        NameUtils.toLookupKey(profile.getUsername()),
         profile.getFirstLogin().toEpochMilli(),
         profile.getJoinCount());
-    profileCache.invalidate(profile.getId());
+    cache(profile);
+    announceCreated(profileCache, profile.getId());
+    if (profile.getUsername() != null) {
+      announceCreated(nameCache, NameUtils.toLookupKey(profile.getUsername()));
+    }
   }
 
   @Override
@@ -50,104 +57,131 @@ public class SQLUserService extends SQLFeatureBase<UserProfile, String> implemen
 
   @Override
   public CompletableFuture<UserProfile> query(String target) {
-    UserData data = null;
-
-    // If Username, search through looking for existing usernames in profiles
-    if (NameUtils.isMinecraftName(target)) {
-      Optional<UserData> uQuery =
-          profileCache.asMap().values().stream()
-              .filter(u -> u.getUsername() != null)
-              .filter(u -> u.getUsername().equalsIgnoreCase(target))
-              .findAny();
-      // If profile is cached with matching username
-      if (uQuery.isPresent()) {
-        data = uQuery.get();
-      }
-    } else {
-      data = profileCache.getUnchecked(UUID.fromString(target));
+    if (!NameUtils.isMinecraftName(target)) {
+      return profileCache.get(UUID.fromString(target));
     }
 
-    if (data != null && data.isLoaded()) {
-      return CompletableFuture.completedFuture(data.getProfile());
+    // If Username, look for an already cached profile
+    String key = NameUtils.toLookupKey(target);
+    UUID cachedId = nameIndex.get(key);
+    if (cachedId != null) {
+      UserProfile cached = profileCache.getIfLoaded(cachedId);
+      if (cached != null && target.equalsIgnoreCase(cached.getUsername())) {
+        return CompletableFuture.completedFuture(cached);
+      }
+      nameIndex.remove(key, cachedId); // Evicted or renamed
     }
 
-    return DB.getFirstRowAsync(data == null ? USERNAME_QUERY : PLAYERID_QUERY, target)
+    return nameCache
+        .get(key)
+        .thenComposeAsync(
+            id -> {
+              if (id == null) return CompletableFuture.completedFuture(null);
+              return profileCache
+                  .get(id)
+                  .thenApply(
+                      profile -> {
+                        if (profile != null && target.equalsIgnoreCase(profile.getUsername())) {
+                          return profile;
+                        }
+                        nameCache.invalidate(key); // Renamed since the name was looked up
+                        return null;
+                      });
+            },
+            async());
+  }
+
+  private CompletableFuture<UUID> loadId(String name) {
+    return AsyncDB.getFirstRow(USERNAME_QUERY, name)
         .thenApplyAsync(
             result -> {
-              if (result != null) {
-                final UUID id = UUID.fromString(result.getString("id"));
-                final String username = result.getString("name");
-                final long firstJoin = Long.parseLong(result.getString("first_join"));
-                final int joinCount = result.getInt("join_count");
-
-                UserData loadedData = new UserData(id);
-                loadedData.setProfile(
-                    new UserProfileImpl(id, username, Instant.ofEpochMilli(firstJoin), joinCount));
-                profileCache.put(id, loadedData);
-                return loadedData.getProfile();
+              if (result == null) return null;
+              UserProfile profile = readProfile(result);
+              // Keep an already cached profile, it may have changes which are not written yet
+              if (profileCache.getIfLoaded(profile.getId()) == null) {
+                profileCache.fill(profile.getId(), profile);
+                indexName(profile);
               }
-              return null;
-            });
+              return profile.getId();
+            },
+            async());
   }
 
-  private void update(UserProfile profile) {
-    DB.executeUpdateAsync(
-        UPDATE_USER_QUERY,
-        profile.getUsername(),
-        profile.getJoinCount(),
-        profile.getId().toString());
-  }
-
-  // Increase join count, set last login, check for username change
-  public CompletableFuture<UserProfile> login(UUID id, String username, String address) {
-    return query(id.toString())
+  private CompletableFuture<UserProfile> loadProfile(UUID id) {
+    return AsyncDB.getFirstRow(PLAYERID_QUERY, bindId(id))
         .thenApplyAsync(
-            profile -> {
-              if (profile == null) {
-                // No profile? Save a new one
-                profile = new UserProfileImpl(id, username);
-                save(profile);
-              } else {
-                // Existing profile - Update name, login, joins
-                profile.setUsername(username);
-                profile.incJoinCount();
-                update(profile);
-              }
+            result -> {
+              if (result == null) return null;
+              UserProfile profile = readProfile(result);
+              indexName(profile);
               return profile;
-            });
+            },
+            async());
   }
 
-  private class UserData {
-
-    private UUID playerId;
-    private UserProfile profile;
-    private boolean loaded;
+  private void cache(UserProfile profile) {
+    profileCache.put(profile.getId(), profile);
+    indexName(profile);
+  }
 
-    public UserData(UUID playerId) {
-      this.playerId = playerId;
-      this.profile = null;
-      this.loaded = false;
+  private void indexName(UserProfile profile) {
+    if (profile.getUsername() != null) {
+      nameIndex.put(NameUtils.toLookupKey(profile.getUsername()), profile.getId());
     }
+  }
 
-    public UUID getPlayerId() {
-      return playerId;
-    }
+  private UserProfile readProfile(DbRow row) {
+    final UUID id = readId(row, "id");
+    final String username = row.getString("name");
+    final long firstJoin = Long.parseLong(row.getString("first_join"));
+    final int joinCount = row.getInt("join_count");
+    return new UserProfileImpl(id, username, Instant.ofEpochMilli(firstJoin), joinCount);
+  }
 
-    public String getUsername() {
-      return profile != null ? profile.getUsername() : null;
-    }
+  // Creates the profile or counts the join and updates the name, in a single statement so joins
+  // on other servers are never lost
+  public CompletableFuture<UserProfile> login(UUID id, String username, String address) {
+    // Only used to tell whether the name changed, the profile itself is always read back
+    final UserProfile previous = profileCache.getIfLoaded(id);
+    return AsyncDB.supply(
+            () -> {
+              int result =
+                  DB.executeUpdate(
+                      LOGIN_USER_QUERY,
+                      bindId(id),
+                      username,
+                      NameUtils.toLookupKey(username),
+                      Instant.now().toEpochMilli());
+              // Read back in the same task, so the join count includes joins on other servers
+              DbRow row = DB.getFirstRow(PLAYERID_QUERY, bindId(id));
+              return row == null ? null : new LoginResult(readProfile(row), result == 1);
+            })
+        .thenApplyAsync(
+            login -> {
+              if (login == null) return null;
 
-    public UserProfile getProfile() {
-      return profile;
-    }
+              UserProfile profile = login.profile;
+              cache(profile);
+              if (login.created) {
+                announceCreated(profileCache, id);
+              }
+              if (login.created
+                  || previous == null
+                  || !username.equalsIgnoreCase(previous.getUsername())) {
+                announceCreated(nameCache, NameUtils.toLookupKey(username));
+              }
+              return profile;
+            },
+            async());
+  }
 
-    public void setProfile(UserProfile profile) {
-      this.profile = profile;
-      this.loaded = true;
-    }
+  private static class LoginResult {
+    private final UserProfile profile;
+    private final boolean created; // One row is affected by an insert, two by an update
 
-    public boolean isLoaded() {
-      return loaded;
+    public LoginResult(UserProfile profile, boolean created) {
+      this.profile = profile;
+      this.created = created;
     }
   }
 }
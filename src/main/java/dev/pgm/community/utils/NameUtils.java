@@ -1,5 +1,6 @@
 package dev.pgm.community.utils;
 
+import java.util.Locale;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -23,4 +24,14 @@ public class NameUtils {
   public static boolean isIdentifier(String input) {
     return isMinecraftName(input) || isPlayerId(input);
   }
+
+  /**
+   * Normalizes a name for case-insensitive lookups, matching the lowercase name columns
+   *
+   * @param name A username or nickname, may be null
+   * @return the lowercase name, or null
+   */
+  public static String toLookupKey(String name) {
+    return name == null ? null : name.toLowerCase(Locale.ROOT);
+  }
 }